@@ -0,0 +1,43 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks like the JMH launcher does, with the same options, except that the results
+ * are also written as JSON by default, to jmh-result-&lt;version&gt;.json, so that they can be
+ * compared across releases. Pass -rf and -rff to choose another format or file.
+ */
+public final class Main {
+
+  private Main() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<String> options = new ArrayList<>(Arrays.asList(args));
+    if (!options.contains("-rf")) {
+      options.add("-rf");
+      options.add("json");
+      if (!options.contains("-rff")) {
+        String version = Main.class.getPackage().getImplementationVersion();
+        options.add("-rff");
+        options.add(version == null ? "jmh-result.json" : "jmh-result-" + version + ".json");
+      }
+    }
+    org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+  }
+}
@@ -0,0 +1,144 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.client.AsyncYBClient.RemoteTablet;
+import org.yb.util.Slice;
+
+/**
+ * Compares partition keys with {@link Bytes#memcmp}, directly and through the lookups of a tablet
+ * among the tablets of a table: a {@link ConcurrentSkipListMap} ordered by {@link Bytes#MEMCMP},
+ * as the tablet cache used to be, and the {@link TablePartitionIndex} that replaced it. The keys
+ * share a common prefix, so that comparisons look at most of their bytes. {@code memcmpWords}
+ * measures the 8 bytes at a time comparison used when {@code Arrays.mismatch} isn't available
+ * (Java 8).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BytesBenchmark {
+
+  private static final int NUM_KEYS = 1024;
+
+  @Param({"4", "16", "64"})
+  public int keyLength;
+
+  @Param({"16", "1024"})
+  public int numTablets;
+
+  private byte[][] keys;
+  private byte[][] otherKeys;
+  private byte[][] equalKeys;
+  private ConcurrentSkipListMap<byte[], RemoteTablet> skipList;
+  private TablePartitionIndex index;
+  private AsyncYBClient client;
+  private int next;
+
+  private static byte[] randomKey(Random random, int length) {
+    byte[] key = new byte[length];
+    random.nextBytes(key);
+    // Same first half for every key.
+    Arrays.fill(key, 0, length / 2, (byte) 0x7f);
+    return key;
+  }
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    keys = new byte[NUM_KEYS][];
+    otherKeys = new byte[NUM_KEYS][];
+    equalKeys = new byte[NUM_KEYS][];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      keys[i] = randomKey(random, keyLength);
+      otherKeys[i] = randomKey(random, keyLength);
+      equalKeys[i] = keys[i].clone();
+    }
+
+    // Never contacted, only needed to create RemoteTablets.
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build();
+    byte[][] starts = new byte[numTablets][];
+    starts[0] = new byte[0];
+    for (int i = 1; i < numTablets; i++) {
+      starts[i] = randomKey(random, keyLength);
+    }
+    Arrays.sort(starts, Bytes.MEMCMP);
+    skipList = new ConcurrentSkipListMap<>(Bytes.MEMCMP);
+    List<RemoteTablet> tablets = new ArrayList<>(numTablets);
+    for (int i = 0; i < numTablets; i++) {
+      byte[] end = i + 1 < numTablets ? starts[i + 1] : new byte[0];
+      RemoteTablet tablet = client.new RemoteTablet(
+          "table", new Slice(("tablet" + i).getBytes()),
+          new Partition(starts[i], end, new ArrayList<Integer>()));
+      skipList.put(starts[i], tablet);
+      tablets.add(tablet);
+    }
+    index = TablePartitionIndex.EMPTY.withTablets(tablets);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.shutdown().join(5000);
+  }
+
+  @Benchmark
+  public int memcmp() {
+    int i = next++ & (NUM_KEYS - 1);
+    return Bytes.memcmp(keys[i], otherKeys[i]);
+  }
+
+  @Benchmark
+  public int memcmpEqual() {
+    int i = next++ & (NUM_KEYS - 1);
+    return Bytes.memcmp(keys[i], equalKeys[i]);
+  }
+
+  @Benchmark
+  public int memcmpWords() {
+    int i = next++ & (NUM_KEYS - 1);
+    return Bytes.memcmpWords(keys[i], 0, keyLength, otherKeys[i], 0, keyLength);
+  }
+
+  @Benchmark
+  public RemoteTablet skipListFloor() {
+    Map.Entry<byte[], RemoteTablet> entry = skipList.floorEntry(keys[next++ & (NUM_KEYS - 1)]);
+    return entry == null ? null : entry.getValue();
+  }
+
+  @Benchmark
+  public RemoteTablet partitionIndexLookup() {
+    return index.lookup(keys[next++ & (NUM_KEYS - 1)]);
+  }
+}
@@ -0,0 +1,92 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.ByteString;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.Value;
+import org.yb.cdc.CdcService;
+import org.yb.rpc.RpcHeader;
+
+/**
+ * Parses one complete response frame of a typical size into a {@link CallResponse}, then its
+ * GetChanges response with {@link YRpc#readProtobuf}, the work done for every response once it
+ * has been framed. Decoding the frames out of the stream is covered by
+ * {@link ResponseDecodeBenchmark}, and encoding the calls by {@link RpcEncodeBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallResponseBenchmark {
+
+  @Param({"0", "10", "100"})
+  public int numRecords;
+
+  private byte[] frame;
+
+  @Setup
+  public void setup() throws Exception {
+    CdcService.GetChangesResponsePB.Builder response = CdcService.GetChangesResponsePB.newBuilder()
+        .setCdcSdkCheckpoint(CdcService.CDCSDKCheckpointPB.newBuilder()
+            .setTerm(3)
+            .setIndex(123456789L));
+    for (int i = 0; i < numRecords; i++) {
+      response.addCdcSdkProtoRecords(CdcService.CDCSDKProtoRecordPB.newBuilder()
+          .setRowMessage(CdcService.RowMessage.newBuilder()
+              .setOp(CdcService.RowMessage.Op.INSERT)
+              .setTable("bench")
+              .setCommitTime(6849453251472674816L + i)
+              .setTransactionId(ByteString.copyFromUtf8("0123456789abcdef"))
+              .addNewTuple(Value.DatumMessagePB.newBuilder()
+                  .setColumnName("k").setDatumInt64(i))
+              .addNewTuple(Value.DatumMessagePB.newBuilder()
+                  .setColumnName("v").setDatumString("value " + i))));
+    }
+    FakeYBServer.Reply reply = FakeYBServer.Reply.of(response.build());
+    ByteBuf buf = FakeYBServer.encode(ByteBufAllocator.DEFAULT, 1, reply);
+    frame = new byte[buf.readableBytes()];
+    buf.readBytes(frame);
+    buf.release();
+  }
+
+  @Benchmark
+  public RpcHeader.ResponseHeader parseHeader() {
+    return new CallResponse(Unpooled.wrappedBuffer(frame)).getHeader();
+  }
+
+  @Benchmark
+  public CdcService.GetChangesResponsePB parseResponse() {
+    CallResponse callResponse = new CallResponse(Unpooled.wrappedBuffer(frame));
+    CdcService.GetChangesResponsePB.Builder builder = CdcService.GetChangesResponsePB.newBuilder();
+    YRpc.readProtobuf(callResponse, builder);
+    return builder.build();
+  }
+}
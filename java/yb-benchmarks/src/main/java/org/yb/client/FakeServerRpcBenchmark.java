@@ -0,0 +1,143 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.ByteString;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.Value;
+import org.yb.cdc.CdcService;
+import org.yb.master.MasterDdlOuterClass;
+
+/**
+ * Drives an {@link AsyncYBClient} from many threads against a {@link FakeYBServer}, so that the
+ * whole client stack is measured without a cluster: RPC encoding, the connection, response
+ * decoding and the retries on NOT_LEADER errors. Throughput and the latency percentiles (p99
+ * included) are reported for every combination of server latency, response size and error rate.
+ * Allocations are reported with the GC profiler:
+ * <pre>
+ *   java -jar yb-benchmarks/target/benchmarks.jar FakeServerRpcBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(1)
+public class FakeServerRpcBenchmark {
+
+  private static final String TABLE_ID = "table";
+  private static final String TABLET_ID = "tablet";
+  private static final int RECORD_SIZE = 1024;
+  private static final long TIMEOUT_MS = 60000;
+
+  /** Latency added by the server to every reply. */
+  @Param({"0", "1000"})
+  public int serverLatencyMicros;
+
+  /** Size of the records of each GetChanges response. */
+  @Param({"1024", "1048576"})
+  public int responseBytes;
+
+  /** Every n-th GetChanges call is answered with NOT_LEADER, 0 for none. */
+  @Param({"0", "1000"})
+  public int notLeaderEvery;
+
+  private FakeYBServer server;
+  private AsyncYBClient client;
+  private YBTable table;
+
+  @Setup
+  public void setup() throws Exception {
+    server = new FakeYBServer()
+        .addTablet(TABLE_ID, TABLET_ID, new byte[0], new byte[0])
+        .reply(FakeYBServer.CDC_SERVICE, "GetChanges",
+               FakeYBServer.Reply.of(changes(Math.max(1, responseBytes / RECORD_SIZE))))
+        .reply(FakeYBServer.MASTER_SERVICE, "ListTables",
+               FakeYBServer.Reply.of(tables(10)))
+        .setLatency(serverLatencyMicros, TimeUnit.MICROSECONDS)
+        .start();
+    if (notLeaderEvery > 0) {
+      server.failEvery(FakeYBServer.CDC_SERVICE, "GetChanges", notLeaderEvery,
+                       FakeYBServer.Reply.cdcError(CdcService.CDCErrorPB.Code.NOT_LEADER));
+    }
+    client = new AsyncYBClient.AsyncYBClientBuilder(server.getHostAndPort().toString()).build();
+    table = new YBTable(client, "bench", TABLE_ID, null, null);
+    // Locate the master and the tablet before measuring.
+    getChanges();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.shutdown().join(TIMEOUT_MS);
+    server.close();
+  }
+
+  private static CdcService.GetChangesResponsePB changes(int numRecords) {
+    char[] value = new char[RECORD_SIZE];
+    Arrays.fill(value, 'x');
+    CdcService.CDCSDKProtoRecordPB record = CdcService.CDCSDKProtoRecordPB.newBuilder()
+        .setRowMessage(CdcService.RowMessage.newBuilder()
+            .setOp(CdcService.RowMessage.Op.INSERT)
+            .setTable("bench")
+            .addNewTuple(Value.DatumMessagePB.newBuilder()
+                .setColumnName("k").setDatumInt64(1))
+            .addNewTuple(Value.DatumMessagePB.newBuilder()
+                .setColumnName("v").setDatumString(new String(value))))
+        .build();
+    CdcService.GetChangesResponsePB.Builder response = CdcService.GetChangesResponsePB.newBuilder()
+        .setCdcSdkCheckpoint(CdcService.CDCSDKCheckpointPB.newBuilder().setTerm(1).setIndex(1));
+    for (int i = 0; i < numRecords; i++) {
+      response.addCdcSdkProtoRecords(record);
+    }
+    return response.build();
+  }
+
+  private static MasterDdlOuterClass.ListTablesResponsePB tables(int numTables) {
+    MasterDdlOuterClass.ListTablesResponsePB.Builder response =
+        MasterDdlOuterClass.ListTablesResponsePB.newBuilder();
+    for (int i = 0; i < numTables; i++) {
+      response.addTablesBuilder()
+          .setId(ByteString.copyFromUtf8("table" + i))
+          .setName("table" + i);
+    }
+    return response.build();
+  }
+
+  @Benchmark
+  public GetChangesResponse getChanges() throws Exception {
+    return client.getChangesCDCSDK(table, "stream", TABLET_ID, 1, 1, new byte[0], 0, 0, false)
+        .join(TIMEOUT_MS);
+  }
+
+  @Benchmark
+  public ListTablesResponse listTables() throws Exception {
+    return client.getTablesList().join(TIMEOUT_MS);
+  }
+}
@@ -0,0 +1,131 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.collect.ImmutableList;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.ColumnSchema.ColumnSchemaBuilder;
+import org.yb.Common;
+import org.yb.Common.PartitionSchemaPB.HashSchema;
+import org.yb.Schema;
+import org.yb.Type;
+import org.yb.client.PartitionSchema.HashBucketSchema;
+import org.yb.client.PartitionSchema.RangeSchema;
+
+/**
+ * Encodes the primary and partition keys of rows with an INT32, a STRING and an INT64 key column,
+ * the partition key hashing the first two into buckets, as done to route every write to its
+ * tablet. The strings contain 0x00 bytes, which have to be escaped. The partition key is also
+ * encoded into a reused buffer, and only its hash bucket computed, as when routing rows to tablets.
+ * <pre>
+ *   java -jar yb-benchmarks/target/benchmarks.jar KeyEncoderBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyEncoderBenchmark {
+
+  private static final int NUM_ROWS = 1024;
+
+  @Param({"8", "64"})
+  public int stringLength;
+
+  private final ByteBuf buffer = Unpooled.buffer(256);
+  private PartitionSchema partitionSchema;
+  private HashBucketSchema hashBucketSchema;
+  private PartialRow[] rows;
+  private int next;
+
+  static Schema buildSchema(ColumnSchemaBuilder... columns) {
+    int i = 0;
+    Common.SchemaPB.Builder pb = Common.SchemaPB.newBuilder();
+    for (ColumnSchemaBuilder column : columns) {
+      Common.ColumnSchemaPB.Builder columnPb =
+          ProtobufHelper.columnToPb(column.build()).toBuilder();
+      columnPb.setId(i++);
+      pb.addColumns(columnPb);
+    }
+    return ProtobufHelper.pbToSchema(pb.build());
+  }
+
+  @Setup
+  public void setup() {
+    Schema schema = buildSchema(
+        new ColumnSchemaBuilder("a", Type.INT32).key(true),
+        new ColumnSchemaBuilder("b", Type.STRING).key(true),
+        new ColumnSchemaBuilder("c", Type.INT64).key(true),
+        new ColumnSchemaBuilder("v", Type.STRING));
+    hashBucketSchema = new HashBucketSchema(ImmutableList.of(0, 1), 32, 0);
+    partitionSchema = new PartitionSchema(
+        new RangeSchema(ImmutableList.of(0, 1, 2)), ImmutableList.of(hashBucketSchema),
+        schema, HashSchema.MULTI_COLUMN_HASH_SCHEMA);
+
+    Random random = new Random(42);
+    rows = new PartialRow[NUM_ROWS];
+    for (int i = 0; i < NUM_ROWS; i++) {
+      byte[] b = new byte[stringLength];
+      random.nextBytes(b);
+      // Keep a few 0x00 bytes, they are escaped when not in the last key column.
+      b[stringLength / 2] = 0;
+      PartialRow row = schema.newPartialRow();
+      row.addInt(0, random.nextInt());
+      row.addStringUtf8(1, b);
+      row.addLong(2, random.nextLong());
+      rows[i] = row;
+    }
+  }
+
+  private PartialRow nextRow() {
+    return rows[next++ & (NUM_ROWS - 1)];
+  }
+
+  @Benchmark
+  public byte[] encodePrimaryKey() {
+    return nextRow().encodePrimaryKey();
+  }
+
+  @Benchmark
+  public byte[] encodePartitionKey() {
+    return partitionSchema.encodePartitionKey(nextRow());
+  }
+
+  @Benchmark
+  public int encodePartitionKeyIntoBuffer() {
+    buffer.clear();
+    return partitionSchema.encodePartitionKey(nextRow(), buffer);
+  }
+
+  @Benchmark
+  public int hashBucket() {
+    return partitionSchema.getHashBucket(nextRow(), hashBucketSchema);
+  }
+}
@@ -0,0 +1,85 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.ColumnSchema.ColumnSchemaBuilder;
+import org.yb.Schema;
+import org.yb.Type;
+
+/**
+ * Creates and fills a {@link PartialRow} of a table with fixed and variable length columns, with
+ * the columns referenced by index and by name.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartialRowBenchmark {
+
+  private Schema schema;
+  private byte[] blob;
+  private int next;
+
+  @Setup
+  public void setup() {
+    schema = KeyEncoderBenchmark.buildSchema(
+        new ColumnSchemaBuilder("id", Type.INT64).key(true),
+        new ColumnSchemaBuilder("name", Type.STRING).key(true),
+        new ColumnSchemaBuilder("count", Type.INT32),
+        new ColumnSchemaBuilder("score", Type.DOUBLE),
+        new ColumnSchemaBuilder("flag", Type.BOOL),
+        new ColumnSchemaBuilder("blob", Type.BINARY).nullable(true));
+    blob = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public PartialRow byIndex() {
+    int i = next++;
+    PartialRow row = schema.newPartialRow();
+    row.addLong(0, i);
+    row.addString(1, "user");
+    row.addInt(2, i);
+    row.addDouble(3, i * 0.5);
+    row.addBoolean(4, (i & 1) == 0);
+    row.addBinary(5, blob);
+    return row;
+  }
+
+  @Benchmark
+  public PartialRow byName() {
+    int i = next++;
+    PartialRow row = schema.newPartialRow();
+    row.addLong("id", i);
+    row.addString("name", "user");
+    row.addInt("count", i);
+    row.addDouble("score", i * 0.5);
+    row.addBoolean("flag", (i & 1) == 0);
+    row.addBinary("blob", blob);
+    return row;
+  }
+}
@@ -0,0 +1,152 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.ReplayingDecoder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yb.cdc.CdcService;
+import org.yb.rpc.RpcHeader;
+import org.yb.util.Slice;
+
+/**
+ * Decodes a multi-MB CDC GetChanges response delivered in small TCP-sized chunks, comparing the
+ * ReplayingDecoder based decoding TabletClient used before with the length-framed pipeline.
+ * <pre>
+ *   java -jar yb-benchmarks/target/benchmarks.jar ResponseDecodeBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseDecodeBenchmark {
+
+  @Param({"1000", "8000"})
+  public int numRecords;
+
+  @Param({"1460", "16384"})
+  public int chunkSize;
+
+  private byte[] frame;
+
+  @Setup
+  public void setup() throws IOException {
+    CdcService.GetChangesResponsePB.Builder resp = CdcService.GetChangesResponsePB.newBuilder();
+    byte[] value = new byte[200];
+    for (int i = 0; i < numRecords; i++) {
+      CdcService.CDCRecordPB.Builder record = resp.addRecordsBuilder()
+          .setTime(6849453251472674816L + i)
+          .setOperation(CdcService.CDCRecordPB.OperationType.WRITE);
+      record.addKeyBuilder().setKey(ByteString.copyFromUtf8("key-" + i));
+      for (int c = 0; c < 4; c++) {
+        value[c] = (byte) i;
+        record.addChangesBuilder().setKey(ByteString.copyFrom(value));
+      }
+    }
+    RpcHeader.ResponseHeader header = RpcHeader.ResponseHeader.newBuilder().setCallId(1).build();
+    CdcService.GetChangesResponsePB body = resp.build();
+
+    int totalSize = IPCUtil.getTotalSizeWhenWrittenDelimited(header, body);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(totalSize + 4);
+    CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+    out.writeFixed32NoTag(Integer.reverseBytes(totalSize));  // Big-endian length prefix.
+    out.writeUInt32NoTag(header.getSerializedSize());
+    header.writeTo(out);
+    out.writeUInt32NoTag(body.getSerializedSize());
+    body.writeTo(out);
+    out.flush();
+    frame = bytes.toByteArray();
+  }
+
+  private int feed(EmbeddedChannel channel) {
+    for (int offset = 0; offset < frame.length; offset += chunkSize) {
+      int length = Math.min(chunkSize, frame.length - offset);
+      ByteBuf chunk = PooledByteBufAllocator.DEFAULT.directBuffer(length);
+      chunk.writeBytes(frame, offset, length);
+      channel.writeInbound(chunk);
+    }
+    CdcService.GetChangesResponsePB decoded = channel.readInbound();
+    channel.finishAndReleaseAll();
+    return decoded.getRecordsCount();
+  }
+
+  @Benchmark
+  public int replayingDecoder() {
+    return feed(new EmbeddedChannel(new LegacyDecoder()));
+  }
+
+  @Benchmark
+  public int lengthFramedDecoder() {
+    return feed(new EmbeddedChannel(TabletClient.newFrameDecoder(), new FramedDecoder()));
+  }
+
+  /** Decodes like TabletClient did before, re-parsing from the start on every partial read. */
+  private static class LegacyDecoder extends ReplayingDecoder<Void> {
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf buf, List<Object> out) {
+      final int totalSize = buf.readInt();
+      // Throws a replay signal until the whole response has been received.
+      buf.markReaderIndex();
+      buf.skipBytes(totalSize);
+      buf.resetReaderIndex();
+
+      RpcHeader.ResponseHeader.Builder header = RpcHeader.ResponseHeader.newBuilder();
+      YRpc.readProtobuf(copyNextBytes(buf, Bytes.readVarInt32(buf)), header);
+      CdcService.GetChangesResponsePB.Builder resp = CdcService.GetChangesResponsePB.newBuilder();
+      YRpc.readProtobuf(copyNextBytes(buf, Bytes.readVarInt32(buf)), resp);
+      out.add(resp.build());
+    }
+
+    private static Slice copyNextBytes(ByteBuf buf, int length) {
+      byte[] payload = new byte[length];
+      buf.readBytes(payload);
+      return new Slice(payload, 0, length);
+    }
+  }
+
+  /** Decodes complete frames the way TabletClient does now. */
+  private static class FramedDecoder extends MessageToMessageDecoder<ByteBuf> {
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf buf, List<Object> out) {
+      CallResponse response = new CallResponse(buf);
+      response.getHeader();
+      CdcService.GetChangesResponsePB.Builder resp = CdcService.GetChangesResponsePB.newBuilder();
+      YRpc.readProtobuf(response, resp);
+      out.add(resp.build());
+    }
+  }
+}
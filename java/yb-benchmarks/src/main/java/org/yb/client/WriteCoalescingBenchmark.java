@@ -0,0 +1,141 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.ReferenceCountUtil;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sends small RPC-sized writes from many threads to one loopback connection, either flushing
+ * each of them like TabletClient does by default or through a {@link WriteCoalescer}. Each flush
+ * of pending data is a write syscall, so the flushes per write printed after every iteration
+ * show the syscall reduction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class WriteCoalescingBenchmark {
+
+  private static final int RPC_SIZE = 128;
+
+  @Param({"false", "true"})
+  public boolean coalesce;
+
+  private EventLoopGroup group;
+  private Channel server;
+  private Channel client;
+  private WriteCoalescer coalescer;
+  private final LongAdder flushes = new LongAdder();
+  private final LongAdder writes = new LongAdder();
+
+  @Setup
+  public void setup() throws InterruptedException {
+    group = new NioEventLoopGroup(2);
+    server = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+              @Override
+              public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ReferenceCountUtil.release(msg);
+              }
+            });
+          }
+        })
+        .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+    client = new Bootstrap()
+        .group(group)
+        .channel(NioSocketChannel.class)
+        .option(ChannelOption.TCP_NODELAY, true)
+        .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+        .handler(new ChannelOutboundHandlerAdapter() {
+          @Override
+          public void flush(ChannelHandlerContext ctx) {
+            flushes.increment();
+            ctx.flush();
+          }
+        })
+        .connect(server.localAddress()).sync().channel();
+    coalescer = new WriteCoalescer(client, 128, 64 * 1024, new WriteCoalescer.Stats());
+  }
+
+  @TearDown(Level.Iteration)
+  public void report() {
+    long numWrites = writes.sumThenReset();
+    long numFlushes = flushes.sumThenReset();
+    System.out.printf("%n%d writes, %d flushes, %.3f flushes per write%n",
+        numWrites, numFlushes, numWrites == 0 ? 0 : (double) numFlushes / numWrites);
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    client.close().sync();
+    server.close().sync();
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+  }
+
+  @Benchmark
+  public void write() throws InterruptedException {
+    ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(RPC_SIZE);
+    buf.writerIndex(RPC_SIZE);
+    writes.increment();
+    if (coalesce) {
+      coalescer.write(buf);
+    } else {
+      client.writeAndFlush(buf);
+    }
+    // Like an RPC caller, don't let the outbound queue grow without bound.
+    while (!client.isWritable()) {
+      Thread.sleep(0, 100000);
+    }
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Converts between clock timestamps, hybrid times and their physical and logical components with
+ * {@link HybridTimeUtil}, as done for the propagated timestamp of every RPC and the commit time of
+ * every CDC record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HybridTimeBenchmark {
+
+  private long micros = 1672531200000000L;
+
+  @Benchmark
+  public long clockToHybridTime() {
+    return HybridTimeUtil.clockTimestampToHTTimestamp(micros++, TimeUnit.MICROSECONDS);
+  }
+
+  @Benchmark
+  public long[] hybridTimeToPhysicalAndLogical() {
+    return HybridTimeUtil.HTTimestampToPhysicalAndLogical(
+        HybridTimeUtil.physicalAndLogicalToHTTimestamp(micros++, 7));
+  }
+
+  @Benchmark
+  public long physicalAndLogicalToHybridTime() {
+    return HybridTimeUtil.physicalAndLogicalToHTTimestamp(micros++, 7);
+  }
+}
@@ -0,0 +1,97 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Common {@link Slice} and {@link Slices} operations on slices of the given length: comparing
+ * slices which only differ in their last byte, reading the content as longs, copying, and
+ * converting from and to strings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SliceBenchmark {
+
+  @Param({"16", "256"})
+  public int length;
+
+  private Slice slice;
+  private Slice other;
+  private String string;
+
+  @Setup
+  public void setup() {
+    byte[] data = new byte[length];
+    Arrays.fill(data, (byte) 'a');
+    // Offset into a larger array, as slices of a response are.
+    byte[] larger = new byte[length + 8];
+    System.arraycopy(data, 0, larger, 8, length);
+    slice = new Slice(larger, 8, length);
+    data[length - 1] = 'b';
+    other = new Slice(data);
+    string = new String(data, StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public int compareTo() {
+    return slice.compareTo(other);
+  }
+
+  @Benchmark
+  public boolean equalsSlice() {
+    return slice.equals(other);
+  }
+
+  @Benchmark
+  public long getLongs() {
+    long sum = 0;
+    for (int i = 0; i + 8 <= length; i += 8) {
+      sum += slice.getLong(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public Slice copySlice() {
+    return slice.copySlice();
+  }
+
+  @Benchmark
+  public Slice fromString() {
+    return Slices.copiedBuffer(string, StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public String toStringUtf8() {
+    return slice.toString(StandardCharsets.UTF_8);
+  }
+}
@@ -16,6 +16,8 @@ package org.yb.cdc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
+
 public class CDCConsoleSubscriber {
   private static final Logger LOG = LoggerFactory.getLogger(CDCConsoleSubscriber.class);
 
@@ -43,12 +45,30 @@ public class CDCConsoleSubscriber {
     }
   }
 
+  static OutputClient createOutputClient(CmdLineOpts opts) throws Exception {
+    switch (opts.output) {
+      case "log":
+        return new LogClient();
+      case "file":
+        return new RollingFileClient(Paths.get(opts.outputDir),
+                                     RollingFileClient.Format.valueOf(
+                                         opts.outputFormat.toUpperCase()),
+                                     opts.outputFileMaxBytes, opts.outputFileRotationMs);
+      case "count":
+        return new CountingClient(10000);
+      default:
+        throw new IllegalArgumentException("Unknown output " + opts.output +
+                                           ", expected log, file or count");
+    }
+  }
+
   public static void main(String[] args) throws Exception {
     LOG.info("Starting CDC Console Connector...");
 
     CmdLineOpts configuration = CmdLineOpts.createFromArgs(args);
     try {
-      CDCConsoleSubscriber subscriber = new CDCConsoleSubscriber(configuration, new LogClient());
+      CDCConsoleSubscriber subscriber = new CDCConsoleSubscriber(configuration,
+                                                                 createOutputClient(configuration));
       subscriber.run();
     }
     catch (Exception e) {
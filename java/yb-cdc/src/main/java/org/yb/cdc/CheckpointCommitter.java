@@ -0,0 +1,314 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.stumbleupon.async.Deferred;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.cdc.util.Checkpoint;
+import org.yb.client.AsyncYBClient;
+import org.yb.client.LocatedTablet;
+import org.yb.client.SetCheckpointResponse;
+import org.yb.client.YBTable;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Commits the checkpoints of the tablets of a stream in the background.
+ * <p>
+ * {@link #update} only records the latest applied checkpoint of a tablet and returns, the
+ * checkpoints are committed with SetCDCCheckpoint every {@code commitIntervalMs}, or sooner once
+ * {@code commitEveryRecords} records were applied since the last commit. Pending checkpoints are
+ * grouped by the tablet server leading their tablet, with at most one batch in flight per tablet
+ * server.
+ * <p>
+ * The committed checkpoint of a tablet never moves backwards: a checkpoint is only sent if it is
+ * after the last committed one, and a failed commit is retried unless a later checkpoint was
+ * recorded in the meantime. Checkpoints in the middle of a snapshot are not committed, since the
+ * snapshot could not be resumed from them.
+ */
+public class CheckpointCommitter {
+  private static final Logger LOG = LoggerFactory.getLogger(CheckpointCommitter.class);
+
+  private static final long LOCATIONS_TIMEOUT_MS = 30000;
+  private static final String UNKNOWN_SERVER = "";
+
+  private final AsyncYBClient client;
+  private final String streamId;
+  private final int commitEveryRecords;
+  private final OutputClient outputClient;
+
+  // The latest checkpoint recorded for each tablet and not sent yet.
+  private final ConcurrentMap<String, PendingCheckpoint> pending = new ConcurrentHashMap<>();
+  // The latest checkpoint successfully committed for each tablet.
+  private final ConcurrentMap<String, Checkpoint> committed = new ConcurrentHashMap<>();
+  // The uuid of the tablet server leading each tablet, as of the last lookup.
+  private final ConcurrentMap<String, String> tabletToServer = new ConcurrentHashMap<>();
+  // The batch being committed to each tablet server, if any.
+  private final ConcurrentMap<String, Deferred<Void>> inFlight = new ConcurrentHashMap<>();
+
+  private final AtomicInteger recordsSinceCommit = new AtomicInteger();
+  private final AtomicBoolean flushQueued = new AtomicBoolean();
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * @param client the client to commit the checkpoints with
+   * @param streamId the stream the checkpoints belong to
+   * @param commitIntervalMs how often to commit the recorded checkpoints
+   * @param commitEveryRecords how many records can be applied before the checkpoints are
+   *                           committed without waiting for the interval, 0 to only commit
+   *                           at the interval
+   */
+  public CheckpointCommitter(AsyncYBClient client, String streamId, long commitIntervalMs,
+                             int commitEveryRecords) {
+    this(client, streamId, commitIntervalMs, commitEveryRecords, null);
+  }
+
+  /**
+   * @param outputClient flushed before committing checkpoints, so that the changes they cover
+   *                     are durable, or null if the changes are durable once applied
+   */
+  public CheckpointCommitter(AsyncYBClient client, String streamId, long commitIntervalMs,
+                             int commitEveryRecords, OutputClient outputClient) {
+    if (commitIntervalMs <= 0) {
+      throw new IllegalArgumentException("The commit interval must be positive, got " +
+                                         commitIntervalMs);
+    }
+    this.client = client;
+    this.streamId = streamId;
+    this.commitEveryRecords = commitEveryRecords;
+    this.outputClient = outputClient;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("checkpoint-committer").setDaemon(true).build());
+    scheduler.scheduleWithFixedDelay(this::flushSafely, commitIntervalMs, commitIntervalMs,
+                                     TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Records that the changes of a tablet up to the given checkpoint have been applied. This
+   * never blocks on an RPC.
+   * @param numRecords how many records were applied to reach the checkpoint
+   */
+  public void update(YBTable table, String tabletId, Checkpoint checkpoint, int numRecords) {
+    if (!isCommittable(checkpoint)) {
+      return;
+    }
+    pending.merge(tabletId, new PendingCheckpoint(table, checkpoint), PendingCheckpoint::latest);
+    if (commitEveryRecords > 0 &&
+        recordsSinceCommit.addAndGet(numRecords) >= commitEveryRecords &&
+        flushQueued.compareAndSet(false, true)) {
+      try {
+        scheduler.execute(this::flushSafely);
+      } catch (RejectedExecutionException e) {
+        // Closing, the final flush takes care of it.
+        flushQueued.set(false);
+      }
+    }
+  }
+
+  /**
+   * Stops committing the checkpoints of a tablet, e.g. one that split.
+   */
+  public void remove(String tabletId) {
+    pending.remove(tabletId);
+    committed.remove(tabletId);
+    tabletToServer.remove(tabletId);
+  }
+
+  /**
+   * @return the last checkpoint committed for the tablet by this committer, or null if none was
+   */
+  public Checkpoint getCommitted(String tabletId) {
+    return committed.get(tabletId);
+  }
+
+  /**
+   * Commits the checkpoints recorded so far and stops committing.
+   * @param timeoutMs how long to wait for the last commits
+   * @return true if all the recorded checkpoints were committed in time
+   */
+  public boolean close(long timeoutMs) throws Exception {
+    scheduler.shutdown();
+    scheduler.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (System.currentTimeMillis() < deadline) {
+      for (Deferred<Void> d : new ArrayList<>(inFlight.values())) {
+        try {
+          d.join(Math.max(1, deadline - System.currentTimeMillis()));
+        } catch (com.stumbleupon.async.TimeoutException e) {
+          return false;
+        } catch (Exception e) {
+          // Failed commits are put back in pending, and retried below.
+        }
+      }
+      if (pending.isEmpty() && inFlight.isEmpty()) {
+        return true;
+      }
+      flush();
+      // Don't spin if the commits fail right away.
+      Thread.sleep(Math.max(0, Math.min(100, deadline - System.currentTimeMillis())));
+    }
+    return pending.isEmpty() && inFlight.isEmpty();
+  }
+
+  private void flushSafely() {
+    flushQueued.set(false);
+    try {
+      flush();
+    } catch (Exception e) {
+      // Don't let the exception cancel the periodic flush.
+      LOG.error("Failed to commit the checkpoints of stream " + streamId, e);
+    }
+  }
+
+  /**
+   * Flushes the output client, then sends one batch to each tablet server that has pending
+   * checkpoints and none in flight.
+   */
+  private void flush() throws Exception {
+    // Looked up before taking the monitor, so that a slow master doesn't hold up the other
+    // flushes.
+    locateServers();
+    sendBatches();
+  }
+
+  private synchronized void sendBatches() throws Exception {
+    recordsSinceCommit.set(0);
+    Map<String, Map<String, PendingCheckpoint>> batches = new HashMap<>();
+    for (Map.Entry<String, PendingCheckpoint> entry : pending.entrySet()) {
+      String server = tabletToServer.getOrDefault(entry.getKey(), UNKNOWN_SERVER);
+      if (!inFlight.containsKey(server)) {
+        batches.computeIfAbsent(server, s -> new HashMap<>())
+            .put(entry.getKey(), entry.getValue());
+      }
+    }
+    if (batches.isEmpty()) {
+      return;
+    }
+    // The changes covered by the checkpoints picked above have all been applied.
+    if (outputClient != null) {
+      outputClient.flush();
+    }
+    for (Map.Entry<String, Map<String, PendingCheckpoint>> batch : batches.entrySet()) {
+      sendBatch(batch.getKey(), batch.getValue());
+    }
+  }
+
+  private void sendBatch(String server, Map<String, PendingCheckpoint> batch) {
+    List<Deferred<Void>> commits = new ArrayList<>(batch.size());
+    for (Map.Entry<String, PendingCheckpoint> entry : batch.entrySet()) {
+      String tabletId = entry.getKey();
+      PendingCheckpoint p = entry.getValue();
+      // Leave the tablet alone if a newer checkpoint was recorded since we looked.
+      if (!pending.remove(tabletId, p)) {
+        continue;
+      }
+      Checkpoint last = committed.get(tabletId);
+      if (last != null && !isAfter(p.checkpoint, last)) {
+        continue;
+      }
+      Deferred<SetCheckpointResponse> d;
+      try {
+        d = client.setCheckpoint(p.table, streamId, tabletId, p.checkpoint.getTerm(),
+                                 p.checkpoint.getIndex(), false);
+      } catch (Exception e) {
+        d = Deferred.fromError(e);
+      }
+      commits.add(d.addCallbacks(resp -> {
+        committed.merge(tabletId, p.checkpoint, (a, b) -> isAfter(b, a) ? b : a);
+        return null;
+      }, (Exception e) -> {
+        LOG.warn("Failed to commit " + p.checkpoint + " for tablet " + tabletId +
+                 ", will retry", e);
+        // The leader may have moved, look it up again next time.
+        tabletToServer.remove(tabletId);
+        pending.merge(tabletId, p, PendingCheckpoint::latest);
+        return null;
+      }));
+    }
+    if (commits.isEmpty()) {
+      return;
+    }
+    Deferred<Void> done = new Deferred<>();
+    inFlight.put(server, done);
+    AtomicInteger remaining = new AtomicInteger(commits.size());
+    for (Deferred<Void> d : commits) {
+      d.addBoth(ignored -> {
+        if (remaining.decrementAndGet() == 0) {
+          inFlight.remove(server, done);
+          done.callback(null);
+        }
+        return null;
+      });
+    }
+    LOG.debug("Committing {} checkpoints to tablet server {}", commits.size(), server);
+  }
+
+  /**
+   * Looks up the leaders of the tablets with pending checkpoints and no known tablet server,
+   * once per table. Tablets still unknown afterwards are batched as {@link #UNKNOWN_SERVER}.
+   */
+  private void locateServers() {
+    Map<String, YBTable> tables = new HashMap<>();
+    for (Map.Entry<String, PendingCheckpoint> entry : pending.entrySet()) {
+      if (!tabletToServer.containsKey(entry.getKey())) {
+        YBTable table = entry.getValue().table;
+        tables.putIfAbsent(table.getTableId(), table);
+      }
+    }
+    for (YBTable table : tables.values()) {
+      try {
+        for (LocatedTablet tablet : table.getTabletsLocations(LOCATIONS_TIMEOUT_MS)) {
+          LocatedTablet.Replica leader = tablet.getLeaderReplica();
+          if (leader != null) {
+            tabletToServer.put(new String(tablet.getTabletId()), leader.getTsUuid());
+          }
+        }
+      } catch (Exception e) {
+        LOG.warn("Failed to locate the tablets of table " + table.getName(), e);
+      }
+    }
+  }
+
+  static boolean isCommittable(Checkpoint checkpoint) {
+    return checkpoint.getTerm() > 0 && checkpoint.getIndex() > 0 &&
+           (checkpoint.getKey() == null || checkpoint.getKey().length == 0);
+  }
+
+  /** @return true if {@code a} is strictly after {@code b} in the log */
+  static boolean isAfter(Checkpoint a, Checkpoint b) {
+    if (a.getTerm() != b.getTerm()) {
+      return a.getTerm() > b.getTerm();
+    }
+    return a.getIndex() > b.getIndex();
+  }
+
+  private static final class PendingCheckpoint {
+    final YBTable table;
+    final Checkpoint checkpoint;
+
+    PendingCheckpoint(YBTable table, Checkpoint checkpoint) {
+      this.table = table;
+      this.checkpoint = checkpoint;
+    }
+
+    static PendingCheckpoint latest(PendingCheckpoint a, PendingCheckpoint b) {
+      return isAfter(b.checkpoint, a.checkpoint) ? b : a;
+    }
+  }
+}
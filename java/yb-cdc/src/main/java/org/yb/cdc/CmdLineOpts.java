@@ -35,6 +35,13 @@ public class CmdLineOpts {
   public int maxTablets = AsyncYBClient.DEFAULT_MAX_TABLETS;
   public boolean bootstrap = false;
 
+  // Where the changes go: log, file or count.
+  public String output = "log";
+  public String outputDir = "cdc-output";
+  public String outputFormat = "proto";
+  public long outputFileMaxBytes = 256L << 20;
+  public long outputFileRotationMs = 0;
+
   // Config file path to be provided from command line.
   public String configFile = "";
 
@@ -50,7 +57,17 @@ public class CmdLineOpts {
               .concat(lineSeparator)
               .concat("\tschema.name=<your-schema-name>")
               .concat(lineSeparator)
-              .concat("\ttable.name=<your-table-name>")
+              .concat("\ttable.name=<your-table-name>" + lineSeparator +
+                      "\t (leave this empty to stream all the tables of the namespace)")
+              .concat(lineSeparator)
+              .concat("\ttable.include.regex=<regex-on-schema.table-names>" + lineSeparator +
+                      "\t (optional, when table.name is empty only the matching tables " +
+                      "are streamed)")
+              .concat(lineSeparator)
+              .concat("\ttable.discovery.interval.ms=<new-table-check-interval>" +
+                      lineSeparator +
+                      "\t (optional, how often to look for new tables when table.name " +
+                      "is empty, 0 to disable)")
               .concat(lineSeparator)
               .concat("\tsocket.read.timeout.ms=" +
                       "<socket-read-timeout-in-milliseconds>")
@@ -67,6 +84,14 @@ public class CmdLineOpts {
                       "\t (if you want one to be created automatically, " +
                       "leave this empty)")
               .concat(lineSeparator)
+              .concat("\tcheckpoint.commit.interval.ms=<commit-interval-in-milliseconds>" +
+                      lineSeparator +
+                      "\t (optional, commits the checkpoints explicitly and resumes from " +
+                      "them on restart)")
+              .concat(lineSeparator)
+              .concat("\tcheckpoint.commit.records=<records-between-commits>" + lineSeparator +
+                      "\t (optional, commits sooner once that many records were applied)")
+              .concat(lineSeparator)
               .concat(lineSeparator)
               .concat(lineSeparator)
               .concat("If you will provide stream_id, master_address, table_name " +
@@ -121,6 +146,24 @@ public class CmdLineOpts {
       .concat("    Whether to bootstrap the table. This flag has no effect if " +
               "--disable_snapshot is not provided i.e. if you are taking a snapshot, " +
               "bootstrapping will be ignored")
+      .concat(lineSeparator)
+      .concat("  --output").concat(lineSeparator)
+      .concat("    Where to send the changes: log (default), file, or count to only count " +
+              "them")
+      .concat(lineSeparator)
+      .concat("  --output_dir").concat(lineSeparator)
+      .concat("    Directory to write the files to with --output file, default is cdc-output")
+      .concat(lineSeparator)
+      .concat("  --output_format").concat(lineSeparator)
+      .concat("    Format of the files with --output file: proto (length-delimited, default) " +
+              "or json (one record per line)")
+      .concat(lineSeparator)
+      .concat("  --output_file_max_mb").concat(lineSeparator)
+      .concat("    Size at which to switch to a new file with --output file, default is 256")
+      .concat(lineSeparator)
+      .concat("  --output_file_rotation_secs").concat(lineSeparator)
+      .concat("    Age at which to switch to a new file with --output file, default is to " +
+              "only switch on size")
       .concat(lineSeparator);
 
     public static CmdLineOpts createFromArgs(String[] args) throws Exception {
@@ -169,6 +212,12 @@ public class CmdLineOpts {
 
       options.addOption("bootstrap", false, "Whether to bootstrap the table");
 
+      options.addOption("output", true, "Where to send the changes: log, file or count");
+      options.addOption("output_dir", true, "Directory to write the changes to");
+      options.addOption("output_format", true, "Format of the files: proto or json");
+      options.addOption("output_file_max_mb", true, "Size at which to switch files");
+      options.addOption("output_file_rotation_secs", true, "Age at which to switch files");
+
       // Do the actual arg parsing.
       CommandLineParser parser = new BasicParser();
       CommandLine commandLine = null;
@@ -274,6 +323,24 @@ public class CmdLineOpts {
         bootstrap = true;
       }
 
+      if (commandLine.hasOption("output")) {
+        output = commandLine.getOptionValue("output");
+      }
+      if (commandLine.hasOption("output_dir")) {
+        outputDir = commandLine.getOptionValue("output_dir");
+      }
+      if (commandLine.hasOption("output_format")) {
+        outputFormat = commandLine.getOptionValue("output_format");
+      }
+      if (commandLine.hasOption("output_file_max_mb")) {
+        outputFileMaxBytes =
+            Long.parseLong(commandLine.getOptionValue("output_file_max_mb")) << 20;
+      }
+      if (commandLine.hasOption("output_file_rotation_secs")) {
+        outputFileRotationMs =
+            Long.parseLong(commandLine.getOptionValue("output_file_rotation_secs")) * 1000;
+      }
+
       // Check if a config file has been provided.
       if (commandLine.hasOption("config_file")) {
         LOG.info("Setting up config file path from command line");
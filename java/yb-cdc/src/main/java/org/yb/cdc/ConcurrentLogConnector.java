@@ -19,20 +19,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yb.client.*;
 import org.yb.master.MasterDdlOuterClass;
+import org.yb.master.MasterTypes;
 import org.yb.util.ServerInfo;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.stream.Collectors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 public class ConcurrentLogConnector {
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentLogConnector.class);
+  // How many GetChanges calls each thread keeps in flight.
+  private static final int IN_FLIGHT_PER_THREAD = 2;
+  private static final long STATS_REPORT_INTERVAL_MS = 60000;
   private static AsyncYBClient client;
   private static YBClient syncClient;
   private static String CDC_CONFIG_FILE = "";
@@ -50,16 +55,24 @@ public class ConcurrentLogConnector {
   private String clientKeyFile;
 
   private Set<String> tableIds;
-  private String tableId = null;
   private String namespace;
   private String tableName;
+  private String schemaName = PUBLIC_SCHEMA_NAME;
+  // Null when streaming the single table named by table.name.
+  private Pattern tableFilter;
+  private long tableDiscoveryIntervalMs;
 
   private Properties prop = new Properties();
   int concurrency = 1;
 
   private boolean stopExecution = false;
+  private volatile ConcurrentPoller poller;
   private int pollingInterval;
   private boolean bootstrap;
+  // How often to commit the checkpoints, 0 to let the server checkpoint implicitly.
+  private long commitIntervalMs;
+  private int commitEveryRecords;
+  private volatile CheckpointCommitter committer;
 
   public ConcurrentLogConnector(CmdLineOpts opts, OutputClient opClient) throws Exception {
     InputStream input = new FileInputStream(opts.configFile);
@@ -78,17 +91,25 @@ public class ConcurrentLogConnector {
     prop.load(input);
     format = prop.getProperty("format");
     namespace = prop.getProperty("schema.name");
-    tableName = prop.getProperty("table.name");
-    String schemaName = PUBLIC_SCHEMA_NAME;
+    tableName = prop.getProperty("table.name", "");
+    String tableRegex = prop.getProperty("table.include.regex", "");
+    tableDiscoveryIntervalMs = Long.parseLong(
+        prop.getProperty("table.discovery.interval.ms", "60000"));
 
-    if (tableName.contains(".")) {
-      String[] splitVal = tableName.split("\\.");
-      schemaName = splitVal[0];
-      tableName = splitVal[1];
+    if (tableName.isEmpty()) {
+      // Stream all the tables of the namespace whose <schema>.<table> name matches.
+      tableFilter = Pattern.compile(tableRegex.isEmpty() ? ".*" : tableRegex);
+      LOG.info(String.format("Streaming the tables of namespace %s matching %s",
+                             namespace, tableFilter));
+    } else {
+      if (tableName.contains(".")) {
+        String[] splitVal = tableName.split("\\.");
+        schemaName = splitVal[0];
+        tableName = splitVal[1];
+      }
+      LOG.info("Schema name while setting up: " + schemaName);
     }
 
-    LOG.info("Schema name while setting up: " + schemaName);
-
     LOG.info(String.format("Creating new YB client with master address %s",
                             prop.getProperty("master.address")));
 
@@ -109,42 +130,39 @@ public class ConcurrentLogConnector {
     executor = Executors.newFixedThreadPool(concurrency,
             new ThreadFactoryBuilder().setNameFormat("connector-%d").build());
 
-    ListTablesResponse tablesResp = syncClient.getTablesList();
+    tableIds = findTableIds();
 
-    for (MasterDdlOuterClass.ListTablesResponsePB.TableInfo tableInfo : tablesResp
-            .getTableInfoList()) {
-      if (tableInfo.getName().equals(tableName) &&
-        tableInfo.getNamespace().getName().equals(namespace) &&
-        (tableInfo.getPgschemaName().isEmpty() || tableInfo.getPgschemaName().equals(schemaName))) {
-        tableId = tableInfo.getId().toStringUtf8();
-        // If the tableId is found, there's no point in iterating further.
-        break;
+    // If no table is found, it's likely that it's not present, we should not proceed further
+    // in that case.
+    if (tableIds.isEmpty()) {
+      if (tableFilter == null) {
+        LOG.error(String.format("Could not find table with name %s.%s.%s",
+                                namespace, schemaName, tableName));
+      } else {
+        LOG.error(String.format("Could not find any table in namespace %s matching %s",
+                                namespace, tableFilter));
       }
-    }
-
-    // If tableId is not found, it's likely that it's not present, we should not proceed
-    // further in that case.
-    if (tableId == null) {
-      LOG.error(String.format("Could not find table with name %s.%s.%s",
-                              namespace, schemaName, tableName));
       System.exit(0);
     }
 
-    tableIds = new HashSet<>();
-    tableIds.add(tableId);
-    table = syncClient.openTableByUUID(tableId);
+    // Any table of the namespace does to create the stream, which covers all of them.
+    table = syncClient.openTableByUUID(tableIds.iterator().next());
     ListTabletServersResponse serversResp = syncClient.listTabletServers();
     for (ServerInfo serverInfo : serversResp.getTabletServersList()) {
         hps.add(HostAndPort.fromParts(serverInfo.getHost(), serverInfo.getPort()));
     }
     outputClient = opClient;
     streamId = prop.getProperty("stream.id"); // Getting this from passed options (opts).
+    commitIntervalMs = Long.parseLong(prop.getProperty("checkpoint.commit.interval.ms", "0"));
+    commitEveryRecords = Integer.parseInt(prop.getProperty("checkpoint.commit.records", "0"));
     input.close();
   }
 
   public void run() throws Exception {
     if (streamId.isEmpty()) {
-      streamId = syncClient.createCDCStream(table, namespace, format, "IMPLICIT").getStreamId();
+      streamId = syncClient.createCDCStream(table, namespace, format,
+                                            commitIntervalMs > 0 ? "EXPLICIT" : "IMPLICIT")
+                                            .getStreamId();
       LOG.debug(String.format("Created a new DB stream id: %s", streamId));
 
       prop.setProperty("stream.id", streamId);
@@ -152,53 +170,139 @@ public class ConcurrentLogConnector {
     }
     LOG.info(String.format("DB stream id is %s", streamId));
 
-    List<LocatedTablet> tabletLocations = table.getTabletsLocations(30000);
-    List<Map<String, List<String>>> tableIdsToTabletIdsMapList = new ArrayList<>(concurrency);
-
-    for (int i = 0; i < concurrency; i++) {
-      tableIdsToTabletIdsMapList.add(new HashMap<>());
+    if (commitIntervalMs > 0) {
+      committer = new CheckpointCommitter(client, streamId, commitIntervalMs, commitEveryRecords,
+                                          outputClient);
     }
-    int i = 0;
-    for (String tableId : tableIds) {
-      for (LocatedTablet tablet : tabletLocations) {
-        i++;
-        String tabletId = new String(tablet.getTabletId());
-        tableIdsToTabletIdsMapList.get(i % concurrency).putIfAbsent(tableId,
-                new ArrayList<>());
-        tableIdsToTabletIdsMapList.get(i % concurrency).get(tableId).add(tabletId);
-      }
+
+    Map<String, List<String>> tableIdsToTabletIds = getTabletIds(tableIds);
+
+    // All the threads share one poller and pick the tablet most in need of attention, rather
+    // than each owning a fixed set of tablets.
+    poller = new ConcurrentPoller(syncClient, client, outputClient, streamId,
+                                  tableIdsToTabletIds, IN_FLIGHT_PER_THREAD * concurrency,
+                                  format, stopExecution, enableSnapshot, bootstrap,
+                                  pollingInterval, committer);
+
+    ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("connector-background").setDaemon(true).build());
+    background.scheduleAtFixedRate(this::reportStats, STATS_REPORT_INTERVAL_MS,
+                                      STATS_REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    if (tableFilter != null && tableDiscoveryIntervalMs > 0) {
+      background.scheduleWithFixedDelay(this::addNewTables, tableDiscoveryIntervalMs,
+                                           tableDiscoveryIntervalMs, TimeUnit.MILLISECONDS);
     }
 
-    List<Runnable> runnables = tableIdsToTabletIdsMapList.stream().map(
-            tableIdsToTabletIds -> {
-                try {
-                  return new ConcurrentPoller(syncClient, client, outputClient, streamId,
-                                              tableIdsToTabletIds, 2, format, stopExecution,
-                                              enableSnapshot, bootstrap);
-                } catch (IOException e) {
-                  e.printStackTrace();
-                }
-                return null;
-            }).filter(poller -> poller != null).map(poller -> (Runnable) () -> {
+    List<Future> futures = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      futures.add(executor.submit(() -> {
         try {
-            while (true) {
-              poller.poll();
-              Thread.sleep(pollingInterval);
-            }
+          // Polls continuously until close() is called.
+          poller.poll();
         } catch (Exception e) {
           e.printStackTrace();
         }
-    }).collect(Collectors.toList());
+      }));
+    }
 
-    List<Future> futures = runnables.stream()
-        .map(r -> executor.submit(r)).collect(Collectors.toList());
+    try {
+      for (Future future : futures) {
+        future.get();
+      }
+    } finally {
+      background.shutdownNow();
+    }
+  }
 
-    for (Future future : futures) {
-      future.get();
+  /**
+   * @return the ids of the tables to stream: the one named by table.name, or all the user tables
+   * of the namespace matching table.include.regex
+   */
+  private Set<String> findTableIds() throws Exception {
+    Set<String> ids = new LinkedHashSet<>();
+    ListTablesResponse tablesResp = syncClient.getTablesList(null, true, namespace);
+
+    for (MasterDdlOuterClass.ListTablesResponsePB.TableInfo tableInfo : tablesResp
+            .getTableInfoList()) {
+      if (!tableInfo.getNamespace().getName().equals(namespace)) {
+        continue;
+      }
+      if (tableFilter == null) {
+        if (tableInfo.getName().equals(tableName) &&
+          (tableInfo.getPgschemaName().isEmpty() ||
+           tableInfo.getPgschemaName().equals(schemaName))) {
+          ids.add(tableInfo.getId().toStringUtf8());
+          // If the tableId is found, there's no point in iterating further.
+          break;
+        }
+      } else if (tableInfo.getRelationType() ==
+                   MasterTypes.RelationType.USER_TABLE_RELATION &&
+                 tableFilter.matcher(
+                   tableInfo.getPgschemaName() + "." + tableInfo.getName()).matches()) {
+        ids.add(tableInfo.getId().toStringUtf8());
+      }
+    }
+    return ids;
+  }
+
+  private Map<String, List<String>> getTabletIds(Collection<String> ids) throws Exception {
+    Map<String, List<String>> tableIdsToTabletIds = new HashMap<>();
+    for (String tableId : ids) {
+      YBTable ybTable = syncClient.openTableByUUID(tableId);
+      for (LocatedTablet tablet : ybTable.getTabletsLocations(30000)) {
+        tableIdsToTabletIds.computeIfAbsent(tableId, id -> new ArrayList<>())
+            .add(new String(tablet.getTabletId()));
+      }
+    }
+    return tableIdsToTabletIds;
+  }
+
+  /** Starts streaming the matching tables created since the last time we looked. */
+  private void addNewTables() {
+    try {
+      Set<String> newTableIds = findTableIds();
+      newTableIds.removeAll(tableIds);
+      if (newTableIds.isEmpty()) {
+        return;
+      }
+      LOG.info("Found new tables to stream: " + newTableIds);
+      poller.addTablets(getTabletIds(newTableIds));
+      tableIds.addAll(newTableIds);
+    } catch (Exception e) {
+      // Try again next time.
+      LOG.warn("Failed to look for new tables", e);
     }
   }
 
+  private void reportStats() {
+    Collection<ConcurrentPoller.TabletStats> stats = poller.getTabletStats().values();
+    stats.stream()
+        .max(Comparator.comparingLong(ConcurrentPoller.TabletStats::getLagMillis))
+        .ifPresent(s -> LOG.info(String.format(
+            "Streaming %d tablets, the most behind is %s with a lag of %d ms",
+            stats.size(), s.getTabletId(), s.getLagMillis())));
+    stats.forEach(s -> LOG.debug(s.toString()));
+  }
+
   public void close() {
     stopExecution = true;
+    ConcurrentPoller poller = this.poller;
+    if (poller != null) {
+      poller.close();
+    }
+    try {
+      if (committer != null && !committer.close(30000)) {
+        LOG.warn("Could not commit all the checkpoints before closing");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      LOG.error("Failed to commit the last checkpoints", e);
+    }
+    try {
+      outputClient.close();
+    } catch (Exception e) {
+      LOG.error("Failed to close the output client", e);
+    }
   }
 }
@@ -14,45 +14,92 @@
 package org.yb.cdc;
 
 import com.stumbleupon.async.Callback;
-import com.stumbleupon.async.Deferred;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yb.cdc.util.Checkpoint;
 import org.yb.client.*;
+import org.yb.tserver.TserverTypes;
+import org.yb.util.HybridTimeUtil;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Streams the changes of a set of tablets to an {@link OutputClient}.
+ * <p>
+ * Every tablet is polled continuously: as soon as the response to a GetChanges call has been
+ * applied, the tablet is polled again from its new checkpoint. Tablets that returned no records
+ * are polled again after a delay that doubles up to the polling interval, and is reset once
+ * records show up again. More tablets can be added while polling with {@link #addTablets}.
+ * <p>
+ * Any number of threads can run {@link #poll()} on the same poller, they share the tablets:
+ * each thread takes the most pressing tablet from a common queue, applies its response or polls
+ * it, and moves on to the next one, so no thread sits idle while another one has a backlog.
+ * Responses are applied first, then tablets are polled in order of their lag, and of how many
+ * records they returned recently. The responses of a tablet are applied one at a time.
+ * <p>
+ * At most {@code concurrency} GetChanges calls are in flight, and a call counts as in flight
+ * until its records are applied, so a slow output client slows down polling instead of piling
+ * up responses.
+ */
 public class ConcurrentPoller {
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentPoller.class);
+
+  private static final long MIN_IDLE_BACKOFF_MS = 10;
+  private static final long MAX_ERROR_BACKOFF_MS = 10000;
+  private static final int MAX_CONSECUTIVE_ERRORS = 20;
+  private static final long LOCATE_TIMEOUT_MS = 30000;
+  private static final int DEFAULT_MAX_IDLE_BACKOFF_MS = 200;
+  // Weight of the last poll in the moving average of the records per poll.
+  private static final double STATS_DECAY = 0.2;
+
   private final String streamId;
   private final AsyncYBClient asyncYBClient;
   private final OutputClient outputClient;
-  private final Semaphore requestBarrier;
   private final String format;
   private boolean stopExecution;
   private boolean enableSnapshot;
   private boolean bootstrap;
-
-  static final AbstractMap.SimpleImmutableEntry<String, String> END_PAIR =
-      new AbstractMap.SimpleImmutableEntry("", "");
+  private final long maxIdleBackoffMs;
+  // Null if the checkpoints are not committed by this poller.
+  private final CheckpointCommitter committer;
 
   int concurrency;
 
   List<AbstractMap.SimpleImmutableEntry<String, String>> listTabletIdTableIdPair;
   Map<String, Checkpoint> checkPointMap;
   Map<String, YBTable> tableIdToTable;
-  AtomicInteger requestNum;
-  BlockingQueue<AbstractMap.SimpleImmutableEntry<String, String>> queue;
-  List<Deferred<GetChangesResponse>> deferredList;
 
   YBClient syncClient;
 
   // We need the schema information in a DDL the very first time we send a getChanges request.
-  boolean needSchemaInfo = false;
+  volatile boolean needSchemaInfo = false;
+
+  // Order in which the tablets are handled: responses to apply first, then the tablets that are
+  // the most behind, then the busiest ones.
+  private static final Comparator<TabletPoller> PRIORITY =
+      Comparator.comparing((TabletPoller t) -> !t.hasResult())
+          .thenComparing(t -> -t.lagMillis)
+          .thenComparing(t -> -t.recordsPerPoll)
+          .thenComparing(t -> t.readySeq);
+
+  private final Map<String, TabletPoller> tablets = new ConcurrentHashMap<>();
+  // Tablets to handle now.
+  private final PriorityBlockingQueue<TabletPoller> readyTablets =
+      new PriorityBlockingQueue<>(11, PRIORITY);
+  // Tablets to poll later, ordered by the time at which they are due.
+  private final DelayQueue<TabletPoller> delayedTablets = new DelayQueue<>();
+  // Tablets due for polling while too many calls are in flight.
+  private final PriorityBlockingQueue<TabletPoller> waitingTablets =
+      new PriorityBlockingQueue<>(11, PRIORITY);
+  private final Semaphore inFlight;
+  private final AtomicLong readySeq = new AtomicLong();
+  private final AtomicInteger numFailedTablets = new AtomicInteger();
+  private volatile boolean closed = false;
 
   public ConcurrentPoller(YBClient syncClient,
                           AsyncYBClient client,
@@ -64,42 +111,115 @@ public class ConcurrentPoller {
                           boolean stopExecution,
                           boolean enableSnapshot,
                           boolean bootstrap) throws IOException {
+    this(syncClient, client, outputClient, streamId, tableIdsToTabletIds, concurrency, format,
+         stopExecution, enableSnapshot, bootstrap, DEFAULT_MAX_IDLE_BACKOFF_MS);
+  }
+
+  public ConcurrentPoller(YBClient syncClient,
+                          AsyncYBClient client,
+                          OutputClient outputClient,
+                          String streamId,
+                          Map<String, List<String>> tableIdsToTabletIds,
+                          int concurrency,
+                          String format,
+                          boolean stopExecution,
+                          boolean enableSnapshot,
+                          boolean bootstrap,
+                          long maxIdleBackoffMs) throws IOException {
+    this(syncClient, client, outputClient, streamId, tableIdsToTabletIds, concurrency, format,
+         stopExecution, enableSnapshot, bootstrap, maxIdleBackoffMs, null);
+  }
+
+  /**
+   * @param committer commits the checkpoints of the applied changes, and the tablets resume from
+   *                  their committed checkpoint, or null if the stream checkpoints implicitly
+   */
+  public ConcurrentPoller(YBClient syncClient,
+                          AsyncYBClient client,
+                          OutputClient outputClient,
+                          String streamId,
+                          Map<String, List<String>> tableIdsToTabletIds,
+                          int concurrency,
+                          String format,
+                          boolean stopExecution,
+                          boolean enableSnapshot,
+                          boolean bootstrap,
+                          long maxIdleBackoffMs,
+                          CheckpointCommitter committer) throws IOException {
     this.syncClient = syncClient;
     this.asyncYBClient = client;
     this.streamId = streamId;
     this.format = format;
     checkPointMap = new ConcurrentHashMap<>();
     tableIdToTable = new ConcurrentHashMap<>();
-    requestBarrier = new Semaphore(concurrency);
-    requestNum = new AtomicInteger();
     this.outputClient = outputClient;
     this.concurrency = concurrency;
-    deferredList = new ArrayList<>();
     this.stopExecution = stopExecution;
     this.enableSnapshot = enableSnapshot;
     this.bootstrap = bootstrap;
+    this.maxIdleBackoffMs = Math.max(MIN_IDLE_BACKOFF_MS, maxIdleBackoffMs);
+    this.committer = committer;
+    this.inFlight = new Semaphore(concurrency);
+
+    listTabletIdTableIdPair = new CopyOnWriteArrayList<>();
+    addTablets(tableIdsToTabletIds);
+  }
 
-    tableIdsToTabletIds.keySet().forEach(tabletId -> {
+  /**
+   * Starts streaming the changes of more tablets, e.g. those of a table created after the
+   * poller. Tablets the poller already streams are ignored.
+   * @param tableIdsToTabletIds the tablets to add, keyed by the id of their table
+   */
+  public synchronized void addTablets(Map<String, List<String>> tableIdsToTabletIds) {
+    tableIdsToTabletIds.keySet().forEach(tableId -> {
+      if (tableIdToTable.containsKey(tableId)) {
+        return;
+      }
       try {
-        tableIdToTable.put(tabletId, syncClient.openTableByUUID(tabletId));
+        tableIdToTable.put(tableId, syncClient.openTableByUUID(tableId));
       } catch (Exception e) {
         e.printStackTrace();
       }
     });
 
-    listTabletIdTableIdPair = tableIdsToTabletIds.entrySet().stream()
-      .flatMap(e -> e.getValue().stream()
-        .map(v -> new AbstractMap.SimpleImmutableEntry<>(v, e.getKey())))
-      .collect(Collectors.toList());
-    queue = new LinkedBlockingQueue();
+    List<AbstractMap.SimpleImmutableEntry<String, String>> added =
+      tableIdsToTabletIds.entrySet().stream()
+        .flatMap(e -> e.getValue().stream()
+          .filter(v -> !tablets.containsKey(v))
+          .map(v -> new AbstractMap.SimpleImmutableEntry<>(v, e.getKey())))
+        .collect(Collectors.toList());
+    if (added.isEmpty()) {
+      return;
+    }
     try {
-      initOffset();
+      initOffset(added);
     } catch (Exception e) {
       LOG.error("Exception thrown while initializing offsets", e);
     }
+
+    // Remember the partition of each tablet, to recognize its children if it splits.
+    Map<String, Partition> partitions = new HashMap<>();
+    for (String tableId : tableIdsToTabletIds.keySet()) {
+      try {
+        for (LocatedTablet t : tableIdToTable.get(tableId).getTabletsLocations(LOCATE_TIMEOUT_MS)) {
+          partitions.put(new String(t.getTabletId()), t.getPartition());
+        }
+      } catch (Exception e) {
+        LOG.warn("Failed to get the partitions of table " + tableId, e);
+      }
+    }
+
+    listTabletIdTableIdPair.addAll(added);
+    for (AbstractMap.SimpleImmutableEntry<String, String> entry : added) {
+      TabletPoller tablet = new TabletPoller(tableIdToTable.get(entry.getValue()), entry.getKey(),
+                                             partitions.get(entry.getKey()));
+      tablets.put(entry.getKey(), tablet);
+      tablet.requeue(0);
+    }
   }
 
-  private void initOffset() throws Exception {
+  private void initOffset(List<AbstractMap.SimpleImmutableEntry<String, String>> pairs)
+      throws Exception {
     long term = 0;
     long index = 0;
     int writeId = 0;
@@ -113,16 +233,27 @@ public class ConcurrentPoller {
     long finalTerm = term;
     long finalIndex = index;
     int finalWriteId = writeId;
-    listTabletIdTableIdPair.forEach(entry ->
+    pairs.forEach(entry ->
       checkPointMap.put(entry.getKey(), new Checkpoint(finalTerm, finalIndex,
           "".getBytes(), finalWriteId, 0)));
 
-    for (AbstractMap.SimpleImmutableEntry<String, String> entry: listTabletIdTableIdPair) {
+    for (AbstractMap.SimpleImmutableEntry<String, String> entry: pairs) {
       final YBTable table = tableIdToTable.get(entry.getValue());
 
       GetCheckpointResponse getCheckpointResponse = syncClient.getCheckpoint(table, streamId,
                                                                             entry.getKey());
 
+      if (committer != null && getCheckpointResponse.getTerm() > 0 &&
+          getCheckpointResponse.getIndex() > 0) {
+        // Resume after the changes applied before the last commit.
+        LOG.info(String.format("Resuming tablet %s from its committed checkpoint %d.%d",
+                               entry.getKey(), getCheckpointResponse.getTerm(),
+                               getCheckpointResponse.getIndex()));
+        checkPointMap.put(entry.getKey(), new Checkpoint(getCheckpointResponse.getTerm(),
+            getCheckpointResponse.getIndex(), "".getBytes(), 0, 0));
+        continue;
+      }
+
       if (bootstrap) {
         if (getCheckpointResponse.getTerm() == -1 && getCheckpointResponse.getIndex() == -1) {
           LOG.info(String.format("Bootstrapping tablet %s", entry.getKey()));
@@ -140,149 +271,466 @@ public class ConcurrentPoller {
 
   }
 
+  /**
+   * Streams the changes of the tablets until {@link #close()} is called. Can be called by
+   * several threads at the same time to handle the tablets in parallel.
+   * @throws Exception if all the tablets failed too many times in a row
+   */
   public void poll() throws Exception {
-    final List result = new ArrayList();
-    queue.addAll(listTabletIdTableIdPair);
-    queue.add(END_PAIR);
+    if (stopExecution) {
+      // This signals the CDCConsoleSubscriber to stop polling further and exit.
+      LOG.info("Signal received to close the CDCConsoleSubscriber, exiting...");
+      System.exit(0);
+    }
 
-    while (true) {
-      if (stopExecution) {
-        // This signals the CDCConsoleSubscriber to stop polling further and exit.
-        LOG.info("Signal received to close the CDCConsoleSubscriber, exiting...");
-        System.exit(0);
+    while (!closed) {
+      delayedTablets.drainTo(readyTablets);
+      // Wake up when the next delayed tablet is due, and every now and then to notice close().
+      TabletPoller next = delayedTablets.peek();
+      long waitMs = next == null ? 100 :
+          Math.max(1, Math.min(100, next.getDelay(TimeUnit.MILLISECONDS)));
+      TabletPoller tablet = readyTablets.poll(waitMs, TimeUnit.MILLISECONDS);
+      if (tablet == null) {
+        continue;
+      }
+      if (tablet.hasResult()) {
+        if (tablet.handleResult()) {
+          inFlight.release();
+          sendWaiting();
+        }
+      } else if (inFlight.tryAcquire()) {
+        send(tablet);
+      } else {
+        waitingTablets.add(tablet);
+        // A permit may have been released since we tried.
+        sendWaiting();
       }
 
-      requestBarrier.acquireUninterruptibly();
-      final AbstractMap.SimpleImmutableEntry<String, String> entry = queue.take();
-      if (entry.equals(END_PAIR)) {
-        requestBarrier.release();
-        break;
+      if (!listTabletIdTableIdPair.isEmpty()
+          && numFailedTablets.get() == listTabletIdTableIdPair.size()) {
+        LOG.error("Unable to poll further, all the nodes returned error");
+        closed = true;
+        throw new IllegalStateException("All the tablets failed " + MAX_CONSECUTIVE_ERRORS +
+                                        " times in a row");
       }
-      final Checkpoint cp = checkPointMap.get(entry.getKey());
-      final YBTable table = tableIdToTable.get(entry.getValue());
+    }
+    LOG.info("Stopped polling {} tablets", listTabletIdTableIdPair.size());
+  }
 
-      LOG.debug("Polling table: " + table + " tablet: " + entry.getKey() +
-               " with checkpoint " + cp);
-      Callback resCallback = new HandleResponse(table, entry.getKey(), result, requestBarrier);
-      Callback errCallback = new HandleFailure(requestBarrier);
+  /**
+   * Stops {@link #poll()}. Calls in flight are not waited for, their responses are dropped.
+   */
+  public void close() {
+    closed = true;
+  }
 
-      Deferred<GetChangesResponse> response = asyncYBClient.getChangesCDCSDK(
-        table, streamId, entry.getKey() /*tabletId*/,
-        cp.getTerm(), cp.getIndex(), cp.getKey(), cp.getWriteId(), cp.getSnapshotTime(),
-        needSchemaInfo);
+  /**
+   * @return the current statistics of each tablet, keyed by tablet id
+   */
+  public Map<String, TabletStats> getTabletStats() {
+    Map<String, TabletStats> stats = new LinkedHashMap<>();
+    for (TabletPoller t : tablets.values()) {
+      stats.put(t.tabletId, new TabletStats(t.tabletId, t.lagMillis, t.recordsPerPoll,
+                                            t.numRecords, t.numPolls, t.consecutiveErrors));
+    }
+    return stats;
+  }
 
-      // Once we got the response, we do not need the schema in further calls so unset the flag.
-      needSchemaInfo = false;
+  private void sendWaiting() {
+    while (!waitingTablets.isEmpty() && inFlight.tryAcquire()) {
+      TabletPoller tablet = waitingTablets.poll();
+      if (tablet == null) {
+        inFlight.release();
+        return;
+      }
+      send(tablet);
+    }
+  }
 
-      response.addCallback(resCallback);
-      response.addErrback(errCallback);
+  private void send(TabletPoller tablet) {
+    final Checkpoint cp = checkPointMap.get(tablet.tabletId);
+    LOG.debug("Polling table: " + tablet.table + " tablet: " + tablet.tabletId +
+              " with checkpoint " + cp);
+    try {
+      asyncYBClient.getChangesCDCSDK(
+          tablet.table, streamId, tablet.tabletId,
+          cp.getTerm(), cp.getIndex(), cp.getKey(), cp.getWriteId(), cp.getSnapshotTime(),
+          needSchemaInfo).addCallbacks(tablet.onResponse, tablet.onFailure);
+    } catch (Exception e) {
+      tablet.onFailure(e);
+    }
+    // Once we got the response, we do not need the schema in further calls so unset the flag.
+    needSchemaInfo = false;
+  }
 
-      deferredList.add(response);
+  /**
+   * @return true if the tablet server answered TABLET_NOT_FOUND, e.g. after a split. Retries of the
+   * call wrap the error, so the causes are checked too.
+   */
+  static boolean mayBeGone(Exception e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof CDCErrorException &&
+          ((CDCErrorException) t).getCDCError().getCode() ==
+              CdcService.CDCErrorPB.Code.TABLET_NOT_FOUND) {
+        return true;
+      }
+      if (t instanceof TabletServerErrorException &&
+          ((TabletServerErrorException) t).getTServerError().getCode() ==
+              TserverTypes.TabletServerErrorPB.Code.TABLET_NOT_FOUND) {
+        return true;
+      }
+    }
+    return false;
+  }
 
+  /**
+   * @return true if the child partition is within the parent one, false if the parent partition
+   * is unknown
+   */
+  static boolean contains(Partition parent, Partition child) {
+    if (parent == null) {
+      return false;
     }
+    byte[] parentEnd = parent.getPartitionKeyEnd();
+    byte[] childEnd = child.getPartitionKeyEnd();
+    return Bytes.memcmp(child.getPartitionKeyStart(), parent.getPartitionKeyStart()) >= 0 &&
+           (parentEnd.length == 0 ||
+            (childEnd.length != 0 && Bytes.memcmp(childEnd, parentEnd) <= 0));
+  }
 
-    AtomicInteger totalException = new AtomicInteger();
-    deferredList.forEach(getChangesResponseDeferred -> {
-      try {
-        getChangesResponseDeferred.join(120000);
-      } catch (Exception e) {
-        totalException.getAndIncrement();
-        e.printStackTrace();
-      }
-    });
+  /**
+   * A snapshot of the progress of a tablet.
+   */
+  public static final class TabletStats {
+    private final String tabletId;
+    private final long lagMillis;
+    private final double recordsPerPoll;
+    private final long numRecords;
+    private final long numPolls;
+    private final int consecutiveErrors;
+
+    TabletStats(String tabletId, long lagMillis, double recordsPerPoll, long numRecords,
+                long numPolls, int consecutiveErrors) {
+      this.tabletId = tabletId;
+      this.lagMillis = lagMillis;
+      this.recordsPerPoll = recordsPerPoll;
+      this.numRecords = numRecords;
+      this.numPolls = numPolls;
+      this.consecutiveErrors = consecutiveErrors;
+    }
 
-    if (listTabletIdTableIdPair.size() > 0) {
-      if (totalException.get() == listTabletIdTableIdPair.size()) {
-        LOG.error("Unable to poll further, all the nodes returned error");
-        System.exit(1);
-      } else {
+    public String getTabletId() {
+      return tabletId;
+    }
 
-      }
+    /**
+     * @return how far behind the commit time of the last change applied is, 0 if the last poll
+     * returned no change
+     */
+    public long getLagMillis() {
+      return lagMillis;
     }
-  }
 
-  final class HandleFailure implements Callback<Void, Exception> {
-    private final Semaphore barrier;
+    /** @return the moving average of the number of records returned by a poll */
+    public double getRecordsPerPoll() {
+      return recordsPerPoll;
+    }
 
-    HandleFailure(Semaphore barrier) {
-      this.barrier = barrier;
+    public long getNumRecords() {
+      return numRecords;
     }
 
-    @Override
-    public Void call(Exception e) throws Exception {
-      barrier.release();
-      LOG.debug("Releasing the requestbarrier" + barrier.availablePermits());
+    public long getNumPolls() {
+      return numPolls;
+    }
 
-      e.printStackTrace();
-      if (e instanceof CDCErrorException) {
-        LOG.error("The error code is " +
-                 ((CDCErrorException) e).getCDCError().getCode().getNumber());
-      }
-      if (e instanceof CDCErrorException &&
-          ((CDCErrorException) e).getCDCError().getCode().getNumber() == 25) {
-        LOG.error("Got the GetChangesResponse errback, error code is ");
-      }
+    public int getConsecutiveErrors() {
+      return consecutiveErrors;
+    }
 
-      // TODO: Check all the exception here and throw only non-retryable exception as
-      // This is last chance for the application to retry.
-      throw e;
+    @Override
+    public String toString() {
+      return String.format("TabletStats{tabletId=%s, lagMillis=%d, recordsPerPoll=%.1f, " +
+                           "numRecords=%d, numPolls=%d, consecutiveErrors=%d}",
+                           tabletId, lagMillis, recordsPerPoll, numRecords, numPolls,
+                           consecutiveErrors);
     }
   }
 
-  final class HandleResponse implements Callback<Void, GetChangesResponse> {
-    private final List<CdcService.CDCSDKProtoRecordPB> result;
+  /**
+   * The polling state of one tablet. A tablet is either in flight, being handled by a polling
+   * thread, or in exactly one of the queues, so only one thread works on it at a time.
+   * <p>
+   * When polling a tablet keeps failing, or fails with an error hinting that the tablet is gone,
+   * the tablets of its table are looked up again. This refreshes the client's view of the
+   * leaders, and if the tablet split, its children take its place, starting from its
+   * checkpoint.
+   */
+  final class TabletPoller implements Delayed {
     private final YBTable table;
     private final String tabletId;
-    private final Semaphore barrier;
+    // Null if unknown, set by the next lookup that still finds the tablet.
+    private volatile Partition partition;
+
+    // Set by the RPC callbacks before the tablet is queued back.
+    private volatile GetChangesResponse response;
+    private volatile Exception failure;
+    private volatile List<LocatedTablet> locations;
+
+    private volatile long dueNanos = System.nanoTime();
+    private volatile long readySeq;
+    private long idleBackoffMs = 0;
+
+    // Read by getTabletStats() and by the queues while the tablet is not being handled.
+    private volatile int consecutiveErrors = 0;
+    private volatile long lagMillis = 0;
+    private volatile double recordsPerPoll = 0;
+    private volatile long numRecords = 0;
+    private volatile long numPolls = 0;
+
+    final Callback<Void, GetChangesResponse> onResponse = new Callback<Void,
+        GetChangesResponse>() {
+      @Override
+      public Void call(GetChangesResponse resp) {
+        response = resp;
+        requeue(0);
+        return null;
+      }
+
+      @Override
+      public String toString() {
+        return "Handle Response";
+      }
+    };
 
-    HandleResponse(YBTable table, String tabletId,
-                   List<CdcService.CDCSDKProtoRecordPB> result,
-                   Semaphore barrier) {
-      this.result = result;
+    final Callback<Void, Exception> onFailure = new Callback<Void, Exception>() {
+      @Override
+      public Void call(Exception e) {
+        onFailure(e);
+        return null;
+      }
+    };
+
+    TabletPoller(YBTable table, String tabletId, Partition partition) {
       this.table = table;
       this.tabletId = tabletId;
-      this.barrier = barrier;
+      this.partition = partition;
     }
 
-    public Void call(final GetChangesResponse response) {
-        return callPROTO(response);
+    void onFailure(Exception e) {
+      failure = e;
+      requeue(0);
     }
 
-    public Void callPROTO(final GetChangesResponse response) {
-      boolean noError = true;
+    boolean hasResult() {
+      return response != null || failure != null || locations != null;
+    }
+
+    private void requeue(long delayMs) {
+      if (delayMs > 0) {
+        dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+        delayedTablets.add(this);
+      } else {
+        readySeq = ConcurrentPoller.this.readySeq.incrementAndGet();
+        readyTablets.add(this);
+      }
+    }
+
+    /**
+     * Applies the response or handles the failure, then queues the next poll.
+     * @return true if the result was that of a GetChanges call, which no longer counts as in
+     * flight
+     */
+    boolean handleResult() {
+      List<LocatedTablet> located = locations;
+      if (located != null) {
+        locations = null;
+        handleLocations(located);
+        return false;
+      }
 
-      for (CdcService.CDCSDKProtoRecordPB record : response
-        .getResp()
-        .getCdcSdkProtoRecordsList()) {
+      GetChangesResponse resp = response;
+      Exception e = failure;
+      response = null;
+      failure = null;
+      if (e != null) {
+        handleFailure(e);
+        return true;
+      }
+
+      List<CdcService.CDCSDKProtoRecordPB> records = resp.getResp().getCdcSdkProtoRecordsList();
+      if (!records.isEmpty()) {
         try {
-          outputClient.applyChange(table, record);
-          result.add(record);
-        } catch (Exception e) {
-          e.printStackTrace();
-          noError = false;
-          break;
+          outputClient.applyChanges(table, tabletId, records);
+        } catch (Exception ex) {
+          // Poll again from the same checkpoint, the records will be sent again.
+          LOG.error("Failed to apply the changes of tablet " + tabletId, ex);
+          handleFailure(ex);
+          return true;
+        }
+      }
+
+      Checkpoint cp = Checkpoint.from(resp);
+      checkPointMap.put(tabletId, cp);
+      if (committer != null) {
+        committer.update(table, tabletId, cp, records.size());
+      }
+      LOG.debug("For tablet " + this.tabletId + " got the checkpoint " + cp);
+      if (consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
+        numFailedTablets.decrementAndGet();
+      }
+      consecutiveErrors = 0;
+      updateStats(records);
+
+      if (records.isEmpty()) {
+        idleBackoffMs = Math.min(maxIdleBackoffMs,
+                                 Math.max(MIN_IDLE_BACKOFF_MS, idleBackoffMs * 2));
+      } else {
+        idleBackoffMs = 0;
+      }
+      requeue(idleBackoffMs);
+      return true;
+    }
+
+    private void handleFailure(Exception e) {
+      if (e instanceof CDCErrorException) {
+        LOG.error("The error code is " +
+                 ((CDCErrorException) e).getCDCError().getCode().getNumber());
+      }
+      consecutiveErrors++;
+      if (consecutiveErrors == MAX_CONSECUTIVE_ERRORS) {
+        numFailedTablets.incrementAndGet();
+        LOG.error("Tablet " + tabletId + " failed " + consecutiveErrors + " times in a row", e);
+      } else {
+        LOG.warn("Polling tablet " + tabletId + " failed, will retry", e);
+      }
+      if (mayBeGone(e)) {
+        locate();
+        return;
+      }
+      // Keep retrying, the tablet may come back.
+      requeue(errorBackoffMs());
+    }
+
+    private long errorBackoffMs() {
+      return Math.min(MAX_ERROR_BACKOFF_MS, maxIdleBackoffMs << Math.min(consecutiveErrors, 8));
+    }
+
+    /** Looks the tablets of the table up, handleLocations() is called with the result. */
+    private void locate() {
+      LOG.info("Looking up the tablets of table " + table.getName() + " to check on tablet " +
+               tabletId);
+      try {
+        table.asyncGetTabletsLocations(LOCATE_TIMEOUT_MS).addCallbacks(
+            (List<LocatedTablet> located) -> {
+              locations = located;
+              requeue(0);
+              return null;
+            }, (Exception e) -> {
+              LOG.warn("Failed to look up the tablets of table " + table.getName(), e);
+              requeue(errorBackoffMs());
+              return null;
+            });
+      } catch (Exception e) {
+        LOG.warn("Failed to look up the tablets of table " + table.getName(), e);
+        requeue(errorBackoffMs());
+      }
+    }
+
+    private void handleLocations(List<LocatedTablet> located) {
+      List<LocatedTablet> children = new ArrayList<>();
+      for (LocatedTablet t : located) {
+        String id = new String(t.getTabletId());
+        if (id.equals(tabletId)) {
+          // Still there, so it was not split. The lookup doesn't refresh the cached leader, the
+          // retried call follows a leader change through its NOT_LEADER errors.
+          if (partition == null) {
+            partition = t.getPartition();
+          }
+          requeue(errorBackoffMs());
+          return;
+        }
+        if (!tablets.containsKey(id) && contains(partition, t.getPartition())) {
+          children.add(t);
         }
       }
+      if (partition == null) {
+        // Adopting the unknown tablets of the table could give the checkpoint of this tablet to
+        // unrelated ones.
+        LOG.error("Tablet " + tabletId + " is gone, but its children can't be told apart as its " +
+                  "partition is unknown");
+        requeue(errorBackoffMs());
+        return;
+      }
+      if (children.isEmpty()) {
+        LOG.warn("Tablet " + tabletId + " is gone and no tablet replaced it yet");
+        requeue(errorBackoffMs());
+        return;
+      }
+      replaceWithChildren(children);
+    }
 
-      Checkpoint cp = null;
-      if (noError) {
-        cp = new Checkpoint(
-          response.getTerm(),
-          response.getIndex(),
-          response.getKey(),
-          response.getWriteId(),
-          response.getSnapshotTime());
+    /** Stops polling this tablet, and polls its children from its checkpoint instead. */
+    private void replaceWithChildren(List<LocatedTablet> children) {
+      List<TabletPoller> added = new ArrayList<>(children.size());
+      synchronized (ConcurrentPoller.this) {
+        // Changes of the parent up to its checkpoint have been applied, the children continue
+        // from there.
+        Checkpoint cp = checkPointMap.get(tabletId);
+        for (LocatedTablet child : children) {
+          String childId = new String(child.getTabletId());
+          if (tablets.containsKey(childId)) {
+            continue;
+          }
+          checkPointMap.put(childId, cp);
+          TabletPoller poller = new TabletPoller(table, childId, child.getPartition());
+          tablets.put(childId, poller);
+          listTabletIdTableIdPair.add(
+              new AbstractMap.SimpleImmutableEntry<>(childId, table.getTableId()));
+          added.add(poller);
+        }
+        tablets.remove(tabletId);
+        checkPointMap.remove(tabletId);
+        listTabletIdTableIdPair.removeIf(pair -> pair.getKey().equals(tabletId));
+        if (committer != null) {
+          committer.remove(tabletId);
+        }
+        if (consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
+          numFailedTablets.decrementAndGet();
+        }
+      }
+      LOG.info("Tablet " + tabletId + " split, continuing with " +
+               added.stream().map(t -> t.tabletId).collect(Collectors.toList()));
+      added.forEach(t -> t.requeue(0));
+    }
 
-        checkPointMap.put(tabletId, cp);
-        LOG.debug("For tablet " + this.tabletId + " got the checkpoint " + cp);
+    private void updateStats(List<CdcService.CDCSDKProtoRecordPB> records) {
+      numPolls++;
+      numRecords += records.size();
+      recordsPerPoll = recordsPerPoll * (1 - STATS_DECAY) + records.size() * STATS_DECAY;
+      if (records.isEmpty()) {
+        // Caught up.
+        lagMillis = 0;
+        return;
+      }
+      long commitTime = 0;
+      for (CdcService.CDCSDKProtoRecordPB record : records) {
+        commitTime = Math.max(commitTime, record.getRowMessage().getCommitTime());
+      }
+      if (commitTime > 0) {
+        long physicalMicros = commitTime >>> HybridTimeUtil.hybridTimeNumBitsToShift;
+        lagMillis = Math.max(0, System.currentTimeMillis() - physicalMicros / 1000);
       }
+    }
 
-      barrier.release();
-      return null;
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
     }
 
-    public String toString() {
-      return "Handle Response";
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(dueNanos, ((TabletPoller) other).dueNanos);
     }
   }
 }
@@ -0,0 +1,141 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.client.YBTable;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Only counts the changes, to measure how fast the connector can stream them. The counts and the
+ * rate since the previous report are logged at most every {@code reportIntervalMs}.
+ */
+public class CountingClient implements OutputClient {
+  private static final Logger LOG = LoggerFactory.getLogger(CountingClient.class);
+
+  private final LongAdder responses = new LongAdder();
+  private final LongAdder records = new LongAdder();
+  private final LongAdder inserts = new LongAdder();
+  private final LongAdder updates = new LongAdder();
+  private final LongAdder deletes = new LongAdder();
+  private final LongAdder snapshotRecords = new LongAdder();
+
+  private final long reportIntervalMs;
+  private final long startMs = System.currentTimeMillis();
+  private volatile long lastReportMs = startMs;
+  private long lastReportRecords = 0;
+
+  /**
+   * @param reportIntervalMs how often to log the counts, 0 to only log them on close
+   */
+  public CountingClient(long reportIntervalMs) {
+    this.reportIntervalMs = reportIntervalMs;
+  }
+
+  @Override
+  public void applyChange(YBTable table, CdcService.CDCSDKProtoRecordPB changeRecord) {
+    count(changeRecord);
+    records.increment();
+    maybeReport();
+  }
+
+  @Override
+  public void applyChanges(YBTable table, String tabletId,
+                           List<CdcService.CDCSDKProtoRecordPB> changeRecords) {
+    for (CdcService.CDCSDKProtoRecordPB changeRecord : changeRecords) {
+      count(changeRecord);
+    }
+    responses.increment();
+    records.add(changeRecords.size());
+    maybeReport();
+  }
+
+  @Override
+  public void close() {
+    report(System.currentTimeMillis());
+  }
+
+  public long getNumRecords() {
+    return records.sum();
+  }
+
+  public long getNumResponses() {
+    return responses.sum();
+  }
+
+  public long getNumInserts() {
+    return inserts.sum();
+  }
+
+  public long getNumUpdates() {
+    return updates.sum();
+  }
+
+  public long getNumDeletes() {
+    return deletes.sum();
+  }
+
+  public long getNumSnapshotRecords() {
+    return snapshotRecords.sum();
+  }
+
+  private void count(CdcService.CDCSDKProtoRecordPB changeRecord) {
+    switch (changeRecord.getRowMessage().getOp()) {
+      case INSERT:
+        inserts.increment();
+        break;
+      case UPDATE:
+        updates.increment();
+        break;
+      case DELETE:
+        deletes.increment();
+        break;
+      case READ:
+        snapshotRecords.increment();
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void maybeReport() {
+    if (reportIntervalMs <= 0) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    if (now - lastReportMs < reportIntervalMs) {
+      return;
+    }
+    synchronized (this) {
+      if (now - lastReportMs >= reportIntervalMs) {
+        report(now);
+      }
+    }
+  }
+
+  private synchronized void report(long now) {
+    long total = records.sum();
+    double seconds = Math.max(1, now - lastReportMs) / 1000.0;
+    LOG.info(String.format(
+        "Records: %d (%.0f/s), responses: %d, inserts: %d, updates: %d, deletes: %d, " +
+        "snapshot records: %d, running for %d s",
+        total, (total - lastReportRecords) / seconds, responses.sum(), inserts.sum(),
+        updates.sum(), deletes.sum(), snapshotRecords.sum(), (now - startMs) / 1000));
+    lastReportMs = now;
+    lastReportRecords = total;
+  }
+}
@@ -15,7 +15,42 @@ package org.yb.cdc;
 
 import org.yb.client.YBTable;
 
-public interface OutputClient {
+import java.util.List;
+
+/**
+ * Receives the changes streamed by the connector.
+ * <p>
+ * Changes are handed over one GetChanges response at a time with {@link #applyChanges}, possibly
+ * from several threads at the same time. A checkpoint is only committed after a call to
+ * {@link #flush()} that followed the application of the changes it covers, so a client that
+ * buffers changes must make them durable in {@link #flush()}.
+ */
+public interface OutputClient extends AutoCloseable {
   public void applyChange(YBTable table,
                           CdcService.CDCSDKProtoRecordPB changeRecord) throws Exception;
+
+  /**
+   * Applies the changes of one response of a tablet, in order. Defaults to applying them one at
+   * a time with {@link #applyChange}.
+   */
+  default void applyChanges(YBTable table, String tabletId,
+                            List<CdcService.CDCSDKProtoRecordPB> changeRecords) throws Exception {
+    for (CdcService.CDCSDKProtoRecordPB changeRecord : changeRecords) {
+      applyChange(table, changeRecord);
+    }
+  }
+
+  /**
+   * Makes the changes applied so far durable. Called before their checkpoints are committed.
+   */
+  default void flush() throws Exception {
+  }
+
+  /**
+   * Flushes the changes applied so far and releases the resources of the client.
+   */
+  @Override
+  default void close() throws Exception {
+    flush();
+  }
 }
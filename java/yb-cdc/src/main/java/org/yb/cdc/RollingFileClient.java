@@ -0,0 +1,315 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import com.google.gson.stream.JsonWriter;
+import com.google.protobuf.CodedOutputStream;
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.Value;
+import org.yb.client.YBTable;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes the changes to files in a directory, switching to a new file once the current one is
+ * large or old enough.
+ * <p>
+ * Records are written either as length-delimited {@code CDCSDKProtoRecordPB}s, readable with
+ * {@code parseDelimitedFrom}, or as one JSON object per line. They are encoded into a direct
+ * buffer that is written to the file channel when full and on {@link #flush()}, which also
+ * forces the file to disk.
+ */
+public class RollingFileClient implements OutputClient {
+  private static final Logger LOG = LoggerFactory.getLogger(RollingFileClient.class);
+
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  public enum Format {
+    PROTO("pb"),
+    JSON("json");
+
+    private final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+  }
+
+  private final Path directory;
+  private final Format format;
+  private final long maxFileBytes;
+  private final long rotationIntervalMs;
+
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final StringWriter json = new StringWriter();
+  private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder();
+
+  private FileChannel channel;
+  private Path currentFile;
+  private long fileBytes;
+  private long fileOpenedAtMs;
+  private int fileSeq = 0;
+  private long numRecords = 0;
+
+  /**
+   * @param directory where to create the files, created if missing
+   * @param format how to write the records
+   * @param maxFileBytes switch to a new file once the current one is that large
+   * @param rotationIntervalMs switch to a new file once the current one is that old, 0 to only
+   *                           switch on size
+   */
+  public RollingFileClient(Path directory, Format format, long maxFileBytes,
+                           long rotationIntervalMs) throws IOException {
+    if (maxFileBytes <= 0) {
+      throw new IllegalArgumentException("The maximum file size must be positive, got " +
+                                         maxFileBytes);
+    }
+    this.directory = directory;
+    this.format = format;
+    this.maxFileBytes = maxFileBytes;
+    this.rotationIntervalMs = rotationIntervalMs;
+    Files.createDirectories(directory);
+    openNextFile();
+  }
+
+  @Override
+  public void applyChange(YBTable table, CdcService.CDCSDKProtoRecordPB changeRecord)
+      throws Exception {
+    applyChanges(table, null, Collections.singletonList(changeRecord));
+  }
+
+  @Override
+  public synchronized void applyChanges(YBTable table, String tabletId,
+                                        List<CdcService.CDCSDKProtoRecordPB> changeRecords)
+      throws Exception {
+    checkOpen();
+    for (CdcService.CDCSDKProtoRecordPB record : changeRecords) {
+      if (format == Format.PROTO) {
+        writeDelimited(record);
+      } else {
+        writeJsonLine(record);
+      }
+    }
+    numRecords += changeRecords.size();
+    // Only between responses, so that a response doesn't straddle two files.
+    maybeRotate();
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    checkOpen();
+    drain();
+    channel.force(false);
+    maybeRotate();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel == null) {
+      return;
+    }
+    drain();
+    channel.force(false);
+    channel.close();
+    channel = null;
+    LOG.info(String.format("Wrote %d records, last file is %s", numRecords, currentFile));
+  }
+
+  /** @return the file being written to */
+  public synchronized Path getCurrentFile() {
+    return currentFile;
+  }
+
+  private void checkOpen() {
+    if (channel == null) {
+      throw new IllegalStateException("The client is closed");
+    }
+  }
+
+  private void writeDelimited(CdcService.CDCSDKProtoRecordPB record) throws IOException {
+    int size = record.getSerializedSize();
+    int total = CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    if (total > buffer.remaining()) {
+      drain();
+    }
+    if (total > buffer.capacity()) {
+      // Too large to be buffered, write it on its own.
+      ByteBuffer large = ByteBuffer.allocate(total);
+      CodedOutputStream out = CodedOutputStream.newInstance(large);
+      out.writeUInt32NoTag(size);
+      record.writeTo(out);
+      out.flush();
+      large.flip();
+      writeFully(large);
+    } else {
+      CodedOutputStream out = CodedOutputStream.newInstance(buffer);
+      out.writeUInt32NoTag(size);
+      record.writeTo(out);
+      // Moves the position of the buffer past the record.
+      out.flush();
+    }
+    fileBytes += total;
+  }
+
+  private void writeJsonLine(CdcService.CDCSDKProtoRecordPB record) throws IOException {
+    json.getBuffer().setLength(0);
+    JsonWriter writer = new JsonWriter(json);
+    // Let NaN and infinite doubles through.
+    writer.setLenient(true);
+    toJson(record, writer);
+    json.write('\n');
+
+    CharBuffer chars = CharBuffer.wrap(json.getBuffer());
+    int start = buffer.position();
+    utf8.reset();
+    CoderResult result;
+    do {
+      result = utf8.encode(chars, buffer, true);
+      if (result.isError()) {
+        result.throwException();
+      }
+      if (result.isOverflow()) {
+        fileBytes += buffer.position() - start;
+        drain();
+        start = 0;
+      }
+    } while (result.isOverflow());
+    while (utf8.flush(buffer).isOverflow()) {
+      fileBytes += buffer.position() - start;
+      drain();
+      start = 0;
+    }
+    fileBytes += buffer.position() - start;
+  }
+
+  private static void toJson(CdcService.CDCSDKProtoRecordPB record, JsonWriter writer)
+      throws IOException {
+    CdcService.RowMessage row = record.getRowMessage();
+    writer.beginObject();
+    writer.name("op").value(row.getOp().name());
+    writer.name("table").value(row.getTable());
+    if (row.hasPgschemaName()) {
+      writer.name("schema").value(row.getPgschemaName());
+    }
+    if (row.hasCommitTime()) {
+      writer.name("commit_time").value(row.getCommitTime());
+    }
+    if (row.hasTransactionId()) {
+      writer.name("transaction_id")
+          .value(Hex.encodeHexString(row.getTransactionId().toByteArray()));
+    }
+    if (record.hasCdcSdkOpId()) {
+      CdcService.CDCSDKOpIdPB opId = record.getCdcSdkOpId();
+      writer.name("op_id").beginObject()
+          .name("term").value(opId.getTerm())
+          .name("index").value(opId.getIndex())
+          .name("write_id").value(opId.getWriteId())
+          .endObject();
+    }
+    if (row.getNewTupleCount() > 0) {
+      writer.name("new");
+      toJson(row.getNewTupleList(), writer);
+    }
+    if (row.getOldTupleCount() > 0) {
+      writer.name("old");
+      toJson(row.getOldTupleList(), writer);
+    }
+    writer.endObject();
+    writer.flush();
+  }
+
+  private static void toJson(List<Value.DatumMessagePB> tuple, JsonWriter writer)
+      throws IOException {
+    writer.beginObject();
+    for (Value.DatumMessagePB datum : tuple) {
+      writer.name(datum.getColumnName());
+      switch (datum.getDatumCase()) {
+        case DATUM_INT32:
+          writer.value(datum.getDatumInt32());
+          break;
+        case DATUM_INT64:
+          writer.value(datum.getDatumInt64());
+          break;
+        case DATUM_FLOAT:
+          writer.value(datum.getDatumFloat());
+          break;
+        case DATUM_DOUBLE:
+          writer.value(datum.getDatumDouble());
+          break;
+        case DATUM_BOOL:
+          writer.value(datum.getDatumBool());
+          break;
+        case DATUM_STRING:
+          writer.value(datum.getDatumString());
+          break;
+        case DATUM_BYTES:
+          writer.value(Hex.encodeHexString(datum.getDatumBytes().toByteArray()));
+          break;
+        default:
+          writer.nullValue();
+      }
+    }
+    writer.endObject();
+  }
+
+  private void maybeRotate() throws IOException {
+    if (fileBytes >= maxFileBytes ||
+        (rotationIntervalMs > 0 &&
+         System.currentTimeMillis() - fileOpenedAtMs >= rotationIntervalMs && fileBytes > 0)) {
+      drain();
+      channel.force(false);
+      channel.close();
+      openNextFile();
+    }
+  }
+
+  private void openNextFile() throws IOException {
+    String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    currentFile = directory.resolve(
+        String.format("cdc-%s-%05d.%s", timestamp, fileSeq++, format.extension));
+    channel = FileChannel.open(currentFile, StandardOpenOption.CREATE_NEW,
+                               StandardOpenOption.WRITE);
+    fileBytes = 0;
+    fileOpenedAtMs = System.currentTimeMillis();
+    LOG.info("Writing the changes to " + currentFile);
+  }
+
+  private void drain() throws IOException {
+    buffer.flip();
+    writeFully(buffer);
+    buffer.clear();
+  }
+
+  private void writeFully(ByteBuffer src) throws IOException {
+    while (src.hasRemaining()) {
+      channel.write(src);
+    }
+  }
+}
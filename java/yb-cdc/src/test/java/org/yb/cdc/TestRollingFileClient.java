@@ -0,0 +1,112 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.cdc;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Value;
+import org.yb.YBTestRunner;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.yb.AssertionWrappers.*;
+
+@RunWith(value = YBTestRunner.class)
+public class TestRollingFileClient {
+  private Path dir;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("cdc-files");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(dir.toFile());
+  }
+
+  private static CdcService.CDCSDKProtoRecordPB record(int key) {
+    return CdcService.CDCSDKProtoRecordPB.newBuilder()
+        .setRowMessage(CdcService.RowMessage.newBuilder()
+            .setOp(CdcService.RowMessage.Op.INSERT)
+            .setTable("test")
+            .setCommitTime(1000L + key)
+            .addNewTuple(Value.DatumMessagePB.newBuilder()
+                .setColumnName("a").setDatumInt32(key))
+            .addNewTuple(Value.DatumMessagePB.newBuilder()
+                .setColumnName("b").setDatumString("value " + key)))
+        .build();
+  }
+
+  private List<Path> files() throws Exception {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+
+  @Test
+  public void testProtoWithRotation() throws Exception {
+    RollingFileClient client =
+        new RollingFileClient(dir, RollingFileClient.Format.PROTO, 1024, 0);
+    List<CdcService.CDCSDKProtoRecordPB> written = new ArrayList<>();
+    for (int i = 0; i < 100; i += 10) {
+      List<CdcService.CDCSDKProtoRecordPB> batch = new ArrayList<>();
+      for (int j = i; j < i + 10; j++) {
+        batch.add(record(j));
+      }
+      client.applyChanges(null, "tablet", batch);
+      written.addAll(batch);
+    }
+    client.close();
+
+    List<Path> files = files();
+    assertTrue(files.size() > 1);
+    List<CdcService.CDCSDKProtoRecordPB> read = new ArrayList<>();
+    for (Path file : files) {
+      try (InputStream in = Files.newInputStream(file)) {
+        CdcService.CDCSDKProtoRecordPB record;
+        while ((record = CdcService.CDCSDKProtoRecordPB.parseDelimitedFrom(in)) != null) {
+          read.add(record);
+        }
+      }
+    }
+    assertEquals(written, read);
+  }
+
+  @Test
+  public void testJsonLines() throws Exception {
+    RollingFileClient client =
+        new RollingFileClient(dir, RollingFileClient.Format.JSON, 1 << 20, 0);
+    client.applyChange(null, record(1));
+    client.applyChange(null, record(2));
+    client.flush();
+
+    List<String> lines = Files.readAllLines(client.getCurrentFile(), StandardCharsets.UTF_8);
+    assertEquals(2, lines.size());
+    assertEquals("{\"op\":\"INSERT\",\"table\":\"test\",\"commit_time\":1001," +
+                 "\"new\":{\"a\":1,\"b\":\"value 1\"}}", lines.get(0));
+    client.close();
+    assertEquals(1, files().size());
+  }
+}
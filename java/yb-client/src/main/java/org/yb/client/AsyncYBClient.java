@@ -91,11 +91,12 @@ import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
@@ -199,10 +200,17 @@ public class AsyncYBClient implements AutoCloseable {
       .getDefaultInstance()
       .getMaxReturnedLocations();
 
+  // Hash partitioned tables split the 16-bit hash values between their tablets.
+  private static final int HASH_KEY_SPACE_SIZE = 0x10000;
+
   private final Bootstrap bootstrap;
   private final EventLoopGroup eventLoopGroup;
   private final Executor executor;
 
+  // Set when the event loop group, executor and timer are shared with other clients, in which
+  // case this client must not release them on shutdown.
+  private final ClientResources sharedResources;
+
   // TODO(Bharat) - get tablet id from master leader.
   private static final String MASTER_TABLET_ID = "00000000000000000000000000000000";
 
@@ -210,17 +218,18 @@ public class AsyncYBClient implements AutoCloseable {
    * This map and the next 2 maps contain the same data, but indexed
    * differently. There is no consistency guarantee across the maps.
    * They are not updated all at the same time atomically.  This map
-   * is always the first to be updated, because that's the map from
+   * is always the last to be updated, because that's the map from
    * which all the lookups are done in the fast-path of the requests
-   * that need to locate a tablet. The second map to be updated is
-   * tablet2client, because it comes second in the fast-path
-   * of every requests that need to locate a tablet. The third map
-   * is only used to handle TabletServer disconnections gracefully.
-   *
-   * This map is keyed by table ID.
+   * that need to locate a tablet, so a tablet only becomes visible once
+   * it can be found in tablet2client too. The third map is only used to
+   * handle TabletServer disconnections gracefully.
+   * <p>
+   * This map is keyed by table ID. The indexes are immutable, they are replaced as a whole with
+   * {@link ConcurrentHashMap#replace(Object, Object, Object)} so lookups never take a lock.
+   * @see #addTabletsToIndex
    */
-  private final ConcurrentHashMap<String, ConcurrentSkipListMap<byte[],
-      RemoteTablet>> tabletsCache = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, TablePartitionIndex> tabletsCache =
+      new ConcurrentHashMap<>();
 
   /**
    * Maps a tablet ID to the RemoteTablet that knows where all the replicas are served.
@@ -228,33 +237,25 @@ public class AsyncYBClient implements AutoCloseable {
   private final ConcurrentHashMap<Slice, RemoteTablet> tablet2client = new ConcurrentHashMap<>();
 
   /**
-   * Maps a client connected to a TabletServer to the list of tablets we know
+   * Maps a client connected to a TabletServer to the set of tablets we know
    * it's serving so far.
    */
-  private final ConcurrentHashMap<TabletClient, ArrayList<RemoteTablet>> client2tablets =
+  private final ConcurrentHashMap<TabletClient, Set<RemoteTablet>> client2tablets =
       new ConcurrentHashMap<>();
 
   /**
    * Cache that maps a TabletServer address ("ip:port") to the clients
    * connected to it.
    * <p>
-   * Access to this map must be synchronized by locking its monitor.
-   * Lock ordering: when locking both this map and a TabletClient, the
-   * TabletClient must always be locked first to avoid deadlocks.  Logging
-   * the contents of this map (or calling toString) requires copying it first.
-   * <p>
-   * This isn't a {@link ConcurrentHashMap} because we don't use it frequently
-   * (just when connecting to / disconnecting from TabletClients) and when we
-   * add something to it, we want to do an atomic get-and-put, but
-   * {@code putIfAbsent} isn't a good fit for us since it requires to create
-   * an object that may be "wasted" in case another thread wins the insertion
-   * race, and we don't want to create unnecessary connections.
+   * A new client is created and registered in a single {@code compute} so that only one
+   * connection is made per address when several threads race, the connection itself is
+   * started outside of it.
    * <p>
    * Upon disconnection, clients are automatically removed from this map. TabletClient
    * receives disconnect notitifaction and calls us as listener to clean up cache.
    * @see AsyncYBClient#handleDisconnect
    */
-  private final HashMap<String, TabletClient> ip2client = new HashMap<>();
+  private final ConcurrentHashMap<String, TabletClient> ip2client = new ConcurrentHashMap<>();
 
   // Since the masters also go through TabletClient, we need to treat them as if they were a normal
   // table. We'll use the following fake table name to identify places where we need special
@@ -263,7 +264,22 @@ public class AsyncYBClient implements AutoCloseable {
   final YBTable masterTable;
   private final List<HostAndPort> masterAddresses;
 
-  private final HashedWheelTimer timer = new HashedWheelTimer(20, MILLISECONDS);
+  private final HashedWheelTimer timer;
+
+  // Caches the addresses of the masters and tablet servers, so that refreshing tablet locations
+  // doesn't resolve every replica again.
+  private volatile HostResolver hostResolver = new HostResolver(AsyncYBClient::getIP);
+
+  /**
+   * Timeouts scheduled by this client on a shared timer. They are cancelled on shutdown since
+   * the timer itself keeps running for the other clients. Unused with a private timer.
+   */
+  private final Set<Timeout> pendingTimeouts = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Conditions being waited for, failed on shutdown as their next check won't run anymore.
+   */
+  private final Set<ConditionWaiter> conditionWaiters = ConcurrentHashMap.newKeySet();
 
   /**
    * Timestamp required for HybridTime external consistency through timestamp
@@ -305,9 +321,23 @@ public class AsyncYBClient implements AutoCloseable {
 
   private final int numTabletsInTable;
 
+  private final int maxRpcsPerFlush;
+  private final long maxBytesPerFlush;
+  private final WriteCoalescer.Stats writeCoalescingStats = new WriteCoalescer.Stats();
+
   private AsyncYBClient(AsyncYBClientBuilder b) {
-    this.executor = b.getOrCreateWorker();
-    this.eventLoopGroup = b.createEventLoopGroup(executor);
+    this.sharedResources = b.clientResources;
+    if (sharedResources != null) {
+      Preconditions.checkState(!sharedResources.isClosed(),
+          "Shared client resources have already been closed");
+      this.executor = null;
+      this.eventLoopGroup = sharedResources.getEventLoopGroup();
+      this.timer = sharedResources.getTimer();
+    } else {
+      this.executor = b.getOrCreateWorker();
+      this.eventLoopGroup = b.createEventLoopGroup(executor);
+      this.timer = new HashedWheelTimer(20, MILLISECONDS);
+    }
     this.bootstrap = b.createBootstrap(eventLoopGroup);
     this.masterAddresses = b.masterAddresses;
     this.masterTable = new YBTable(this, MASTER_TABLE_NAME_PLACEHOLDER,
@@ -321,6 +351,8 @@ public class AsyncYBClient implements AutoCloseable {
     this.clientPort = b.clientPort;
     this.defaultSocketReadTimeoutMs = b.defaultSocketReadTimeoutMs;
     this.numTabletsInTable = b.numTablets;
+    this.maxRpcsPerFlush = b.maxRpcsPerFlush;
+    this.maxBytesPerFlush = b.maxBytesPerFlush;
   }
 
   /**
@@ -343,6 +375,42 @@ public class AsyncYBClient implements AutoCloseable {
     return lastPropagatedTimestamp;
   }
 
+  @VisibleForTesting
+  void setHostResolver(HostResolver hostResolver) {
+    this.hostResolver = hostResolver;
+  }
+
+  @VisibleForTesting
+  EventLoopGroup getEventLoopGroup() {
+    return eventLoopGroup;
+  }
+
+  boolean isWriteCoalescingEnabled() {
+    return maxRpcsPerFlush > 1;
+  }
+
+  WriteCoalescer newWriteCoalescer(Channel channel) {
+    return new WriteCoalescer(channel, maxRpcsPerFlush, maxBytesPerFlush, writeCoalescingStats);
+  }
+
+  /**
+   * Number of flushes of RPCs to the network since this client was created. Only counted when
+   * write coalescing is enabled.
+   * @see AsyncYBClientBuilder#writeCoalescing(int, long)
+   */
+  public long getNumWriteFlushes() {
+    return writeCoalescingStats.getNumFlushes();
+  }
+
+  /**
+   * Average number of RPCs sent per flush to the network since this client was created. Only
+   * counted when write coalescing is enabled.
+   * @see AsyncYBClientBuilder#writeCoalescing(int, long)
+   */
+  public double getRpcsPerWriteFlush() {
+    return writeCoalescingStats.getRpcsPerFlush();
+  }
+
   public Deferred<PingResponse> ping(final HostAndPort hp) {
     checkIsClosed();
     TabletClient client = newSimpleClient(hp);
@@ -777,6 +845,125 @@ public class AsyncYBClient implements AutoCloseable {
     return sendRpcToTablet(rpc);
   }
 
+  /**
+   * A condition checked asynchronously, see {@link #waitForCondition}.
+   */
+  public interface Condition {
+    /**
+     * @return a Deferred that yields whether the condition holds. An error counts as the
+     * condition not holding yet
+     */
+    Deferred<Boolean> get() throws Exception;
+  }
+
+  /**
+   * Checks a condition until it holds or the timeout expires, without blocking any thread in
+   * between. Checks are scheduled on the client's timer, with an exponentially growing and
+   * randomized delay between two of them.
+   * @param condition the condition to wait for
+   * @param timeoutMs the amount of time, in MS, to wait, 0 to wait until the condition holds
+   * @return a Deferred that yields true if the condition held within the time frame, false if
+   * it did not or if too many checks failed. It fails if the client is shut down meanwhile
+   */
+  public Deferred<Boolean> waitForCondition(Condition condition, long timeoutMs) {
+    checkIsClosed();
+    ConditionWaiter waiter = new ConditionWaiter(this, condition, timeoutMs);
+    conditionWaiters.add(waiter);
+    return waiter.start();
+  }
+
+  void conditionWaitDone(ConditionWaiter waiter) {
+    conditionWaiters.remove(waiter);
+  }
+
+  /**
+   * Asynchronously wait for the specific server to respond to pings.
+   * @param hp the HostAndPort of the server
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the server responded to pings in the given time
+   */
+  public Deferred<Boolean> waitForServer(final HostAndPort hp, long timeoutMs) {
+    return waitForCondition(() -> ping(hp).addCallback(resp -> true), timeoutMs);
+  }
+
+  /**
+   * Asynchronously wait for the server to be ready to serve requests.
+   * @param hp the HostAndPort of the server
+   * @param isTserver true if host/port is for tserver, else its master
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the server got ready in the given time
+   */
+  public Deferred<Boolean> waitForServerReady(final HostAndPort hp, final boolean isTserver,
+                                              long timeoutMs) {
+    return waitForCondition(
+        () -> isServerReady(hp, isTserver).addCallback(resp -> !resp.hasError()), timeoutMs);
+  }
+
+  /**
+   * Asynchronously wait for the tablet load to be balanced by master leader.
+   * @param numServers expected number of servers which need to balanced
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the master leader did not return any error to a
+   * balance check in the given time
+   */
+  public Deferred<Boolean> waitForLoadBalance(final int numServers, long timeoutMs) {
+    return waitForCondition(
+        () -> getIsLoadBalanced(numServers).addCallback(resp -> !resp.hasError()), timeoutMs);
+  }
+
+  /**
+   * Asynchronously wait for the load balancer to be idle.
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the load balancer got idle in the given time
+   */
+  public Deferred<Boolean> waitForLoadBalancerIdle(long timeoutMs) {
+    return waitForCondition(
+        () -> getIsLoadBalancerIdle().addCallback(resp -> !resp.hasError()), timeoutMs);
+  }
+
+  /**
+   * Asynchronously wait for the leaders to be on the preferred zones only.
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the leaders moved in the given time
+   */
+  public Deferred<Boolean> waitForAreLeadersOnPreferredOnly(long timeoutMs) {
+    return waitForCondition(
+        () -> getAreLeadersOnPreferredOnly().addCallback(resp -> !resp.hasError()), timeoutMs);
+  }
+
+  /**
+   * Asynchronously wait for all the tablets of a table to have a specific number of replicas.
+   * @param table the table to check the condition on
+   * @param numReplicas the number of replicas we expect the table to have
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if the table got the expected number of replicas in
+   * the given time
+   */
+  public Deferred<Boolean> waitForReplicaCount(final YBTable table, final int numReplicas,
+                                               long timeoutMs) {
+    return waitForCondition(() -> table.asyncGetTabletsLocations(
+        null, null, defaultAdminOperationTimeoutMs).addCallback(tablets -> {
+          for (LocatedTablet tablet : tablets) {
+            if (tablet.getReplicas().size() != numReplicas) {
+              return false;
+            }
+          }
+          return true;
+        }), timeoutMs);
+  }
+
+  /**
+   * Asynchronously wait for the tables matching a name filter to be removed.
+   * @param nameFilter the table name filter, see {@link #getTablesList(String)}
+   * @param timeoutMs the amount of time, in MS, to wait
+   * @return a Deferred that yields true if no table matched the filter in the given time
+   */
+  public Deferred<Boolean> waitForTableRemoval(final String nameFilter, long timeoutMs) {
+    return waitForCondition(
+        () -> getTablesList(nameFilter).addCallback(resp -> resp.getTablesList().isEmpty()),
+        timeoutMs);
+  }
+
   /**
    * Check if initdb executed by the master is done running.
    */
@@ -1868,9 +2055,7 @@ public class AsyncYBClient implements AutoCloseable {
    */
   @VisibleForTesting
   List<TabletClient> getTableClients() {
-    synchronized (ip2client) {
-      return new ArrayList<TabletClient>(ip2client.values());
-    }
+    return new ArrayList<TabletClient>(ip2client.values());
   }
 
   /**
@@ -2063,7 +2248,7 @@ public class AsyncYBClient implements AutoCloseable {
           public Deferred<List<LocatedTablet>> call(GetTableLocationsResponsePB response) {
             // Table doesn't exist or is being created.
             if (response.getTabletLocationsCount() == 0) {
-              Deferred.fromResult(ret);
+              return Deferred.fromResult(ret);
             }
             byte[] lastEndPartition = startPartitionKey;
             for (MasterClientOuterClass.TabletLocationsPB tabletPb :
@@ -2113,6 +2298,210 @@ public class AsyncYBClient implements AutoCloseable {
     return loopLocateTable(tableId, startPartitionKey, endPartitionKey, ret, deadlineTracker);
   }
 
+  /**
+   * Get all the tablets for a given table, querying the master for several parts of the table
+   * concurrently. The hash key space of hash partitioned tables is split in {@code parallelism}
+   * ranges, each of them located page by page like {@link #locateTable} does. Concurrency is
+   * bounded by the master lookup permits, ranges that can't get one wait for a range that did.
+   * Other tables are located sequentially.
+   * @param table the table to locate tablets from
+   * @param parallelism number of ranges the table is split in
+   * @param deadline max time spent in milliseconds for the deferred result of this method to
+   *         get called back, if deadline is reached, the deferred result will get erred back
+   * @return a deferred object that yields a list of the tablets in the table, in partition
+   *         key order
+   */
+  Deferred<List<LocatedTablet>> locateTableInParallel(final YBTable table, int parallelism,
+                                                      long deadline) {
+    if (parallelism <= 1 || table.getPartitionSchema() == null
+        || !table.getPartitionSchema().isHashPartitioned()) {
+      return locateTable(table.getTableId(), null, null, deadline);
+    }
+    final DeadlineTracker deadlineTracker = new DeadlineTracker();
+    deadlineTracker.setDeadline(deadline);
+    return new ParallelLocateTable(table.getTableId(),
+        Math.min(parallelism, HASH_KEY_SPACE_SIZE), deadlineTracker).start();
+  }
+
+  /**
+   * Locates the hash key ranges of a table with one chain of GetTableLocations per master lookup
+   * permit it could get. Each chain takes the next range not being located yet once it is done
+   * with the current one, and gives its permit back when there are none left.
+   */
+  private final class ParallelLocateTable {
+    private final String tableId;
+    private final int numRanges;
+    private final DeadlineTracker deadlineTracker;
+    private final List<List<LocatedTablet>> rangeTablets;
+    private final AtomicInteger nextRange = new AtomicInteger();
+    private final AtomicInteger remainingRanges;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final Deferred<List<LocatedTablet>> result = new Deferred<>();
+
+    ParallelLocateTable(String tableId, int numRanges, DeadlineTracker deadlineTracker) {
+      this.tableId = tableId;
+      this.numRanges = numRanges;
+      this.deadlineTracker = deadlineTracker;
+      this.rangeTablets = new ArrayList<>(Collections.nCopies(numRanges, null));
+      this.remainingRanges = new AtomicInteger(numRanges);
+    }
+
+    Deferred<List<LocatedTablet>> start() {
+      // The first chain always runs, with or without a permit, so that we make progress even
+      // when all the permits are taken.
+      locateNextRange(acquireMasterLookupPermit());
+      for (int i = 1; i < numRanges && acquireMasterLookupPermit(); i++) {
+        locateNextRange(true);
+      }
+      return result;
+    }
+
+    /** @return the encoded hash partition key where the given range starts */
+    private byte[] rangeStart(int range) {
+      int hash = (int) ((long) range * HASH_KEY_SPACE_SIZE / numRanges);
+      return new byte[] { (byte) (hash >>> 8), (byte) hash };
+    }
+
+    private void locateNextRange(final boolean hasPermit) {
+      final int range = nextRange.getAndIncrement();
+      if (range >= numRanges || done.get()) {
+        if (hasPermit) {
+          releaseMasterLookupPermit();
+        }
+        return;
+      }
+      byte[] start = range == 0 ? null : rangeStart(range);
+      // The end key is inclusive: stop at the last hash value of the range, so that the tablet
+      // starting the next range is only returned for that one.
+      byte[] end = null;
+      if (range + 1 < numRanges) {
+        byte[] nextStart = rangeStart(range + 1);
+        int lastHash = (((nextStart[0] & 0xff) << 8) | (nextStart[1] & 0xff)) - 1;
+        end = new byte[] { (byte) (lastHash >>> 8), (byte) lastHash };
+      }
+      loopLocateTable(tableId, start, end, new ArrayList<LocatedTablet>(), deadlineTracker)
+          .addCallbacks(new Callback<Void, List<LocatedTablet>>() {
+            @Override
+            public Void call(List<LocatedTablet> tablets) {
+              synchronized (rangeTablets) {
+                rangeTablets.set(range, tablets);
+              }
+              if (remainingRanges.decrementAndGet() == 0) {
+                if (hasPermit) {
+                  releaseMasterLookupPermit();
+                }
+                finish();
+              } else {
+                locateNextRange(hasPermit);
+              }
+              return null;
+            }
+          }, new Callback<Void, Exception>() {
+            @Override
+            public Void call(Exception e) {
+              if (hasPermit) {
+                releaseMasterLookupPermit();
+              }
+              if (done.compareAndSet(false, true)) {
+                result.callback(e);
+              }
+              return null;
+            }
+          });
+    }
+
+    /**
+     * Merges the tablets of all the ranges. A tablet overlapping two ranges is returned for both,
+     * only its first occurrence is kept.
+     */
+    private void finish() {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      List<LocatedTablet> merged = new ArrayList<>();
+      Set<Slice> seen = new HashSet<>();
+      byte[] lastEndPartition = null;
+      synchronized (rangeTablets) {
+        for (List<LocatedTablet> tablets : rangeTablets) {
+          for (LocatedTablet tablet : tablets) {
+            if (!seen.add(new Slice(tablet.getTabletId()))) {
+              continue;
+            }
+            Partition partition = tablet.getPartition();
+            if (lastEndPartition != null && (lastEndPartition.length == 0 || (
+                !partition.isEndPartition()
+                && Bytes.memcmp(partition.getPartitionKeyEnd(), lastEndPartition) < 0))) {
+              result.callback(new IllegalStateException(
+                  "Server returned tablets out of order: " + "end partition key '"
+                      + Bytes.pretty(partition.getPartitionKeyEnd()) + "' followed "
+                      + "end partition key '" + Bytes.pretty(lastEndPartition) + "'"));
+              return;
+            }
+            lastEndPartition = partition.getPartitionKeyEnd();
+            merged.add(tablet);
+          }
+        }
+      }
+      result.callback(merged);
+    }
+  }
+
+  /**
+   * Loads the locations of all the tablets of a table in the tablet cache, so that the first
+   * RPCs sent to each of them don't have to look them up from the master one at a time. The
+   * master is asked for as many tablets as it returns per call, and every batch of tablets is
+   * published in the cache at once.
+   * @param table the table to locate tablets from
+   * @param deadline max time spent in milliseconds for the deferred result of this method to
+   *         get called back, if deadline is reached, the deferred result will get erred back
+   * @return a deferred object that yields the number of tablets of the table that are cached
+   */
+  public Deferred<Integer> prefetchTableLocations(final YBTable table, long deadline) {
+    checkIsClosed();
+    final DeadlineTracker deadlineTracker = new DeadlineTracker();
+    deadlineTracker.setDeadline(deadline);
+    return loopPrefetchTableLocations(table, null, deadlineTracker);
+  }
+
+  private Deferred<Integer> loopPrefetchTableLocations(final YBTable table,
+      final byte[] startPartitionKey, final DeadlineTracker deadlineTracker) {
+    if (deadlineTracker.timedOut()) {
+      return Deferred.fromError(new NonRecoverableException(
+          "Took too long prefetching the tablets of " + table.getName() + ", " + deadlineTracker));
+    }
+    final String tableId = table.getTableId();
+    GetTableLocationsRequest rpc = new GetTableLocationsRequest(masterTable, startPartitionKey,
+        null, tableId, DEFAULT_MAX_TABLETS);
+    rpc.setTimeoutMillis(defaultAdminOperationTimeoutMs);
+    return sendRpcToTablet(rpc).addCallbackDeferring(
+        new Callback<Deferred<Integer>, GetTableLocationsResponsePB>() {
+          @Override
+          public Deferred<Integer> call(GetTableLocationsResponsePB response) throws Exception {
+            if (response.hasError()) {
+              return Deferred.fromError(
+                  new NonRecoverableException(response.getError().toString()));
+            }
+            discoverTablets(table, response);
+            int count = response.getTabletLocationsCount();
+            if (count > 0) {
+              byte[] lastEndPartition = ProtobufHelper.pbToPartition(
+                  response.getTabletLocations(count - 1).getPartition()).getPartitionKeyEnd();
+              if (lastEndPartition.length > 0) {
+                return loopPrefetchTableLocations(table, lastEndPartition, deadlineTracker);
+              }
+            }
+            // Done, or the table is not served yet in which case there is nothing to cache.
+            TablePartitionIndex tablets = tabletsCache.get(tableId);
+            return Deferred.fromResult(tablets == null ? 0 : tablets.size());
+          }
+
+          @Override
+          public String toString() {
+            return "prefetch tablet locations of table " + table.getName();
+          }
+        });
+  }
+
   /**
    * We're handling a tablet server that's telling us it doesn't have the tablet we're asking for.
    * We're in the context of decode() meaning we need to either callback or retry later.
@@ -2227,44 +2616,62 @@ public class AsyncYBClient implements AutoCloseable {
       tablesNotServed.add(tableId);
       return;
     }
-    // Doing a get first instead of putIfAbsent to avoid creating unnecessary CSLMs because in
-    // the most common case the table should already be present
-    ConcurrentSkipListMap<byte[], RemoteTablet> tablets = tabletsCache.get(tableId);
-    if (tablets == null) {
-      tablets = new ConcurrentSkipListMap<>(Bytes.MEMCMP);
-      ConcurrentSkipListMap<byte[], RemoteTablet> oldTablets = tabletsCache.putIfAbsent
-          (tableId, tablets);
-      if (oldTablets != null) {
-        tablets = oldTablets;
-      }
-    }
-
-    for (MasterClientOuterClass.TabletLocationsPB tabletPb : response.getTabletLocationsList()) {
-      // Early creating the tablet so that it parses out the pb
-      RemoteTablet rt = createTabletFromPb(tableId, tabletPb);
-      Slice tabletId = rt.tabletId;
+    List<RemoteTablet> discovered =
+        new ArrayList<>(response.getTabletLocationsCount());
+    try {
+      for (MasterClientOuterClass.TabletLocationsPB tabletPb :
+               response.getTabletLocationsList()) {
+        // Early creating the tablet so that it parses out the pb
+        RemoteTablet rt = createTabletFromPb(tableId, tabletPb);
+        Slice tabletId = rt.tabletId;
+
+        // If we already know about this one, just refresh the locations
+        RemoteTablet currentTablet = tablet2client.get(tabletId);
+        if (currentTablet != null) {
+          currentTablet.refreshServers(tabletPb);
+          continue;
+        }
 
-      // If we already know about this one, just refresh the locations
-      RemoteTablet currentTablet = tablet2client.get(tabletId);
-      if (currentTablet != null) {
-        currentTablet.refreshServers(tabletPb);
-        continue;
+        // Putting it here first doesn't make it visible because tabletsCache is always looked up
+        // first.
+        RemoteTablet oldRt = tablet2client.putIfAbsent(tabletId, rt);
+        if (oldRt != null) {
+          // someone beat us to it
+          continue;
+        }
+        // Indexed even if its locations can't be resolved below, as later lookups skip the
+        // tablets that are already in tablet2client and only refresh their locations.
+        discovered.add(rt);
+        LOG.info("Discovered tablet {} for table {} with partition {}",
+                 tabletId.toString(Charset.defaultCharset()), tableName, rt.getPartition());
+        rt.refreshServers(tabletPb);
       }
+    } finally {
+      // This is making the new tablets available, all of them at once.
+      // Even if two clients were racing in this method they are putting the same RemoteTablet
+      // with the same start key in the index in the end
+      addTabletsToIndex(tableId, discovered);
+    }
+  }
 
-      // Putting it here first doesn't make it visible because tabletsCache is always looked up
-      // first.
-      RemoteTablet oldRt = tablet2client.putIfAbsent(tabletId, rt);
-      if (oldRt != null) {
-        // someone beat us to it
-        continue;
+  /**
+   * Publishes tablets in the partition index of their table, by swapping in a copy of the
+   * current index that includes them. Retries if another thread swapped the index first.
+   */
+  private void addTabletsToIndex(String tableId, List<RemoteTablet> tablets) {
+    if (tablets.isEmpty()) {
+      return;
+    }
+    while (true) {
+      TablePartitionIndex current = tabletsCache.get(tableId);
+      if (current == null) {
+        if (tabletsCache.putIfAbsent(tableId, TablePartitionIndex.EMPTY.withTablets(tablets))
+            == null) {
+          return;
+        }
+      } else if (tabletsCache.replace(tableId, current, current.withTablets(tablets))) {
+        return;
       }
-      LOG.info("Discovered tablet {} for table {} with partition {}",
-               tabletId.toString(Charset.defaultCharset()), tableName, rt.getPartition());
-      rt.refreshServers(tabletPb);
-      // This is making this tablet available
-      // Even if two clients were racing in this method they are putting the same RemoteTablet
-      // with the same start key in the CSLM in the end
-      tablets.put(rt.getPartition().getPartitionKeyStart(), rt);
     }
   }
 
@@ -2282,7 +2689,7 @@ public class AsyncYBClient implements AutoCloseable {
    * @return a tablet ID as a slice or null if not found
    */
   RemoteTablet getTablet(String tableId, byte[] partitionKey) {
-    ConcurrentSkipListMap<byte[], RemoteTablet> tablets = tabletsCache.get(tableId);
+    TablePartitionIndex tablets = tabletsCache.get(tableId);
 
     if (tablets == null) {
       return null;
@@ -2290,53 +2697,31 @@ public class AsyncYBClient implements AutoCloseable {
 
     // We currently only have one master tablet.
     if (isMasterTable(tableId)) {
-      if (tablets.firstEntry() == null) {
-        return null;
-      }
-      return tablets.firstEntry().getValue();
-    }
-
-    Map.Entry<byte[], RemoteTablet> tabletPair = tablets.floorEntry(partitionKey);
-
-    if (tabletPair == null) {
-      return null;
+      return tablets.first();
     }
 
-    Partition partition = tabletPair.getValue().getPartition();
-
-    // If the partition is not the end partition, but it doesn't include the key
-    // we are looking for, then we have not yet found the correct tablet.
-    if (!partition.isEndPartition()
-        && Bytes.memcmp(partitionKey, partition.getPartitionKeyEnd()) >= 0) {
+    if (partitionKey == null) {
       return null;
     }
-
-    return tabletPair.getValue();
+    return tablets.lookup(partitionKey);
   }
 
   RemoteTablet getFirstTablet(String tableId) {
-    ConcurrentSkipListMap<byte[], RemoteTablet> tablets = tabletsCache.get(tableId);
+    TablePartitionIndex tablets = tabletsCache.get(tableId);
     if (tablets == null) {
       return null;
     }
-    if (tablets.firstEntry() == null) {
-      return null;
-    }
-    return tablets.firstEntry().getValue();
-
+    return tablets.first();
   }
 
   RemoteTablet getTablet(String tableId, String tabletId) {
-    ConcurrentSkipListMap<byte[], RemoteTablet> tablets = tabletsCache.get(tableId);
+    TablePartitionIndex tablets = tabletsCache.get(tableId);
     if (tablets == null) {
       return null;
     }
     // We currently only have one master tablet.
     if (isMasterTable(tableId)) {
-      if (tablets.firstEntry() == null) {
-        return null;
-      }
-      return tablets.firstEntry().getValue();
+      return tablets.first();
     }
     RemoteTablet rT = this.tablet2client.get(new Slice(tabletId.getBytes()));
     return rT;
@@ -2367,7 +2752,7 @@ public class AsyncYBClient implements AutoCloseable {
    * @return A live and initialized client for the specified master server.
    */
   TabletClient newMasterClient(HostAndPort masterHostPort) {
-    String ip = getIP(masterHostPort.getHost());
+    String ip = hostResolver.resolve(masterHostPort.getHost());
     if (ip == null) {
       return null;
     }
@@ -2389,35 +2774,41 @@ public class AsyncYBClient implements AutoCloseable {
 
   TabletClient newClient(String uuid, final String host, final int port) {
     final String hostport = host + ':' + port;
-    TabletClient newClient;
-    Bootstrap clientBootstrap;
-    synchronized (ip2client) {
-      TabletClient existingClient = ip2client.get(hostport);
+    final TabletClient[] created = new TabletClient[1];
+    TabletClient client = ip2client.compute(hostport, (key, existingClient) -> {
       if (existingClient != null && existingClient.isAlive()) {
         return existingClient;
       }
-      newClient = new TabletClient(AsyncYBClient.this, uuid);
+      TabletClient newClient = new TabletClient(AsyncYBClient.this, uuid);
       newClient.setDisconnectListener(this::handleDisconnect);
-      clientBootstrap =
-        bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
-        @Override
-        protected void initChannel(SocketChannel channel) {
-          if (certFile != null) {
-            SslHandler sslHandler = createSslHandler();
-            if (sslHandler != null) {
-              channel.pipeline().addFirst("ssl", sslHandler);
-            }
-          }
-          if (defaultSocketReadTimeoutMs > 0) {
-            channel.pipeline().addLast("timeout-handler",
-              new ReadTimeoutHandler(defaultSocketReadTimeoutMs,
-                TimeUnit.MILLISECONDS));
+      // Registered before the client is published so that it can be given tablets right away.
+      client2tablets.put(newClient, ConcurrentHashMap.newKeySet());
+      created[0] = newClient;
+      return newClient;
+    });
+    if (client != created[0]) {
+      return client;
+    }
+    final TabletClient newClient = client;
+    Bootstrap clientBootstrap =
+      bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+      @Override
+      protected void initChannel(SocketChannel channel) {
+        if (certFile != null) {
+          SslHandler sslHandler = createSslHandler();
+          if (sslHandler != null) {
+            channel.pipeline().addFirst("ssl", sslHandler);
           }
-          channel.pipeline().addLast("yb-handler", newClient);
         }
-      });
-      ip2client.put(hostport, newClient);  // This is guaranteed to return null.
-    }
+        if (defaultSocketReadTimeoutMs > 0) {
+          channel.pipeline().addLast("timeout-handler",
+            new ReadTimeoutHandler(defaultSocketReadTimeoutMs,
+              TimeUnit.MILLISECONDS));
+        }
+        channel.pipeline().addLast("frame-decoder", TabletClient.newFrameDecoder());
+        channel.pipeline().addLast("yb-handler", newClient);
+      }
+    });
     InetSocketAddress remoteAddress = new InetSocketAddress(host, port);
     ChannelFuture channelFuture;
     if (clientHost != null) {
@@ -2431,7 +2822,6 @@ public class AsyncYBClient implements AutoCloseable {
         newClient.doCleanup(channelFuture.channel());
       }
     });
-    this.client2tablets.put(newClient, new ArrayList<RemoteTablet>());
     return newClient;
   }
 
@@ -2470,6 +2860,18 @@ public class AsyncYBClient implements AutoCloseable {
     // 2. Release all other resources.
     final class ReleaseResourcesCB implements Callback<ArrayList<Void>, ArrayList<Void>> {
       public ArrayList<Void> call(final ArrayList<Void> arg) {
+        for (ConditionWaiter waiter : conditionWaiters) {
+          waiter.abort(new IllegalStateException("The client to " + getMasterAddresses() +
+                                                 " was closed while waiting for a condition"));
+        }
+        if (sharedResources != null) {
+          LOG.debug("Cancelling pending timeouts, shared resources are left running");
+          for (Timeout timeout : pendingTimeouts) {
+            timeout.cancel();
+          }
+          pendingTimeouts.clear();
+          return arg;
+        }
         LOG.debug("Releasing all remaining resources");
         timer.stop();
         eventLoopGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SEC, TimeUnit.SECONDS);
@@ -2499,12 +2901,8 @@ public class AsyncYBClient implements AutoCloseable {
   private Deferred<ArrayList<Void>> disconnectEverything() {
     ArrayList<Deferred<Void>> deferreds =
         new ArrayList<Deferred<Void>>(2);
-    HashMap<String, TabletClient> ip2client_copy;
-    synchronized (ip2client) {
-      // Make a local copy so we can shutdown every Tablet Server clients
-      // without hold the lock while we iterate over the data structure.
-      ip2client_copy = new HashMap<String, TabletClient>(ip2client);
-    }
+    // Make a local copy since shutting down a client removes it from the map.
+    HashMap<String, TabletClient> ip2client_copy = new HashMap<String, TabletClient>(ip2client);
 
     for (TabletClient ts : ip2client_copy.values()) {
       deferreds.add(ts.shutdown());
@@ -2518,17 +2916,10 @@ public class AsyncYBClient implements AutoCloseable {
             // be empty since each shutdown() generates a DISCONNECTED event, which
             // causes TabletClientPipeline to call removeClientFromCache().
             HashMap<String, TabletClient> logme = null;
-            synchronized (ip2client) {
-              if (!ip2client.isEmpty()) {
-                logme = new HashMap<String, TabletClient>(ip2client);
-              }
+            if (!ip2client.isEmpty()) {
+              logme = new HashMap<String, TabletClient>(ip2client);
             }
             if (logme != null) {
-              // Putting this logging statement inside the synchronized block
-              // can lead to a deadlock, since HashMap.toString() is going to
-              // call TabletClient.toString() on each entry, and this locks the
-              // client briefly.  Other parts of the code lock clients first and
-              // the ip2client HashMap second, so this can easily deadlock.
               LOG.error("Some clients are left in the client cache and haven't"
                   + " been cleaned up: " + logme);
             }
@@ -2553,20 +2944,15 @@ public class AsyncYBClient implements AutoCloseable {
    */
   private InetSocketAddress slowSearchClientIP(final TabletClient client) {
     String hostport = null;
-    synchronized (ip2client) {
-      for (final Map.Entry<String, TabletClient> e : ip2client.entrySet()) {
-        if (e.getValue() == client) {
-          hostport = e.getKey();
-          break;
-        }
+    for (final Map.Entry<String, TabletClient> e : ip2client.entrySet()) {
+      if (e.getValue() == client) {
+        hostport = e.getKey();
+        break;
       }
     }
 
     if (hostport == null) {
-      HashMap<String, TabletClient> copy;
-      synchronized (ip2client) {
-        copy = new HashMap<String, TabletClient>(ip2client);
-      }
+      HashMap<String, TabletClient> copy = new HashMap<String, TabletClient>(ip2client);
       LOG.error("WTF?  Should never happen!  Couldn't find " + client
           + " in " + copy);
       return null;
@@ -2622,10 +3008,9 @@ public class AsyncYBClient implements AutoCloseable {
       return;
     }
 
-    TabletClient old;
-    synchronized (ip2client) {
-      old = ip2client.remove(hostport);
-    }
+    // Only remove the entry if it still maps to this client, a new connection to the same
+    // address may already have replaced it.
+    TabletClient old = ip2client.remove(hostport, client) ? client : null;
     LOG.debug("Removed from IP cache: {" + hostport + "} -> {" + client + "}");
     if (old == null) {
       // Currently we're seeing this message when masters are disconnected and the hostport we got
@@ -2637,17 +3022,11 @@ public class AsyncYBClient implements AutoCloseable {
           + " corresponding to " + remote + ".  This shouldn't happen.");
     }
 
-    ArrayList<RemoteTablet> tablets = client2tablets.remove(client);
+    Set<RemoteTablet> tablets = client2tablets.remove(client);
     if (tablets != null) {
-      // Make a copy so we don't need to synchronize on it while iterating.
-      RemoteTablet[] tablets_copy;
-      synchronized (tablets) {
-        tablets_copy = tablets.toArray(new RemoteTablet[tablets.size()]);
-        tablets = null;
-        // If any other thread still has a reference to `tablets', their
-        // updates will be lost (and we don't care).
-      }
-      for (final RemoteTablet remoteTablet : tablets_copy) {
+      // If any other thread still has a reference to `tablets', their
+      // updates will be lost (and we don't care).
+      for (final RemoteTablet remoteTablet : tablets) {
         remoteTablet.removeTabletServer(client);
       }
     }
@@ -2826,15 +3205,34 @@ public class AsyncYBClient implements AutoCloseable {
     return port;
   }
 
-  void newTimeout(final TimerTask task, final long timeout_ms) {
+  /**
+   * Schedules the task on the client's timer.
+   * @return false if the task couldn't be scheduled as the client is shutting down
+   */
+  boolean newTimeout(final TimerTask task, final long timeout_ms) {
     try {
-      timer.newTimeout(task, timeout_ms, MILLISECONDS);
+      if (sharedResources == null) {
+        timer.newTimeout(task, timeout_ms, MILLISECONDS);
+        return true;
+      }
+      if (closed) {
+        return false;
+      }
+      pendingTimeouts.add(timer.newTimeout(new TimerTask() {
+        @Override
+        public void run(Timeout timeout) throws Exception {
+          pendingTimeouts.remove(timeout);
+          task.run(timeout);
+        }
+      }, timeout_ms, MILLISECONDS));
+      return true;
     } catch (IllegalStateException e) {
       // This can happen if the timer fires just before shutdown()
       // is called from another thread, and due to how threads get
       // scheduled we tried to call newTimeout() after timer.stop().
       LOG.warn("Failed to schedule timer."
           + "  Ignore this if we're shutting down.", e);
+      return false;
     }
   }
 
@@ -2882,72 +3280,74 @@ public class AsyncYBClient implements AutoCloseable {
 
     void refreshServers(MasterClientOuterClass.TabletLocationsPB tabletLocations)
         throws NonRecoverableException {
-      synchronized (tabletServers) { // TODO not a fat lock with IP resolving in it
-        tabletServers.clear();
-        leaderIndex = NO_LEADER_INDEX;
-        List<UnknownHostException> lookupExceptions =
-            new ArrayList<>(tabletLocations.getReplicasCount());
-        for (MasterClientOuterClass.TabletLocationsPB.ReplicaPB replica :
-                 tabletLocations.getReplicasList()) {
-          List<CommonNet.HostPortPB> addresses = replica.getTsInfo().getBroadcastAddressesList();
-          if (addresses.isEmpty()) {
-            addresses = replica.getTsInfo().getPrivateRpcAddressesList();
-          }
-          if (addresses.isEmpty()) {
-            LOG.warn("Tablet server for tablet " + getTabletIdAsString() + " doesn't have any " +
-                "address");
-            continue;
-          }
-          String uuid = replica.getTsInfo().getPermanentUuid().toStringUtf8();
-          // from meta_cache.cc
-          // TODO: if the TS advertises multiple host/ports, pick the right one
-          // based on some kind of policy. For now just use the first always.
-          try {
-            addTabletClient(uuid, addresses.get(0).getHost(), addresses.get(0).getPort(),
-                replica.getRole().equals(CommonTypes.PeerRole.LEADER));
-          } catch (UnknownHostException ex) {
-            lookupExceptions.add(ex);
-          }
+      // Resolve and connect to the replicas first, so that the lock is only held to swap the
+      // list of servers and RPCs to this tablet don't wait on DNS lookups. Only hosts that were
+      // never seen before are resolved here, the others come from the resolver's cache.
+      List<TabletClient> newServers = new ArrayList<>(tabletLocations.getReplicasCount());
+      List<UnknownHostException> lookupExceptions =
+          new ArrayList<>(tabletLocations.getReplicasCount());
+      for (MasterClientOuterClass.TabletLocationsPB.ReplicaPB replica :
+               tabletLocations.getReplicasList()) {
+        List<CommonNet.HostPortPB> addresses = replica.getTsInfo().getBroadcastAddressesList();
+        if (addresses.isEmpty()) {
+          addresses = replica.getTsInfo().getPrivateRpcAddressesList();
         }
-        leaderIndex = 0;
-        if (leaderIndex == NO_LEADER_INDEX) {
-          LOG.warn("No leader provided for tablet " + getTabletIdAsString());
+        if (addresses.isEmpty()) {
+          LOG.warn("Tablet server for tablet " + getTabletIdAsString() + " doesn't have any " +
+              "address");
+          continue;
         }
-
-        // If we found a tablet that doesn't contain a single location that we can resolve, there's
-        // no point in retrying.
-        if (!lookupExceptions.isEmpty() &&
-            lookupExceptions.size() == tabletLocations.getReplicasCount()) {
-          throw new NonRecoverableException("Couldn't find any valid locations, exceptions: " +
-              lookupExceptions);
+        String uuid = replica.getTsInfo().getPermanentUuid().toStringUtf8();
+        // from meta_cache.cc
+        // TODO: if the TS advertises multiple host/ports, pick the right one
+        // based on some kind of policy. For now just use the first always.
+        try {
+          TabletClient client = getTabletClient(uuid, addresses.get(0).getHost(),
+              addresses.get(0).getPort());
+          if (replica.getRole().equals(CommonTypes.PeerRole.LEADER)) {
+            newServers.add(0, client);
+          } else {
+            newServers.add(client);
+          }
+        } catch (UnknownHostException ex) {
+          lookupExceptions.add(ex);
         }
       }
+
+      // If we found a tablet that doesn't contain a single location that we can resolve, there's
+      // no point in retrying.
+      if (!lookupExceptions.isEmpty() &&
+          lookupExceptions.size() == tabletLocations.getReplicasCount()) {
+        throw new NonRecoverableException("Couldn't find any valid locations, exceptions: " +
+            lookupExceptions);
+      }
+
+      synchronized (tabletServers) {
+        tabletServers.clear();
+        tabletServers.addAll(newServers);
+        leaderIndex = 0;
+      }
     }
 
-    // Must be called with tabletServers synchronized
-    void addTabletClient(String uuid, String host, int port, boolean isLeader)
+    /**
+     * Resolves the given host and returns a client connected to that tablet server, registering
+     * this tablet as one it serves.
+     */
+    private TabletClient getTabletClient(String uuid, String host, int port)
         throws UnknownHostException {
-      String ip = getIP(host);
+      String ip = hostResolver.resolve(host);
       if (ip == null) {
         throw new UnknownHostException("Failed to resolve the IP of `" + host + "'");
       }
-      TabletClient client = newClient(uuid, ip, port);
-
-      final ArrayList<RemoteTablet> tablets = client2tablets.get(client);
-
-      if (tablets == null) {
-        // We raced with removeClientFromCache and lost. The client we got was just disconnected.
-        // Reconnect.
-        addTabletClient(uuid, host, port, isLeader);
-      } else {
-        synchronized (tablets) {
-          if (isLeader) {
-            tabletServers.add(0, client);
-          } else {
-            tabletServers.add(client);
-          }
+      while (true) {
+        TabletClient client = newClient(uuid, ip, port);
+        final Set<RemoteTablet> tablets = client2tablets.get(client);
+        if (tablets != null) {
           tablets.add(this);
+          return client;
         }
+        // We raced with removeClientFromCache and lost. The client we got was just disconnected.
+        // Reconnect.
       }
     }
 
@@ -3090,6 +3490,9 @@ public class AsyncYBClient implements AutoCloseable {
 
     private Executor executor;
     private int workerCount = DEFAULT_WORKER_COUNT;
+    private ClientResources clientResources;
+    private int maxRpcsPerFlush = 1;
+    private long maxBytesPerFlush = 0;
 
     private int numTablets = DEFAULT_MAX_TABLETS;
 
@@ -3253,6 +3656,41 @@ public class AsyncYBClient implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Run the client on IO threads, event loop and timer shared with other clients.
+     * Optional.
+     * If provided, {@link #executor(Executor)} and {@link #workerCount(int)} are ignored and
+     * the resources are not released when the client is shut down; the caller closes them
+     * once all the clients using them are shut down.
+     * @param clientResources resources shared by the clients
+     * @return this builder
+     */
+    public AsyncYBClientBuilder clientResources(ClientResources clientResources) {
+      this.clientResources = clientResources;
+      return this;
+    }
+
+    /**
+     * Coalesce the RPCs sent on each connection into fewer flushes to the network.
+     * Optional.
+     * If enabled, RPCs are written to the connection as they are sent but only flushed once the
+     * connection's event loop has processed all the writes submitted so far, or as soon as
+     * the given number of RPCs or bytes are pending, whichever comes first. This trades a little
+     * latency for far fewer syscalls when many RPCs go to the same server concurrently.
+     * If not provided, every RPC is flushed on its own.
+     * @param maxRpcsPerFlush number of pending RPCs which forces a flush, more than 1 to enable
+     * @param maxBytesPerFlush number of pending bytes which forces a flush
+     * @return this builder
+     */
+    public AsyncYBClientBuilder writeCoalescing(int maxRpcsPerFlush, long maxBytesPerFlush) {
+      Preconditions.checkArgument(maxRpcsPerFlush > 0, "maxRpcsPerFlush should be greater than 0");
+      Preconditions.checkArgument(maxBytesPerFlush > 0,
+          "maxBytesPerFlush should be greater than 0");
+      this.maxRpcsPerFlush = maxRpcsPerFlush;
+      this.maxBytesPerFlush = maxBytesPerFlush;
+      return this;
+    }
+
     public AsyncYBClientBuilder numTablets(int numTablets) {
       Preconditions.checkArgument(numTablets > 0, "Number of tablets in a table should " +
         "be greater than 0");
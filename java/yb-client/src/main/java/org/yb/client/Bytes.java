@@ -40,6 +40,7 @@
 //
 package org.yb.client;
 
+import com.google.common.base.Throwables;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.CharsetUtil;
 import org.yb.annotations.InterfaceAudience;
@@ -48,6 +49,9 @@ import org.yb.util.Slice;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.*;
@@ -856,16 +860,12 @@ public final class Bytes {
    * their lengths.
    */
   public static int memcmp(final byte[] a, final byte[] b) {
-    final int length = Math.min(a.length, b.length);
+    final int aLength = a.length;
+    final int bLength = b.length;
     if (a == b) {  // Do this after accessing a.length and b.length
       return 0;    // in order to NPE if either a or b is null.
     }
-    for (int i = 0; i < length; i++) {
-      if (a[i] != b[i]) {
-        return (a[i] & 0xFF) - (b[i] & 0xFF);  // "promote" to unsigned.
-      }
-    }
-    return a.length - b.length;
+    return memcmp(a, 0, aLength, b, 0, bLength);
   }
 
   /**
@@ -884,13 +884,94 @@ public final class Bytes {
     if (a == b && a != null) {
       return 0;
     }
-    length += offset;
-    for (int i = offset; i < length; i++) {
-      if (a[i] != b[i]) {
-        return (a[i] & 0xFF) - (b[i] & 0xFF);  // "promote" to unsigned.
+    return memcmp(a, offset, length, b, offset, length);
+  }
+
+  /**
+   * {@code memcmp} of two ranges of byte arrays, in Java.
+   * @param a First non-{@code null} byte array to compare.
+   * @param aOffset The offset of the range of {@code a} to compare.
+   * @param aLength The length of the range of {@code a} to compare.
+   * @param b Second non-{@code null} byte array to compare.
+   * @param bOffset The offset of the range of {@code b} to compare.
+   * @param bLength The length of the range of {@code b} to compare.
+   * @return 0 if the two ranges are identical, otherwise the difference
+   * between the first two different bytes (treated as unsigned), otherwise
+   * the difference between their lengths.
+   * @throws IndexOutOfBoundsException if either array isn't large enough.
+   */
+  public static int memcmp(final byte[] a, final int aOffset, final int aLength,
+                           final byte[] b, final int bOffset, final int bLength) {
+    if (MISMATCH == null) {
+      return memcmpWords(a, aOffset, aLength, b, bOffset, bLength);
+    }
+    final int i;
+    try {
+      i = (int) MISMATCH.invokeExact(a, aOffset, aOffset + aLength, b, bOffset, bOffset + bLength);
+    } catch (Throwable t) {
+      Throwables.throwIfUnchecked(t);
+      throw new AssertionError(t);
+    }
+    if (i < 0) {
+      return 0;
+    }
+    if (i == aLength || i == bLength) {  // One range is a prefix of the other.
+      return aLength - bLength;
+    }
+    return (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);  // "promote" to unsigned.
+  }
+
+  /**
+   * {@code Arrays.mismatch(byte[], int, int, byte[], int, int)}, which compares
+   * arrays with vector instructions, or {@code null} before Java 9.
+   */
+  private static final MethodHandle MISMATCH = findMismatch();
+
+  private static MethodHandle findMismatch() {
+    try {
+      return MethodHandles.publicLookup().findStatic(Arrays.class, "mismatch",
+          MethodType.methodType(int.class, byte[].class, int.class, int.class,
+                                byte[].class, int.class, int.class));
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The {@link #memcmp(byte[], int, int, byte[], int, int)} used without
+   * {@code Arrays.mismatch}: compares 8 bytes at a time, then the remaining
+   * bytes one at a time.
+   */
+  static int memcmpWords(final byte[] a, final int aOffset, final int aLength,
+                         final byte[] b, final int bOffset, final int bLength) {
+    final int length = Math.min(aLength, bLength);
+    int i = 0;
+    for (; i <= length - 8; i += 8) {
+      final long wa = getLongBigEndian(a, aOffset + i);
+      final long wb = getLongBigEndian(b, bOffset + i);
+      if (wa != wb) {
+        // Big endian, so the highest different bit is in the first different byte.
+        i += Long.numberOfLeadingZeros(wa ^ wb) >>> 3;
+        return (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+      }
+    }
+    for (; i < length; i++) {
+      if (a[aOffset + i] != b[bOffset + i]) {
+        return (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);  // "promote" to unsigned.
       }
     }
-    return 0;
+    return aLength - bLength;
+  }
+
+  private static long getLongBigEndian(final byte[] b, final int offset) {
+    return (b[offset] & 0xFFL) << 56
+        | (b[offset + 1] & 0xFFL) << 48
+        | (b[offset + 2] & 0xFFL) << 40
+        | (b[offset + 3] & 0xFFL) << 32
+        | (b[offset + 4] & 0xFFL) << 24
+        | (b[offset + 5] & 0xFFL) << 16
+        | (b[offset + 6] & 0xFFL) << 8
+        | (b[offset + 7] & 0xFFL);
   }
 
   /**
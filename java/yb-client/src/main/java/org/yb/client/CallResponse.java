@@ -42,14 +42,18 @@ import java.util.List;
 /**
  * This class handles information received from an RPC response, providing
  * access to sidecars and decoded protobufs from the message.
+ * <p>
+ * A response wraps one complete frame, as produced by {@link TabletClient#newFrameDecoder()}, and
+ * is only valid while that frame is: the header is parsed once on construction, and the main
+ * message and sidecars are views into the frame rather than copies.
  */
 @InterfaceAudience.Private
 final class CallResponse extends DefaultByteBufHolder {
   private final RpcHeader.ResponseHeader header;
   private final int totalResponseSize;
 
-  // Non-header main message slice is generated upon request and cached.
-  private Slice message = null;
+  // Non-header main message view is generated upon request and cached.
+  private ByteBuf message = null;
 
   /**
    * Performs some sanity checks on the sizes recorded in the packet
@@ -57,12 +61,12 @@ final class CallResponse extends DefaultByteBufHolder {
    * read from yet, and will only be accessed by this class.
    *
    * Afterwards, this constructs the RpcHeader from the buffer.
-   * @param buf Channel buffer which call response reads from.
+   * @param buf Channel buffer holding one complete, length-prefixed frame.
    * @throws IllegalArgumentException If either the entire recorded packet
    * size or recorded response header PB size are not within reasonable
    * limits as defined by {@link YRpc#checkArrayLength(ByteBuf, long)}.
-   * @throws IndexOutOfBoundsException if the ChannelBuffer does not contain
-   * the amount of bytes specified by its length prefix.
+   * @throws IllegalStateException if the buffer does not contain the amount
+   * of bytes specified by its length prefix.
    */
   public CallResponse(final ByteBuf buf) {
     super(buf);
@@ -70,12 +74,15 @@ final class CallResponse extends DefaultByteBufHolder {
     this.totalResponseSize = buf.readInt();
     if (this.totalResponseSize > 0) {
       YRpc.checkArrayLength(buf, this.totalResponseSize);
-      TabletClient.ensureReadable(buf, this.totalResponseSize);
+      if (buf.readableBytes() < this.totalResponseSize) {
+        throw new IllegalStateException("Truncated RPC response: expected "
+            + this.totalResponseSize + " bytes, got " + buf.readableBytes());
+      }
 
       final int headerSize = Bytes.readVarInt32(buf);
-      final Slice headerSlice = nextBytes(buf, headerSize);
+      final ByteBuf headerBuf = nextBytes(buf, headerSize);
       RpcHeader.ResponseHeader.Builder builder = RpcHeader.ResponseHeader.newBuilder();
-      YRpc.readProtobuf(headerSlice, builder);
+      YRpc.readProtobuf(headerBuf, builder);
       this.header = builder.build();
     } else {
       this.header = null;
@@ -100,7 +107,7 @@ final class CallResponse extends DefaultByteBufHolder {
 
   /**
    * @return A slice pointing to the section of the packet reserved for the main
-   * protobuf message.
+   * protobuf message. The bytes are only copied if the frame is not backed by an array.
    * @throws IllegalArgumentException If the recorded size for the main message
    * is not within reasonable limits as defined by
    * {@link YRpc#checkArrayLength(ByteBuf, long)}.
@@ -108,20 +115,21 @@ final class CallResponse extends DefaultByteBufHolder {
    * is not valid.
    */
   public Slice getPBMessage() {
-    cacheMessage();
-    final int mainLength = this.header.getSidecarOffsetsCount() == 0 ?
-        this.message.length() : this.header.getSidecarOffsets(0);
-    if (mainLength < 0 || mainLength > this.message.length()) {
-      throw new IllegalStateException("Main protobuf message invalid. "
-          + "Length is " + mainLength + " while the size of the message "
-          + "excluding the header is " + this.message.length());
-    }
-    return subslice(this.message, 0, mainLength);
+    return toSlice(pbMessageView());
+  }
+
+  /**
+   * Same as {@link #getPBMessage()}, without copying the bytes out of the frame.
+   * @return a retained slice of the frame which the caller must release.
+   */
+  public ByteBuf getPBMessageBuffer() {
+    return pbMessageView().retain();
   }
 
   /**
    * @param sidecar The index of the sidecar to retrieve.
-   * @return A slice pointing to the desired sidecar.
+   * @return A slice pointing to the desired sidecar. The bytes are only copied if the frame is not
+   * backed by an array.
    * @throws IllegalStateException If the sidecar offsets specified in the
    * header response PB are not valid offsets for the array.
    * @throws IllegalArgumentException If the sidecar with the specified index
@@ -131,26 +139,52 @@ final class CallResponse extends DefaultByteBufHolder {
    * {@link YRpc#checkArrayLength(ByteBuf, long)}.
    */
   public Slice getSidecar(int sidecar) {
+    return toSlice(sidecarView(sidecar));
+  }
+
+  /**
+   * Same as {@link #getSidecar(int)}, without copying the bytes out of the frame.
+   * @return a retained slice of the frame which the caller must release.
+   */
+  public ByteBuf getSidecarBuffer(int sidecar) {
+    return sidecarView(sidecar).retain();
+  }
+
+  private ByteBuf pbMessageView() {
+    cacheMessage();
+    final int messageLength = this.message.readableBytes();
+    final int mainLength = this.header.getSidecarOffsetsCount() == 0 ?
+        messageLength : this.header.getSidecarOffsets(0);
+    if (mainLength < 0 || mainLength > messageLength) {
+      throw new IllegalStateException("Main protobuf message invalid. "
+          + "Length is " + mainLength + " while the size of the message "
+          + "excluding the header is " + messageLength);
+    }
+    return this.message.slice(0, mainLength);
+  }
+
+  private ByteBuf sidecarView(int sidecar) {
     cacheMessage();
 
     List<Integer> sidecarList = this.header.getSidecarOffsetsList();
-    if (sidecar < 0 || sidecar > sidecarList.size()) {
+    if (sidecar < 0 || sidecar >= sidecarList.size()) {
       throw new IllegalArgumentException("Sidecar " + sidecar
           + " not valid, response has " + sidecarList.size() + " sidecars");
     }
 
+    final int messageLength = this.message.readableBytes();
     final int prevOffset = sidecarList.get(sidecar);
     final int nextOffset = sidecar + 1 == sidecarList.size() ?
-        this.message.length() : sidecarList.get(sidecar + 1);
+        messageLength : sidecarList.get(sidecar + 1);
     final int length = nextOffset - prevOffset;
 
-    if (prevOffset < 0 || length < 0 || prevOffset + length > this.message.length()) {
+    if (prevOffset < 0 || length < 0 || prevOffset + length > messageLength) {
       throw new IllegalStateException("Sidecar " + sidecar + " invalid "
           + "(offset = " + prevOffset + ", length = " + length + "). The size "
-          + "of the message " + "excluding the header is " + this.message.length());
+          + "of the message " + "excluding the header is " + messageLength);
     }
 
-    return subslice(this.message, prevOffset, length);
+    return this.message.slice(prevOffset, length);
   }
 
   // Reads the message after the header if not read yet
@@ -161,25 +195,24 @@ final class CallResponse extends DefaultByteBufHolder {
     this.message = nextBytes(content, length);
   }
 
-  // Accounts for a parent slice's offset when making a new one with relative offsets.
-  private static Slice subslice(Slice parent, int offset, int length) {
-    return new Slice(parent.getRawArray(), parent.getRawOffset() + offset, length);
+  // Wraps the readable bytes of 'buf' into a Slice, sharing the backing array when there is one.
+  private static Slice toSlice(final ByteBuf buf) {
+    final int length = buf.readableBytes();
+    if (buf.hasArray()) {  // Zero copy.
+      return new Slice(buf.array(), buf.arrayOffset() + buf.readerIndex(), length);
+    }
+    byte[] payload = new byte[length];
+    buf.getBytes(buf.readerIndex(), payload);
+    return new Slice(payload, 0, length);
   }
 
-  // After checking the length, generates a slice for the next 'length'
-  // bytes of 'buf'.
-  private static Slice nextBytes(final ByteBuf buf, final int length) {
+  // After checking the length, returns a view of the next 'length' bytes of 'buf' and skips them.
+  private static ByteBuf nextBytes(final ByteBuf buf, final int length) {
     YRpc.checkArrayLength(buf, length);
-    byte[] payload;
-    int offset;
-    if (buf.hasArray()) {  // Zero copy.
-      payload = buf.array();
-      offset = buf.arrayOffset() + buf.readerIndex();
-    } else {  // We have to copy the entire payload out of the buffer :(
-      payload = new byte[length];
-      buf.readBytes(payload);
-      offset = 0;
+    if (buf.readableBytes() < length) {
+      throw new IllegalStateException("Truncated RPC response: expected " + length
+          + " more bytes, got " + buf.readableBytes());
     }
-    return new Slice(payload, offset, length);
+    return buf.readSlice(length);
   }
 }
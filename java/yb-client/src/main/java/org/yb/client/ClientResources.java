@@ -0,0 +1,106 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.annotations.InterfaceStability;
+import org.yb.util.SystemUtil;
+
+/**
+ * IO threads, event loop and timer which can be shared by many {@link AsyncYBClient} instances.
+ * <p>
+ * By default every client owns a private event loop group, worker pool and timer. Processes which
+ * hold many clients at once can instead create one instance of this class and pass it to
+ * {@link AsyncYBClient.AsyncYBClientBuilder#clientResources(ClientResources)}, so the total number
+ * of IO threads is fixed regardless of the number of clients.
+ * <p>
+ * The resources are owned by the caller: shutting down a client that uses them only releases
+ * the client's connections and pending timeouts. {@link #close()} must be called once all the
+ * clients using this instance have been shut down.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public class ClientResources implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ClientResources.class);
+
+  private static final int SHUTDOWN_TIMEOUT_SEC = 15;
+  private static final int TIMER_TICK_MS = 20;
+
+  private final ExecutorService executor;
+  private final EventLoopGroup eventLoopGroup;
+  private final HashedWheelTimer timer;
+
+  private volatile boolean closed;
+
+  /**
+   * Creates shared resources backed by the given number of IO threads.
+   * @param ioThreads number of event loop threads shared by all the clients
+   */
+  public ClientResources(int ioThreads) {
+    Preconditions.checkArgument(ioThreads > 0, "ioThreads should be greater than 0");
+    this.executor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder()
+            .setNameFormat("yb-nio-shared-%d")
+            .setDaemon(true)
+            .build());
+    this.eventLoopGroup = new NioEventLoopGroup(ioThreads, executor);
+    this.timer = new HashedWheelTimer(
+        new ThreadFactoryBuilder()
+            .setNameFormat("yb-timer-shared-%d")
+            .setDaemon(true)
+            .build(),
+        TIMER_TICK_MS, MILLISECONDS);
+  }
+
+  EventLoopGroup getEventLoopGroup() {
+    return eventLoopGroup;
+  }
+
+  HashedWheelTimer getTimer() {
+    return timer;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Stops the timer and the event loop. Clients still using these resources will fail all
+   * their subsequent operations.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    LOG.debug("Releasing shared client resources");
+    timer.stop();
+    eventLoopGroup.shutdownGracefully(0, SHUTDOWN_TIMEOUT_SEC, TimeUnit.SECONDS);
+    SystemUtil.forceShutdownExecutor(executor);
+  }
+}
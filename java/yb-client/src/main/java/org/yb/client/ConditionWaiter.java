@@ -0,0 +1,177 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.stumbleupon.async.Callback;
+import com.stumbleupon.async.Deferred;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.annotations.InterfaceAudience;
+
+/**
+ * Checks an {@link AsyncYBClient.Condition} until it holds, the deadline passes or too many
+ * checks fail, rescheduling itself on the client's timer in between. No thread is held while
+ * waiting, so any number of conditions can be waited for at the same time.
+ * <p>
+ * The delay between two checks grows exponentially, with jitter so that many waiters started
+ * together don't keep hitting the master at the same time.
+ */
+@InterfaceAudience.Private
+final class ConditionWaiter implements TimerTask {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConditionWaiter.class);
+
+  static final long INITIAL_DELAY_MS = 50;
+  static final long MAX_DELAY_MS = 2 * AsyncYBClient.SLEEP_TIME;
+  static final int MAX_ERRORS_TO_IGNORE = 2500;
+  private static final int LOG_ERRORS_EVERY_NUM_ITERS = 100;
+
+  private final AsyncYBClient client;
+  private final AsyncYBClient.Condition condition;
+  private final DeadlineTracker deadlineTracker;
+  private final Deferred<Boolean> result = new Deferred<>();
+  private final AtomicBoolean done = new AtomicBoolean();
+
+  private int numChecks = 0;
+  private int numErrors = 0;
+  private Exception lastException;
+
+  /**
+   * @param client the client whose timer schedules the checks
+   * @param condition the condition to wait for
+   * @param timeoutMs how long to wait for, 0 to wait until the condition holds
+   */
+  ConditionWaiter(AsyncYBClient client, AsyncYBClient.Condition condition, long timeoutMs) {
+    this.client = client;
+    this.condition = condition;
+    this.deadlineTracker = new DeadlineTracker();
+    this.deadlineTracker.setDeadline(timeoutMs);
+  }
+
+  /**
+   * Starts checking the condition.
+   * @return a Deferred that yields true once the condition holds, or false if it didn't before
+   * the deadline
+   */
+  Deferred<Boolean> start() {
+    check();
+    return result;
+  }
+
+  /**
+   * @return how long to wait before the next check of a condition that has been checked
+   * {@code numChecks} times, picked at random between half and all of an exponentially
+   * growing delay
+   */
+  static long backoffMillis(int numChecks) {
+    long delay = Math.min(MAX_DELAY_MS, INITIAL_DELAY_MS << Math.min(numChecks, 16));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  @Override
+  public void run(Timeout timeout) {
+    check();
+  }
+
+  private void check() {
+    if (done.get()) {
+      return;
+    }
+    numChecks++;
+    Deferred<Boolean> d;
+    try {
+      d = condition.get();
+    } catch (Exception e) {
+      onError(e);
+      return;
+    }
+    if (d == null) {
+      // Nothing would ever call us back, so there is nothing left to wait for.
+      abort(new IllegalStateException("The condition returned no Deferred to wait for"));
+      return;
+    }
+    d.addCallbacks(new Callback<Void, Boolean>() {
+      @Override
+      public Void call(Boolean holds) {
+        if (Boolean.TRUE.equals(holds)) {
+          complete(true);
+        } else {
+          scheduleNextCheck();
+        }
+        return null;
+      }
+    }, new Callback<Void, Exception>() {
+      @Override
+      public Void call(Exception e) {
+        onError(e);
+        return null;
+      }
+    });
+  }
+
+  private void onError(Exception e) {
+    // We will get exceptions if we cannot connect to the other end. Save them for the final
+    // debug message if we never succeed.
+    lastException = e;
+    numErrors++;
+    if (numErrors % LOG_ERRORS_EVERY_NUM_ITERS == 0) {
+      LOG.warn("Hit {} errors so far. Latest is : {}.", numErrors, e.toString());
+    }
+    if (numErrors >= MAX_ERRORS_TO_IGNORE) {
+      LOG.error("Hit too many errors, final exception is {}", e.toString());
+      fail();
+      return;
+    }
+    scheduleNextCheck();
+  }
+
+  private void scheduleNextCheck() {
+    if (deadlineTracker.timedOut()) {
+      LOG.error("Timed out waiting for operation. Final exception was {}.",
+                lastException != null ? lastException.toString() : "none");
+      fail();
+      return;
+    }
+    long delay = backoffMillis(numChecks);
+    if (deadlineTracker.hasDeadline()) {
+      // Always check one last time right at the deadline.
+      delay = Math.min(delay, deadlineTracker.getMillisBeforeDeadline());
+    }
+    if (!client.newTimeout(this, delay)) {
+      abort(new IllegalStateException(
+          "Failed to schedule the next check of the condition, the client is shutting down"));
+    }
+  }
+
+  private void fail() {
+    LOG.error("Returning failure after {} iterations, num errors = {}.", numChecks, numErrors);
+    complete(false);
+  }
+
+  /** Fails the wait with the given exception, unless it is already over. */
+  void abort(Exception e) {
+    complete(e);
+  }
+
+  private void complete(Object value) {
+    if (done.compareAndSet(false, true)) {
+      client.conditionWaitDone(this);
+      result.callback(value);
+    }
+  }
+}
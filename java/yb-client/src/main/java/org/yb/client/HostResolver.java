@@ -0,0 +1,110 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.annotations.InterfaceAudience;
+
+/**
+ * Caches the IP addresses of the hosts a client talks to.
+ * <p>
+ * The first lookup of a host is done by the caller, as there is nothing to connect to until it
+ * resolves. Later lookups return the cached address without blocking, and an address older than
+ * the refresh interval is resolved again on a separate executor, so that location discovery only
+ * waits on DNS for hosts it has never seen.
+ */
+@InterfaceAudience.Private
+final class HostResolver {
+  private static final Logger LOG = LoggerFactory.getLogger(HostResolver.class);
+
+  static final long DEFAULT_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+  // Shared by all the clients, refreshes are rare and nobody waits on them.
+  private static final Executor REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder()
+          .setNameFormat("yb-dns-refresh-%d")
+          .setDaemon(true)
+          .build());
+
+  /** Resolves a host name, returning {@code null} if it can't be resolved. */
+  interface Lookup {
+    String lookup(String host);
+  }
+
+  private static final class Entry {
+    private final String ip;
+    private final long resolvedNanos;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private Entry(String ip, long resolvedNanos) {
+      this.ip = ip;
+      this.resolvedNanos = resolvedNanos;
+    }
+  }
+
+  private final Lookup lookup;
+  private final Executor refreshExecutor;
+  private final long refreshIntervalNanos;
+  private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<>();
+
+  HostResolver(Lookup lookup) {
+    this(lookup, REFRESH_EXECUTOR, DEFAULT_REFRESH_INTERVAL_MS);
+  }
+
+  HostResolver(Lookup lookup, Executor refreshExecutor, long refreshIntervalMs) {
+    this.lookup = lookup;
+    this.refreshExecutor = refreshExecutor;
+    this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshIntervalMs);
+  }
+
+  /**
+   * Returns the IP of the given host, or {@code null} if it was never resolved and can't be
+   * resolved now. Only blocks the first time a host is looked up.
+   */
+  String resolve(String host) {
+    Entry entry = cache.get(host);
+    if (entry == null) {
+      String ip = lookup.lookup(host);
+      if (ip != null) {
+        cache.put(host, new Entry(ip, System.nanoTime()));
+      }
+      return ip;
+    }
+    if (System.nanoTime() - entry.resolvedNanos >= refreshIntervalNanos &&
+        entry.refreshing.compareAndSet(false, true)) {
+      refreshExecutor.execute(() -> refresh(host, entry));
+    }
+    return entry.ip;
+  }
+
+  private void refresh(String host, Entry entry) {
+    String ip = lookup.lookup(host);
+    if (ip == null) {
+      // Keep the last known address, the connection to it fails if the host is really gone.
+      LOG.warn("Keeping the last known IP {} of `{}', it can't be resolved", entry.ip, host);
+      ip = entry.ip;
+    } else if (!ip.equals(entry.ip)) {
+      LOG.info("IP of `{}' changed from {} to {}", host, entry.ip, ip);
+    }
+    cache.replace(host, entry, new Entry(ip, System.nanoTime()));
+  }
+}
@@ -33,24 +33,39 @@ package org.yb.client;
 
 import com.google.common.primitives.UnsignedLongs;
 import com.sangupta.murmur.Murmur2;
+import io.netty.buffer.ByteBuf;
 import org.yb.ColumnSchema;
 import org.yb.Schema;
 import org.yb.Type;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.client.PartitionSchema.HashBucketSchema;
 
-import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Utility class for encoding rows into primary and partition keys.
+ * <p>
+ * Keys are encoded into a buffer owned by the encoder, which grows as needed and is reused from
+ * one key to the next, so an encoder should be reused rather than created per row:
+ * {@link PartitionSchema#keyEncoder()} returns the encoder of the current thread. Besides the
+ * methods returning a new array, {@link #encodePartitionKey(PartialRow, PartitionSchema, ByteBuf)}
+ * appends the key to a buffer of the caller and {@link #getHashBucket} only computes a hash
+ * bucket, neither of them allocating.
  */
 @InterfaceAudience.Private
 class KeyEncoder {
 
-  private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int[] NO_BUCKETS = new int[0];
+
+  // The key being encoded is key[0, length).
+  private byte[] key = new byte[INITIAL_CAPACITY];
+  private int length = 0;
+
+  // The hash buckets of the partition key being encoded.
+  private int[] buckets = NO_BUCKETS;
 
   /**
    * Encodes the primary key of the row.
@@ -59,14 +74,14 @@ class KeyEncoder {
    * @return the encoded primary key of the row
    */
   public byte[] encodePrimaryKey(final PartialRow row) {
-    buf.reset();
+    length = 0;
 
     final Schema schema = row.getSchema();
     for (int columnIdx = 0; columnIdx < schema.getPrimaryKeyColumnCount(); columnIdx++) {
       final boolean isLast = columnIdx + 1 == schema.getPrimaryKeyColumnCount();
       encodeColumn(row, columnIdx, isLast);
     }
-    return extractByteArray();
+    return Arrays.copyOf(key, length);
   }
 
   /**
@@ -77,27 +92,56 @@ class KeyEncoder {
    * @return an encoded partition key
    */
   public byte[] encodePartitionKey(PartialRow row, PartitionSchema partitionSchema) {
-    buf.reset();
-    if (!partitionSchema.getHashBucketSchemas().isEmpty()) {
-      ByteBuffer bucketBuf = ByteBuffer.allocate(4 * partitionSchema.getHashBucketSchemas().size());
-      bucketBuf.order(ByteOrder.BIG_ENDIAN);
-
-      for (final HashBucketSchema hashBucketSchema : partitionSchema.getHashBucketSchemas()) {
-        encodeColumns(row, hashBucketSchema.getColumnIds());
-        byte[] encodedColumns = extractByteArray();
-        long hash = Murmur2.hash64(encodedColumns,
-                                   encodedColumns.length,
-                                   hashBucketSchema.getSeed());
-        int bucket = (int) UnsignedLongs.remainder(hash, hashBucketSchema.getNumBuckets());
-        bucketBuf.putInt(bucket);
-      }
+    encodePartitionKeyInternal(row, partitionSchema);
+    return Arrays.copyOf(key, length);
+  }
 
-      assert bucketBuf.arrayOffset() == 0;
-      buf.write(bucketBuf.array(), 0, bucketBuf.position());
+  /**
+   * Same as {@link #encodePartitionKey(PartialRow, PartitionSchema)}, appending the key to
+   * {@code out} instead of returning a new array.
+   *
+   * @param row the row to encode
+   * @param partitionSchema the partition schema describing the table's partitioning
+   * @param out the buffer to write the key to
+   * @return the length of the key
+   */
+  public int encodePartitionKey(PartialRow row, PartitionSchema partitionSchema, ByteBuf out) {
+    encodePartitionKeyInternal(row, partitionSchema);
+    out.writeBytes(key, 0, length);
+    return length;
+  }
+
+  /**
+   * Computes the hash bucket of the row for a hash bucket schema of its partition schema, i.e.
+   * one of the buckets at the start of its partition key, without encoding the rest of the key.
+   *
+   * @param row the row to hash
+   * @param hashBucketSchema the hash bucket schema
+   * @return the hash bucket of the row
+   */
+  public int getHashBucket(PartialRow row, HashBucketSchema hashBucketSchema) {
+    length = 0;
+    encodeColumns(row, hashBucketSchema.getColumnIds());
+    // Murmur2 only reads the first 'length' bytes, so the key can be hashed in place.
+    long hash = Murmur2.hash64(key, length, hashBucketSchema.getSeed());
+    return (int) UnsignedLongs.remainder(hash, hashBucketSchema.getNumBuckets());
+  }
+
+  private void encodePartitionKeyInternal(PartialRow row, PartitionSchema partitionSchema) {
+    final List<HashBucketSchema> hashBucketSchemas = partitionSchema.getHashBucketSchemas();
+    if (buckets.length < hashBucketSchemas.size()) {
+      buckets = new int[hashBucketSchemas.size()];
+    }
+    // Each bucket is computed from the start of the key buffer, before the key is encoded.
+    for (int i = 0; i < hashBucketSchemas.size(); i++) {
+      buckets[i] = getHashBucket(row, hashBucketSchemas.get(i));
     }
 
+    length = 0;
+    for (int i = 0; i < hashBucketSchemas.size(); i++) {
+      writeIntBigEndian(buckets[i]);
+    }
     encodeColumns(row, partitionSchema.getRangeSchema().getColumns());
-    return extractByteArray();
   }
 
   /**
@@ -145,25 +189,28 @@ class KeyEncoder {
   private void addBinaryComponent(ByteBuffer value, boolean isLast) {
     value.reset();
 
-    // TODO find a way to not have to read byte-by-byte that doesn't require extra copies. This is
-    // especially slow now that users can pass direct byte buffers.
-    while (value.hasRemaining()) {
-      byte currentByte = value.get();
-      buf.write(currentByte);
-      if (!isLast && currentByte == 0x00) {
-        // If we're a middle component of a composite key, we need to add a \x00
-        // at the end in order to separate this component from the next one. However,
-        // if we just did that, we'd have issues where a key that actually has
-        // \x00 in it would compare wrong, so we have to instead add \x00\x00, and
-        // encode \x00 as \x00\x01. -- key_encoder.h
-        buf.write(0x01);
-      }
+    if (isLast) {
+      // The last component is not escaped.
+      write(value, value.remaining());
+      return;
     }
 
-    if (!isLast) {
-      buf.write(0x00);
-      buf.write(0x00);
+    // If we're a middle component of a composite key, we need to add a \x00
+    // at the end in order to separate this component from the next one. However,
+    // if we just did that, we'd have issues where a key that actually has
+    // \x00 in it would compare wrong, so we have to instead add \x00\x00, and
+    // encode \x00 as \x00\x01. -- key_encoder.h
+    // The bytes between two \x00 are copied in bulk, which also works for direct buffers.
+    final int limit = value.limit();
+    for (int i = value.position(); i < limit; i++) {
+      if (value.get(i) == 0x00) {
+        write(value, i + 1 - value.position());
+        writeByte((byte) 0x01);
+      }
     }
+    write(value, limit - value.position());
+    writeByte((byte) 0x00);
+    writeByte((byte) 0x00);
   }
 
   /**
@@ -180,14 +227,12 @@ class KeyEncoder {
       case INT32:
       case INT64:
       case TIMESTAMP:
+        ensureCapacity(len);
         // Picking the first byte because big endian.
         byte lastByte = value[offset + (len - 1)];
-        lastByte = Bytes.xorLeftMostBit(lastByte);
-        buf.write(lastByte);
-        if (len > 1) {
-          for (int i = len - 2; i >= 0; i--) {
-            buf.write(value[offset + i]);
-          }
+        key[length++] = Bytes.xorLeftMostBit(lastByte);
+        for (int i = len - 2; i >= 0; i--) {
+          key[length++] = value[offset + i];
         }
         break;
       default:
@@ -196,13 +241,29 @@ class KeyEncoder {
     }
   }
 
-  /**
-   * Returns the encoded key, and resets the key encoder to be used for another key.
-   * @return the encoded key which has been built through calls to {@link #addComponent}
-   */
-  private byte[] extractByteArray() {
-    byte[] bytes = buf.toByteArray();
-    buf.reset();
-    return bytes;
+  private void writeByte(byte b) {
+    ensureCapacity(1);
+    key[length++] = b;
+  }
+
+  private void writeIntBigEndian(int value) {
+    ensureCapacity(4);
+    key[length++] = (byte) (value >>> 24);
+    key[length++] = (byte) (value >>> 16);
+    key[length++] = (byte) (value >>> 8);
+    key[length++] = (byte) value;
+  }
+
+  // Copies the next 'len' bytes of 'src', advancing its position.
+  private void write(ByteBuffer src, int len) {
+    ensureCapacity(len);
+    src.get(key, length, len);
+    length += len;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (length + extra > key.length) {
+      key = Arrays.copyOf(key, Math.max(key.length * 2, length + extra));
+    }
   }
 }
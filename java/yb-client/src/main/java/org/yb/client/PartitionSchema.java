@@ -31,6 +31,7 @@
 //
 package org.yb.client;
 
+import io.netty.buffer.ByteBuf;
 import org.yb.Schema;
 import org.yb.annotations.InterfaceAudience;
 import org.yb.annotations.InterfaceStability;
@@ -59,10 +60,16 @@ import java.util.List;
 @InterfaceStability.Unstable
 public class PartitionSchema {
 
+  // Encoders keep their buffers from one key to the next, one per thread so that routing rows
+  // doesn't allocate.
+  private static final ThreadLocal<KeyEncoder> KEY_ENCODER =
+      ThreadLocal.withInitial(KeyEncoder::new);
+
   private final RangeSchema rangeSchema;
   private final List<HashBucketSchema> hashBucketSchemas;
   private final boolean isSimple;
   private final HashSchema hashSchema;
+  private final boolean isHashPartitioned;
 
   /**
    * Creates a new partition schema from the range and hash bucket schemas.
@@ -76,9 +83,27 @@ public class PartitionSchema {
                   List<HashBucketSchema> hashBucketSchemas,
                   Schema schema,
                   HashSchema hashSchema) {
+    this(rangeSchema, hashBucketSchemas, schema, hashSchema, hashSchema != null);
+  }
+
+  /**
+   * Creates a new partition schema from the range and hash bucket schemas.
+   *
+   * @param rangeSchema the range schema
+   * @param hashBucketSchemas the hash bucket schemas
+   * @param schema the table schema
+   * @param hashSchema the hash schema
+   * @param isHashPartitioned whether the table is partitioned on the hash of its hash columns
+   */
+  PartitionSchema(RangeSchema rangeSchema,
+                  List<HashBucketSchema> hashBucketSchemas,
+                  Schema schema,
+                  HashSchema hashSchema,
+                  boolean isHashPartitioned) {
     this.rangeSchema = rangeSchema;
     this.hashBucketSchemas = hashBucketSchemas;
     this.hashSchema = hashSchema;
+    this.isHashPartitioned = isHashPartitioned;
 
     boolean isSimple = hashBucketSchemas.isEmpty()
         && rangeSchema.columns.size() == schema.getPrimaryKeyColumnCount();
@@ -99,7 +124,35 @@ public class PartitionSchema {
    * @return a byte array containing the encoded partition key of the row
    */
   public byte[] encodePartitionKey(PartialRow row) {
-    return new KeyEncoder().encodePartitionKey(row, this);
+    return keyEncoder().encodePartitionKey(row, this);
+  }
+
+  /**
+   * Appends the encoded partition key of the row to a buffer, without allocating.
+   * @param row the row to encode
+   * @param out the buffer to write the key to
+   * @return the length of the key
+   */
+  public int encodePartitionKey(PartialRow row, ByteBuf out) {
+    return keyEncoder().encodePartitionKey(row, this, out);
+  }
+
+  /**
+   * Returns the hash bucket of the row for one of the hash bucket schemas, without encoding the
+   * rest of its partition key.
+   * @param row the row to hash
+   * @param hashBucketSchema one of the hash bucket schemas of this partition schema
+   * @return the hash bucket of the row
+   */
+  public int getHashBucket(PartialRow row, HashBucketSchema hashBucketSchema) {
+    return keyEncoder().getHashBucket(row, hashBucketSchema);
+  }
+
+  /**
+   * @return the key encoder of the current thread
+   */
+  static KeyEncoder keyEncoder() {
+    return KEY_ENCODER.get();
   }
 
   public RangeSchema getRangeSchema() {
@@ -112,6 +165,16 @@ public class PartitionSchema {
 
   public HashSchema getHashSchema() { return hashSchema; }
 
+  /**
+   * Returns true if the partition keys of the table are the 16-bit hash of its hash columns,
+   * in which case the tablets split the [0x0000, 0xFFFF] hash space between them.
+   *
+   * @return whether the table is hash partitioned
+   */
+  public boolean isHashPartitioned() {
+    return isHashPartitioned;
+  }
+
   /**
    * Returns true if the partition schema if the partition schema does not include any hash
    * components, and the range columns match the table's primary key columns.
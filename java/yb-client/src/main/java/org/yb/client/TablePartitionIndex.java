@@ -0,0 +1,149 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.yb.annotations.InterfaceAudience;
+import org.yb.client.AsyncYBClient.RemoteTablet;
+
+/**
+ * Immutable index of the known tablets of a table, sorted by partition key start.
+ * <p>
+ * Lookups are a binary search over a plain array and take no lock. Updates never modify an
+ * index, {@link #withTablets} returns a new one that the owner swaps in atomically, so readers
+ * always see a consistent snapshot.
+ */
+@InterfaceAudience.Private
+final class TablePartitionIndex {
+
+  static final TablePartitionIndex EMPTY =
+      new TablePartitionIndex(new byte[0][], new RemoteTablet[0]);
+
+  private final byte[][] startKeys;
+  private final RemoteTablet[] tablets;
+
+  private TablePartitionIndex(byte[][] startKeys, RemoteTablet[] tablets) {
+    this.startKeys = startKeys;
+    this.tablets = tablets;
+  }
+
+  int size() {
+    return tablets.length;
+  }
+
+  /** @return the tablet with the smallest partition key start, or null if the index is empty */
+  RemoteTablet first() {
+    return tablets.length == 0 ? null : tablets[0];
+  }
+
+  /**
+   * @return the tablet with the greatest partition key start lower than or equal to the given
+   * key, or null if there is none
+   */
+  RemoteTablet floor(byte[] partitionKey) {
+    int low = 0;
+    int high = startKeys.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = Bytes.memcmp(startKeys[mid], partitionKey);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return tablets[mid];
+      }
+    }
+    return high < 0 ? null : tablets[high];
+  }
+
+  /**
+   * @return the tablet whose partition contains the given key, or null if that part of the key
+   * space is not known yet
+   */
+  RemoteTablet lookup(byte[] partitionKey) {
+    RemoteTablet tablet = floor(partitionKey);
+    if (tablet == null) {
+      return null;
+    }
+    Partition partition = tablet.getPartition();
+    // If the partition is not the end partition, but it doesn't include the key
+    // we are looking for, then we have not yet found the correct tablet.
+    if (!partition.isEndPartition()
+        && Bytes.memcmp(partitionKey, partition.getPartitionKeyEnd()) >= 0) {
+      return null;
+    }
+    return tablet;
+  }
+
+  /** @return the tablets of the index, in partition key order */
+  List<RemoteTablet> getTablets() {
+    return Collections.unmodifiableList(Arrays.asList(tablets));
+  }
+
+  /**
+   * Returns a new index holding the tablets of this one and the given ones. A given tablet
+   * replaces the one already indexed at the same partition key start, if any.
+   */
+  TablePartitionIndex withTablets(Collection<RemoteTablet> added) {
+    if (added.isEmpty()) {
+      return this;
+    }
+    List<RemoteTablet> sorted = new ArrayList<>(added);
+    sorted.sort((a, b) -> Bytes.memcmp(
+        a.getPartition().getPartitionKeyStart(), b.getPartition().getPartitionKeyStart()));
+
+    byte[][] newKeys = new byte[startKeys.length + sorted.size()][];
+    RemoteTablet[] newTablets = new RemoteTablet[newKeys.length];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < startKeys.length || j < sorted.size()) {
+      int cmp;
+      if (j == sorted.size()) {
+        cmp = -1;
+      } else if (i == startKeys.length) {
+        cmp = 1;
+      } else {
+        cmp = Bytes.memcmp(startKeys[i], sorted.get(j).getPartition().getPartitionKeyStart());
+      }
+      RemoteTablet next;
+      if (cmp < 0) {
+        next = tablets[i++];
+      } else {
+        if (cmp == 0) {
+          i++;  // Replaced by the added tablet.
+        }
+        next = sorted.get(j++);
+      }
+      byte[] key = next.getPartition().getPartitionKeyStart();
+      if (n > 0 && Bytes.memcmp(newKeys[n - 1], key) == 0) {
+        // Several added tablets share a start key, the last one wins.
+        n--;
+      }
+      newKeys[n] = key;
+      newTablets[n] = next;
+      n++;
+    }
+    if (n < newKeys.length) {
+      newKeys = Arrays.copyOf(newKeys, n);
+      newTablets = Arrays.copyOf(newTablets, n);
+    }
+    return new TablePartitionIndex(newKeys, newTablets);
+  }
+}
@@ -48,7 +48,8 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.timeout.ReadTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,7 +90,7 @@ import java.util.function.BiConsumer;
  * channel isn't connected.
  */
 @InterfaceAudience.Private
-public class TabletClient extends ReplayingDecoder<Void> {
+public class TabletClient extends MessageToMessageDecoder<ByteBuf> {
 
   public static final Logger LOG = LoggerFactory.getLogger(TabletClient.class);
 
@@ -99,6 +100,9 @@ public class TabletClient extends ReplayingDecoder<Void> {
   private static final byte[] RPC_HEADER = new byte[] { 'Y', 'B', 1 };
   public static final int CONNECTION_CTX_CALL_ID = -3;
 
+  /** Largest response frame accepted: the 4 byte length prefix plus the largest message. */
+  static final int MAX_FRAME_LENGTH = (int) ~YRpc.MAX_BYTE_ARRAY_MASK + 4;
+
   /**
    * A monotonically increasing counter for RPC IDs.
    * RPCs can be sent out from any thread, so we need an atomic integer.
@@ -108,6 +112,11 @@ public class TabletClient extends ReplayingDecoder<Void> {
    */
   private final AtomicInteger rpcid = new AtomicInteger(-1);
 
+  /** Cache of RemoteMethodPB keyed by service name, then method name. */
+  private static final ConcurrentHashMap<String,
+      ConcurrentHashMap<String, RpcHeader.RemoteMethodPB>> remoteMethods =
+      new ConcurrentHashMap<>();
+
   /**
    * The channel we're connected to.
    * This will be {@code null} while we're not connected to the TabletServer.
@@ -118,6 +127,12 @@ public class TabletClient extends ReplayingDecoder<Void> {
    */
   private volatile Channel chan;
 
+  /**
+   * Batches writes to {@link #chan} when write coalescing is enabled on the client, null otherwise.
+   * Always set before {@link #chan}.
+   */
+  private volatile WriteCoalescer writeCoalescer;
+
   /**
    * Set to {@code true} once we've disconnected from the server.
    * This way, if any thread is still trying to use this client after it's
@@ -165,9 +180,15 @@ public class TabletClient extends ReplayingDecoder<Void> {
 
       final Channel chan = this.chan;  // Volatile read.
       if (chan != null) {  // Double check if we disconnected during encode().
-        chan.writeAndFlush(serialized);
+        final WriteCoalescer coalescer = this.writeCoalescer;
+        if (coalescer != null) {
+          coalescer.write(serialized);
+        } else {
+          chan.writeAndFlush(serialized);
+        }
         return;
       }
+      serialized.release();
     }
     boolean tryagain = false;
     boolean copyOfDead;
@@ -205,8 +226,7 @@ public class TabletClient extends ReplayingDecoder<Void> {
     try {
       final RpcHeader.RequestHeader.Builder headerBuilder = RpcHeader.RequestHeader.newBuilder()
           .setCallId(rpcid)
-          .setRemoteMethod(
-              RpcHeader.RemoteMethodPB.newBuilder().setServiceName(service).setMethodName(method));
+          .setRemoteMethod(getRemoteMethod(service, method));
 
       // If any timeout is set, find the lowest non-zero one, since this will be the deadline that
       // the server must respect.
@@ -249,6 +269,25 @@ public class TabletClient extends ReplayingDecoder<Void> {
     return payload;
   }
 
+  /**
+   * Returns the immutable RemoteMethodPB for the given service and method. These are shared by all
+   * connections, so that building a request header does not have to build one on every call.
+   */
+  private static RpcHeader.RemoteMethodPB getRemoteMethod(String service, String method) {
+    ConcurrentHashMap<String, RpcHeader.RemoteMethodPB> methods = remoteMethods.get(service);
+    if (methods == null) {
+      methods = remoteMethods.computeIfAbsent(service, s -> new ConcurrentHashMap<>());
+    }
+    RpcHeader.RemoteMethodPB remoteMethod = methods.get(method);
+    if (remoteMethod == null) {
+      remoteMethod = methods.computeIfAbsent(method, m -> RpcHeader.RemoteMethodPB.newBuilder()
+          .setServiceName(service)
+          .setMethodName(m)
+          .build());
+    }
+    return remoteMethod;
+  }
+
   public Deferred<Void> shutdown() {
     // First, check whether we have RPCs in flight and cancel them.
     for (Iterator<YRpc<?>> ite = rpcs_inflight.values().iterator(); ite
@@ -312,6 +351,17 @@ public class TabletClient extends ReplayingDecoder<Void> {
   }
 
   /**
+   * Creates the handler which splits the inbound byte stream into complete responses, to be put
+   * in the pipeline right before this one. Each frame keeps its 4 byte length prefix, so that
+   * {@link #decode} only ever runs once per response no matter how many reads it arrived in.
+   */
+  static LengthFieldBasedFrameDecoder newFrameDecoder() {
+    return new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, 4, 0, 0);
+  }
+
+  /**
+   * Decodes one complete response frame.
+   * <p>
    * The reason we are suppressing the unchecked conversions is because the YRpc is coming
    * from a collection that has RPCs with different generics, and there's no way to get "decoded"
    * casted correctly. The best we can do is to rely on the RPC to decode correctly,
@@ -389,7 +439,7 @@ public class TabletClient extends ReplayingDecoder<Void> {
     if (LOG.isDebugEnabled()) {
       LOG.debug(getPeerUuidLoggingString() + "rpcid=" + rpcid
           + ", response size=" + (buf.readerIndex() - rdx) + " bytes"
-          + ", " + actualReadableBytes() + " readable bytes left"
+          + ", " + buf.readableBytes() + " readable bytes left"
           + ", rpc=" + rpc);
     }
 
@@ -560,40 +610,6 @@ public class TabletClient extends ReplayingDecoder<Void> {
     return null;
   }
 
-  /**
-   * Decodes the response of an RPC and triggers its {@link Deferred}.
-   * <p>
-   * This method is used by FrameDecoder when the channel gets
-   * disconnected.  The buffer for that channel is passed to this method in
-   * case there's anything left in it.
-   * @param ctx Unused.
-   * @param buf The buffer containing the raw RPC response.
-   * @param out output objects list.
-   *
-   */
-  @Override
-  protected void decodeLast(final ChannelHandlerContext ctx,
-                            final ByteBuf buf,
-                            final List<Object> out) {
-    // When we disconnect, decodeLast is called instead of decode.
-    // We simply check whether there's any data left in the buffer, in which
-    // case we attempt to process it.  But if there's no data left, then we
-    // don't even bother calling decode() as it'll complain that the buffer
-    // doesn't contain enough data, which unnecessarily pollutes the logs.
-    if (buf.isReadable()) {
-      try {
-        decode(ctx, buf, out);
-      } finally {
-        if (buf.isReadable()) {
-          LOG.error(getPeerUuidLoggingString() + "After decoding the last message on " + chan
-              + ", there was still some undecoded bytes in the channel's"
-              + " buffer (which are going to be lost): "
-              + buf + '=' + Bytes.pretty(buf));
-        }
-      }
-    }
-  }
-
   /**
    * Tells whether or not this handler should be used.
    * <p>
@@ -616,20 +632,6 @@ public class TabletClient extends ReplayingDecoder<Void> {
     return !dead;
   }
 
-  /**
-   * Ensures that at least a {@code nbytes} are readable from the given buffer.
-   * If there aren't enough bytes in the buffer this will raise an exception
-   * and cause the {@link ReplayingDecoder} to undo whatever we did thus far
-   * so we can wait until we read more from the socket.
-   * @param buf Buffer to check.
-   * @param nbytes Number of bytes desired.
-   */
-  static void ensureReadable(final ByteBuf buf, final int nbytes) {
-    buf.markReaderIndex();
-    buf.skipBytes(nbytes); // can puke with Throwable
-    buf.resetReaderIndex();
-  }
-
   @Override
   public void channelActive(final ChannelHandlerContext ctx) {
     final Channel chan = ctx.channel();
@@ -718,7 +720,7 @@ public class TabletClient extends ReplayingDecoder<Void> {
     } else if (cause instanceof ReadTimeoutException) {
       LOG.debug(getPeerUuidLoggingString() + "Encountered a read timeout");
       // Doing the cleanup here since we want to invalidate all the RPCs right _now_, and not let
-      // the ReplayingDecoder continue decoding through Channels.close() below.
+      // the frame decoder continue decoding through Channels.close() below.
       cleanup(c);
     } else {
       LOG.debug(getPeerUuidLoggingString() + "Unexpected exception " + cause.getMessage() +
@@ -737,6 +739,9 @@ public class TabletClient extends ReplayingDecoder<Void> {
   }
 
   public void becomeReady(Channel chan) {
+    if (ybClient.isWriteCoalescingEnabled()) {
+      this.writeCoalescer = ybClient.newWriteCoalescer(chan);
+    }
     this.chan = chan;
     sendQueuedRpcs();
   }
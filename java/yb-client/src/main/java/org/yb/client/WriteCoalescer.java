@@ -0,0 +1,118 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import org.yb.annotations.InterfaceAudience;
+
+/**
+ * Batches the writes of encoded RPCs to a channel into fewer flushes, and thus fewer syscalls.
+ * <p>
+ * Writes are handed over to the channel's event loop. A flush is scheduled behind them on the
+ * first write after the previous flush, so every RPC submitted before that flush runs goes out
+ * with it. A flush is also forced once the number of RPCs or bytes written since the last one
+ * reaches the configured limits, to bound the latency added to the first RPC of a burst.
+ * <p>
+ * All the mutable state is only touched from the event loop, so no synchronization is needed.
+ */
+@InterfaceAudience.Private
+final class WriteCoalescer {
+
+  /** Flush counters, aggregated over all the channels of a client. */
+  static final class Stats {
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rpcs = new LongAdder();
+
+    long getNumFlushes() {
+      return flushes.sum();
+    }
+
+    long getNumRpcs() {
+      return rpcs.sum();
+    }
+
+    double getRpcsPerFlush() {
+      long numFlushes = flushes.sum();
+      return numFlushes == 0 ? 0 : (double) rpcs.sum() / numFlushes;
+    }
+  }
+
+  private final Channel channel;
+  private final EventLoop eventLoop;
+  private final int maxRpcsPerFlush;
+  private final long maxBytesPerFlush;
+  private final Stats stats;
+  private final Runnable flushTask = this::flush;
+
+  private boolean flushScheduled = false;
+  private int unflushedRpcs = 0;
+  private long unflushedBytes = 0;
+
+  /**
+   * @param channel the channel to write to
+   * @param maxRpcsPerFlush number of written RPCs after which a flush is forced
+   * @param maxBytesPerFlush number of written bytes after which a flush is forced
+   * @param stats where to account flushes
+   */
+  WriteCoalescer(Channel channel, int maxRpcsPerFlush, long maxBytesPerFlush, Stats stats) {
+    this.channel = channel;
+    this.eventLoop = channel.eventLoop();
+    this.maxRpcsPerFlush = maxRpcsPerFlush;
+    this.maxBytesPerFlush = maxBytesPerFlush;
+    this.stats = stats;
+  }
+
+  /** Writes the buffer to the channel, taking ownership of it. Can be called from any thread. */
+  void write(final ByteBuf buf) {
+    if (eventLoop.inEventLoop()) {
+      doWrite(buf);
+      return;
+    }
+    try {
+      eventLoop.execute(() -> doWrite(buf));
+    } catch (RejectedExecutionException e) {
+      // The event loop is shutting down and the channel is going away with it, the RPC will be
+      // failed or retried on disconnection like any other in-flight RPC.
+      buf.release();
+    }
+  }
+
+  private void doWrite(ByteBuf buf) {
+    unflushedBytes += buf.readableBytes();
+    unflushedRpcs++;
+    channel.write(buf);
+    if (unflushedRpcs >= maxRpcsPerFlush || unflushedBytes >= maxBytesPerFlush) {
+      flush();
+    } else if (!flushScheduled) {
+      flushScheduled = true;
+      eventLoop.execute(flushTask);
+    }
+  }
+
+  private void flush() {
+    flushScheduled = false;
+    if (unflushedRpcs == 0) {
+      return;
+    }
+    stats.flushes.increment();
+    stats.rpcs.add(unflushedRpcs);
+    unflushedRpcs = 0;
+    unflushedBytes = 0;
+    channel.flush();
+  }
+}
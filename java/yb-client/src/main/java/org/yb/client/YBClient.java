@@ -1110,7 +1110,8 @@ public class YBClient implements AutoCloseable {
 
   /**
    * Helper method that loops on a condition every 500ms until it returns true or the
-   * operation times out.
+   * operation times out. Use {@link AsyncYBClient#waitForCondition} to wait without blocking the
+   * calling thread.
    * @param condition the Condition which implements a boolean get() method.
    * @param timeoutMs the amount of time, in MS, to wait.
    * @return true if the condition is true within the time frame, false otherwise.
@@ -1444,6 +1445,18 @@ public class YBClient implements AutoCloseable {
     return d.join(getDefaultAdminOperationTimeoutMs());
   }
 
+  /**
+   * It is the same as {@link AsyncYBClient#prefetchTableLocations(YBTable, long)} except that it
+   * is synchronous and uses the default admin operation timeout as deadline.
+   * @param table the table whose tablet locations to load in the cache
+   * @return the number of tablets of the table that are cached
+   */
+  public int prefetchTableLocations(final YBTable table) throws Exception {
+    Deferred<Integer> d =
+        asyncClient.prefetchTableLocations(table, getDefaultAdminOperationTimeoutMs());
+    return d.join(getDefaultAdminOperationTimeoutMs());
+  }
+
   /**
    * It is the same as {@link AsyncYBClient#setupUniverseReplication(String, Map, Set)}
    * except that it is synchronous.
@@ -1877,6 +1890,26 @@ public class YBClient implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Coalesce the RPCs sent on each connection into fewer flushes to the network.
+     * Optional.
+     * @see AsyncYBClient.AsyncYBClientBuilder#writeCoalescing(int, long)
+     */
+    public YBClientBuilder writeCoalescing(int maxRpcsPerFlush, long maxBytesPerFlush) {
+      clientBuilder.writeCoalescing(maxRpcsPerFlush, maxBytesPerFlush);
+      return this;
+    }
+
+    /**
+     * Run the client on IO threads, event loop and timer shared with other clients.
+     * Optional.
+     * @see AsyncYBClient.AsyncYBClientBuilder#clientResources(ClientResources)
+     */
+    public YBClientBuilder clientResources(ClientResources clientResources) {
+      clientBuilder.clientResources(clientResources);
+      return this;
+    }
+
     /**
      * Creates a new client that connects to the masters.
      * Doesn't block and won't throw an exception if the masters don't exist.
@@ -212,6 +212,37 @@ public class YBTable {
     return client.locateTable(tableId, startKey, endKey, deadline);
   }
 
+  /**
+   * Get all the tablets for this table, locating up to {@code parallelism} parts of the hash key
+   * space concurrently. Tables that are not hash partitioned are located sequentially.
+   * This method blocks until it gets all the tablets.
+   * @param parallelism number of hash key ranges to locate concurrently
+   * @param deadline deadline in milliseconds for this method to finish, 0 to wait for the
+   *                 client's default admin operation timeout
+   * @return a list containing the metadata and locations for each of the tablets in the
+   *         table
+   * @throws Exception
+   */
+  public List<LocatedTablet> getTabletsLocationsInParallel(
+      int parallelism, long deadline) throws Exception {
+    long timeoutMs = deadline > 0 ? deadline : client.getDefaultAdminOperationTimeoutMs();
+    return client.locateTableInParallel(this, parallelism, deadline).join(timeoutMs);
+  }
+
+  /**
+   * Asynchronously get all the tablets for this table, locating up to {@code parallelism} parts
+   * of the hash key space concurrently.
+   * @param parallelism number of hash key ranges to locate concurrently
+   * @param deadline max time spent in milliseconds for the deferred result of this method to
+   *         get called back, if deadline is reached, the deferred result will get erred back
+   * @return a {@link Deferred} object that yields a list containing the metadata and locations
+   *           for each of the tablets in the table
+   */
+  public Deferred<List<LocatedTablet>> asyncGetTabletsLocationsInParallel(
+      int parallelism, long deadline) {
+    return client.locateTableInParallel(this, parallelism, deadline);
+  }
+
   /**
    * Loop through all replicas in the table and store a mapping from tserver placement uuid to
    * a list of lists, containing the live replica count per ts, followed by the read
@@ -40,12 +40,13 @@
 //
 package org.yb.client;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.stumbleupon.async.Deferred;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yb.annotations.InterfaceAudience;
@@ -280,24 +281,75 @@ public abstract class YRpc<R> {
     }
   }
 
+  /**
+   * Parses the main protobuf message of {@code response} straight out of the response frame.
+   * Preferred over {@code readProtobuf(response.getPBMessage(), builder)} for large responses,
+   * which would otherwise be copied out of a direct buffer first.
+   */
+  static void readProtobuf(final CallResponse response,
+                           final Message.Builder builder) {
+    final ByteBuf pb = response.getPBMessageBuffer();
+    try {
+      readProtobuf(pb, builder);
+    } finally {
+      pb.release();
+    }
+  }
+
+  /**
+   * Parses the readable bytes of {@code buf} into {@code builder} without copying them out of
+   * the buffer first, whether it is heap or direct memory. Does not modify the reader index.
+   */
+  static void readProtobuf(final ByteBuf buf,
+                           final Message.Builder builder) {
+    final int length = buf.readableBytes();
+    try {
+      if (buf.hasArray()) {
+        builder.mergeFrom(buf.array(), buf.arrayOffset() + buf.readerIndex(), length);
+      } else {
+        builder.mergeFrom(CodedInputStream.newInstance(buf.nioBuffer()));
+      }
+      if (!builder.isInitialized()) {
+        throw new RuntimeException("Could not deserialize the response," +
+                " incompatible RPC? Error is: " + builder.getInitializationErrorString());
+      }
+    } catch (InvalidProtocolBufferException e) {
+      final String msg = "Invalid RPC response: length=" + length
+              + ", payload=" + Bytes.pretty(buf);
+      throw new InvalidResponseException(msg, e);
+    } catch (IOException e) {
+      throw new InvalidResponseException("Cannot read RPC response: length=" + length, e);
+    }
+  }
+
+  /**
+   * Serializes the length-prefixed header and request into a pooled direct buffer.
+   * <p>
+   * The buffer comes from the same allocator the client channels are configured with (see
+   * AsyncYBClientBuilder#createBootstrap), so the channel can write it to the socket without an
+   * extra copy. Ownership passes to the caller: the buffer is released by Netty once written, and
+   * must be released explicitly if it ends up not being written.
+   */
   static ByteBuf toChannelBuffer(Message header, Message pb) {
-    int totalSize = IPCUtil.getTotalSizeWhenWrittenDelimited(header, pb);
-    byte[] buf = new byte[totalSize+4];
-    ByteBuf chanBuf = Unpooled.wrappedBuffer(buf);
-    chanBuf.clear();
-    chanBuf.writeInt(totalSize);
-    final CodedOutputStream out = CodedOutputStream.newInstance(buf, 4, totalSize);
+    final int headerSize = header.getSerializedSize();
+    final int pbSize = pb.getSerializedSize();
+    final int totalSize = CodedOutputStream.computeRawVarint32Size(headerSize) + headerSize +
+        CodedOutputStream.computeRawVarint32Size(pbSize) + pbSize;
+    ByteBuf chanBuf = PooledByteBufAllocator.DEFAULT.directBuffer(totalSize + 4, totalSize + 4);
     try {
-      out.writeRawVarint32(header.getSerializedSize());
+      chanBuf.writeInt(totalSize);
+      final CodedOutputStream out =
+          CodedOutputStream.newInstance(chanBuf.nioBuffer(chanBuf.writerIndex(), totalSize));
+      out.writeUInt32NoTag(headerSize);
       header.writeTo(out);
-
-      out.writeRawVarint32(pb.getSerializedSize());
+      out.writeUInt32NoTag(pbSize);
       pb.writeTo(out);
       out.checkNoSpaceLeft();
-    } catch (IOException e) {
+    } catch (IOException | RuntimeException e) {
+      chanBuf.release();
       throw new NonRecoverableException("Cannot serialize the following message " + pb, e);
     }
-    chanBuf.writerIndex(buf.length);
+    chanBuf.writerIndex(totalSize + 4);
     return chanBuf;
   }
 
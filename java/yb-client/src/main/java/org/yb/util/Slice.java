@@ -35,6 +35,7 @@ import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 import com.google.common.primitives.Shorts;
 import org.yb.annotations.InterfaceAudience;
+import org.yb.client.Bytes;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -632,12 +633,7 @@ public final class Slice implements Comparable<Slice>
     if (offset == slice.offset && data == slice.data) {
       return true;
     }
-    for (int i = 0; i < length; i++) {
-      if (data[offset + i] != slice.data[slice.offset + i]) {
-        return false;
-      }
-    }
-    return true;
+    return Bytes.memcmp(data, offset, length, slice.data, slice.offset, slice.length) == 0;
   }
 
   @Override
@@ -672,15 +668,7 @@ public final class Slice implements Comparable<Slice>
       return 0;
     }
 
-    int minLength = Math.min(this.length, that.length);
-    for (int i = 0; i < minLength; i++) {
-      int thisByte = 0xFF & this.data[this.offset + i];
-      int thatByte = 0xFF & that.data[that.offset + i];
-      if (thisByte != thatByte) {
-        return (thisByte) - (thatByte);
-      }
-    }
-    return this.length - that.length;
+    return Bytes.memcmp(this.data, this.offset, this.length, that.data, that.offset, that.length);
   }
 
   /**
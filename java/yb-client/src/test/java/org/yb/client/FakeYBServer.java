@@ -0,0 +1,489 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import com.google.common.net.HostAndPort;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yb.CommonNet;
+import org.yb.CommonTypes;
+import org.yb.WireProtocol;
+import org.yb.cdc.CdcService;
+import org.yb.master.MasterClientOuterClass;
+import org.yb.master.MasterClusterOuterClass;
+import org.yb.master.MasterTypes;
+import org.yb.rpc.RpcHeader;
+import org.yb.tserver.TserverTypes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process server speaking the YB RPC protocol, which answers both as the only master and as
+ * the tablet server leading every tablet, with scripted responses. It is meant to exercise the
+ * client stack, connection handling and (de)serialization included, without a cluster.
+ * <p>
+ * GetMasterRegistration and GetTableLocations are answered out of the box, the latter from the
+ * tablets registered with {@link #addTablet}. Other methods are answered by the {@link Handler}
+ * registered for them, or rejected with ERROR_NO_SUCH_METHOD. Every reply can be delayed by a
+ * fixed latency, and every n-th call of a method can be answered with an error instead, for
+ * instance {@link Reply#cdcError} with NOT_LEADER or TABLET_NOT_FOUND to drive the client through
+ * a leader or tablet lookup.
+ */
+public class FakeYBServer implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(FakeYBServer.class);
+
+  public static final String MASTER_SERVICE = YRpc.MASTER_SERVICE_NAME;
+  public static final String TABLET_SERVER_SERVICE = YRpc.TABLET_SERVER_SERVICE_NAME;
+  public static final String CDC_SERVICE = YRpc.CDC_SERVICE_NAME;
+
+  private static final byte[] CONNECTION_HEADER = new byte[] { 'Y', 'B', 1 };
+  private static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+  /**
+   * Answers the calls of one method.
+   */
+  public interface Handler {
+    /**
+     * @param request the serialized request, only valid during the call
+     * @return the reply to send back
+     */
+    Reply handle(ByteBuf request) throws Exception;
+  }
+
+  /**
+   * A response, serialized once so that it can be sent any number of times.
+   */
+  public static final class Reply {
+    private static final byte[][] NO_SIDECARS = new byte[0][];
+
+    private final byte[] body;
+    private final byte[][] sidecars;
+    private final boolean isError;
+
+    private Reply(byte[] body, byte[][] sidecars, boolean isError) {
+      this.body = body;
+      this.sidecars = sidecars;
+      this.isError = isError;
+    }
+
+    /**
+     * @param sidecars payloads sent after the response, as a tablet server does with rows
+     */
+    public static Reply of(MessageLite response, byte[]... sidecars) {
+      return new Reply(response.toByteArray(), sidecars, false);
+    }
+
+    /**
+     * An error at the RPC layer rather than in the response.
+     */
+    public static Reply rpcError(RpcHeader.ErrorStatusPB.RpcErrorCodePB code, String message) {
+      return new Reply(RpcHeader.ErrorStatusPB.newBuilder()
+                           .setCode(code)
+                           .setMessage(message)
+                           .build()
+                           .toByteArray(),
+                       NO_SIDECARS, true);
+    }
+
+    /**
+     * A CDC error, which every CDC service response carries as its first field.
+     */
+    public static Reply cdcError(CdcService.CDCErrorPB.Code code) {
+      return firstField(CdcService.CDCErrorPB.newBuilder()
+                            .setCode(code)
+                            .setStatus(status(code.name()))
+                            .build());
+    }
+
+    /**
+     * A master error, which every master service response carries as its first field.
+     */
+    public static Reply masterError(MasterTypes.MasterErrorPB.Code code) {
+      return firstField(MasterTypes.MasterErrorPB.newBuilder()
+                            .setCode(code)
+                            .setStatus(status(code.name()))
+                            .build());
+    }
+
+    /**
+     * A tablet server error, which the tablet server service responses carry as their first
+     * field.
+     */
+    public static Reply tserverError(TserverTypes.TabletServerErrorPB.Code code) {
+      return firstField(TserverTypes.TabletServerErrorPB.newBuilder()
+                            .setCode(code)
+                            .setStatus(status(code.name()))
+                            .build());
+    }
+
+    // A response with only its first field set, so that it parses as any response type which
+    // has the error there.
+    private static Reply firstField(MessageLite error) {
+      byte[] body = new byte[CodedOutputStream.computeMessageSize(1, error)];
+      try {
+        CodedOutputStream.newInstance(body).writeMessage(1, error);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      return new Reply(body, NO_SIDECARS, false);
+    }
+
+    private static WireProtocol.AppStatusPB status(String message) {
+      return WireProtocol.AppStatusPB.newBuilder()
+          .setCode(WireProtocol.AppStatusPB.ErrorCode.RUNTIME_ERROR)
+          .setMessage(message)
+          .build();
+    }
+  }
+
+  private static final class Method {
+    final Handler handler;
+    final AtomicLong calls = new AtomicLong();
+    volatile int errorEvery;
+    volatile Reply error;
+
+    Method(Handler handler) {
+      this.handler = handler;
+    }
+  }
+
+  private final String uuid = UUID.randomUUID().toString().replace("-", "");
+  private final Map<String, Method> methods = new ConcurrentHashMap<>();
+  private final Map<String, List<MasterClientOuterClass.TabletLocationsPB>> tablets =
+      new ConcurrentHashMap<>();
+  private final AtomicLong unknownCalls = new AtomicLong();
+  private volatile long latencyNanos = 0;
+
+  private EventLoopGroup group;
+  private Channel serverChannel;
+  private HostAndPort hostAndPort;
+
+  public FakeYBServer() {
+    handle(MASTER_SERVICE, "GetMasterRegistration", request -> Reply.of(
+        MasterClusterOuterClass.GetMasterRegistrationResponsePB.newBuilder()
+            .setInstanceId(WireProtocol.NodeInstancePB.newBuilder()
+                               .setPermanentUuid(ByteString.copyFromUtf8(uuid))
+                               .setInstanceSeqno(1))
+            .setRole(CommonTypes.PeerRole.LEADER)
+            .build()));
+    handle(MASTER_SERVICE, "GetTableLocations", this::getTableLocations);
+  }
+
+  /**
+   * Starts listening on an ephemeral port of the loopback interface.
+   */
+  public synchronized FakeYBServer start() throws InterruptedException {
+    group = new NioEventLoopGroup(2);
+    serverChannel = new ServerBootstrap()
+        .group(group)
+        .channel(NioServerSocketChannel.class)
+        .childOption(ChannelOption.TCP_NODELAY, true)
+        .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+        .childHandler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            ch.pipeline().addLast("frame-decoder", new FrameDecoder());
+            ch.pipeline().addLast("dispatcher", new Dispatcher());
+          }
+        })
+        .bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+    InetSocketAddress address = (InetSocketAddress) serverChannel.localAddress();
+    hostAndPort = HostAndPort.fromParts(address.getHostString(), address.getPort());
+    LOG.info("Fake server {} listening on {}", uuid, hostAndPort);
+    return this;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (serverChannel == null) {
+      return;
+    }
+    serverChannel.close().syncUninterruptibly();
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    serverChannel = null;
+  }
+
+  /**
+   * @return the address to use as the master address of a client
+   */
+  public HostAndPort getHostAndPort() {
+    return hostAndPort;
+  }
+
+  public String getUuid() {
+    return uuid;
+  }
+
+  /**
+   * Makes this server the leader of a tablet of a table.
+   */
+  public FakeYBServer addTablet(String tableId, String tabletId,
+                                byte[] partitionKeyStart, byte[] partitionKeyEnd) {
+    MasterClientOuterClass.TabletLocationsPB location =
+        MasterClientOuterClass.TabletLocationsPB.newBuilder()
+            .setTabletId(ByteString.copyFromUtf8(tabletId))
+            .setPartition(org.yb.Common.PartitionPB.newBuilder()
+                              .setPartitionKeyStart(ByteString.copyFrom(partitionKeyStart))
+                              .setPartitionKeyEnd(ByteString.copyFrom(partitionKeyEnd)))
+            .setStale(false)
+            .addReplicas(MasterClientOuterClass.TabletLocationsPB.ReplicaPB.newBuilder()
+                             .setTsInfo(MasterClientOuterClass.TSInfoPB.newBuilder()
+                                 .setPermanentUuid(ByteString.copyFromUtf8(uuid))
+                                 .addPrivateRpcAddresses(CommonNet.HostPortPB.newBuilder()
+                                     .setHost("127.0.0.1")
+                                     .setPort(0)))
+                             .setRole(CommonTypes.PeerRole.LEADER))
+            .build();
+    tablets.computeIfAbsent(tableId, id -> new CopyOnWriteArrayList<>()).add(location);
+    return this;
+  }
+
+  /**
+   * Answers the calls of a method with the given handler, replacing any previous one.
+   */
+  public FakeYBServer handle(String service, String method, Handler handler) {
+    methods.put(key(service, method), new Method(handler));
+    return this;
+  }
+
+  /**
+   * Answers the calls of a method with the same reply.
+   */
+  public FakeYBServer reply(String service, String method, Reply reply) {
+    return handle(service, method, request -> reply);
+  }
+
+  /**
+   * Answers every {@code every}-th call of a method with {@code error} instead of calling its
+   * handler, or stops doing so if {@code every} is 0.
+   */
+  public FakeYBServer failEvery(String service, String method, int every, Reply error) {
+    Method m = methods.get(key(service, method));
+    if (m == null) {
+      throw new IllegalArgumentException("No handler for " + key(service, method));
+    }
+    m.error = error;
+    m.errorEvery = every;
+    return this;
+  }
+
+  /**
+   * Delays every reply by the given latency, without blocking the other calls.
+   */
+  public FakeYBServer setLatency(long latency, TimeUnit unit) {
+    latencyNanos = unit.toNanos(latency);
+    return this;
+  }
+
+  /**
+   * @return how many calls of a method were received, failed ones included
+   */
+  public long getNumCalls(String service, String method) {
+    Method m = methods.get(key(service, method));
+    return m == null ? 0 : m.calls.get();
+  }
+
+  /**
+   * @return how many calls were received for methods without a handler
+   */
+  public long getNumUnknownCalls() {
+    return unknownCalls.get();
+  }
+
+  private Reply getTableLocations(ByteBuf request) {
+    MasterClientOuterClass.GetTableLocationsRequestPB.Builder builder =
+        MasterClientOuterClass.GetTableLocationsRequestPB.newBuilder();
+    YRpc.readProtobuf(request, builder);
+    String tableId = builder.getTable().getTableId().toStringUtf8();
+    List<MasterClientOuterClass.TabletLocationsPB> locations = tablets.get(tableId);
+    if (locations == null) {
+      return Reply.masterError(MasterTypes.MasterErrorPB.Code.OBJECT_NOT_FOUND);
+    }
+    byte[] start = builder.getPartitionKeyStart().toByteArray();
+    MasterClientOuterClass.GetTableLocationsResponsePB.Builder response =
+        MasterClientOuterClass.GetTableLocationsResponsePB.newBuilder();
+    for (MasterClientOuterClass.TabletLocationsPB location : locations) {
+      byte[] end = location.getPartition().getPartitionKeyEnd().toByteArray();
+      // Like the master, only return the tablets at or after the requested key.
+      if (end.length == 0 || Bytes.memcmp(end, start) > 0) {
+        response.addTabletLocations(withPort(location));
+      }
+    }
+    return Reply.of(response.build());
+  }
+
+  // Tablets may be added before the server is started, when its port isn't known yet, so the
+  // port is only filled in here.
+  private MasterClientOuterClass.TabletLocationsPB withPort(
+      MasterClientOuterClass.TabletLocationsPB location) {
+    MasterClientOuterClass.TabletLocationsPB.Builder builder = location.toBuilder();
+    builder.getReplicasBuilder(0).getTsInfoBuilder().getPrivateRpcAddressesBuilder(0)
+        .setPort(hostAndPort.getPort());
+    return builder.build();
+  }
+
+  private Reply dispatch(String service, String method, ByteBuf request) {
+    Method m = methods.get(key(service, method));
+    if (m == null) {
+      unknownCalls.incrementAndGet();
+      return Reply.rpcError(RpcHeader.ErrorStatusPB.RpcErrorCodePB.ERROR_NO_SUCH_METHOD,
+                            "No handler for " + key(service, method));
+    }
+    long call = m.calls.incrementAndGet();
+    int errorEvery = m.errorEvery;
+    if (errorEvery > 0 && call % errorEvery == 0) {
+      return m.error;
+    }
+    try {
+      return m.handler.handle(request);
+    } catch (Exception e) {
+      LOG.warn("Handler of " + key(service, method) + " failed", e);
+      return Reply.rpcError(RpcHeader.ErrorStatusPB.RpcErrorCodePB.ERROR_APPLICATION,
+                            e.toString());
+    }
+  }
+
+  private static String key(String service, String method) {
+    return service + "." + method;
+  }
+
+  /**
+   * Serializes a response frame: the total size, the response header and the response, followed
+   * by the sidecars. The response and sidecars are wrapped rather than copied.
+   */
+  static ByteBuf encode(ByteBufAllocator alloc, int callId, Reply reply) throws IOException {
+    RpcHeader.ResponseHeader.Builder builder = RpcHeader.ResponseHeader.newBuilder()
+        .setCallId(callId)
+        .setIsError(reply.isError);
+    int messageSize = reply.body.length;
+    for (byte[] sidecar : reply.sidecars) {
+      builder.addSidecarOffsets(messageSize);
+      messageSize += sidecar.length;
+    }
+    RpcHeader.ResponseHeader header = builder.build();
+    int headerSize = header.getSerializedSize();
+    int prefixSize = CodedOutputStream.computeUInt32SizeNoTag(headerSize) + headerSize +
+                     CodedOutputStream.computeUInt32SizeNoTag(messageSize);
+
+    ByteBuf prefix = alloc.buffer(4 + prefixSize);
+    prefix.writeInt(prefixSize + messageSize);
+    CodedOutputStream out = CodedOutputStream.newInstance(new ByteBufOutputStream(prefix),
+                                                          prefixSize);
+    out.writeUInt32NoTag(headerSize);
+    header.writeTo(out);
+    out.writeUInt32NoTag(messageSize);
+    out.flush();
+
+    ByteBuf[] parts = new ByteBuf[2 + reply.sidecars.length];
+    parts[0] = prefix;
+    parts[1] = Unpooled.wrappedBuffer(reply.body);
+    for (int i = 0; i < reply.sidecars.length; i++) {
+      parts[2 + i] = Unpooled.wrappedBuffer(reply.sidecars[i]);
+    }
+    return Unpooled.wrappedBuffer(parts);
+  }
+
+  /**
+   * Checks the connection header, then splits the stream into request frames, without their
+   * size prefix.
+   */
+  private static final class FrameDecoder extends ByteToMessageDecoder {
+    private boolean sawConnectionHeader = false;
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+      if (!sawConnectionHeader) {
+        if (in.readableBytes() < CONNECTION_HEADER.length) {
+          return;
+        }
+        for (byte b : CONNECTION_HEADER) {
+          if (in.readByte() != b) {
+            throw new IllegalStateException("Invalid connection header from " +
+                                            ctx.channel().remoteAddress());
+          }
+        }
+        sawConnectionHeader = true;
+      }
+      if (in.readableBytes() < 4) {
+        return;
+      }
+      int size = in.getInt(in.readerIndex());
+      if (size < 0 || size > MAX_FRAME_LENGTH) {
+        throw new IllegalStateException("Invalid frame size " + size);
+      }
+      if (in.readableBytes() < 4 + size) {
+        return;
+      }
+      in.skipBytes(4);
+      out.add(in.readRetainedSlice(size));
+    }
+  }
+
+  /**
+   * Parses a request frame, runs the handler of its method and sends the reply back, after the
+   * configured latency.
+   */
+  private final class Dispatcher extends SimpleChannelInboundHandler<ByteBuf> {
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) throws Exception {
+      RpcHeader.RequestHeader.Builder header = RpcHeader.RequestHeader.newBuilder();
+      YRpc.readProtobuf(frame.readSlice(Bytes.readVarInt32(frame)), header);
+      ByteBuf request = frame.readSlice(Bytes.readVarInt32(frame));
+      RpcHeader.RemoteMethodPB method = header.getRemoteMethod();
+      Reply reply = dispatch(method.getServiceName(), method.getMethodName(), request);
+      ByteBuf response = encode(ctx.alloc(), header.getCallId(), reply);
+      long latency = latencyNanos;
+      if (latency > 0) {
+        ctx.executor().schedule(() -> ctx.writeAndFlush(response), latency,
+                                TimeUnit.NANOSECONDS);
+      } else {
+        ctx.writeAndFlush(response);
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      LOG.warn("Closing the connection from " + ctx.channel().remoteAddress(), cause);
+      ctx.close();
+    }
+  }
+}
@@ -36,6 +36,9 @@ import static org.yb.AssertionWrappers.assertEquals;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.Random;
+
+import org.yb.util.Slice;
 
 import org.yb.YBTestRunner;
 
@@ -114,4 +117,74 @@ public class TestBytes {
     Bytes.setDouble(bytes, aDouble);
     assertEquals(aDouble, Bytes.getDouble(bytes), 0.001);
   }
+
+  /** The byte by byte {@code memcmp} the word by word versions are checked against. */
+  private static int referenceMemcmp(byte[] a, int aOffset, int aLength,
+                                     byte[] b, int bOffset, int bLength) {
+    for (int i = 0; i < Math.min(aLength, bLength); i++) {
+      int diff = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return aLength - bLength;
+  }
+
+  private static void checkMemcmp(byte[] a, int aOffset, int aLength,
+                                  byte[] b, int bOffset, int bLength) {
+    int expected = referenceMemcmp(a, aOffset, aLength, b, bOffset, bLength);
+    assertEquals(expected, Bytes.memcmp(a, aOffset, aLength, b, bOffset, bLength));
+    assertEquals(expected, Bytes.memcmpWords(a, aOffset, aLength, b, bOffset, bLength));
+    Slice aSlice = new Slice(a, aOffset, aLength);
+    Slice bSlice = new Slice(b, bOffset, bLength);
+    assertEquals(expected, aSlice.compareTo(bSlice));
+    assertEquals(expected == 0, aSlice.equals(bSlice));
+  }
+
+  @Test
+  public void testMemcmp() {
+    Random random = new Random(42);
+    for (int length = 0; length <= 40; length++) {
+      byte[] a = new byte[length];
+      random.nextBytes(a);
+      byte[] b = a.clone();
+      assertEquals(0, Bytes.memcmp(a, b));
+      checkMemcmp(a, 0, length, b, 0, length);
+      // Every prefix, both ways.
+      for (int prefix = 0; prefix < length; prefix++) {
+        checkMemcmp(a, 0, prefix, b, 0, length);
+        checkMemcmp(a, 0, length, b, 0, prefix);
+      }
+      // A difference at every position, on either side of 0x80 so that signed comparisons fail.
+      for (int i = 0; i < length; i++) {
+        byte[] c = a.clone();
+        a[i] = (byte) 0x7f;
+        c[i] = (byte) 0x80;
+        // Later differences must not matter.
+        if (i + 1 < length) {
+          c[length - 1] = (byte) (a[length - 1] ^ 0xff);
+        }
+        assertEquals(-1, Integer.signum(Bytes.memcmp(a, c)));
+        assertEquals(1, Integer.signum(Bytes.memcmp(c, a)));
+        assertEquals(Integer.signum(Bytes.memcmp(a, c)),
+                     Integer.signum(Bytes.memcmp(a, c, 0, length)));
+        checkMemcmp(a, 0, length, c, 0, length);
+        checkMemcmp(c, 0, length, a, 0, length);
+      }
+    }
+
+    // Ranges at different offsets of random arrays, often with a common prefix.
+    byte[] a = new byte[64];
+    byte[] b = new byte[64];
+    for (int i = 0; i < 10000; i++) {
+      random.nextBytes(a);
+      random.nextBytes(b);
+      int aOffset = random.nextInt(24);
+      int bOffset = random.nextInt(24);
+      int aLength = random.nextInt(40);
+      int bLength = random.nextInt(40);
+      System.arraycopy(a, aOffset, b, bOffset, random.nextInt(Math.min(aLength, bLength) + 1));
+      checkMemcmp(a, aOffset, aLength, b, bOffset, bLength);
+    }
+  }
 }
@@ -0,0 +1,88 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value=YBTestRunner.class)
+public class TestClientResources {
+
+  private static final int NUM_CLIENTS = 20;
+  private static final int IO_THREADS = 2;
+
+  // Nothing listens on this port, so connection attempts fail and RPCs get retried on the timer.
+  private static final String UNREACHABLE_MASTER = "127.0.0.1:1";
+
+  private static long countThreads(String prefix) {
+    return Thread.getAllStackTraces().keySet().stream()
+        .filter(t -> t.isAlive() && t.getName().startsWith(prefix))
+        .count();
+  }
+
+  @Test
+  public void testClientsShareFixedThreadBudget() throws Exception {
+    ClientResources resources = new ClientResources(IO_THREADS);
+    List<AsyncYBClient> clients = new ArrayList<>();
+    try {
+      for (int i = 0; i < NUM_CLIENTS; i++) {
+        AsyncYBClient client = new AsyncYBClient.AsyncYBClientBuilder(UNREACHABLE_MASTER)
+            .defaultAdminOperationTimeoutMs(1000)
+            .clientResources(resources)
+            .build();
+        assertSame(resources.getEventLoopGroup(), client.getEventLoopGroup());
+        clients.add(client);
+      }
+
+      for (AsyncYBClient client : clients) {
+        try {
+          client.listTabletServers().join(1500);
+          fail("Listing tablet servers of an unreachable master should fail");
+        } catch (Exception expected) {
+        }
+      }
+
+      assertTrue(countThreads("yb-nio-shared-") <= IO_THREADS);
+      assertTrue(countThreads("yb-timer-shared-") <= 1);
+
+      // Shutting down a client does not release the resources used by the others.
+      for (AsyncYBClient client : clients) {
+        client.shutdown().join(5000);
+      }
+      assertFalse(resources.isClosed());
+      assertFalse(resources.getEventLoopGroup().isShuttingDown());
+      AsyncYBClient another = new AsyncYBClient.AsyncYBClientBuilder(UNREACHABLE_MASTER)
+          .clientResources(resources)
+          .build();
+      another.shutdown().join(5000);
+    } finally {
+      resources.close();
+    }
+    assertTrue(resources.getEventLoopGroup().isShuttingDown());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosedResourcesRejected() {
+    ClientResources resources = new ClientResources(1);
+    resources.close();
+    new AsyncYBClient.AsyncYBClientBuilder(UNREACHABLE_MASTER)
+        .clientResources(resources)
+        .build();
+  }
+}
@@ -0,0 +1,123 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import com.stumbleupon.async.Deferred;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value=YBTestRunner.class)
+public class TestConditionWaiter {
+
+  private AsyncYBClient client;
+
+  @Before
+  public void setUp() {
+    // Never contacted, the conditions below don't send any RPC.
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (client != null) {
+      client.shutdown().join(5000);
+    }
+  }
+
+  @Test
+  public void testBackoff() {
+    for (int i = 0; i < 100; i++) {
+      long first = ConditionWaiter.backoffMillis(0);
+      assertTrue(first >= ConditionWaiter.INITIAL_DELAY_MS / 2);
+      assertTrue(first <= ConditionWaiter.INITIAL_DELAY_MS);
+      long late = ConditionWaiter.backoffMillis(1000);
+      assertTrue(late >= ConditionWaiter.MAX_DELAY_MS / 2);
+      assertTrue(late <= ConditionWaiter.MAX_DELAY_MS);
+    }
+  }
+
+  @Test
+  public void testConditionMet() throws Exception {
+    AtomicInteger numChecks = new AtomicInteger();
+    Deferred<Boolean> d = client.waitForCondition(() -> {
+      // Errors are retried like the condition not holding.
+      if (numChecks.incrementAndGet() == 2) {
+        return Deferred.fromError(new IllegalStateException("injected"));
+      }
+      return Deferred.fromResult(numChecks.get() >= 4);
+    }, 30000);
+    assertTrue(d.join(30000));
+    assertEquals(4, numChecks.get());
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    long start = System.currentTimeMillis();
+    Deferred<Boolean> d = client.waitForCondition(() -> Deferred.fromResult(false), 500);
+    assertFalse(d.join(30000));
+    long elapsed = System.currentTimeMillis() - start;
+    assertTrue(elapsed >= 500);
+    assertTrue(elapsed < 5000);
+  }
+
+  @Test
+  public void testManyConcurrentWaits() throws Exception {
+    final int numWaits = 1000;
+    List<Deferred<Boolean>> waits = new ArrayList<>();
+    AtomicInteger numChecks = new AtomicInteger();
+    for (int i = 0; i < numWaits; i++) {
+      AtomicInteger checks = new AtomicInteger();
+      waits.add(client.waitForCondition(() -> {
+        numChecks.incrementAndGet();
+        return Deferred.fromResult(checks.incrementAndGet() > 3);
+      }, 30000));
+    }
+    for (boolean met : Deferred.group(waits).join(30000)) {
+      assertTrue(met);
+    }
+    assertEquals(4 * numWaits, numChecks.get());
+  }
+
+  @Test
+  public void testNullDeferredFailsWait() throws Exception {
+    Deferred<Boolean> d = client.waitForCondition(() -> null, 0);
+    try {
+      d.join(5000);
+      fail("Expected the wait to fail");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("no Deferred"));
+    }
+  }
+
+  @Test
+  public void testShutdownFailsWait() throws Exception {
+    Deferred<Boolean> d = client.waitForCondition(() -> Deferred.fromResult(false), 0);
+    client.shutdown().join(5000);
+    client = null;
+    try {
+      d.join(5000);
+      fail("Expected the wait to fail");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("closed while waiting for a condition"));
+    }
+  }
+}
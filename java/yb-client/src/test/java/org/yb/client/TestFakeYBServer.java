@@ -0,0 +1,122 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Value;
+import org.yb.YBTestRunner;
+import org.yb.cdc.CdcService;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.yb.AssertionWrappers.*;
+
+@RunWith(value=YBTestRunner.class)
+public class TestFakeYBServer {
+  private static final String TABLE_ID = "table";
+  private static final String TABLET_ID = "tablet";
+
+  private FakeYBServer server;
+  private AsyncYBClient client;
+  private YBTable table;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new FakeYBServer()
+        .addTablet(TABLE_ID, TABLET_ID, new byte[0], new byte[0])
+        .handle(FakeYBServer.CDC_SERVICE, "GetChanges", request -> {
+          CdcService.GetChangesRequestPB.Builder builder =
+              CdcService.GetChangesRequestPB.newBuilder();
+          YRpc.readProtobuf(request, builder);
+          return FakeYBServer.Reply.of(changes(builder.getTabletId().toStringUtf8()));
+        })
+        .start();
+    client = new AsyncYBClient.AsyncYBClientBuilder(server.getHostAndPort().toString()).build();
+    table = new YBTable(client, "test", TABLE_ID, null, null);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.shutdown().join(5000);
+    server.close();
+  }
+
+  private static CdcService.GetChangesResponsePB changes(String value) {
+    return CdcService.GetChangesResponsePB.newBuilder()
+        .addCdcSdkProtoRecords(CdcService.CDCSDKProtoRecordPB.newBuilder()
+            .setRowMessage(CdcService.RowMessage.newBuilder()
+                .setOp(CdcService.RowMessage.Op.INSERT)
+                .addNewTuple(Value.DatumMessagePB.newBuilder()
+                    .setColumnName("a").setDatumString(value))))
+        .setCdcSdkCheckpoint(CdcService.CDCSDKCheckpointPB.newBuilder().setTerm(1).setIndex(2))
+        .build();
+  }
+
+  private GetChangesResponse getChanges() throws Exception {
+    return client.getChangesCDCSDK(table, "stream", TABLET_ID, 0, 0, new byte[0], 0, 0, false)
+        .join(10000);
+  }
+
+  @Test
+  public void testGetChanges() throws Exception {
+    GetChangesResponse response = getChanges();
+    assertEquals(1, response.getResp().getCdcSdkProtoRecordsCount());
+    assertEquals(TABLET_ID, response.getResp().getCdcSdkProtoRecords(0).getRowMessage()
+                                .getNewTuple(0).getDatumString());
+    assertEquals(1, response.getTerm());
+    assertEquals(2, response.getIndex());
+    assertEquals(1, server.getNumCalls(FakeYBServer.CDC_SERVICE, "GetChanges"));
+  }
+
+  @Test
+  public void testErrorsAreRetried() throws Exception {
+    getChanges();
+    long lookups = server.getNumCalls(FakeYBServer.MASTER_SERVICE, "GetTableLocations");
+
+    server.failEvery(FakeYBServer.CDC_SERVICE, "GetChanges", 2,
+                     FakeYBServer.Reply.cdcError(CdcService.CDCErrorPB.Code.NOT_LEADER));
+    // The second call is rejected, then retried after looking the leader up again.
+    assertEquals(1, getChanges().getResp().getCdcSdkProtoRecordsCount());
+    assertEquals(3, server.getNumCalls(FakeYBServer.CDC_SERVICE, "GetChanges"));
+
+    server.failEvery(FakeYBServer.CDC_SERVICE, "GetChanges", 4,
+                     FakeYBServer.Reply.cdcError(CdcService.CDCErrorPB.Code.TABLET_NOT_FOUND));
+    assertEquals(1, getChanges().getResp().getCdcSdkProtoRecordsCount());
+    assertEquals(5, server.getNumCalls(FakeYBServer.CDC_SERVICE, "GetChanges"));
+    assertTrue(server.getNumCalls(FakeYBServer.MASTER_SERVICE, "GetTableLocations") > lookups);
+  }
+
+  @Test
+  public void testLatency() throws Exception {
+    getChanges();
+    server.setLatency(200, TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    getChanges();
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  public void testUnknownMethod() throws Exception {
+    try {
+      client.getTablesList().join(10000);
+      fail("ListTables has no handler");
+    } catch (NonRecoverableException e) {
+      assertTrue(e.getMessage().contains("No handler"));
+    }
+    assertEquals(1, server.getNumUnknownCalls());
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value=YBTestRunner.class)
+public class TestHostResolver {
+
+  private final Map<String, String> addresses = new HashMap<>();
+  private final List<String> lookups = new ArrayList<>();
+  // Refreshes only run when the test says so.
+  private final Queue<Runnable> refreshes = new ArrayDeque<>();
+
+  private HostResolver resolver(long refreshIntervalMs) {
+    return new HostResolver(host -> {
+      lookups.add(host);
+      return addresses.get(host);
+    }, refreshes::add, refreshIntervalMs);
+  }
+
+  @Test
+  public void testCached() {
+    HostResolver resolver = resolver(HostResolver.DEFAULT_REFRESH_INTERVAL_MS);
+    addresses.put("ts1", "10.0.0.1");
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    addresses.put("ts1", "10.0.0.2");
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    assertEquals(1, lookups.size());
+    assertTrue(refreshes.isEmpty());
+  }
+
+  @Test
+  public void testUnresolvedNotCached() {
+    HostResolver resolver = resolver(HostResolver.DEFAULT_REFRESH_INTERVAL_MS);
+    assertNull(resolver.resolve("ts1"));
+    addresses.put("ts1", "10.0.0.1");
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    assertEquals(2, lookups.size());
+  }
+
+  @Test
+  public void testRefreshedInBackground() {
+    HostResolver resolver = resolver(0);
+    addresses.put("ts1", "10.0.0.1");
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    addresses.put("ts1", "10.0.0.2");
+    // The stale address is returned, and a single refresh is queued until it runs.
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    assertEquals(1, refreshes.size());
+    assertEquals(1, lookups.size());
+    refreshes.poll().run();
+    assertEquals("10.0.0.2", resolver.resolve("ts1"));
+  }
+
+  @Test
+  public void testFailedRefreshKeepsAddress() {
+    HostResolver resolver = resolver(0);
+    addresses.put("ts1", "10.0.0.1");
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    addresses.remove("ts1");
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    refreshes.poll().run();
+    assertEquals("10.0.0.1", resolver.resolve("ts1"));
+    assertEquals(2, lookups.size());
+  }
+}
@@ -32,10 +32,13 @@
 package org.yb.client;
 
 import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertSame;
 import static org.yb.AssertionWrappers.assertTrue;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.yb.ColumnSchema;
@@ -47,7 +50,9 @@ import org.yb.Type;
 import org.yb.client.PartitionSchema.HashBucketSchema;
 import org.yb.client.PartitionSchema.RangeSchema;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.yb.YBTestRunner;
@@ -141,4 +146,111 @@ public class TestKeyEncoding {
                           'c'                   // b = "c"
                       });
   }
+
+  @Test
+  public void testEscapedComponents() {
+    KeyEncoder encoder = new KeyEncoder();
+    Schema schema = buildSchema(
+        new ColumnSchemaBuilder("a", Type.INT32).key(true),
+        new ColumnSchemaBuilder("b", Type.BINARY).key(true),
+        new ColumnSchemaBuilder("c", Type.BINARY).key(true));
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(3);
+    direct.put(new byte[]{ 1, 0, 2 }).flip();
+    PartialRow row = schema.newPartialRow();
+    row.addInt("a", 5);
+    row.addBinary("b", direct);
+    row.addBinary("c", new byte[]{ 0, 'c' });
+    byte[] expected = new byte[]{
+        (byte) 0x80, 0, 0, 5, // a = 5
+        1, 0, 1, 2, 0, 0,     // b = 1 \x00 2, escaped
+        0, 'c'                // c is the last component and isn't escaped
+    };
+    assertBytesEquals(encoder.encodePrimaryKey(row), expected);
+    // The value can be read again.
+    assertBytesEquals(encoder.encodePrimaryKey(row), expected);
+
+    // Larger than the initial buffer of the encoder.
+    byte[] large = new byte[1000];
+    Arrays.fill(large, (byte) 0);
+    PartialRow largeRow = schema.newPartialRow();
+    largeRow.addInt("a", 5);
+    largeRow.addBinary("b", large);
+    largeRow.addBinary("c", large);
+    byte[] key = encoder.encodePrimaryKey(largeRow);
+    assertEquals(4 + 2 * large.length + 2 + large.length, key.length);
+    for (int i = 4; i < 4 + 2 * large.length; i += 2) {
+      assertEquals(0, key[i]);
+      assertEquals(1, key[i + 1]);
+    }
+    assertBytesEquals(encoder.encodePrimaryKey(row), expected);
+  }
+
+  @Test
+  public void testReusableBufferAndHashBucket() {
+    KeyEncoder encoder = new KeyEncoder();
+    Schema schema = buildSchema(
+        new ColumnSchemaBuilder("a", Type.INT32).key(true),
+        new ColumnSchemaBuilder("b", Type.STRING).key(true),
+        new ColumnSchemaBuilder("c", Type.STRING).key(true));
+    HashBucketSchema first = new HashBucketSchema(ImmutableList.of(0, 1), 32, 0);
+    HashBucketSchema second = new HashBucketSchema(ImmutableList.of(2), 32, 42);
+    PartitionSchema partitionSchema =
+        new PartitionSchema(new RangeSchema(ImmutableList.of(0, 1, 2)),
+                            ImmutableList.of(first, second),
+                            schema, HashSchema.MULTI_COLUMN_HASH_SCHEMA);
+
+    ByteBuf out = Unpooled.buffer(4);
+    for (int i = 0; i < 100; i++) {
+      PartialRow row = schema.newPartialRow();
+      row.addInt("a", i);
+      row.addString("b", "b" + i);
+      row.addString("c", String.valueOf(new char[i]));
+      byte[] expected = encoder.encodePartitionKey(row, partitionSchema);
+
+      out.clear();
+      out.writeByte(0xff);
+      assertEquals(expected.length, encoder.encodePartitionKey(row, partitionSchema, out));
+      assertEquals(1 + expected.length, out.readableBytes());
+      assertEquals((byte) 0xff, out.readByte());
+      byte[] actual = new byte[expected.length];
+      out.readBytes(actual);
+      assertBytesEquals(actual, expected);
+
+      ByteBuffer buckets = ByteBuffer.wrap(expected);
+      assertEquals(buckets.getInt(0), encoder.getHashBucket(row, first));
+      assertEquals(buckets.getInt(4), encoder.getHashBucket(row, second));
+    }
+  }
+
+  @Test
+  public void testThreadEncoder() {
+    Schema schema = buildSchema(
+        new ColumnSchemaBuilder("a", Type.INT32).key(true),
+        new ColumnSchemaBuilder("b", Type.STRING).key(true));
+    HashBucketSchema hashBucketSchema = new HashBucketSchema(ImmutableList.of(0), 32, 0);
+    PartitionSchema partitionSchema =
+        new PartitionSchema(new RangeSchema(ImmutableList.of(0, 1)),
+                            ImmutableList.of(hashBucketSchema),
+                            schema, HashSchema.MULTI_COLUMN_HASH_SCHEMA);
+    assertSame(PartitionSchema.keyEncoder(), PartitionSchema.keyEncoder());
+
+    ByteBuf out = Unpooled.buffer(4);
+    for (int i = 0; i < 10; i++) {
+      PartialRow row = schema.newPartialRow();
+      row.addInt("a", i);
+      row.addString("b", "b" + i);
+      byte[] expected = new KeyEncoder().encodePartitionKey(row, partitionSchema);
+      assertBytesEquals(partitionSchema.encodePartitionKey(row), expected);
+      assertBytesEquals(row.encodePrimaryKey(), new KeyEncoder().encodePrimaryKey(row));
+
+      out.clear();
+      assertEquals(expected.length, partitionSchema.encodePartitionKey(row, out));
+      byte[] actual = new byte[expected.length];
+      out.readBytes(actual);
+      assertBytesEquals(actual, expected);
+      assertEquals(ByteBuffer.wrap(expected).getInt(0),
+                   partitionSchema.getHashBucket(row, hashBucketSchema));
+    }
+  }
 }
@@ -0,0 +1,158 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import com.google.protobuf.ByteString;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.Common;
+import org.yb.CommonNet;
+import org.yb.CommonTypes;
+import org.yb.YBTestRunner;
+import org.yb.client.AsyncYBClient.RemoteTablet;
+import org.yb.master.MasterClientOuterClass;
+import org.yb.master.MasterClientOuterClass.GetTableLocationsResponsePB;
+import org.yb.master.MasterClientOuterClass.TabletLocationsPB;
+import org.yb.util.Slice;
+
+@RunWith(value=YBTestRunner.class)
+public class TestTablePartitionIndex {
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private AsyncYBClient client;
+
+  @Before
+  public void setUp() {
+    // Never contacted, only needed to create RemoteTablets.
+    client = new AsyncYBClient.AsyncYBClientBuilder("127.0.0.1:1").build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.shutdown().join(5000);
+  }
+
+  private RemoteTablet tablet(String id, byte[] start, byte[] end) {
+    return client.new RemoteTablet("table", new Slice(id.getBytes()),
+        new Partition(start, end, Collections.<Integer>emptyList()));
+  }
+
+  private static byte[] key(int b) {
+    return new byte[] { (byte) b };
+  }
+
+  @Test
+  public void testLookup() {
+    RemoteTablet t1 = tablet("t1", EMPTY, key(0x40));
+    RemoteTablet t2 = tablet("t2", key(0x40), key(0x80));
+    RemoteTablet t4 = tablet("t4", key(0xc0), EMPTY);
+    // Out of order on purpose, and with a hole between 0x80 and 0xc0.
+    TablePartitionIndex index = TablePartitionIndex.EMPTY.withTablets(Arrays.asList(t4, t1, t2));
+
+    assertEquals(3, index.size());
+    assertSame(t1, index.first());
+    assertSame(t1, index.lookup(EMPTY));
+    assertSame(t1, index.lookup(key(0x3f)));
+    assertSame(t2, index.lookup(key(0x40)));
+    assertSame(t2, index.lookup(new byte[] { 0x40, 0x01 }));
+    assertNull(index.lookup(key(0x90)));
+    assertSame(t2, index.floor(key(0x90)));
+    assertSame(t4, index.lookup(key(0xc0)));
+    assertSame(t4, index.lookup(key(0xff)));
+    assertEquals(Arrays.asList(t1, t2, t4), index.getTablets());
+  }
+
+  @Test
+  public void testWithTabletsIsCopyOnWrite() {
+    RemoteTablet t1 = tablet("t1", EMPTY, key(0x80));
+    RemoteTablet t2 = tablet("t2", key(0x80), EMPTY);
+    TablePartitionIndex before = TablePartitionIndex.EMPTY.withTablets(Arrays.asList(t1, t2));
+
+    // The first tablet got split.
+    RemoteTablet t1a = tablet("t1a", EMPTY, key(0x40));
+    RemoteTablet t1b = tablet("t1b", key(0x40), key(0x80));
+    TablePartitionIndex after = before.withTablets(Arrays.asList(t1b, t1a));
+
+    assertEquals(Arrays.asList(t1, t2), before.getTablets());
+    assertEquals(Arrays.asList(t1a, t1b, t2), after.getTablets());
+    assertSame(t1b, after.lookup(key(0x50)));
+    assertSame(t1, before.lookup(key(0x50)));
+    assertSame(after, after.withTablets(Collections.<RemoteTablet>emptyList()));
+    assertEquals(0, TablePartitionIndex.EMPTY.size());
+    assertNull(TablePartitionIndex.EMPTY.first());
+    assertNull(TablePartitionIndex.EMPTY.lookup(EMPTY));
+  }
+
+  private static TabletLocationsPB tabletLocations(String id, byte[] start, byte[] end,
+                                                   String host) {
+    TabletLocationsPB.Builder tabletPb = TabletLocationsPB.newBuilder()
+        .setTabletId(ByteString.copyFromUtf8(id))
+        .setStale(false)
+        .setPartition(Common.PartitionPB.newBuilder()
+            .setPartitionKeyStart(ByteString.copyFrom(start))
+            .setPartitionKeyEnd(ByteString.copyFrom(end)));
+    if (host != null) {
+      tabletPb.addReplicas(TabletLocationsPB.ReplicaPB.newBuilder()
+          .setRole(CommonTypes.PeerRole.LEADER)
+          .setTsInfo(MasterClientOuterClass.TSInfoPB.newBuilder()
+              .setPermanentUuid(ByteString.copyFromUtf8("uuid-" + id))
+              .addPrivateRpcAddresses(
+                  CommonNet.HostPortPB.newBuilder().setHost(host).setPort(1))));
+    }
+    return tabletPb.build();
+  }
+
+  @Test
+  public void testDiscoverTabletsFailingMidBatch() throws Exception {
+    YBTable table = new YBTable(client, "table", "table", null, null);
+    client.setHostResolver(new HostResolver(host -> null));
+    // The locations of the second tablet can't be resolved, so the third one isn't reached.
+    GetTableLocationsResponsePB response = GetTableLocationsResponsePB.newBuilder()
+        .addTabletLocations(tabletLocations("t1", EMPTY, key(0x40), null))
+        .addTabletLocations(
+            tabletLocations("t2", key(0x40), key(0x80), "unresolvable-host"))
+        .addTabletLocations(tabletLocations("t3", key(0x80), EMPTY, null))
+        .build();
+    try {
+      client.discoverTablets(table, response);
+      fail("Expected the unresolvable tablet to fail the discovery");
+    } catch (NonRecoverableException e) {
+      assertTrue(e.getMessage().contains("unresolvable-host"));
+    }
+    // The tablets registered before the failure are indexed, so their key ranges are found.
+    assertEquals("t1", tabletId(client.getTablet("table", key(0x10))));
+    assertEquals("t2", tabletId(client.getTablet("table", key(0x50))));
+    assertNull(client.getTablet("table", key(0x90)));
+
+    // A later lookup refreshes the known tablets and indexes the rest.
+    client.discoverTablets(table, GetTableLocationsResponsePB.newBuilder()
+        .addTabletLocations(tabletLocations("t1", EMPTY, key(0x40), null))
+        .addTabletLocations(tabletLocations("t2", key(0x40), key(0x80), null))
+        .addTabletLocations(tabletLocations("t3", key(0x80), EMPTY, null))
+        .build());
+    assertEquals("t2", tabletId(client.getTablet("table", key(0x50))));
+    assertEquals("t3", tabletId(client.getTablet("table", key(0x90))));
+  }
+
+  private static String tabletId(RemoteTablet tablet) {
+    return tablet.getTabletIdAsString();
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package org.yb.client;
+
+import static org.yb.AssertionWrappers.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value=YBTestRunner.class)
+public class TestWriteCoalescer {
+
+  private static ByteBuf rpc(int size) {
+    return Unpooled.buffer(size).writerIndex(size);
+  }
+
+  private static int drainOutbound(EmbeddedChannel channel) {
+    int count = 0;
+    ByteBuf buf;
+    while ((buf = channel.readOutbound()) != null) {
+      buf.release();
+      count++;
+    }
+    return count;
+  }
+
+  @Test
+  public void testFlushOnEventLoopTick() {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    WriteCoalescer.Stats stats = new WriteCoalescer.Stats();
+    WriteCoalescer coalescer = new WriteCoalescer(channel, 100, 1 << 20, stats);
+
+    coalescer.write(rpc(10));
+    coalescer.write(rpc(10));
+    coalescer.write(rpc(10));
+    // Nothing is flushed until the event loop runs the scheduled flush.
+    assertEquals(0, drainOutbound(channel));
+
+    channel.runPendingTasks();
+    assertEquals(3, drainOutbound(channel));
+    assertEquals(1L, stats.getNumFlushes());
+    assertEquals(3L, stats.getNumRpcs());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testFlushOnThresholds() {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    WriteCoalescer.Stats stats = new WriteCoalescer.Stats();
+    WriteCoalescer coalescer = new WriteCoalescer(channel, 2, 100, stats);
+
+    coalescer.write(rpc(10));
+    coalescer.write(rpc(10));
+    assertEquals(2, drainOutbound(channel));
+
+    coalescer.write(rpc(150));
+    assertEquals(1, drainOutbound(channel));
+    assertEquals(2L, stats.getNumFlushes());
+
+    // The flush scheduled by the first write finds nothing left to do.
+    channel.runPendingTasks();
+    assertEquals(2L, stats.getNumFlushes());
+    assertEquals(1.5, stats.getRpcsPerFlush(), 0.001);
+    channel.finishAndReleaseAll();
+  }
+}
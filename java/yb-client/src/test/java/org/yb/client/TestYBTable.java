@@ -182,6 +182,22 @@ public class TestYBTable extends BaseYBClientTest {
     }
   }
 
+  @Test
+  public void testGetTabletsLocationsInParallel() throws Exception {
+    String tableName = BASE_TABLE_NAME + System.currentTimeMillis();
+    YBTable table = BaseYBClientTest.createTable(tableName, schema,
+        new CreateTableOptions().setNumTablets(24));
+    assertTrue(table.getPartitionSchema().isHashPartitioned());
+
+    List<LocatedTablet> sequential = table.getTabletsLocations(DEFAULT_SLEEP);
+    // 5 ranges don't line up with the tablet boundaries, so some tablets span two ranges.
+    List<LocatedTablet> parallel = table.getTabletsLocationsInParallel(5, DEFAULT_SLEEP);
+    assertEquals(24, parallel.size());
+    for (int i = 0; i < sequential.size(); i++) {
+      assertArrayEquals(sequential.get(i).getTabletId(), parallel.get(i).getTabletId());
+    }
+  }
+
   public byte[] getKeyInBytes(int i) {
     PartialRow row = schema.newPartialRow();
     row.addInt(0, i);
@@ -14,6 +14,7 @@
 package com.yugabyte.sample.apps;
 
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -30,6 +31,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -535,6 +538,25 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
    */
   public long doWrite(int threadIdx) { return 0; }
 
+  /**
+   * Asynchronous version of doRead(), used by the open-loop driver. Apps that can issue their
+   * reads asynchronously should override it, the default does the read synchronously.
+   * @return the completion of the read, with the number of reads done.
+   */
+  public CompletionStage<Long> doReadAsync() {
+    return CompletableFuture.completedFuture(doRead());
+  }
+
+  /**
+   * Asynchronous version of doWrite(), used by the open-loop driver. Apps that can issue their
+   * writes asynchronously should override it, the default does the write synchronously.
+   * @return the completion of the write, with the number of writes done.
+   * @param threadIdx index of thread that invoked this write.
+   */
+  public CompletionStage<Long> doWriteAsync(int threadIdx) {
+    return CompletableFuture.completedFuture(doWrite(threadIdx));
+  }
+
   /**
    * This call should implement the main logic in non-OLTP apps. Not called for OLTP apps.
    */
@@ -611,6 +633,16 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
         metricsTracker.createMetric(MetricName.Read);
         metricsTracker.createMetric(MetricName.Write);
         metricsTracker.registerStatusMessageAppender(this);
+        try {
+          if (appConfig.metricsOutputFile != null) {
+            metricsTracker.setOutput(appConfig.metricsOutputFile, appConfig.metricsOutputFormat);
+          }
+          if (appConfig.metricsHttpPort >= 0) {
+            metricsTracker.startHttpServer(appConfig.metricsHttpPort);
+          }
+        } catch (IOException e) {
+          throw new IllegalArgumentException("Failed to export metrics", e);
+        }
         metricsTracker.start();
       }
     }
@@ -713,6 +745,56 @@ public abstract class AppBase implements MetricsTracker.StatusMessageAppender {
     }
   }
 
+  /**
+   * Called by the open-loop driver to issue a write operation scheduled at the given time. The
+   * latency of the write is measured from that time rather than from when it was issued, so that
+   * the time spent waiting behind slow operations is accounted for.
+   * @param threadIdx index of thread that invoked this write.
+   * @param intendedStartNanos the System.nanoTime() at which the write was scheduled.
+   * @return the completion of the write, or null if the workload has finished.
+   */
+  public CompletionStage<Long> performWriteAsync(int threadIdx, long intendedStartNanos) {
+    if (appConfig.numKeysToWrite >= 0 && numKeysWritten.get() >= appConfig.numKeysToWrite
+        || isOutOfTime()) {
+      hasFinished.set(true);
+      return null;
+    }
+    return doWriteAsync(threadIdx).thenApply(count -> {
+      long endTs = System.nanoTime();
+      if (count > 0) {
+        numKeysWritten.addAndGet(count);
+        if (metricsTracker != null) {
+          metricsTracker.getMetric(MetricName.Write).accumulate(count, endTs - intendedStartNanos);
+        }
+      }
+      return count;
+    });
+  }
+
+  /**
+   * Called by the open-loop driver to issue a read operation scheduled at the given time. The
+   * latency of the read is measured from that time, see performWriteAsync().
+   * @param intendedStartNanos the System.nanoTime() at which the read was scheduled.
+   * @return the completion of the read, or null if the workload has finished.
+   */
+  public CompletionStage<Long> performReadAsync(long intendedStartNanos) {
+    if (appConfig.numKeysToRead >= 0 && numKeysRead.get() >= appConfig.numKeysToRead
+        || isOutOfTime()) {
+      hasFinished.set(true);
+      return null;
+    }
+    return doReadAsync().thenApply(count -> {
+      long endTs = System.nanoTime();
+      if (count > 0) {
+        numKeysRead.addAndGet(count);
+        if (metricsTracker != null) {
+          metricsTracker.getMetric(MetricName.Read).accumulate(count, endTs - intendedStartNanos);
+        }
+      }
+      return count;
+    });
+  }
+
   @Override
   public String appenderName() {
     return this.getClass().getSimpleName();
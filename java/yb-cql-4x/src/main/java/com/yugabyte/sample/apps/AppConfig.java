@@ -14,6 +14,7 @@
 package com.yugabyte.sample.apps;
 
 import com.yugabyte.sample.apps.AppBase.TableOp;
+import com.yugabyte.sample.common.metrics.MetricsOutput;
 
 /**
  * This class encapsulates the various configuration parameters for the various apps.
@@ -34,6 +35,16 @@ public class AppConfig {
   // The app type, default initialized to OLTP.
   public Type appType = Type.OLTP;
 
+  /**
+   * How the open-loop driver spaces the operations of each IOPS thread. The valid processes are:
+   *   - Constant : Operations are issued at fixed intervals.
+   *   - Poisson  : Intervals are exponentially distributed, as for independent clients.
+   */
+  public static enum ArrivalProcess {
+    Constant,
+    Poisson,
+  }
+
   // The percentage of total threads that perform reads. The rest perform writes. Note that if this
   // value is 100, then no writes will happen. The plugin should have enough information as params
   // to be able to handle this scenario. This value is ignored if set to -1.
@@ -61,6 +72,19 @@ public class AppConfig {
   public int sleepTime = 0;
   public int jedisSocketTimeout = 61000;
 
+  // Target throughput of the reads and writes, in ops/sec over all the threads. When positive, the
+  // IOPS threads issue their operations asynchronously at that rate (open loop), instead of
+  // waiting for each operation to complete before issuing the next one.
+  public double targetReadOpsPerSec = 0;
+  public double targetWriteOpsPerSec = 0;
+
+  // How the open-loop operations are spaced.
+  public ArrivalProcess arrivalProcess = ArrivalProcess.Constant;
+
+  // The maximum number of open-loop operations in flight per IOPS thread. Operations due when it
+  // is reached are issued late, but their latency still counts from when they were due.
+  public int maxOutstandingOps = 1000;
+
   public int cqlConnectTimeoutMs = 0;
   public int cqlReadTimeoutMs = 0;
 
@@ -140,6 +164,15 @@ public class AppConfig {
   // Run time for workload. Negative values means no limit.
   public long runTimeSeconds = -1;
 
+  // File the metrics of every interval and of the whole run are written to. Not written if null.
+  public String metricsOutputFile = null;
+
+  // The format the metrics are written in.
+  public MetricsOutput.Format metricsOutputFormat = MetricsOutput.Format.JSON;
+
+  // Port the metrics are served on in the Prometheus text format. Not served if negative.
+  public int metricsHttpPort = -1;
+
   public String localDc;
 
   // Used by CassandraPersonalization workload.
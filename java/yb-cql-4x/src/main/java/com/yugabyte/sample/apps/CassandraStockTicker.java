@@ -17,11 +17,14 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.cli.CommandLine;
 
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
@@ -177,6 +180,22 @@ public class CassandraStockTicker extends AppBase {
     return 1;
   }
 
+  @Override
+  public CompletionStage<Long> doReadAsync() {
+    // Pick a random data source.
+    TickerInfo dataSource = tickers.get(random.nextInt(tickers.size()));
+    // Make sure it has emitted data, otherwise there is nothing to read.
+    if (!dataSource.getHasEmittedData()) {
+      return CompletableFuture.completedFuture(0L);
+    }
+    BoundStatement select = getPreparedSelectLatest().bind(dataSource.getTickerId());
+    return getCassandraClient().executeAsync(select).thenApply(rs -> {
+      // The query has a LIMIT 1, so all the rows are in the first page.
+      num_rows_read.addAndGet(rs.remaining());
+      return 1L;
+    });
+  }
+
   private PreparedStatement getPreparedInsertRaw()  {
     if (preparedInsertRaw == null) {
       synchronized (prepareInitLock) {
@@ -233,7 +252,6 @@ public class CassandraStockTicker extends AppBase {
     TickerInfo dataSource = tickers.get(random.nextInt(tickers.size()));
     // Enter as many data points as are needed.
     long ts = dataSource.getDataEmitTs();
-    long numKeysWritten = 0;
     String value = String.format("value-%s", ts);
     // If we have nothing to write, we're done.
     if (ts == -1) {
@@ -247,18 +265,57 @@ public class CassandraStockTicker extends AppBase {
     BoundStatement insertRaw =
         getPreparedInsertRaw().bind(dataSource.getTickerId(), new Date(ts), value);
     ResultSet resultSet = getCassandraClient().execute(insertRaw);
-    numKeysWritten++;
     dataSource.setLastEmittedTs(ts);
 
     // With some probability, insert into the minutely table.
-    if (random.nextInt(60000) < data_emit_rate_millis) {
+    boolean insertIntoMin = shouldInsertIntoMin();
+    if (insertIntoMin) {
       BoundStatement insertMin =
           getPreparedInsertMin().bind(dataSource.getTickerId(), new Date(ts), value);
       resultSet = getCassandraClient().execute(insertMin);
-      numKeysWritten++;
     }
 
-    return numKeysWritten;
+    return numKeysWritten(insertIntoMin);
+  }
+
+  private boolean shouldInsertIntoMin() {
+    return random.nextInt(60000) < data_emit_rate_millis;
+  }
+
+  /**
+   * @return the number of keys written for one data point, the same for doWrite() and
+   * doWriteAsync().
+   */
+  private static long numKeysWritten(boolean insertIntoMin) {
+    return insertIntoMin ? 2 : 1;
+  }
+
+  @Override
+  public CompletionStage<Long> doWriteAsync(int threadIdx) {
+    // Pick a random data source.
+    TickerInfo dataSource = tickers.get(random.nextInt(tickers.size()));
+    // Reserved before the insert is issued, so that the operations issued before it completes
+    // write the next data points rather than the same one again.
+    long ts = dataSource.reserveDataEmitTs();
+    // If we have nothing to write, we're done. Unlike doWrite(), don't sleep: the open-loop
+    // driver schedules the operations.
+    if (ts == -1) {
+      return CompletableFuture.completedFuture(0L);
+    }
+    String value = String.format("value-%s", ts);
+
+    // Insert the row, then with some probability into the minutely table.
+    BoundStatement insertRaw =
+        getPreparedInsertRaw().bind(dataSource.getTickerId(), new Date(ts), value);
+    CompletionStage<AsyncResultSet> insert = getCassandraClient().executeAsync(insertRaw);
+    if (!shouldInsertIntoMin()) {
+      return insert.thenApply(resultSet -> numKeysWritten(false));
+    }
+    BoundStatement insertMin =
+        getPreparedInsertMin().bind(dataSource.getTickerId(), new Date(ts), value);
+    return insert
+        .thenCompose(resultSet -> getCassandraClient().executeAsync(insertMin))
+        .thenApply(resultSet -> numKeysWritten(true));
   }
 
   @Override
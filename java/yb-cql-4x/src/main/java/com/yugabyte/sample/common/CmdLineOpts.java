@@ -32,6 +32,7 @@ import com.google.common.collect.ImmutableList;
 // Import * so we can list the sample apps.
 import com.yugabyte.sample.apps.*;
 import com.yugabyte.sample.apps.AppBase.TableOp;
+import com.yugabyte.sample.common.metrics.MetricsOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -125,6 +126,18 @@ public class CmdLineOpts {
     }
     LOG.info("Run time (seconds): " + AppBase.appConfig.runTimeSeconds);
 
+    if (commandLine.hasOption("metrics_output_file")) {
+      AppBase.appConfig.metricsOutputFile = commandLine.getOptionValue("metrics_output_file");
+    }
+    if (commandLine.hasOption("metrics_output_format")) {
+      AppBase.appConfig.metricsOutputFormat = MetricsOutput.Format.valueOf(
+          commandLine.getOptionValue("metrics_output_format").toUpperCase());
+    }
+    if (commandLine.hasOption("metrics_http_port")) {
+      AppBase.appConfig.metricsHttpPort =
+          Integer.parseInt(commandLine.getOptionValue("metrics_http_port"));
+    }
+
     // Get the proxy contact points.
     List<String> hostPortList = Arrays.asList(commandLine.getOptionValue("nodes").split(","));
     for (String hostPort : hostPortList) {
@@ -329,6 +342,23 @@ public class CmdLineOpts {
     if (cmd.hasOption("value_size")) {
       AppBase.appConfig.valueSize = Integer.parseInt(cmd.getOptionValue("value_size"));
     }
+    if (cmd.hasOption("target_read_ops_per_sec")) {
+      AppBase.appConfig.targetReadOpsPerSec =
+          Double.parseDouble(cmd.getOptionValue("target_read_ops_per_sec"));
+    }
+    if (cmd.hasOption("target_write_ops_per_sec")) {
+      AppBase.appConfig.targetWriteOpsPerSec =
+          Double.parseDouble(cmd.getOptionValue("target_write_ops_per_sec"));
+    }
+    if (cmd.hasOption("arrival_process")) {
+      String arrivalProcess = cmd.getOptionValue("arrival_process");
+      AppBase.appConfig.arrivalProcess = AppConfig.ArrivalProcess.valueOf(
+          arrivalProcess.substring(0, 1).toUpperCase() + arrivalProcess.substring(1).toLowerCase());
+    }
+    if (cmd.hasOption("max_outstanding_ops")) {
+      AppBase.appConfig.maxOutstandingOps =
+          Integer.parseInt(cmd.getOptionValue("max_outstanding_ops"));
+    }
     if (cmd.hasOption("sleep_time")) {
       AppBase.appConfig.sleepTime =
           Integer.parseInt(cmd.getOptionValue("sleep_time"));
@@ -448,6 +478,16 @@ public class CmdLineOpts {
     options.addOption("num_threads_write", true, "The number of threads that perform writes.");
     options.addOption("num_writes", true, "The total number of writes to perform.");
     options.addOption("num_reads", true, "The total number of reads to perform.");
+    options.addOption("target_read_ops_per_sec", true,
+        "Issue reads asynchronously at this total rate (open loop), measuring their latency from " +
+        "when they were due.");
+    options.addOption("target_write_ops_per_sec", true,
+        "Issue writes asynchronously at this total rate (open loop), measuring their latency " +
+        "from when they were due.");
+    options.addOption("arrival_process", true,
+        "Spacing of the open-loop operations: constant (default) or poisson.");
+    options.addOption("max_outstanding_ops", true,
+        "Maximum number of open-loop operations in flight per thread.");
     options.addOption(
         "sleep_time", true,
         "How long (in ms) to sleep between multiple pipeline batches.");
@@ -472,6 +512,13 @@ public class CmdLineOpts {
     options.addOption("skip_workload", false, "Skip running workload.");
     options.addOption("run_time", true,
         "Run time for workload. Negative value means forever (default).");
+    options.addOption("metrics_output_file", true,
+        "File to write the throughput and latency percentiles of every interval and of the " +
+        "whole run to.");
+    options.addOption("metrics_output_format", true,
+        "Format of the metrics output file: json (one object per line, default) or csv.");
+    options.addOption("metrics_http_port", true,
+        "Port to serve the metrics on, in the Prometheus text format, at /metrics.");
     options.addOption("use_redis_cluster", false, "Use redis cluster client.");
     options.addOption("username", true,
         "User name to connect to the database using. ");
@@ -13,8 +13,14 @@
 
 package com.yugabyte.sample.common;
 
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
 
 import com.yugabyte.sample.apps.AppBase;
+import com.yugabyte.sample.apps.AppConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +28,11 @@ import org.slf4j.LoggerFactory;
  * A class that encapsulates a single IO thread. The thread has an index (which is an integer),
  * models an OLTP app and an IO type (read or write). It performs the required IO as long as
  * the app has not completed all its IO.
+ *
+ * By default, the thread issues an operation as soon as the previous one completes (closed loop).
+ * When a target throughput is configured for its IO type, it issues operations asynchronously at
+ * its share of that rate instead (open loop), and their latency is measured from when they were
+ * due, so that slow operations don't hide the latency of the ones that would have followed.
  */
 public class IOPSThread extends Thread {
   private static final Logger LOG = LoggerFactory.getLogger(IOPSThread.class);
@@ -44,6 +55,8 @@ public class IOPSThread extends Thread {
 
   private int numExceptions = 0;
 
+  private int numConsecutiveExceptions = 0;
+
   private volatile boolean ioThreadFailed = false;
 
   private final boolean printAllExceptions;
@@ -55,7 +68,7 @@ public class IOPSThread extends Thread {
     this.printAllExceptions = printAllExceptions;
   }
 
-  public int getNumExceptions() {
+  public synchronized int getNumExceptions() {
     return numExceptions;
   }
 
@@ -81,26 +94,23 @@ public class IOPSThread extends Thread {
   public void run() {
     try {
       LOG.debug("Starting " + ioType.toString() + " IOPS thread #" + threadIdx);
-      int numConsecutiveExceptions = 0;
+      double targetOpsPerSec = getTargetOpsPerSec();
+      if (targetOpsPerSec > 0) {
+        runOpenLoop(targetOpsPerSec);
+        return;
+      }
       while (!app.hasFinished()) {
         try {
           switch (ioType) {
             case Write: app.performWrite(threadIdx); break;
             case Read: app.performRead(); break;
           }
-          numConsecutiveExceptions = 0;
+          onSuccess();
         } catch (RuntimeException e) {
-          numExceptions++;
-          if (numConsecutiveExceptions++ % 10 == 0 || printAllExceptions) {
-            app.reportException(e);
-          }
           // Reset state only for redis workload. CQL workloads will hit 'InvalidQueryException'
           // with prepared statements if reset and the same statement is re-executed.
 
-          if (numConsecutiveExceptions > 500) {
-            LOG.error("Had more than " + numConsecutiveExceptions
-                      + " consecutive exceptions. Exiting.", e);
-            ioThreadFailed = true;
+          if (!onException(e)) {
             return;
           }
           try {
@@ -117,4 +127,105 @@ public class IOPSThread extends Thread {
       app.terminate();
     }
   }
+
+  /**
+   * @return the rate at which this thread should issue operations, 0 for a closed loop.
+   */
+  private double getTargetOpsPerSec() {
+    AppConfig config = AppBase.appConfig;
+    switch (ioType) {
+      case Write:
+        return config.numWriterThreads > 0 ?
+            config.targetWriteOpsPerSec / config.numWriterThreads : 0;
+      case Read:
+        return config.numReaderThreads > 0 ?
+            config.targetReadOpsPerSec / config.numReaderThreads : 0;
+    }
+    return 0;
+  }
+
+  /**
+   * Issues operations asynchronously at the given rate until the app has finished, then waits
+   * for the outstanding ones.
+   */
+  private void runOpenLoop(double opsPerSec) {
+    AppConfig config = AppBase.appConfig;
+    LOG.info(String.format("%s IOPS thread #%d issuing %.2f ops/sec (%s arrivals)",
+                           ioType, threadIdx, opsPerSec, config.arrivalProcess));
+    Random random = new Random();
+    double meanIntervalNanos = 1000000000.0 / opsPerSec;
+    Semaphore outstanding = new Semaphore(config.maxOutstandingOps);
+    long startNanos = System.nanoTime();
+    // Offset of the next operation from the start, kept as a double so that rounding errors
+    // don't accumulate.
+    double nextOffsetNanos = 0;
+    while (!app.hasFinished() && !ioThreadFailed) {
+      long intendedStartNanos = startNanos + (long) nextOffsetNanos;
+      long delayNanos;
+      while ((delayNanos = intendedStartNanos - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(delayNanos);
+        if (Thread.interrupted()) {
+          LOG.error("IOPS thread #" + threadIdx + " interrupted.");
+          ioThreadFailed = true;
+          return;
+        }
+      }
+      switch (config.arrivalProcess) {
+        case Constant: nextOffsetNanos += meanIntervalNanos; break;
+        case Poisson: nextOffsetNanos += -Math.log(1 - random.nextDouble()) * meanIntervalNanos;
+      }
+
+      // Operations due while too many are in flight are issued late, but still measured from
+      // when they were due.
+      outstanding.acquireUninterruptibly();
+      CompletionStage<Long> op;
+      try {
+        switch (ioType) {
+          case Write: op = app.performWriteAsync(threadIdx, intendedStartNanos); break;
+          default: op = app.performReadAsync(intendedStartNanos); break;
+        }
+      } catch (RuntimeException e) {
+        outstanding.release();
+        onException(e);
+        continue;
+      }
+      if (op == null) {
+        outstanding.release();
+        break;
+      }
+      op.whenComplete((count, e) -> {
+        outstanding.release();
+        if (e == null) {
+          onSuccess();
+        } else if (e instanceof CompletionException && e.getCause() instanceof Exception) {
+          onException((Exception) e.getCause());
+        } else {
+          onException(e instanceof Exception ? (Exception) e : new RuntimeException(e));
+        }
+      });
+    }
+    outstanding.acquireUninterruptibly(config.maxOutstandingOps);
+  }
+
+  private synchronized void onSuccess() {
+    numConsecutiveExceptions = 0;
+  }
+
+  /**
+   * Counts and reports an exception of an operation.
+   * @return false if there were too many consecutive exceptions and the thread has failed.
+   */
+  private synchronized boolean onException(Exception e) {
+    numExceptions++;
+    if (numConsecutiveExceptions++ % 10 == 0 || printAllExceptions) {
+      app.reportException(e);
+    }
+    if (numConsecutiveExceptions > 500) {
+      LOG.error("Had more than " + numConsecutiveExceptions
+                + " consecutive exceptions. Exiting.", e);
+      ioThreadFailed = true;
+      return false;
+    }
+    return true;
+  }
 }
@@ -84,6 +84,20 @@ public class TimeseriesLoadGenerator {
     return lastEmittedTs + dataEmitRateMs;
   }
 
+  /**
+   * Same as getDataEmitTs(), also marking the data point as emitted, so that callers that persist
+   * data points concurrently each get a different one. A data point whose write then fails is
+   * skipped.
+   * @return the timestamp of the data point to emit, or -1 if none is due yet.
+   */
+  public synchronized long reserveDataEmitTs() {
+    long ts = getDataEmitTs();
+    if (ts != -1) {
+      setLastEmittedTs(ts);
+    }
+    return ts;
+  }
+
   /**
    * @return true if this generator has emitted any data so far.
    */
@@ -13,21 +13,42 @@
 
 package com.yugabyte.sample.common.metrics;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Locale;
 
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Tracks the number of operations and their latency distribution. The IOPS threads record their
+ * latencies into an HdrHistogram {@link Recorder} without taking any lock, the thread reporting
+ * the metrics takes the histogram of every interval and adds it to the one of the whole run.
+ */
 public class Metric {
-  private static final Logger LOG = LoggerFactory.getLogger(Metric.class);
+  // The latency percentiles reported.
+  public static final double[] PERCENTILES = {50, 95, 99, 99.9};
+
+  // Number of significant decimal digits of the recorded latencies.
+  private static final int SIGNIFICANT_DIGITS = 3;
+
   String name;
+  private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+  // The fields below are only accessed by the threads reading the metrics.
   private final Object lock = new Object();
-  private long curOpCount = 0;
-  private long curOpLatencyNanos = 0;
-  private long totalOpCount = 0;
+  private final Histogram totalHistogram = new Histogram(SIGNIFICANT_DIGITS);
+  private Histogram intervalHistogram;
+  private final long startNanos;
   private long lastSnapshotNanos;
+  private Snapshot lastSnapshot;
 
   public Metric(String name) {
     this.name = name;
-    lastSnapshotNanos = System.nanoTime();
+    startNanos = System.nanoTime();
+    lastSnapshotNanos = startNanos;
+    lastSnapshot = new Snapshot(name, false, new Histogram(SIGNIFICANT_DIGITS), 0, 0);
+  }
+
+  public String getName() {
+    return name;
   }
 
   /**
@@ -36,28 +57,134 @@ public class Metric {
    * @param batchLatencyNanos whole batch latency
    */
   public void accumulate(long numOps, long batchLatencyNanos) {
-    synchronized(lock) {
-      curOpCount += numOps;
-      curOpLatencyNanos += batchLatencyNanos * numOps;
-      totalOpCount += numOps;
-    }
+    recorder.recordValueWithCount(Math.max(0, batchLatencyNanos), numOps);
   }
 
-  public String getMetricsAndReset() {
-    String msg = null;
-    synchronized(lock) {
+  /**
+   * Returns the metrics of the operations done since the previous call, and adds them to the ones
+   * of the whole run.
+   */
+  public Snapshot snapshotAndReset() {
+    synchronized (lock) {
       long currNanos = System.nanoTime();
-      long elapsedNanos = currNanos - lastSnapshotNanos;
-      LOG.debug("currentOpLatency: " + curOpLatencyNanos + ", currentOpCount: " + curOpCount);
-      double ops_per_sec =
-          (elapsedNanos == 0) ? 0 : (curOpCount * 1000000000 * 1.0 / elapsedNanos);
-      double latency = (curOpCount == 0) ? 0 : (curOpLatencyNanos / 1000000 * 1.0 / curOpCount);
-      msg = String.format("%s: %.2f ops/sec (%.2f ms/op), %d total ops",
-                          name, ops_per_sec, latency, totalOpCount);
-      curOpCount = 0;
-      curOpLatencyNanos = 0;
+      intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+      totalHistogram.add(intervalHistogram);
+      lastSnapshot = new Snapshot(name, false, intervalHistogram, currNanos - lastSnapshotNanos,
+                                  totalHistogram.getTotalCount());
       lastSnapshotNanos = currNanos;
+      return lastSnapshot;
+    }
+  }
+
+  public String getMetricsAndReset() {
+    return snapshotAndReset().toString();
+  }
+
+  /**
+   * @return the metrics returned by the last call to {@link #snapshotAndReset}.
+   */
+  public Snapshot getLastSnapshot() {
+    synchronized (lock) {
+      return lastSnapshot;
+    }
+  }
+
+  /**
+   * @return the metrics of the whole run, up to the last call to {@link #snapshotAndReset}.
+   */
+  public Snapshot getTotal() {
+    synchronized (lock) {
+      return new Snapshot(name, true, totalHistogram, lastSnapshotNanos - startNanos,
+                          totalHistogram.getTotalCount());
+    }
+  }
+
+  /**
+   * The metrics of an interval, or of the whole run. Latencies are in milliseconds.
+   */
+  public static class Snapshot {
+    public static final String CSV_HEADER =
+        "time_ms,metric,scope,ops,ops_per_sec,mean_ms,p50_ms,p95_ms,p99_ms,p99_9_ms,max_ms," +
+        "total_ops";
+
+    public final String name;
+    // Whether these are the metrics of the whole run, rather than of an interval.
+    public final boolean total;
+    public final long opCount;
+    public final long totalOpCount;
+    public final double opsPerSec;
+    public final double meanMs;
+    // The latencies at each of the PERCENTILES.
+    public final double[] percentilesMs;
+    public final double maxMs;
+    // The sum of the latencies, approximated from the histogram.
+    public final double sumMs;
+
+    Snapshot(String name, boolean total, Histogram histogram, long elapsedNanos,
+             long totalOpCount) {
+      this.name = name;
+      this.total = total;
+      this.opCount = histogram.getTotalCount();
+      this.totalOpCount = totalOpCount;
+      this.opsPerSec = (elapsedNanos == 0) ? 0 : (opCount * 1000000000.0 / elapsedNanos);
+      this.meanMs = (opCount == 0) ? 0 : (histogram.getMean() / 1000000);
+      this.percentilesMs = new double[PERCENTILES.length];
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        percentilesMs[i] = histogram.getValueAtPercentile(PERCENTILES[i]) / 1000000.0;
+      }
+      this.maxMs = (opCount == 0) ? 0 : (histogram.getMaxValue() / 1000000.0);
+      this.sumMs = meanMs * opCount;
+    }
+
+    private String scope() {
+      return total ? "total" : "interval";
+    }
+
+    public String toJson(long timeMs) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format(Locale.ROOT,
+          "{\"time_ms\":%d,\"metric\":\"%s\",\"scope\":\"%s\",\"ops\":%d,\"ops_per_sec\":%.2f," +
+          "\"mean_ms\":%.3f",
+          timeMs, name, scope(), opCount, opsPerSec, meanMs));
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        sb.append(String.format(Locale.ROOT, ",\"%s_ms\":%.3f",
+                                percentileName(PERCENTILES[i]), percentilesMs[i]));
+      }
+      sb.append(String.format(Locale.ROOT, ",\"max_ms\":%.3f,\"total_ops\":%d}",
+                              maxMs, totalOpCount));
+      return sb.toString();
+    }
+
+    public String toCsv(long timeMs) {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format(Locale.ROOT, "%d,%s,%s,%d,%.2f,%.3f",
+                              timeMs, name, scope(), opCount, opsPerSec, meanMs));
+      for (double percentileMs : percentilesMs) {
+        sb.append(String.format(Locale.ROOT, ",%.3f", percentileMs));
+      }
+      sb.append(String.format(Locale.ROOT, ",%.3f,%d", maxMs, totalOpCount));
+      return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("%s: %.2f ops/sec (%.2f ms/op", name, opsPerSec, meanMs));
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        sb.append(String.format(", %s %.2f", percentileName(PERCENTILES[i]), percentilesMs[i]));
+      }
+      sb.append(String.format(", max %.2f ms), %d total ops", maxMs, totalOpCount));
+      return sb.toString();
+    }
+  }
+
+  /**
+   * @return the name of a percentile, e.g. p99 for 99 and p99_9 for 99.9.
+   */
+  static String percentileName(double percentile) {
+    if (percentile == Math.rint(percentile)) {
+      return "p" + (long) percentile;
     }
-    return msg;
+    return ("p" + percentile).replace('.', '_');
   }
 }
@@ -0,0 +1,136 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package com.yugabyte.sample.common.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the metrics of the whole run in the Prometheus text format on /metrics. Requests are
+ * served one at a time on a daemon thread, which is plenty for a scraper.
+ */
+public class MetricsHttpServer {
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsHttpServer.class);
+  private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final MetricsTracker tracker;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  public MetricsHttpServer(MetricsTracker tracker, int port) throws IOException {
+    this.tracker = tracker;
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    this.executor = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "MetricsHttpServer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void start() {
+    server.start();
+    LOG.info("Serving metrics on port " + getPort());
+  }
+
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String path = exchange.getRequestURI().getPath();
+      int status;
+      String body;
+      if (exchange.getRequestMethod().equals("GET") &&
+          (path.equals("/metrics") || path.equals("/"))) {
+        status = 200;
+        body = format(tracker.getMetrics());
+      } else {
+        status = 404;
+        body = "Not found\n";
+      }
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(status, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Failed to serve metrics", e);
+      throw e;
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Formats the metrics in the Prometheus text format: the operation counts and the latency
+   * percentiles of the whole run, and the throughput of the last interval.
+   */
+  static String format(Collection<Metric> metrics) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# TYPE yb_sample_ops_total counter\n");
+    for (Metric metric : metrics) {
+      sb.append(String.format(Locale.ROOT, "yb_sample_ops_total{op=\"%s\"} %d\n",
+                              metric.getName(), metric.getTotal().opCount));
+    }
+    sb.append("# TYPE yb_sample_ops_per_second gauge\n");
+    for (Metric metric : metrics) {
+      sb.append(String.format(Locale.ROOT, "yb_sample_ops_per_second{op=\"%s\"} %.2f\n",
+                              metric.getName(), metric.getLastSnapshot().opsPerSec));
+    }
+    sb.append("# TYPE yb_sample_latency_seconds summary\n");
+    for (Metric metric : metrics) {
+      Metric.Snapshot total = metric.getTotal();
+      for (int i = 0; i < Metric.PERCENTILES.length; i++) {
+        sb.append(String.format(Locale.ROOT,
+            "yb_sample_latency_seconds{op=\"%s\",quantile=\"%s\"} %.6f\n",
+            metric.getName(), quantile(Metric.PERCENTILES[i]),
+            total.percentilesMs[i] / 1000));
+      }
+      sb.append(String.format(Locale.ROOT, "yb_sample_latency_seconds_sum{op=\"%s\"} %.6f\n",
+                              metric.getName(), total.sumMs / 1000));
+      sb.append(String.format(Locale.ROOT, "yb_sample_latency_seconds_count{op=\"%s\"} %d\n",
+                              metric.getName(), total.opCount));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return the quantile of a percentile, e.g. 0.999 for 99.9.
+   */
+  private static String quantile(double percentile) {
+    return new BigDecimal(Double.toString(percentile)).movePointLeft(2).stripTrailingZeros()
+        .toPlainString();
+  }
+}
@@ -0,0 +1,61 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+
+package com.yugabyte.sample.common.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the metrics of every interval, and of the whole run, to a file as JSON lines or CSV, so
+ * that runs can be compared by scripts. Safe to use from multiple threads.
+ */
+public class MetricsOutput implements Closeable {
+  // The formats the metrics can be written in.
+  public static enum Format {
+    JSON,
+    CSV,
+  }
+
+  private final Writer writer;
+  private final Format format;
+
+  public MetricsOutput(String path, Format format) throws IOException {
+    this.writer = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8));
+    this.format = format;
+    if (format == Format.CSV) {
+      writer.write(Metric.Snapshot.CSV_HEADER);
+      writer.write('\n');
+    }
+  }
+
+  public synchronized void write(long timeMs, Metric.Snapshot snapshot) throws IOException {
+    writer.write(format == Format.CSV ? snapshot.toCsv(timeMs) : snapshot.toJson(timeMs));
+    writer.write('\n');
+  }
+
+  public synchronized void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+}
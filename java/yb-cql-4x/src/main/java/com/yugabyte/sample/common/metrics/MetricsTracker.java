@@ -13,6 +13,8 @@
 
 package com.yugabyte.sample.common.metrics;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -45,6 +47,9 @@ public class MetricsTracker extends Thread {
   // Map of custom appenders.
   Map<String, StatusMessageAppender> appenders =
       new ConcurrentHashMap<String, StatusMessageAppender>();
+  // Optional file the metrics are written to, and HTTP server they are served from.
+  volatile MetricsOutput output;
+  volatile MetricsHttpServer httpServer;
 
   public MetricsTracker() {
     this.setDaemon(true);
@@ -66,9 +71,91 @@ public class MetricsTracker extends Thread {
     return metrics.get(metricName);
   }
 
+  public Collection<Metric> getMetrics() {
+    return metrics.values();
+  }
+
+  /**
+   * Writes the metrics of every interval, and of the whole run at exit, to the given file.
+   */
+  public void setOutput(String path, MetricsOutput.Format format) throws IOException {
+    output = new MetricsOutput(path, format);
+    LOG.info("Writing metrics as " + format + " to " + path);
+  }
+
+  /**
+   * Serves the metrics in the Prometheus text format on the given port.
+   */
+  public void startHttpServer(int port) throws IOException {
+    httpServer = new MetricsHttpServer(this, port);
+    httpServer.start();
+  }
+
   public void getMetricsAndReset(StringBuilder sb) {
+    long timeMs = System.currentTimeMillis();
     for (MetricName metricName : MetricName.values()) {
-      sb.append(String.format("%s  |  ", metrics.get(metricName).getMetricsAndReset()));
+      Metric.Snapshot snapshot = metrics.get(metricName).snapshotAndReset();
+      sb.append(String.format("%s  |  ", snapshot));
+      write(timeMs, snapshot);
+    }
+    flushOutput();
+  }
+
+  /**
+   * Logs and writes out the metrics of the whole run.
+   */
+  public void reportTotals() {
+    long timeMs = System.currentTimeMillis();
+    StringBuilder sb = new StringBuilder("Full run: ");
+    for (MetricName metricName : MetricName.values()) {
+      Metric.Snapshot total = metrics.get(metricName).getTotal();
+      sb.append(String.format("%s  |  ", total));
+      write(timeMs, total);
+    }
+    flushOutput();
+    LOG.info(sb.toString());
+  }
+
+  private void write(long timeMs, Metric.Snapshot snapshot) {
+    MetricsOutput output = this.output;
+    if (output == null) {
+      return;
+    }
+    try {
+      output.write(timeMs, snapshot);
+    } catch (IOException e) {
+      LOG.warn("Failed to write metrics", e);
+    }
+  }
+
+  private void flushOutput() {
+    MetricsOutput output = this.output;
+    if (output == null) {
+      return;
+    }
+    try {
+      output.flush();
+    } catch (IOException e) {
+      LOG.warn("Failed to write metrics", e);
+    }
+  }
+
+  private void shutdown() {
+    synchronized (initLock) {
+      getMetricsAndReset(new StringBuilder());
+      reportTotals();
+      MetricsOutput output = this.output;
+      this.output = null;
+      try {
+        if (output != null) {
+          output.close();
+        }
+        if (httpServer != null) {
+          httpServer.close();
+        }
+      } catch (IOException e) {
+        LOG.warn("Failed to close metrics output", e);
+      }
     }
   }
 
@@ -78,6 +165,8 @@ public class MetricsTracker extends Thread {
       if (!hasStarted) {
         hasStarted = true;
         super.start();
+        // Report the metrics of the last interval and of the whole run when the app exits.
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "MetricsTrackerShutdown"));
       }
     }
   }
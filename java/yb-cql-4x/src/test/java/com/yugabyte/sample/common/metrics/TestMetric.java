@@ -0,0 +1,91 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package com.yugabyte.sample.common.metrics;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value = YBTestRunner.class)
+public class TestMetric {
+  // The histograms keep 3 significant digits.
+  private static final double DELTA_MS = 0.01;
+
+  private static long millisToNanos(long ms) {
+    return TimeUnit.MILLISECONDS.toNanos(ms);
+  }
+
+  @Test
+  public void testPercentileName() {
+    assertEquals("p50", Metric.percentileName(50));
+    assertEquals("p99", Metric.percentileName(99));
+    assertEquals("p99_9", Metric.percentileName(99.9));
+    assertEquals("p99_99", Metric.percentileName(99.99));
+  }
+
+  @Test
+  public void testEmptySnapshot() {
+    Metric metric = new Metric("Reads");
+    Metric.Snapshot snapshot = metric.snapshotAndReset();
+    assertEquals(0, snapshot.opCount);
+    assertEquals(0.0, snapshot.meanMs, 0.0);
+    assertEquals(0.0, snapshot.maxMs, 0.0);
+    assertEquals(0.0, snapshot.sumMs, 0.0);
+    for (double percentileMs : snapshot.percentilesMs) {
+      assertEquals(0.0, percentileMs, 0.0);
+    }
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    Metric metric = new Metric("Reads");
+    metric.accumulate(2, millisToNanos(2));
+    metric.accumulate(1, millisToNanos(4));
+    // Make sure some time elapses, so that the throughput is defined.
+    Thread.sleep(10);
+    Metric.Snapshot snapshot = metric.snapshotAndReset();
+    assertEquals("Reads", snapshot.name);
+    assertEquals(3, snapshot.opCount);
+    assertEquals(3, snapshot.totalOpCount);
+    assertTrue(snapshot.opsPerSec > 0);
+    assertEquals(8.0 / 3, snapshot.meanMs, DELTA_MS);
+    assertEquals(8.0, snapshot.sumMs, DELTA_MS);
+    assertEquals(4.0, snapshot.maxMs, DELTA_MS);
+    assertEquals(Metric.PERCENTILES.length, snapshot.percentilesMs.length);
+    assertEquals(2.0, snapshot.percentilesMs[0], DELTA_MS);
+    assertEquals(4.0, snapshot.percentilesMs[Metric.PERCENTILES.length - 1], DELTA_MS);
+    assertEquals(snapshot, metric.getLastSnapshot());
+  }
+
+  @Test
+  public void testTotal() {
+    Metric metric = new Metric("Writes");
+    metric.accumulate(1, millisToNanos(1));
+    metric.snapshotAndReset();
+    metric.accumulate(3, millisToNanos(3));
+    Metric.Snapshot interval = metric.snapshotAndReset();
+    // The interval only covers the operations since the previous snapshot.
+    assertEquals(3, interval.opCount);
+    assertEquals(4, interval.totalOpCount);
+    Metric.Snapshot total = metric.getTotal();
+    assertTrue(total.total);
+    assertEquals(4, total.opCount);
+    assertEquals(10.0, total.sumMs, DELTA_MS * 4);
+    assertEquals(3.0, total.maxMs, DELTA_MS);
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright (c) YugaByte, Inc.
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+// in compliance with the License.  You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the License
+// is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+// or implied.  See the License for the specific language governing permissions and limitations
+// under the License.
+//
+package com.yugabyte.sample.common.metrics;
+
+import static org.yb.AssertionWrappers.assertEquals;
+import static org.yb.AssertionWrappers.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.yb.YBTestRunner;
+
+@RunWith(value = YBTestRunner.class)
+public class TestMetricsHttpServer {
+
+  @Test
+  public void testFormat() {
+    Metric metric = new Metric("Reads");
+    metric.accumulate(2, TimeUnit.MILLISECONDS.toNanos(2));
+    metric.accumulate(1, TimeUnit.MILLISECONDS.toNanos(4));
+    metric.snapshotAndReset();
+    String text = MetricsHttpServer.format(Collections.singletonList(metric));
+    assertTrue(text.contains("# TYPE yb_sample_ops_total counter\n"));
+    assertTrue(text.contains("yb_sample_ops_total{op=\"Reads\"} 3\n"));
+    assertTrue(text.contains("# TYPE yb_sample_ops_per_second gauge\n"));
+    assertTrue(text.contains("# TYPE yb_sample_latency_seconds summary\n"));
+    assertTrue(text.contains("yb_sample_latency_seconds{op=\"Reads\",quantile=\"0.5\"} 0.002"));
+    assertTrue(text.contains("yb_sample_latency_seconds{op=\"Reads\",quantile=\"0.999\"} 0.004"));
+    assertTrue(text.contains("yb_sample_latency_seconds_sum{op=\"Reads\"} 0.008"));
+    assertTrue(text.contains("yb_sample_latency_seconds_count{op=\"Reads\"} 3\n"));
+    // Every line is either a comment or a sample.
+    for (String line : text.split("\n")) {
+      assertTrue(line, line.startsWith("# TYPE ") || line.matches("yb_sample_\\w+\\{.*\\} \\S+"));
+    }
+  }
+
+  @Test
+  public void testFormatNoMetrics() {
+    assertEquals(
+        "# TYPE yb_sample_ops_total counter\n" +
+        "# TYPE yb_sample_ops_per_second gauge\n" +
+        "# TYPE yb_sample_latency_seconds summary\n",
+        MetricsHttpServer.format(Collections.emptyList()));
+  }
+
+  @Test
+  public void testServe() throws Exception {
+    MetricsTracker tracker = new MetricsTracker();
+    tracker.createMetric(MetricsTracker.MetricName.Read);
+    MetricsHttpServer server = new MetricsHttpServer(tracker, 0);
+    server.start();
+    try {
+      HttpURLConnection conn = open(server, "/metrics");
+      assertEquals(200, conn.getResponseCode());
+      assertTrue(conn.getContentType().startsWith("text/plain; version=0.0.4"));
+      assertTrue(read(conn.getInputStream()).contains("yb_sample_ops_total{op=\"Read\"} 0\n"));
+
+      conn = open(server, "/other");
+      assertEquals(404, conn.getResponseCode());
+    } finally {
+      server.close();
+    }
+  }
+
+  private static HttpURLConnection open(MetricsHttpServer server, String path)
+      throws IOException {
+    HttpURLConnection conn = (HttpURLConnection)
+        new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+    conn.setConnectTimeout(5000);
+    conn.setReadTimeout(5000);
+    return conn;
+  }
+
+  private static String read(InputStream in) throws IOException {
+    try (InputStream is = in) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[4096];
+      int n;
+      while ((n = is.read(buf)) != -1) {
+        out.write(buf, 0, n);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -6,6 +6,7 @@ import static play.mvc.Http.Status.BAD_REQUEST;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
@@ -26,6 +27,7 @@ import com.yugabyte.yw.models.Universe;
 import com.yugabyte.yw.models.helpers.TaskType;
 import java.time.Duration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
@@ -36,6 +38,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -190,6 +193,43 @@ public class Commissioner {
     if (task == null || taskInfo == null) {
       return Optional.empty();
     }
+    return Optional.of(
+        buildTaskStatus(
+            task,
+            taskInfo,
+            taskInfo.getSubTasks(),
+            universeUUID ->
+                Universe.getUniverseDetailsField(String.class, universeUUID, "updatingTaskUUID")));
+  }
+
+  /**
+   * Same as {@link #buildTaskStatus(CustomerTask, TaskInfo)}, without querying the DB. It is used
+   * to build the status of many tasks, with the data they need loaded in bulk.
+   *
+   * @param subTasks the subtasks of the task, ordered by position.
+   * @param updatingTaskUUIDs the updatingTaskUUID of the universes targeted by failed tasks.
+   */
+  public Optional<ObjectNode> buildTaskStatus(
+      CustomerTask task,
+      TaskInfo taskInfo,
+      List<TaskInfo> subTasks,
+      Map<UUID, String> updatingTaskUUIDs) {
+    if (task == null || taskInfo == null) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        buildTaskStatus(
+            task,
+            taskInfo,
+            subTasks,
+            universeUUID -> Optional.ofNullable(updatingTaskUUIDs.get(universeUUID))));
+  }
+
+  private ObjectNode buildTaskStatus(
+      CustomerTask task,
+      TaskInfo taskInfo,
+      List<TaskInfo> subTasks,
+      Function<UUID, Optional<String>> updatingTaskUUIDGetter) {
     ObjectNode responseJson = Json.newObject();
     // Add some generic information about the task
     responseJson.put("title", task.getFriendlyDescription());
@@ -200,9 +240,9 @@ public class Commissioner {
     // Find out the state of the task.
     responseJson.put("status", taskInfo.getTaskState().toString());
     // Get the percentage of subtasks that ran and completed
-    responseJson.put("percent", taskInfo.getPercentCompleted());
+    responseJson.put("percent", taskInfo.getPercentCompleted(subTasks));
     // Get subtask groups
-    UserTaskDetails userTaskDetails = taskInfo.getUserTaskDetails();
+    UserTaskDetails userTaskDetails = taskInfo.getUserTaskDetails(subTasks);
     responseJson.set("details", Json.toJson(userTaskDetails));
     // Set abortable if eligible.
     responseJson.put("abortable", false);
@@ -216,7 +256,8 @@ public class Commissioner {
         && task.getTarget().isUniverseTarget()
         && TaskInfo.ERROR_STATES.contains(taskInfo.getTaskState())) {
       // Retryable depends on the updating task UUID in the Universe.
-      Universe.getUniverseDetailsField(String.class, task.getTargetUUID(), "updatingTaskUUID")
+      updatingTaskUUIDGetter
+          .apply(task.getTargetUUID())
           .ifPresent(
               updatingTaskUUID -> {
                 responseJson.put(
@@ -228,7 +269,7 @@ public class Commissioner {
       // perspective, it is still running.
       responseJson.put("paused", true);
     }
-    return Optional.of(responseJson);
+    return responseJson;
   }
 
   public Optional<ObjectNode> mayGetStatus(UUID taskUUID) {
@@ -334,7 +375,8 @@ public class Commissioner {
    */
   @Slf4j
   @Singleton
-  private static class ProgressMonitor {
+  @VisibleForTesting
+  static class ProgressMonitor {
 
     private static final String YB_COMMISSIONER_PROGRESS_CHECK_INTERVAL =
         "yb.commissioner.progress_check_interval";
@@ -100,6 +100,7 @@ public class ChangeMasterConfig extends AbstractTaskBase {
     ChangeConfigResponse response = null;
     YBClientService.Config config = new YBClientService.Config(masterAddresses, certificate);
     config.setAdminOperationTimeout(YBCLIENT_ADMIN_OPERATION_TIMEOUT);
+    config.setUniverseUUID(universe.universeUUID);
     YBClient client = ybService.getClientWithConfig(config);
 
     // If the cluster has a secondary IP, we want to ensure that we use the correct addresses.
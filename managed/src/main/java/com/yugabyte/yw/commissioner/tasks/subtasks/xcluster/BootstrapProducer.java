@@ -69,6 +69,7 @@ public class BootstrapProducer extends XClusterConfigTaskBase {
             Math.max(
                 YBClientService.Config.DEFAULT_ADMIN_OPERATION_TIMEOUT_MS,
                 MINIMUM_ADMIN_OPERATION_TIMEOUT_MS_FOR_BOOTSTRAP));
+    clientConfig.setUniverseUUID(sourceUniverse.universeUUID);
     try (YBClient client = ybService.getClientWithConfig(clientConfig)) {
       // Set bootstrap creation time.
       Date now = new Date();
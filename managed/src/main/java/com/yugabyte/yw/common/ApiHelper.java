@@ -133,7 +133,12 @@ public class ApiHelper {
     try {
       String jsonString = jsonPromise.toCompletableFuture().get();
       return Json.parse(jsonString);
-    } catch (InterruptedException | ExecutionException e) {
+    } catch (InterruptedException e) {
+      // Kept set, so that callers can tell the error response is due to the interruption.
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while waiting for response", e);
+      return ApiResponse.errorJSON(e.getMessage());
+    } catch (ExecutionException e) {
       log.warn("Unexpected exception while parsing response", e);
       return ApiResponse.errorJSON(e.getMessage());
     } catch (RuntimeException e) {
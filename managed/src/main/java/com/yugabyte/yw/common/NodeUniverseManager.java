@@ -1,8 +1,10 @@
 package com.yugabyte.yw.common;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.yugabyte.yw.commissioner.Common;
 import com.yugabyte.yw.common.concurrent.KeyLock;
+import com.yugabyte.yw.common.ssh.SshSessionPool;
 import com.yugabyte.yw.forms.UniverseDefinitionTaskParams;
 import com.yugabyte.yw.forms.UniverseDefinitionTaskParams.Cluster;
 import com.yugabyte.yw.forms.UniverseDefinitionTaskParams.UserIntent;
@@ -10,17 +12,25 @@ import com.yugabyte.yw.models.AccessKey;
 import com.yugabyte.yw.models.Provider;
 import com.yugabyte.yw.models.Universe;
 import com.yugabyte.yw.models.helpers.NodeDetails;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang3.StringUtils;
 import play.libs.Json;
 
 @Singleton
+@Slf4j
 public class NodeUniverseManager extends DevopsBase {
   private static final ShellProcessContext DEFAULT_CONTEXT =
       ShellProcessContext.builder().logCmdOutput(true).build();
@@ -28,8 +38,13 @@ public class NodeUniverseManager extends DevopsBase {
   public static final String NODE_ACTION_SSH_SCRIPT = "bin/run_node_action.py";
   public static final String CERTS_DIR = "/yugabyte-tls-config";
   public static final String K8S_CERTS_DIR = "/opt/certs/yugabyte";
+  public static final String YB_USERNAME = "yugabyte";
+  private static final int DEFAULT_SSH_PORT = 22;
 
-  private final KeyLock<UUID> universeLock = new KeyLock<>();
+  // Downloads from the same node are serialized, as they use the same file names on the node.
+  private final KeyLock<String> nodeLock = new KeyLock<>();
+
+  @Inject SshSessionPool sshSessionPool;
 
   @Override
   protected String getCommandType() {
@@ -38,8 +53,19 @@ public class NodeUniverseManager extends DevopsBase {
 
   public ShellResponse downloadNodeLogs(
       NodeDetails node, Universe universe, String targetLocalFile) {
-    universeLock.acquireLock(universe.getUniverseUUID());
+    String lockKey = getNodeLockKey(node, universe);
+    nodeLock.acquireLock(lockKey);
     try {
+      Optional<ShellResponse> response =
+          runWithPooledSsh(
+              node,
+              universe,
+              target ->
+                  downloadNodeLogsWithPooledSsh(
+                      target, node, getYbHomeDir(node, universe), targetLocalFile));
+      if (response.isPresent()) {
+        return response.get();
+      }
       List<String> actionArgs = new ArrayList<>();
       actionArgs.add("--yb_home_dir");
       actionArgs.add(getYbHomeDir(node, universe));
@@ -48,7 +74,7 @@ public class NodeUniverseManager extends DevopsBase {
       return executeNodeAction(
           UniverseNodeAction.DOWNLOAD_LOGS, universe, node, actionArgs, DEFAULT_CONTEXT);
     } finally {
-      universeLock.releaseLock(universe.getUniverseUUID());
+      nodeLock.releaseLock(lockKey);
     }
   }
 
@@ -58,8 +84,19 @@ public class NodeUniverseManager extends DevopsBase {
       String ybHomeDir,
       String sourceNodeFile,
       String targetLocalFile) {
-    universeLock.acquireLock(universe.getUniverseUUID());
+    String lockKey = getNodeLockKey(node, universe);
+    nodeLock.acquireLock(lockKey);
     try {
+      Optional<ShellResponse> response =
+          runWithPooledSsh(
+              node,
+              universe,
+              target ->
+                  downloadNodeFileWithPooledSsh(
+                      target, ybHomeDir, sourceNodeFile, targetLocalFile));
+      if (response.isPresent()) {
+        return response.get();
+      }
       List<String> actionArgs = new ArrayList<>();
       // yb_home_dir denotes a custom starting directory for the remote file. (Eg: ~/, /mnt/d0,
       // etc.)
@@ -72,7 +109,7 @@ public class NodeUniverseManager extends DevopsBase {
       return executeNodeAction(
           UniverseNodeAction.DOWNLOAD_FILE, universe, node, actionArgs, DEFAULT_CONTEXT);
     } finally {
-      universeLock.releaseLock(universe.getUniverseUUID());
+      nodeLock.releaseLock(lockKey);
     }
   }
 
@@ -83,6 +120,14 @@ public class NodeUniverseManager extends DevopsBase {
       String targetFile,
       String permissions,
       ShellProcessContext context) {
+    Optional<ShellResponse> response =
+        runWithPooledSsh(
+            node,
+            universe,
+            target -> sshSessionPool.uploadFile(target, sourceFile, targetFile, permissions));
+    if (response.isPresent()) {
+      return response.get();
+    }
     List<String> actionArgs = new ArrayList<>();
     actionArgs.add("--source_file");
     actionArgs.add(sourceFile);
@@ -104,6 +149,19 @@ public class NodeUniverseManager extends DevopsBase {
 
   public ShellResponse runCommand(
       NodeDetails node, Universe universe, List<String> command, ShellProcessContext context) {
+    Optional<ShellResponse> response =
+        runWithPooledSsh(
+            node,
+            universe,
+            target ->
+                sshSessionPool.runCommand(
+                    target,
+                    SshSessionPool.joinCommand(command),
+                    context.getTimeoutSecs(),
+                    MapUtils.isEmpty(context.getRedactedVals())));
+    if (response.isPresent()) {
+      return response.get();
+    }
     List<String> actionArgs = new ArrayList<>();
     if (MapUtils.isNotEmpty(context.getRedactedVals())) {
       actionArgs.add("--skip_cmd_logging");
@@ -143,6 +201,16 @@ public class NodeUniverseManager extends DevopsBase {
       String localScriptPath,
       List<String> params,
       ShellProcessContext context) {
+    Optional<ShellResponse> response =
+        runWithPooledSsh(
+            node,
+            universe,
+            target ->
+                sshSessionPool.runScript(
+                    target, localScriptPath, params, context.getTimeoutSecs()));
+    if (response.isPresent()) {
+      return response.get();
+    }
     List<String> actionArgs = new ArrayList<>();
     actionArgs.add("--local_script_path");
     actionArgs.add(localScriptPath);
@@ -248,6 +316,100 @@ public class NodeUniverseManager extends DevopsBase {
     return provider.getYbHome();
   }
 
+  /**
+   * Runs the action over the pooled SSH sessions when they are enabled and the node is reached
+   * with SSH. Returns empty when the action should run through run_node_action.py instead,
+   * including when no SSH session could be established.
+   */
+  private Optional<ShellResponse> runWithPooledSsh(
+      NodeDetails node, Universe universe, Function<SshSessionPool.Target, ShellResponse> action) {
+    if (sshSessionPool == null || !sshSessionPool.isEnabled()) {
+      return Optional.empty();
+    }
+    Common.CloudType cloudType = universe.getNodeDeploymentMode(node);
+    if (cloudType.equals(Common.CloudType.kubernetes)
+        || cloudType.equals(Common.CloudType.unknown)
+        || runtimeConfigFactory.globalRuntimeConf().getBoolean("yb.security.ssh2_enabled")) {
+      return Optional.empty();
+    }
+    UniverseDefinitionTaskParams.Cluster cluster =
+        universe.getUniverseDetails().getClusterByUuid(node.placementUuid);
+    UUID providerUUID = UUID.fromString(cluster.userIntent.provider);
+    AccessKey accessKey = AccessKey.getOrBadRequest(providerUUID, cluster.userIntent.accessKeyCode);
+    Integer sshPort = accessKey.getKeyInfo().sshPort;
+    SshSessionPool.Target target =
+        new SshSessionPool.Target(
+            node.cloudInfo.private_ip,
+            sshPort == null ? DEFAULT_SSH_PORT : sshPort,
+            YB_USERNAME,
+            accessKey.getKeyInfo().privateKey);
+    try {
+      return Optional.of(action.apply(target));
+    } catch (SshSessionPool.SshConnectException e) {
+      log.warn("{}, falling back to {}", e.getMessage(), NODE_ACTION_SSH_SCRIPT);
+      return Optional.empty();
+    }
+  }
+
+  private static String getNodeLockKey(NodeDetails node, Universe universe) {
+    return universe.getUniverseUUID() + "/" + node.nodeName;
+  }
+
+  private ShellResponse downloadNodeLogsWithPooledSsh(
+      SshSessionPool.Target target, NodeDetails node, String ybHomeDir, String targetLocalFile) {
+    List<String> command = new ArrayList<>();
+    command.add("tar");
+    command.add("-czf");
+    command.add("-");
+    command.add("-h");
+    command.add("-C");
+    command.add(ybHomeDir);
+    command.add("tserver/logs/yb-tserver.INFO");
+    if (node.isMaster) {
+      command.add("master/logs/yb-master.INFO");
+    }
+    return sshSessionPool.runCommandToFile(
+        target, SshSessionPool.joinCommand(command), targetLocalFile, 0);
+  }
+
+  /**
+   * Streams a tar archive of the files that exist out of the given ones, as created by
+   * node_utils.sh create_tar_file, into the local file. Nothing is written to the node's disk, and
+   * no local file is left when none of the files exist.
+   */
+  private ShellResponse downloadNodeFileWithPooledSsh(
+      SshSessionPool.Target target,
+      String ybHomeDir,
+      String sourceNodeFiles,
+      String targetLocalFile) {
+    List<String> files =
+        Arrays.stream(sourceNodeFiles.split(";"))
+            .filter(StringUtils::isNotBlank)
+            .collect(Collectors.toList());
+    if (files.isEmpty()) {
+      return ShellResponse.create(
+          ShellResponse.ERROR_CODE_GENERIC_ERROR, "No file names given as input to archive");
+    }
+    List<String> setFiles = new ArrayList<>();
+    setFiles.add("set");
+    setFiles.add("--");
+    setFiles.addAll(files);
+    String command =
+        "cd "
+            + SshSessionPool.joinCommand(Collections.singletonList(ybHomeDir))
+            + " && "
+            + SshSessionPool.joinCommand(setFiles)
+            // Keep only the files that exist.
+            + " && for f; do shift; if [ -e \"$f\" ]; then set -- \"$@\" \"$f\"; fi; done"
+            + " && if [ $# -gt 0 ]; then tar -czf - -h \"$@\"; fi";
+    ShellResponse response = sshSessionPool.runCommandToFile(target, command, targetLocalFile, 0);
+    File localFile = new File(targetLocalFile);
+    if (localFile.length() == 0) {
+      localFile.delete();
+    }
+    return response;
+  }
+
   private ShellResponse executeNodeAction(
       UniverseNodeAction nodeAction,
       Universe universe,
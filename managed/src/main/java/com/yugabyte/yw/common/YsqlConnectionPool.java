@@ -0,0 +1,362 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.common;
+
+import static play.mvc.Http.Status.INTERNAL_SERVER_ERROR;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.yugabyte.yw.common.config.RuntimeConfigFactory;
+import com.yugabyte.yw.models.Universe;
+import com.yugabyte.yw.models.helpers.CommonUtils;
+import com.yugabyte.yw.models.helpers.NodeDetails;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs diagnostic queries on the nodes over JDBC connections kept open between queries, rather
+ * than with ysqlsh on the node over SSH. Up to a maximum number of connections are kept per node
+ * and database, and closed once unused for long enough.
+ *
+ * <p>The connections are made as the default YSQL user. A node which can't be connected to, e.g.
+ * as YSQL auth is enabled with another password, isn't retried for a while, and the queries fall
+ * back to ysqlsh on the node meanwhile.
+ */
+@Singleton
+@Slf4j
+public class YsqlConnectionPool {
+  static final String POOL_ENABLED_KEY = "yb.ysql_connection_pool.enabled";
+  static final String MAX_CONNECTIONS_PER_NODE_KEY =
+      "yb.ysql_connection_pool.max_connections_per_node";
+  static final String CONNECT_TIMEOUT_KEY = "yb.ysql_connection_pool.connect_timeout";
+  static final String STATEMENT_TIMEOUT_KEY = "yb.ysql_connection_pool.statement_timeout";
+  static final String IDLE_TIMEOUT_KEY = "yb.ysql_connection_pool.idle_timeout";
+  static final String UNREACHABLE_RETRY_DELAY_KEY =
+      "yb.ysql_connection_pool.unreachable_retry_delay";
+
+  private static final Duration EVICTION_INTERVAL = Duration.ofMinutes(1);
+
+  private static final Counter CONNECTS =
+      Counter.build("ybp_ysql_connection_pool_connects", "Count of YSQL connections opened")
+          .register(CollectorRegistry.defaultRegistry);
+  private static final Counter CONNECT_FAILURES =
+      Counter.build(
+              "ybp_ysql_connection_pool_connect_failures",
+              "Count of failed YSQL connection attempts, followed by a fallback to ysqlsh")
+          .register(CollectorRegistry.defaultRegistry);
+  private static final Gauge POOL_SIZE =
+      Gauge.build("ybp_ysql_connection_pool_size", "Number of YSQL connections held in the pool")
+          .register(CollectorRegistry.defaultRegistry);
+
+  private final RuntimeConfigFactory runtimeConfigFactory;
+
+  // Guarded by "this".
+  private final Map<Target, NodeConnections> pool = new HashMap<>();
+
+  /** Where to connect. */
+  @Value
+  static class Target {
+    String host;
+    int port;
+    String dbName;
+    // Root certificate to verify the node with, null if client to node TLS is disabled.
+    String caCert;
+  }
+
+  private static class IdleConnection {
+    private final Connection connection;
+    private final long releasedMs;
+
+    private IdleConnection(Connection connection) {
+      this.connection = connection;
+      this.releasedMs = System.currentTimeMillis();
+    }
+  }
+
+  private static class NodeConnections {
+    private final Target target;
+    private final Semaphore permits;
+    // The fields below are guarded by the pool.
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private int numOpen;
+    private int refCount;
+    private long unreachableUntilMs;
+
+    private NodeConnections(Target target, int maxConnections) {
+      this.target = target;
+      this.permits = new Semaphore(maxConnections);
+    }
+  }
+
+  @Inject
+  public YsqlConnectionPool(
+      RuntimeConfigFactory runtimeConfigFactory,
+      PlatformScheduler platformScheduler,
+      ShutdownHookHandler shutdownHookHandler) {
+    this.runtimeConfigFactory = runtimeConfigFactory;
+    // Scheduled even if the pool is disabled, as it can be enabled at runtime.
+    platformScheduler.schedule(
+        getClass().getSimpleName(),
+        EVICTION_INTERVAL,
+        EVICTION_INTERVAL,
+        this::evictIdleConnections);
+    shutdownHookHandler.addShutdownHook(this::close);
+  }
+
+  private com.typesafe.config.Config config() {
+    return runtimeConfigFactory.globalRuntimeConf();
+  }
+
+  public boolean isEnabled() {
+    return config().getBoolean(POOL_ENABLED_KEY);
+  }
+
+  /**
+   * Runs the query, which returns a single jsonb value such as the jsonb_agg of the rows, on the
+   * node and returns that value. A null value, as returned by jsonb_agg without rows, is returned
+   * as an empty array.
+   *
+   * @return empty if the pool is disabled or the node can't be connected to, in which case the
+   *     query should run with ysqlsh on the node instead.
+   * @throws SQLException if the query failed on the node.
+   */
+  public Optional<String> queryJson(
+      Universe universe, NodeDetails node, String dbName, String query) throws SQLException {
+    if (!isEnabled()) {
+      return Optional.empty();
+    }
+    String host = null;
+    if (node.cloudInfo != null) {
+      host =
+          node.cloudInfo.private_ip == null
+              ? node.cloudInfo.private_dns
+              : node.cloudInfo.private_ip;
+    }
+    if (host == null) {
+      return Optional.empty();
+    }
+    return queryJson(
+        new Target(host, node.ysqlServerRpcPort, dbName, universe.getCertificateClientToNode()),
+        query);
+  }
+
+  /**
+   * Runs the query, which returns a single jsonb value, on the node and returns that value. The
+   * query runs over a pooled connection to the node when possible, and with ysqlsh on the node
+   * otherwise.
+   *
+   * @param pool the pool to use, null to always use ysqlsh.
+   */
+  public static String runJsonQuery(
+      YsqlConnectionPool pool,
+      NodeUniverseManager nodeUniverseManager,
+      NodeDetails node,
+      Universe universe,
+      String dbName,
+      String query) {
+    if (pool != null) {
+      try {
+        Optional<String> result = pool.queryJson(universe, node, dbName, query);
+        if (result.isPresent()) {
+          return result.get();
+        }
+      } catch (SQLException e) {
+        throw new PlatformServiceException(
+            INTERNAL_SERVER_ERROR,
+            String.format(
+                "Failed to query database %s on node %s: %s",
+                dbName, node.getNodeName(), e.getMessage()));
+      }
+    }
+    ShellResponse response = nodeUniverseManager.runYsqlCommand(node, universe, dbName, query);
+    return CommonUtils.extractJsonisedSqlResponse(response);
+  }
+
+  @VisibleForTesting
+  Optional<String> queryJson(Target target, String query) throws SQLException {
+    NodeConnections nodeConnections;
+    synchronized (this) {
+      nodeConnections =
+          pool.computeIfAbsent(
+              target, t -> new NodeConnections(t, config().getInt(MAX_CONNECTIONS_PER_NODE_KEY)));
+      if (System.currentTimeMillis() < nodeConnections.unreachableUntilMs) {
+        return Optional.empty();
+      }
+      nodeConnections.refCount++;
+    }
+    try {
+      nodeConnections.permits.acquire();
+    } catch (InterruptedException e) {
+      synchronized (this) {
+        nodeConnections.refCount--;
+      }
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted waiting for a YSQL connection to " + target.host);
+    }
+    Connection connection;
+    try {
+      connection = getConnection(nodeConnections);
+    } catch (SQLException e) {
+      CONNECT_FAILURES.inc();
+      log.warn(
+          "Failed to connect to YSQL on {}:{}, falling back to ysqlsh - {}",
+          target.host,
+          target.port,
+          e.getMessage());
+      synchronized (this) {
+        nodeConnections.unreachableUntilMs =
+            System.currentTimeMillis()
+                + config().getDuration(UNREACHABLE_RETRY_DELAY_KEY).toMillis();
+      }
+      release(nodeConnections, null);
+      return Optional.empty();
+    }
+    boolean succeeded = false;
+    try (Statement statement = connection.createStatement()) {
+      statement.setQueryTimeout((int) config().getDuration(STATEMENT_TIMEOUT_KEY).getSeconds());
+      try (ResultSet resultSet = statement.executeQuery(query)) {
+        String value = resultSet.next() ? resultSet.getString(1) : null;
+        succeeded = true;
+        return Optional.of(value == null ? "[]" : value);
+      }
+    } finally {
+      if (!succeeded) {
+        // The connection may be broken after a failure, so it is not reused.
+        closeQuietly(connection);
+        closed(nodeConnections);
+      }
+      release(nodeConnections, succeeded ? connection : null);
+    }
+  }
+
+  /** Returns an idle connection to the node that is still valid, or a new one. */
+  private Connection getConnection(NodeConnections nodeConnections) throws SQLException {
+    while (true) {
+      IdleConnection idleConnection;
+      synchronized (this) {
+        idleConnection = nodeConnections.idle.pollFirst();
+      }
+      if (idleConnection == null) {
+        break;
+      }
+      if (idleConnection.connection.isValid(getConnectTimeoutSecs())) {
+        return idleConnection.connection;
+      }
+      closeQuietly(idleConnection.connection);
+      closed(nodeConnections);
+    }
+    Connection connection = connect(nodeConnections.target);
+    CONNECTS.inc();
+    synchronized (this) {
+      nodeConnections.numOpen++;
+      POOL_SIZE.inc();
+    }
+    return connection;
+  }
+
+  @VisibleForTesting
+  Connection connect(Target target) throws SQLException {
+    Properties props = new Properties();
+    props.put("user", Util.DEFAULT_YSQL_USERNAME);
+    props.put("password", Util.DEFAULT_YSQL_PASSWORD);
+    props.put("connectTimeout", String.valueOf(getConnectTimeoutSecs()));
+    props.put("loginTimeout", String.valueOf(getConnectTimeoutSecs()));
+    if (target.caCert != null) {
+      // Same as YsqlQueryExecutor.executeQuery, the CN of the node certificate is not checked.
+      props.put("sslmode", "verify-ca");
+      props.put("sslrootcert", target.caCert);
+    }
+    String url =
+        String.format("jdbc:postgresql://%s:%d/%s", target.host, target.port, target.dbName);
+    return DriverManager.getConnection(url, props);
+  }
+
+  /**
+   * Gives back the permit taken for the query, along with the connection to keep for the next
+   * queries if not null.
+   */
+  private synchronized void release(NodeConnections nodeConnections, Connection connection) {
+    if (connection != null) {
+      nodeConnections.idle.addFirst(new IdleConnection(connection));
+    }
+    nodeConnections.permits.release();
+    nodeConnections.refCount--;
+  }
+
+  private synchronized void closed(NodeConnections nodeConnections) {
+    nodeConnections.numOpen--;
+    POOL_SIZE.dec();
+  }
+
+  private int getConnectTimeoutSecs() {
+    return (int) config().getDuration(CONNECT_TIMEOUT_KEY).getSeconds();
+  }
+
+  private void evictIdleConnections() {
+    // Connections pooled before the pool got disabled are all closed.
+    evictIdleConnections(isEnabled() ? config().getDuration(IDLE_TIMEOUT_KEY).toMillis() : 0L);
+  }
+
+  @VisibleForTesting
+  void evictIdleConnections(long idleTimeoutMs) {
+    long now = System.currentTimeMillis();
+    List<Connection> toClose = new ArrayList<>();
+    synchronized (this) {
+      Iterator<NodeConnections> iter = pool.values().iterator();
+      while (iter.hasNext()) {
+        NodeConnections nodeConnections = iter.next();
+        // The least recently used connections are at the end.
+        while (!nodeConnections.idle.isEmpty()
+            && now - nodeConnections.idle.peekLast().releasedMs >= idleTimeoutMs) {
+          toClose.add(nodeConnections.idle.pollLast().connection);
+          nodeConnections.numOpen--;
+          POOL_SIZE.dec();
+        }
+        if (nodeConnections.refCount == 0
+            && nodeConnections.numOpen == 0
+            && now >= nodeConnections.unreachableUntilMs) {
+          iter.remove();
+        }
+      }
+    }
+    toClose.forEach(YsqlConnectionPool::closeQuietly);
+  }
+
+  @VisibleForTesting
+  synchronized int getNumOpenConnections() {
+    return pool.values().stream().mapToInt(nodeConnections -> nodeConnections.numOpen).sum();
+  }
+
+  /** Closes all the idle connections. */
+  public void close() {
+    evictIdleConnections(0L);
+  }
+
+  private static void closeQuietly(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      log.debug("Failed to close YSQL connection", e);
+    }
+  }
+}
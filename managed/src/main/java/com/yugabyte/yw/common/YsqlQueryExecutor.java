@@ -27,9 +27,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import play.libs.Json;
 import play.mvc.Http;
 
 @Singleton
@@ -57,6 +59,8 @@ public class YsqlQueryExecutor {
   RuntimeConfigFactory runtimeConfigFactory;
   NodeUniverseManager nodeUniverseManager;
 
+  @Inject YsqlConnectionPool ysqlConnectionPool;
+
   @Inject
   public YsqlQueryExecutor(
       RuntimeConfigFactory runtimeConfigFactory, NodeUniverseManager nodeUniverseManager) {
@@ -185,6 +189,32 @@ public class YsqlQueryExecutor {
     return response;
   }
 
+  /**
+   * Runs the diagnostic SELECT query on the node, and returns the response in the format of
+   * executeQueryInNodeShell. The query runs over a pooled connection to the node when possible, and
+   * with ysqlsh on the node otherwise.
+   */
+  public JsonNode executeDiagnosticQuery(
+      Universe universe, RunQueryFormData queryParams, NodeDetails node) {
+    if (ysqlConnectionPool != null) {
+      ObjectNode response = newObject();
+      response.put("type", "ysql");
+      try {
+        Optional<String> result =
+            ysqlConnectionPool.queryJson(
+                universe, node, queryParams.db_name, wrapJsonAgg(queryParams.query));
+        if (result.isPresent()) {
+          response.set("result", Json.parse(result.get()));
+          return response;
+        }
+      } catch (SQLException | RuntimeException e) {
+        response.put("error", removeQueryFromErrorMessage(e.getMessage(), queryParams.query));
+        return response;
+      }
+    }
+    return executeQueryInNodeShell(universe, queryParams, node);
+  }
+
   public JsonNode runQueryUtil(Universe universe, DatabaseUserFormData data, String query) {
     RunQueryFormData ysqlQuery = new RunQueryFormData();
     // Create user for customer YSQL.
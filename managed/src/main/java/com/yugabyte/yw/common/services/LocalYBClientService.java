@@ -2,23 +2,81 @@
 
 package com.yugabyte.yw.common.services;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.net.HostAndPort;
+import com.yugabyte.yw.common.PlatformScheduler;
+import com.yugabyte.yw.common.config.RuntimeConfigFactory;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.yb.client.AsyncYBClient;
 import org.yb.client.YBClient;
 
 @Singleton
 public class LocalYBClientService implements YBClientService {
   public static final Logger LOG = LoggerFactory.getLogger(LocalYBClientService.class);
 
+  static final String POOL_ENABLED_KEY = "yb.client_pool.enabled";
+  static final String POOL_IDLE_TIMEOUT_KEY = "yb.client_pool.idle_timeout";
+  static final String POOL_MAX_IDLE_CLIENTS_KEY = "yb.client_pool.max_idle_clients";
+
+  private static final Duration POOL_EVICTION_INTERVAL = Duration.ofMinutes(1);
+
+  private static final Counter POOL_HITS =
+      Counter.build("ybp_yb_client_pool_hits", "Count of YBClient requests served from the pool")
+          .register(CollectorRegistry.defaultRegistry);
+  private static final Counter POOL_MISSES =
+      Counter.build("ybp_yb_client_pool_misses", "Count of YBClient requests creating a client")
+          .register(CollectorRegistry.defaultRegistry);
+  private static final Counter POOL_EVICTIONS =
+      Counter.build("ybp_yb_client_pool_evictions", "Count of pooled YBClients closed")
+          .register(CollectorRegistry.defaultRegistry);
+  private static final Gauge POOL_SIZE =
+      Gauge.build("ybp_yb_client_pool_size", "Number of YBClients currently held in the pool")
+          .register(CollectorRegistry.defaultRegistry);
+
+  private final RuntimeConfigFactory runtimeConfigFactory;
+
+  // Guarded by "this".
+  private final Map<PoolKey, PooledClient> pool = new HashMap<>();
+  // Latest masters requested for each universe. Guarded by "this".
+  private final Map<UUID, String> universeMasters = new HashMap<>();
+
+  @Inject
+  public LocalYBClientService(
+      RuntimeConfigFactory runtimeConfigFactory, PlatformScheduler platformScheduler) {
+    this.runtimeConfigFactory = runtimeConfigFactory;
+    // Scheduled even if the pool is disabled, as it can be enabled at runtime.
+    platformScheduler.schedule(
+        getClass().getSimpleName(),
+        POOL_EVICTION_INTERVAL,
+        POOL_EVICTION_INTERVAL,
+        this::evictIdleClients);
+  }
+
   @Override
-  public synchronized YBClient getClient(String masterHostPorts) {
+  public YBClient getClient(String masterHostPorts) {
     return getClient(masterHostPorts, null);
   }
 
   @Override
-  public synchronized YBClient getClient(String masterHostPorts, String certFile) {
+  public YBClient getClient(String masterHostPorts, String certFile) {
     if (masterHostPorts != null) {
       return getNewClient(masterHostPorts, certFile);
     }
@@ -26,7 +84,7 @@ public class LocalYBClientService implements YBClientService {
   }
 
   @Override
-  public synchronized void closeClient(YBClient client, String masterHostPorts) {
+  public void closeClient(YBClient client, String masterHostPorts) {
     if (client != null) {
       LOG.debug("Closing client masters={}.", masterHostPorts);
       try {
@@ -49,9 +107,230 @@ public class LocalYBClientService implements YBClientService {
     if (config == null || StringUtils.isBlank(config.getMasterHostPorts())) {
       return null;
     }
+    if (isPoolEnabled()) {
+      return getPooledClient(config);
+    }
     return new YBClient.YBClientBuilder(config.getMasterHostPorts())
         .defaultAdminOperationTimeoutMs(config.getAdminOperationTimeout().toMillis())
         .sslCertFile(config.getCertFile())
         .build();
   }
+
+  private boolean isPoolEnabled() {
+    return runtimeConfigFactory.globalRuntimeConf().getBoolean(POOL_ENABLED_KEY);
+  }
+
+  private YBClient getPooledClient(Config clientConfig) {
+    PoolKey key = new PoolKey(clientConfig);
+    List<PooledClient> toClose = Collections.emptyList();
+    PooledClient client;
+    synchronized (this) {
+      if (clientConfig.getUniverseUUID() != null) {
+        toClose = invalidateOldMasters(clientConfig.getUniverseUUID(), key.masterHostPorts);
+      }
+      client = pool.get(key);
+      if (client != null) {
+        POOL_HITS.inc();
+      } else {
+        POOL_MISSES.inc();
+        AsyncYBClient asyncClient =
+            new AsyncYBClient.AsyncYBClientBuilder(key.masterHostPorts)
+                .defaultAdminOperationTimeoutMs(key.adminOperationTimeoutMs)
+                .sslCertFile(key.certFile)
+                .build();
+        client = new PooledClient(key, asyncClient);
+        pool.put(key, client);
+        POOL_SIZE.set(pool.size());
+      }
+      client.refCount++;
+    }
+    toClose.forEach(LocalYBClientService::closeQuietly);
+    return new PooledYBClient(this, client);
+  }
+
+  /**
+   * Drops the clients for the previous masters of the universe, if they changed. Idle ones are
+   * returned to be closed, busy ones are closed on their last release.
+   */
+  private synchronized List<PooledClient> invalidateOldMasters(
+      UUID universeUUID, String masterHostPorts) {
+    String oldMasterHostPorts = universeMasters.put(universeUUID, masterHostPorts);
+    if (oldMasterHostPorts == null || oldMasterHostPorts.equals(masterHostPorts)) {
+      return Collections.emptyList();
+    }
+    LOG.info(
+        "Masters of universe {} changed from {} to {}, dropping pooled clients.",
+        universeUUID,
+        oldMasterHostPorts,
+        masterHostPorts);
+    List<PooledClient> stale =
+        pool.values().stream()
+            .filter(c -> c.key.masterHostPorts.equals(oldMasterHostPorts))
+            .collect(Collectors.toList());
+    stale.forEach(this::remove);
+    return stale.stream().filter(c -> c.refCount == 0).collect(Collectors.toList());
+  }
+
+  /** Called when a holder of a pooled client closes its handle. */
+  private void release(PooledClient client) {
+    List<PooledClient> toClose;
+    synchronized (this) {
+      client.refCount--;
+      client.lastReleasedMs = System.currentTimeMillis();
+      if (client.refCount > 0) {
+        return;
+      }
+      if (pool.get(client.key) != client) {
+        // Already dropped from the pool while in use.
+        toClose = Collections.singletonList(client);
+      } else {
+        List<PooledClient> idle =
+            pool.values().stream()
+                .filter(c -> c.refCount == 0)
+                .sorted(Comparator.comparingLong(c -> c.lastReleasedMs))
+                .collect(Collectors.toList());
+        int maxIdle = runtimeConfigFactory.globalRuntimeConf().getInt(POOL_MAX_IDLE_CLIENTS_KEY);
+        toClose =
+            idle.stream().limit(Math.max(idle.size() - maxIdle, 0)).collect(Collectors.toList());
+        toClose.forEach(this::remove);
+      }
+    }
+    toClose.forEach(LocalYBClientService::closeQuietly);
+  }
+
+  private void evictIdleClients() {
+    // Clients pooled before the pool got disabled are all closed.
+    com.typesafe.config.Config config = runtimeConfigFactory.globalRuntimeConf();
+    evictIdleClients(
+        config.getBoolean(POOL_ENABLED_KEY)
+            ? config.getDuration(POOL_IDLE_TIMEOUT_KEY).toMillis()
+            : 0L);
+  }
+
+  @VisibleForTesting
+  void evictIdleClients(long idleTimeoutMs) {
+    List<PooledClient> toClose;
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      toClose =
+          pool.values().stream()
+              .filter(c -> c.refCount == 0 && now - c.lastReleasedMs >= idleTimeoutMs)
+              .collect(Collectors.toList());
+      toClose.forEach(this::remove);
+    }
+    // Closed without holding the monitor, as closing may block on the masters.
+    toClose.forEach(LocalYBClientService::closeQuietly);
+  }
+
+  private synchronized void remove(PooledClient client) {
+    pool.remove(client.key, client);
+    POOL_SIZE.set(pool.size());
+    POOL_EVICTIONS.inc();
+  }
+
+  private static void closeQuietly(PooledClient client) {
+    LOG.debug("Closing pooled client masters={}.", client.key.masterHostPorts);
+    try {
+      client.asyncClient.close();
+    } catch (Exception e) {
+      LOG.warn(
+          "Closing pooled client with masters={} hit error {}",
+          client.key.masterHostPorts,
+          e.getMessage());
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int getPoolSize() {
+    return pool.size();
+  }
+
+  @VisibleForTesting
+  static AsyncYBClient getAsyncClient(YBClient client) {
+    return ((PooledYBClient) client).client.asyncClient;
+  }
+
+  /** Identifies clients which can be shared: same masters, certificate and timeouts. */
+  private static class PoolKey {
+    private final String masterHostPorts;
+    private final String certFile;
+    private final long adminOperationTimeoutMs;
+
+    PoolKey(Config config) {
+      this.masterHostPorts =
+          Arrays.stream(config.getMasterHostPorts().split(","))
+              .map(String::trim)
+              .filter(StringUtils::isNotEmpty)
+              .map(hp -> HostAndPort.fromString(hp).toString())
+              .sorted()
+              .distinct()
+              .collect(Collectors.joining(","));
+      this.certFile = config.getCertFile();
+      this.adminOperationTimeoutMs = config.getAdminOperationTimeout().toMillis();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof PoolKey)) {
+        return false;
+      }
+      PoolKey other = (PoolKey) o;
+      return adminOperationTimeoutMs == other.adminOperationTimeoutMs
+          && masterHostPorts.equals(other.masterHostPorts)
+          && Objects.equals(certFile, other.certFile);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(masterHostPorts, certFile, adminOperationTimeoutMs);
+    }
+  }
+
+  /** A client held in the pool, shared by the handles given out for it. */
+  private static class PooledClient {
+    private final PoolKey key;
+    private final AsyncYBClient asyncClient;
+    // Guarded by the service monitor.
+    private int refCount = 0;
+    private long lastReleasedMs = System.currentTimeMillis();
+
+    PooledClient(PoolKey key, AsyncYBClient asyncClient) {
+      this.key = key;
+      this.asyncClient = asyncClient;
+    }
+  }
+
+  /**
+   * A handle on a pooled client, given to a single caller. Closing or shutting it down (directly
+   * or through closeClient) only drops its reference, once; the underlying connections are torn
+   * down by the pool.
+   */
+  private static class PooledYBClient extends YBClient {
+    private final LocalYBClientService service;
+    private final PooledClient client;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    PooledYBClient(LocalYBClientService service, PooledClient client) {
+      super(client.asyncClient);
+      this.service = service;
+      this.client = client;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        service.release(client);
+      } else {
+        LOG.debug("Pooled client for masters {} already closed", client.key.masterHostPorts);
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      close();
+    }
+  }
 }
@@ -3,6 +3,7 @@
 package com.yugabyte.yw.common.services;
 
 import java.time.Duration;
+import java.util.UUID;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
@@ -19,6 +20,8 @@ public interface YBClientService {
     private @NonNull String masterHostPorts;
     private String certFile;
     private Duration adminOperationTimeout = Duration.ofMillis(DEFAULT_ADMIN_OPERATION_TIMEOUT_MS);
+    // Universe the masters belong to, if known. Lets clients for its older masters be dropped.
+    private UUID universeUUID;
 
     public Config(String masterHostPorts) {
       this(masterHostPorts, null);
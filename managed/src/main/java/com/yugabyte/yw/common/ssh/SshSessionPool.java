@@ -0,0 +1,536 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.common.ssh;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.yugabyte.yw.common.PlatformScheduler;
+import com.yugabyte.yw.common.ShellResponse;
+import com.yugabyte.yw.common.ShutdownHookHandler;
+import com.yugabyte.yw.common.config.RuntimeConfigFactory;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.channel.ChannelExec;
+import org.apache.sshd.client.channel.ClientChannelEvent;
+import org.apache.sshd.client.keyverifier.AcceptAllServerKeyVerifier;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.keyprovider.FileKeyPairProvider;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+
+/**
+ * Runs commands and transfers files on nodes over SSH from within the JVM. One SSH connection is
+ * kept per node, and concurrent commands and file transfers to the node are multiplexed as
+ * channels over it, up to a maximum number of channels per node. Connections are kept alive with
+ * heartbeats and closed once unused for long enough.
+ */
+@Singleton
+@Slf4j
+public class SshSessionPool {
+  static final String POOL_ENABLED_KEY = "yb.ssh_session_pool.enabled";
+  static final String MAX_CHANNELS_PER_NODE_KEY = "yb.ssh_session_pool.max_channels_per_node";
+  static final String CONNECT_TIMEOUT_KEY = "yb.ssh_session_pool.connect_timeout";
+  static final String KEEPALIVE_INTERVAL_KEY = "yb.ssh_session_pool.keepalive_interval";
+  static final String IDLE_TIMEOUT_KEY = "yb.ssh_session_pool.idle_timeout";
+
+  private static final Duration EVICTION_INTERVAL = Duration.ofMinutes(1);
+
+  private static final Counter CONNECTS =
+      Counter.build("ybp_ssh_session_pool_connects", "Count of SSH connections opened to nodes")
+          .register(CollectorRegistry.defaultRegistry);
+  private static final Counter CHANNELS =
+      Counter.build("ybp_ssh_session_pool_channels", "Count of SSH channels opened to nodes")
+          .register(CollectorRegistry.defaultRegistry);
+  private static final Gauge POOL_SIZE =
+      Gauge.build("ybp_ssh_session_pool_size", "Number of SSH connections held in the pool")
+          .register(CollectorRegistry.defaultRegistry);
+
+  private final RuntimeConfigFactory runtimeConfigFactory;
+
+  // Guarded by "this".
+  private final Map<Target, PooledSession> pool = new HashMap<>();
+
+  // Guarded by "this", started with the first connection.
+  private SshClient client;
+
+  /** Where and as whom to connect. */
+  @Value
+  public static class Target {
+    String host;
+    int port;
+    String user;
+    String privateKeyFile;
+  }
+
+  /** Thrown when no SSH session could be established, before anything ran on the node. */
+  public static class SshConnectException extends RuntimeException {
+    SshConnectException(Target target, Throwable cause) {
+      super(
+          String.format(
+              "Failed to establish SSH connection to %s:%d - %s",
+              target.getHost(), target.getPort(), cause.getMessage()),
+          cause);
+    }
+  }
+
+  @Inject
+  public SshSessionPool(
+      RuntimeConfigFactory runtimeConfigFactory,
+      PlatformScheduler platformScheduler,
+      ShutdownHookHandler shutdownHookHandler) {
+    this.runtimeConfigFactory = runtimeConfigFactory;
+    // Scheduled even if the pool is disabled, as it can be enabled at runtime.
+    platformScheduler.schedule(
+        getClass().getSimpleName(), EVICTION_INTERVAL, EVICTION_INTERVAL, this::evictIdleSessions);
+    shutdownHookHandler.addShutdownHook(this::close);
+  }
+
+  private com.typesafe.config.Config config() {
+    return runtimeConfigFactory.globalRuntimeConf();
+  }
+
+  public boolean isEnabled() {
+    return config().getBoolean(POOL_ENABLED_KEY);
+  }
+
+  /**
+   * Runs the command on the node. On success the response message has the standard output of the
+   * command after the "Command output:" prefix, like the output of run_node_action.py.
+   *
+   * @param timeoutSecs the command is aborted if it takes longer than this, 0 to wait forever.
+   * @param logCommand whether the command can be logged.
+   */
+  public ShellResponse runCommand(
+      Target target, String command, long timeoutSecs, boolean logCommand) {
+    long startMs = System.currentTimeMillis();
+    ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    ExecResult result = exec(target, command, timeoutSecs, logCommand, stdout);
+    ShellResponse response =
+        toResponse(
+            result,
+            command,
+            timeoutSecs,
+            logCommand,
+            "Command output:\n" + new String(stdout.toByteArray(), StandardCharsets.UTF_8));
+    response.durationMs = System.currentTimeMillis() - startMs;
+    return response;
+  }
+
+  /**
+   * Runs the command on the node, writing its standard output to the local file as it arrives.
+   * This downloads the output of e.g. tar without staging it in a file on the node.
+   *
+   * @param timeoutSecs the command is aborted if it takes longer than this, 0 to wait forever.
+   */
+  public ShellResponse runCommandToFile(
+      Target target, String command, String targetFile, long timeoutSecs) {
+    long startMs = System.currentTimeMillis();
+    ExecResult result;
+    try (OutputStream out =
+        new BufferedOutputStream(Files.newOutputStream(Paths.get(targetFile)))) {
+      result = exec(target, command, timeoutSecs, true, out);
+    } catch (IOException e) {
+      return ShellResponse.create(
+          ShellResponse.ERROR_CODE_GENERIC_ERROR,
+          String.format("Failed to write %s: %s", targetFile, e.getMessage()));
+    }
+    ShellResponse response = toResponse(result, command, timeoutSecs, true, "");
+    response.durationMs = System.currentTimeMillis() - startMs;
+    return response;
+  }
+
+  private static ShellResponse toResponse(
+      ExecResult result,
+      String command,
+      long timeoutSecs,
+      boolean logCommand,
+      String successMessage) {
+    ShellResponse response;
+    if (result.exitStatus == null) {
+      response =
+          ShellResponse.create(
+              ShellResponse.ERROR_CODE_EXECUTION_CANCELLED,
+              String.format(
+                  "Command '%s' timed out after %d seconds",
+                  logCommand ? command : "", timeoutSecs));
+    } else if (result.exitStatus != 0) {
+      response =
+          ShellResponse.create(
+              ShellResponse.ERROR_CODE_GENERIC_ERROR,
+              String.format(
+                  "Command '%s' returned error code %d: %s",
+                  logCommand ? command : "", result.exitStatus, result.stderr.trim()));
+    } else {
+      response = ShellResponse.create(ShellResponse.ERROR_CODE_SUCCESS, successMessage);
+    }
+    return response;
+  }
+
+  /**
+   * Runs a local bash script on the node, passing it the given parameters. The script is sent on
+   * the command line as a heredoc, as run_node_action.py does.
+   */
+  public ShellResponse runScript(
+      Target target, String localScriptPath, List<String> params, long timeoutSecs) {
+    String script;
+    try {
+      script = new String(Files.readAllBytes(Paths.get(localScriptPath)), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      return ShellResponse.create(
+          ShellResponse.ERROR_CODE_GENERIC_ERROR,
+          "Failed to read script " + localScriptPath + ": " + e.getMessage());
+    }
+    String command =
+        String.format("/bin/bash -s %s <<'EOF'\n%s\nEOF", String.join(" ", params), script);
+    return runCommand(target, command, timeoutSecs, false);
+  }
+
+  /** Copies the local file to the node with SFTP, creating the parent directories first. */
+  public ShellResponse uploadFile(
+      Target target, String sourceFile, String targetFile, String permissions) {
+    Path parent = Paths.get(targetFile).getParent();
+    if (parent != null) {
+      String mkdirCommand = joinCommand(Arrays.asList("mkdir", "-p", parent.toString()));
+      ShellResponse response = runCommand(target, mkdirCommand, 0, true);
+      if (!response.isSuccess()) {
+        return response;
+      }
+    }
+    try {
+      withSftp(
+          target,
+          sftp -> {
+            try (OutputStream out = sftp.write(targetFile)) {
+              Files.copy(Paths.get(sourceFile), out);
+            }
+          });
+    } catch (IOException e) {
+      return ShellResponse.create(
+          ShellResponse.ERROR_CODE_GENERIC_ERROR,
+          String.format("Failed to upload %s to %s: %s", sourceFile, targetFile, e.getMessage()));
+    }
+    String chmodCommand = joinCommand(Arrays.asList("chmod", permissions, targetFile));
+    return runCommand(target, chmodCommand, 0, true);
+  }
+
+  /** Copies the file from the node with SFTP. */
+  public ShellResponse downloadFile(Target target, String sourceFile, String targetFile) {
+    try {
+      withSftp(
+          target,
+          sftp -> {
+            try (InputStream in = sftp.read(sourceFile)) {
+              Files.copy(in, Paths.get(targetFile), StandardCopyOption.REPLACE_EXISTING);
+            }
+          });
+    } catch (IOException e) {
+      return ShellResponse.create(
+          ShellResponse.ERROR_CODE_GENERIC_ERROR,
+          String.format(
+              "Failed to download %s to %s: %s", sourceFile, targetFile, e.getMessage()));
+    }
+    return ShellResponse.create(ShellResponse.ERROR_CODE_SUCCESS, "");
+  }
+
+  /**
+   * Joins the command arguments the way run_node_action.py does: arguments containing spaces are
+   * surrounded with single quotes.
+   */
+  public static String joinCommand(List<String> command) {
+    List<String> parts = new ArrayList<>(command.size());
+    for (String part : command) {
+      parts.add(part.contains(" ") ? "'" + part + "'" : part);
+    }
+    return String.join(" ", parts);
+  }
+
+  private static class ExecResult {
+    // Null if the command timed out.
+    private Integer exitStatus;
+    private String stderr;
+  }
+
+  private ExecResult exec(
+      Target target, String command, long timeoutSecs, boolean logCommand, OutputStream stdout) {
+    if (logCommand) {
+      log.info("Executing command {} on {}", command, target.getHost());
+    }
+    ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+    ExecResult result = new ExecResult();
+    PooledSession pooled = acquire(target);
+    try (ChannelExec channel = pooled.getSession().createExecChannel(command)) {
+      CHANNELS.inc();
+      channel.setOut(stdout);
+      channel.setErr(stderr);
+      channel.open().verify(getConnectTimeout().toMillis());
+      Set<ClientChannelEvent> events =
+          channel.waitFor(
+              EnumSet.of(ClientChannelEvent.CLOSED), TimeUnit.SECONDS.toMillis(timeoutSecs));
+      if (events.contains(ClientChannelEvent.TIMEOUT)) {
+        channel.close(true);
+      } else {
+        result.exitStatus = channel.getExitStatus();
+        if (result.exitStatus == null) {
+          // The channel was closed without an exit status, e.g. the command got a signal.
+          result.exitStatus = ShellResponse.ERROR_CODE_GENERIC_ERROR;
+        }
+      }
+    } catch (IOException e) {
+      log.error("Exception running command on {}", target.getHost(), e);
+      result.exitStatus = ShellResponse.ERROR_CODE_GENERIC_ERROR;
+      result.stderr = e.getMessage();
+    } finally {
+      release(pooled);
+    }
+    if (result.stderr == null) {
+      result.stderr = new String(stderr.toByteArray(), StandardCharsets.UTF_8);
+    }
+    return result;
+  }
+
+  private interface SftpAction {
+    void run(SftpClient sftp) throws IOException;
+  }
+
+  private void withSftp(Target target, SftpAction action) throws IOException {
+    PooledSession pooled = acquire(target);
+    try (SftpClient sftp = SftpClientFactory.instance().createSftpClient(pooled.getSession())) {
+      CHANNELS.inc();
+      action.run(sftp);
+    } finally {
+      release(pooled);
+    }
+  }
+
+  /**
+   * Returns the pooled session to the node, connecting if needed, once a channel can be opened on
+   * it. Must be followed by a call to {@link #release}.
+   */
+  private PooledSession acquire(Target target) {
+    int maxChannels = config().getInt(MAX_CHANNELS_PER_NODE_KEY);
+    PooledSession pooled;
+    synchronized (this) {
+      pooled = pool.computeIfAbsent(target, t -> new PooledSession(t, maxChannels));
+      pooled.refCount++;
+      POOL_SIZE.set(pool.size());
+    }
+    try {
+      pooled.channels.acquire();
+    } catch (InterruptedException e) {
+      release(pooled, false);
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted waiting for an SSH channel to " + target.getHost());
+    }
+    try {
+      // The client is got before connecting, so that the pool monitor is not taken while
+      // connecting.
+      pooled.connect(getClient(), getConnectTimeout());
+    } catch (RuntimeException e) {
+      release(pooled);
+      throw e;
+    }
+    return pooled;
+  }
+
+  private void release(PooledSession pooled) {
+    release(pooled, true);
+  }
+
+  private synchronized void release(PooledSession pooled, boolean releaseChannel) {
+    if (releaseChannel) {
+      pooled.channels.release();
+    }
+    pooled.refCount--;
+    pooled.lastReleasedMs = System.currentTimeMillis();
+  }
+
+  private Duration getConnectTimeout() {
+    return config().getDuration(CONNECT_TIMEOUT_KEY);
+  }
+
+  private SshClient getClient() {
+    // Read before taking the pool monitor, as reading the runtime config queries the DB.
+    Duration keepAliveInterval = config().getDuration(KEEPALIVE_INTERVAL_KEY);
+    synchronized (this) {
+      if (client == null) {
+        SshClient sshClient = SshClient.setUpDefaultClient();
+        // Node host keys are not known in advance, as with run_node_action.py.
+        sshClient.setServerKeyVerifier(AcceptAllServerKeyVerifier.INSTANCE);
+        CoreModuleProperties.HEARTBEAT_INTERVAL.set(sshClient, keepAliveInterval);
+        // Idle sessions are closed by evictIdleSessions.
+        CoreModuleProperties.IDLE_TIMEOUT.set(sshClient, Duration.ZERO);
+        sshClient.start();
+        client = sshClient;
+      }
+      return client;
+    }
+  }
+
+  private void evictIdleSessions() {
+    // Once disabled, the remaining sessions are closed as soon as they are released.
+    evictIdleSessions(isEnabled() ? config().getDuration(IDLE_TIMEOUT_KEY).toMillis() : 0L);
+  }
+
+  @VisibleForTesting
+  void evictIdleSessions(long idleTimeoutMs) {
+    List<PooledSession> toClose = new ArrayList<>();
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      for (PooledSession pooled : pool.values()) {
+        if (pooled.refCount == 0 && now - pooled.lastReleasedMs >= idleTimeoutMs) {
+          toClose.add(pooled);
+        }
+      }
+      toClose.forEach(pooled -> pool.remove(pooled.target));
+      POOL_SIZE.set(pool.size());
+    }
+    // Closed outside of the pool monitor, see PooledSession.
+    toClose.forEach(PooledSession::close);
+  }
+
+  @VisibleForTesting
+  synchronized int getPoolSize() {
+    return pool.size();
+  }
+
+  /** Closes all the sessions and stops the SSH client. */
+  public void close() {
+    List<PooledSession> toClose;
+    SshClient toStop;
+    synchronized (this) {
+      toClose = new ArrayList<>(pool.values());
+      pool.clear();
+      POOL_SIZE.set(0);
+      toStop = client;
+      client = null;
+    }
+    toClose.forEach(PooledSession::close);
+    if (toStop != null) {
+      toStop.stop();
+    }
+  }
+
+  /**
+   * The session to a node. Its monitor only guards the session field: it is never held across
+   * network calls, and the pool monitor is never taken while holding it.
+   */
+  private static class PooledSession {
+    private final Target target;
+    private final Semaphore channels;
+    // Held while connecting, so that the concurrent users of the node wait for the same
+    // connection rather than each opening one.
+    private final Object connectLock = new Object();
+    // Guarded by SshSessionPool.this.
+    private int refCount;
+    private long lastReleasedMs;
+    // Guarded by "this".
+    private volatile ClientSession session;
+    private boolean closed;
+
+    PooledSession(Target target, int maxChannels) {
+      this.target = target;
+      this.channels = new Semaphore(maxChannels, true);
+    }
+
+    private boolean isOpen() {
+      ClientSession current = session;
+      return current != null && current.isOpen();
+    }
+
+    /** Returns the open session, or fails if the session was closed meanwhile. */
+    ClientSession getSession() throws IOException {
+      ClientSession current = session;
+      if (current == null) {
+        throw new IOException(
+            String.format("SSH session to %s:%d closed", target.getHost(), target.getPort()));
+      }
+      return current;
+    }
+
+    /** Opens the session with the client, unless it is already open. */
+    void connect(SshClient sshClient, Duration connectTimeout) {
+      if (isOpen()) {
+        return;
+      }
+      synchronized (connectLock) {
+        if (isOpen()) {
+          return;
+        }
+        long timeoutMs = connectTimeout.toMillis();
+        ClientSession newSession = null;
+        try {
+          newSession =
+              sshClient
+                  .connect(target.getUser(), target.getHost(), target.getPort())
+                  .verify(timeoutMs)
+                  .getSession();
+          newSession.setKeyIdentityProvider(
+              new FileKeyPairProvider(Paths.get(target.getPrivateKeyFile())));
+          newSession.auth().verify(timeoutMs);
+        } catch (IOException | RuntimeException e) {
+          if (newSession != null) {
+            newSession.close(true);
+          }
+          throw new SshConnectException(target, e);
+        }
+        ClientSession stale;
+        boolean wasClosed;
+        synchronized (this) {
+          wasClosed = closed;
+          stale = wasClosed ? newSession : session;
+          if (!wasClosed) {
+            session = newSession;
+          }
+        }
+        if (stale != null) {
+          stale.close(true);
+        }
+        if (wasClosed) {
+          throw new SshConnectException(
+              target, new IllegalStateException("The SSH session pool was closed"));
+        }
+        CONNECTS.inc();
+        log.debug("Opened SSH session to {}:{}", target.getHost(), target.getPort());
+      }
+    }
+
+    void close() {
+      ClientSession toClose;
+      synchronized (this) {
+        closed = true;
+        toClose = session;
+        session = null;
+      }
+      if (toClose != null) {
+        log.debug("Closing SSH session to {}:{}", target.getHost(), target.getPort());
+        toClose.close(true);
+      }
+    }
+  }
+}
@@ -1,9 +1,11 @@
 package com.yugabyte.yw.common.supportbundle;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.typesafe.config.Config;
 import com.yugabyte.yw.common.NodeUniverseManager;
+import com.yugabyte.yw.common.PlatformExecutorFactory;
 import com.yugabyte.yw.common.ShellResponse;
 import com.yugabyte.yw.common.SupportBundleUtil;
 import com.yugabyte.yw.controllers.handlers.UniverseInfoHandler;
@@ -19,9 +21,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 
 @Slf4j
 @Singleton
@@ -31,18 +39,28 @@ class UniverseLogsComponent implements SupportBundleComponent {
   private final NodeUniverseManager nodeUniverseManager;
   protected final Config config;
   private final SupportBundleUtil supportBundleUtil;
+  // Shared by all the bundles being created, bounds the number of nodes downloaded from at once.
+  private final ExecutorService nodeDownloadExecutor;
   public final String NODE_UTILS_SCRIPT = "bin/node_utils.sh";
+  static final String MAX_PARALLEL_NODE_DOWNLOADS_KEY =
+      "yb.support_bundle.max_parallel_node_downloads";
 
   @Inject
   UniverseLogsComponent(
       UniverseInfoHandler universeInfoHandler,
       NodeUniverseManager nodeUniverseManager,
       Config config,
-      SupportBundleUtil supportBundleUtil) {
+      SupportBundleUtil supportBundleUtil,
+      PlatformExecutorFactory platformExecutorFactory) {
     this.universeInfoHandler = universeInfoHandler;
     this.nodeUniverseManager = nodeUniverseManager;
     this.config = config;
     this.supportBundleUtil = supportBundleUtil;
+    this.nodeDownloadExecutor =
+        platformExecutorFactory.createFixedExecutor(
+            getClass().getSimpleName(),
+            Math.max(1, config.getInt(MAX_PARALLEL_NODE_DOWNLOADS_KEY)),
+            new ThreadFactoryBuilder().setNameFormat("SupportBundleNodeLogs-%d").build());
   }
 
   @Override
@@ -56,25 +74,31 @@ class UniverseLogsComponent implements SupportBundleComponent {
 
     // Downloads the /mnt/d0/yb-data/master/logs and /mnt/d0/yb-data/tserver/logs from each node
     // in the universe into the bundle path
-    for (NodeDetails node : nodes) {
-      // Get source file path prefix
-      String mountPath =
-          supportBundleUtil.getDataDirPath(universe, node, nodeUniverseManager, config);
-      String nodeHomeDir = mountPath + "/yb-data";
-
-      // Get target file path
-      String nodeName = node.getNodeName();
-      Path nodeTargetFile = Paths.get(destDir, nodeName + ".tar.gz");
-
-      log.debug(
-          "Gathering universe logs for node: {}, source path: {}, target path: {}",
-          nodeName,
-          nodeHomeDir,
-          nodeTargetFile.toString());
-
-      Path targetFile =
-          universeInfoHandler.downloadNodeFile(
-              customer, universe, node, nodeHomeDir, "master/logs;tserver/logs", nodeTargetFile);
+    try {
+      downloadFromNodes(
+          nodes,
+          node -> {
+            // Get source file path prefix
+            String mountPath =
+                supportBundleUtil.getDataDirPath(universe, node, nodeUniverseManager, config);
+            String nodeHomeDir = mountPath + "/yb-data";
+
+            // Get target file path
+            String nodeName = node.getNodeName();
+            Path nodeTargetFile = Paths.get(destDir, nodeName + ".tar.gz");
+
+            log.debug(
+                "Gathering universe logs for node: {}, source path: {}, target path: {}",
+                nodeName,
+                nodeHomeDir,
+                nodeTargetFile.toString());
+
+            return universeInfoHandler.downloadNodeFile(
+                customer, universe, node, nodeHomeDir, "master/logs;tserver/logs", nodeTargetFile);
+          });
+    } catch (ParseException e) {
+      // Not thrown when no dates are filtered on.
+      throw new RuntimeException(e);
     }
   }
 
@@ -87,80 +111,159 @@ class UniverseLogsComponent implements SupportBundleComponent {
     String destDir = bundlePath.toString() + "/" + "universe_logs";
     Path destPath = Paths.get(destDir);
     Files.createDirectories(destPath);
+    String universeLogsRegexPattern =
+        config.getString("yb.support_bundle.universe_logs_regex_pattern");
 
     // Downloads the /mnt/d0/yb-data/master/logs and /mnt/d0/yb-data/tserver/logs from each node
     // in the universe into the bundle path
-    for (NodeDetails node : nodes) {
-      // Get source file path prefix
-      String mountPath =
-          supportBundleUtil.getDataDirPath(universe, node, nodeUniverseManager, config);
-      String nodeHomeDir = mountPath + "/yb-data";
-
-      // Get target file path
-      String nodeName = node.getNodeName();
-      Path nodeTargetFile = Paths.get(destDir, nodeName + ".tar.gz");
-
-      log.debug(
-          "Gathering universe logs for node: {}, source path: {}, target path: {}, "
-              + "between start date: {}, end date: {}",
-          nodeName,
-          nodeHomeDir,
-          nodeTargetFile.toString(),
-          startDate,
-          endDate);
-
-      String universeLogsRegexPattern =
-          config.getString("yb.support_bundle.universe_logs_regex_pattern");
-
-      // Get and filter master log files that fall within given dates
-      String masterLogsPath = nodeHomeDir + "/master/logs";
-      List<String> masterLogFilePaths = new ArrayList<>();
-      if (checkNodeIfFileExists(node, universe, masterLogsPath)) {
-        masterLogFilePaths =
-            getNodeFilePaths(node, universe, masterLogsPath, /*maxDepth*/ 1, /*fileType*/ "f");
-        masterLogFilePaths =
-            supportBundleUtil.filterFilePathsBetweenDates(
-                masterLogFilePaths, universeLogsRegexPattern, startDate, endDate, false);
-      }
+    downloadFromNodes(
+        nodes,
+        node -> {
+          // Get source file path prefix
+          String mountPath =
+              supportBundleUtil.getDataDirPath(universe, node, nodeUniverseManager, config);
+          String nodeHomeDir = mountPath + "/yb-data";
 
-      // Get and filter tserver log files that fall within given dates
-      String tserverLogsPath = nodeHomeDir + "/tserver/logs";
-      List<String> tserverLogFilePaths = new ArrayList<>();
-      if (checkNodeIfFileExists(node, universe, tserverLogsPath)) {
-        tserverLogFilePaths =
-            getNodeFilePaths(node, universe, tserverLogsPath, /*maxDepth*/ 1, /*fileType*/ "f");
-        tserverLogFilePaths =
-            supportBundleUtil.filterFilePathsBetweenDates(
-                tserverLogFilePaths, universeLogsRegexPattern, startDate, endDate, false);
-      }
+          // Get target file path
+          String nodeName = node.getNodeName();
+          Path nodeTargetFile = Paths.get(destDir, nodeName + ".tar.gz");
+
+          log.debug(
+              "Gathering universe logs for node: {}, source path: {}, target path: {}, "
+                  + "between start date: {}, end date: {}",
+              nodeName,
+              nodeHomeDir,
+              nodeTargetFile.toString(),
+              startDate,
+              endDate);
 
-      // Combine both master and tserver files to download all the files together
-      List<String> allLogFilePaths =
-          Stream.concat(masterLogFilePaths.stream(), tserverLogFilePaths.stream())
-              .collect(Collectors.toList());
-
-      if (allLogFilePaths.size() > 0) {
-        Path targetFile =
-            universeInfoHandler.downloadNodeFile(
-                customer,
-                universe,
-                node,
+          // List the master and tserver log files with a single command, then filter each of
+          // them to the ones that fall within given dates
+          String masterLogsPath = nodeHomeDir + "/master/logs";
+          String tserverLogsPath = nodeHomeDir + "/tserver/logs";
+          Map<Boolean, List<String>> logFilePathsByIsMaster =
+              getNodeLogFilePaths(node, universe, Arrays.asList(masterLogsPath, tserverLogsPath))
+                  .stream()
+                  .collect(
+                      Collectors.partitioningBy(path -> path.startsWith(masterLogsPath + "/")));
+          List<String> masterLogFilePaths =
+              supportBundleUtil.filterFilePathsBetweenDates(
+                  logFilePathsByIsMaster.get(true),
+                  universeLogsRegexPattern,
+                  startDate,
+                  endDate,
+                  false);
+          List<String> tserverLogFilePaths =
+              supportBundleUtil.filterFilePathsBetweenDates(
+                  logFilePathsByIsMaster.get(false),
+                  universeLogsRegexPattern,
+                  startDate,
+                  endDate,
+                  false);
+
+          // Combine both master and tserver files to download all the files together
+          List<String> allLogFilePaths =
+              Stream.concat(masterLogFilePaths.stream(), tserverLogFilePaths.stream())
+                  .collect(Collectors.toList());
+
+          if (allLogFilePaths.isEmpty()) {
+            log.debug(
+                "Found no matching universe logs for node: {}, source path: {}, target path: {}, "
+                    + "between start date: {}, end date: {}",
+                nodeName,
                 nodeHomeDir,
-                String.join(";", allLogFilePaths),
-                nodeTargetFile);
-      } else {
-        log.debug(
-            "Found no matching universe logs for node: {}, source path: {}, target path: {}, "
-                + "between start date: {}, end date: {}",
-            nodeName,
-            nodeHomeDir,
-            nodeTargetFile.toString(),
-            startDate,
-            endDate);
+                nodeTargetFile.toString(),
+                startDate,
+                endDate);
+            return null;
+          }
+          return universeInfoHandler.downloadNodeFile(
+              customer,
+              universe,
+              node,
+              nodeHomeDir,
+              String.join(";", allLogFilePaths),
+              nodeTargetFile);
+        });
+  }
+
+  @FunctionalInterface
+  private interface NodeDownload {
+    /** Downloads the logs of the node, and returns the file they were written to if any. */
+    Path download(NodeDetails node) throws IOException, ParseException;
+  }
+
+  /**
+   * Runs the download for each of the nodes in parallel, and waits for all of them. Fails with the
+   * first error, cancelling the other downloads.
+   */
+  private void downloadFromNodes(List<NodeDetails> nodes, NodeDownload nodeDownload)
+      throws IOException, ParseException {
+    AtomicInteger numDone = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (NodeDetails node : nodes) {
+        futures.add(
+            nodeDownloadExecutor.submit(
+                () -> {
+                  long startMs = System.currentTimeMillis();
+                  Path targetFile = nodeDownload.download(node);
+                  long elapsedMs = Math.max(1, System.currentTimeMillis() - startMs);
+                  long numBytes =
+                      targetFile != null && Files.exists(targetFile) ? Files.size(targetFile) : 0;
+                  log.info(
+                      "Gathered universe logs for node {} ({}/{}): {} bytes in {} ms ({} KB/s)",
+                      node.getNodeName(),
+                      numDone.incrementAndGet(),
+                      nodes.size(),
+                      numBytes,
+                      elapsedMs,
+                      numBytes * 1000 / 1024 / elapsedMs);
+                  return null;
+                }));
       }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while gathering universe logs", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof ParseException) {
+        throw (ParseException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      // Stops the downloads still running if one of them failed.
+      futures.forEach(future -> future.cancel(true));
     }
   }
 
+  /**
+   * Gets the absolute paths of the files directly under the given remote directories, skipping
+   * the directories that don't exist. Lists all of them with a single command on the node.
+   */
+  private List<String> getNodeLogFilePaths(
+      NodeDetails node, Universe universe, List<String> remoteDirPaths) {
+    List<String> command = new ArrayList<>();
+    command.add("bash");
+    command.add("-c");
+    command.add(
+        "find "
+            + remoteDirPaths.stream().map(path -> "'" + path + "'").collect(Collectors.joining(" "))
+            + " -maxdepth 1 -type f 2>/dev/null; true");
+
+    ShellResponse shellOutput = this.nodeUniverseManager.runCommand(node, universe, command);
+    return Arrays.stream(shellOutput.extractRunCommandOutput().trim().split("\n", 0))
+        .filter(StringUtils::isNotBlank)
+        .collect(Collectors.toList());
+  }
+
   /**
    * Checks if a file or directory exists on the node in the universe
    *
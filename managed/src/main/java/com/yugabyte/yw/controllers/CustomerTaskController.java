@@ -8,6 +8,7 @@ import com.google.inject.Inject;
 import com.yugabyte.yw.commissioner.Commissioner;
 import com.yugabyte.yw.commissioner.UserTaskDetails.SubTaskGroupType;
 import com.yugabyte.yw.common.ApiResponse;
+import com.yugabyte.yw.common.PlatformServiceException;
 import com.yugabyte.yw.common.config.RuntimeConfigFactory;
 import com.yugabyte.yw.forms.CustomerTaskFormData;
 import com.yugabyte.yw.forms.PlatformResults;
@@ -28,6 +29,8 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.Authorization;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -131,25 +134,78 @@ public class CustomerTaskController extends AuthenticatedController {
     }
   }
 
+  /**
+   * Returns the createdBefore query parameter: when set, only the tasks created strictly before
+   * this time (in milliseconds since the epoch) are listed.
+   */
+  private Date getCreatedBefore() {
+    String createdBefore = request().getQueryString("createdBefore");
+    if (StringUtils.isEmpty(createdBefore)) {
+      return null;
+    }
+    try {
+      return new Date(Long.parseLong(createdBefore));
+    } catch (NumberFormatException e) {
+      throw new PlatformServiceException(
+          BAD_REQUEST, "Invalid createdBefore, expected epoch milliseconds: " + createdBefore);
+    }
+  }
+
+  /**
+   * Returns the createdBeforeTaskUUID query parameter, which breaks the ties on createdBefore: when
+   * set, the tasks created at createdBefore are listed too if their task UUID is lower. Passing the
+   * create time and the task UUID of the last task of a page returns the next page, without
+   * skipping the tasks created at the same time.
+   */
+  private UUID getCreatedBeforeTaskUUID(Date createdBefore) {
+    String taskUUID = request().getQueryString("createdBeforeTaskUUID");
+    if (StringUtils.isEmpty(taskUUID)) {
+      return null;
+    }
+    if (createdBefore == null) {
+      throw new PlatformServiceException(
+          BAD_REQUEST, "createdBeforeTaskUUID can only be used with createdBefore");
+    }
+    try {
+      return UUID.fromString(taskUUID);
+    } catch (IllegalArgumentException e) {
+      throw new PlatformServiceException(
+          BAD_REQUEST, "Invalid createdBeforeTaskUUID, expected a UUID: " + taskUUID);
+    }
+  }
+
   private Map<UUID, List<CustomerTaskFormData>> fetchTasks(UUID customerUUID, UUID targetUUID) {
     Query<CustomerTask> customerTaskQuery =
         CustomerTask.find
             .query()
             .where()
             .eq("customer_uuid", customerUUID)
-            .orderBy("create_time desc");
+            .orderBy("create_time desc, task_uuid desc");
 
     if (targetUUID != null) {
       customerTaskQuery.where().eq("target_uuid", targetUUID);
     }
+    Date createdBefore = getCreatedBefore();
+    UUID createdBeforeTaskUUID = getCreatedBeforeTaskUUID(createdBefore);
+    if (createdBeforeTaskUUID != null) {
+      customerTaskQuery
+          .where()
+          .or()
+          .lt("create_time", createdBefore)
+          .and()
+          .eq("create_time", createdBefore)
+          .lt("task_uuid", createdBeforeTaskUUID)
+          .endAnd()
+          .endOr();
+    } else if (createdBefore != null) {
+      customerTaskQuery.where().lt("create_time", createdBefore);
+    }
 
     List<CustomerTask> customerTaskList =
         customerTaskQuery
             .setMaxRows(
                 runtimeConfigFactory.globalRuntimeConf().getInt(CUSTOMER_TASK_DB_QUERY_LIMIT))
-            .orderBy("create_time desc")
-            .findPagedList()
-            .getList();
+            .findList();
 
     Map<UUID, List<CustomerTaskFormData>> taskListMap = new HashMap<>();
 
@@ -159,9 +215,30 @@ public class CustomerTaskController extends AuthenticatedController {
         TaskInfo.find(taskUuids)
             .stream()
             .collect(Collectors.toMap(TaskInfo::getTaskUUID, Function.identity()));
+    // Load the data needed to build the status of all the tasks in bulk, rather than per task.
+    Map<UUID, List<TaskInfo>> subTasksMap = TaskInfo.getSubTasks(taskUuids);
+    Set<UUID> retryableUniverseUUIDs =
+        customerTaskList
+            .stream()
+            .filter(task -> task.getTarget().isUniverseTarget())
+            .filter(
+                task -> {
+                  TaskInfo taskInfo = taskInfoMap.get(task.getTaskUUID());
+                  return taskInfo != null
+                      && TaskInfo.ERROR_STATES.contains(taskInfo.getTaskState())
+                      && Commissioner.isTaskRetryable(taskInfo.getTaskType());
+                })
+            .map(CustomerTask::getTargetUUID)
+            .collect(Collectors.toSet());
+    Map<UUID, String> updatingTaskUUIDs =
+        Universe.getUniverseDetailsFields(String.class, retryableUniverseUUIDs, "updatingTaskUUID");
     for (CustomerTask task : customerTaskList) {
       Optional<ObjectNode> optTaskProgress =
-          commissioner.buildTaskStatus(task, taskInfoMap.get(task.getTaskUUID()));
+          commissioner.buildTaskStatus(
+              task,
+              taskInfoMap.get(task.getTaskUUID()),
+              subTasksMap.getOrDefault(task.getTaskUUID(), Collections.emptyList()),
+              updatingTaskUUIDs);
       // If the task progress API returns error, we will log it and not add that task
       // to the task list for UI rendering.
       optTaskProgress.ifPresent(
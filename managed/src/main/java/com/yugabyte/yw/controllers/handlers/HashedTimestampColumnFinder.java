@@ -18,10 +18,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.yugabyte.yw.common.NodeUniverseManager;
 import com.yugabyte.yw.common.PlatformServiceException;
-import com.yugabyte.yw.common.ShellResponse;
 import com.yugabyte.yw.common.Util;
+import com.yugabyte.yw.common.YsqlConnectionPool;
 import com.yugabyte.yw.models.Universe;
-import com.yugabyte.yw.models.helpers.CommonUtils;
 import com.yugabyte.yw.models.helpers.NodeDetails;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -40,6 +39,8 @@ public class HashedTimestampColumnFinder {
     this.nodeUniverseManager = nodeUniverseManager;
   }
 
+  @Inject YsqlConnectionPool ysqlConnectionPool;
+
   private static final String HASHED_TIMESTAMP_COLUMN_STATEMENT =
       "select jsonb_agg(t) from "
           + "(select current_database(), c.relname as table_name, h.relname as index_name, "
@@ -65,15 +66,16 @@ public class HashedTimestampColumnFinder {
     return filteredServers.get(random.nextInt(filteredServers.size()));
   }
 
+  private String runJsonQuery(NodeDetails node, Universe universe, String dbName, String query) {
+    return YsqlConnectionPool.runJsonQuery(
+        ysqlConnectionPool, nodeUniverseManager, node, universe, dbName, query);
+  }
+
   public List<HashedTimestampColumnFinderResponse> getHashedTimestampColumns(Universe universe) {
 
     NodeDetails randomTServer = getRandomLiveTServer(universe.getLiveTServersInPrimaryCluster());
 
-    ShellResponse getDB =
-        nodeUniverseManager.runYsqlCommand(
-            randomTServer, universe, DEFAULT_DB_NAME, DBLIST_STATEMENT);
-
-    String getDBList = CommonUtils.extractJsonisedSqlResponse(getDB);
+    String getDBList = runJsonQuery(randomTServer, universe, DEFAULT_DB_NAME, DBLIST_STATEMENT);
 
     if (getDBList == null || getDBList.isEmpty()) {
       log.error(
@@ -100,11 +102,9 @@ public class HashedTimestampColumnFinder {
       // TODO: modify approach when new variant of runYsqlCommand is available to take list of DBs
       for (QueryUniverseDBListResponse dbname : universeDBList) {
 
-        ShellResponse response =
-            nodeUniverseManager.runYsqlCommand(
+        String responseJSON =
+            runJsonQuery(
                 randomTServer, universe, dbname.datname, HASHED_TIMESTAMP_COLUMN_STATEMENT);
-
-        String responseJSON = CommonUtils.extractJsonisedSqlResponse(response);
         // responseJSON unfortunately seems to return a length 1 empty string rather than null when
         // given 0 rows, so .isEmpty() is insufficient.
         if (responseJSON == null || responseJSON.length() <= 1) {
@@ -112,10 +112,9 @@ public class HashedTimestampColumnFinder {
         }
 
         log.trace(
-            "Hashed timestamp indexes for node {}, database {}: {} -- json: {}, json length: {}",
+            "Hashed timestamp indexes for node {}, database {} -- json: {}, json length: {}",
             randomTServer.nodeName,
             dbname.datname,
-            response.message,
             responseJSON,
             responseJSON.length());
         // Accumulate all entries for database into universe's list of hashed timestamp columns.
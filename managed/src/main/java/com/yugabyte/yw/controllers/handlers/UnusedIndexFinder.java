@@ -20,11 +20,10 @@ import com.typesafe.config.Config;
 import com.yugabyte.yw.common.NodeUniverseManager;
 import com.yugabyte.yw.common.PlatformExecutorFactory;
 import com.yugabyte.yw.common.PlatformServiceException;
-import com.yugabyte.yw.common.ShellResponse;
 import com.yugabyte.yw.common.Util;
+import com.yugabyte.yw.common.YsqlConnectionPool;
 import com.yugabyte.yw.common.config.RuntimeConfigFactory;
 import com.yugabyte.yw.models.Universe;
-import com.yugabyte.yw.models.helpers.CommonUtils;
 import com.yugabyte.yw.models.helpers.NodeDetails;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -62,6 +61,8 @@ public class UnusedIndexFinder {
     this.runtimeConfigFactory = runtimeConfigFactory;
   }
 
+  @Inject YsqlConnectionPool ysqlConnectionPool;
+
   private static final String GET_DB_LIST_STATEMENT =
       "select jsonb_agg(t) from (select datname from pg_database where datname "
           + "not in ('template0', 'template1', 'system_platform', 'postgres')) as t;";
@@ -83,6 +84,11 @@ public class UnusedIndexFinder {
     return filteredServers.get(random.nextInt(filteredServers.size()));
   }
 
+  private String runJsonQuery(NodeDetails node, Universe universe, String dbName, String query) {
+    return YsqlConnectionPool.runJsonQuery(
+        ysqlConnectionPool, nodeUniverseManager, node, universe, dbName, query);
+  }
+
   public List<UnusedIndexFinderResponse> getUniverseUnusedIndexes(Universe universe) {
 
     // TODO: consider having UnusedIndexFinder maintain a state in the event that a crash
@@ -91,11 +97,8 @@ public class UnusedIndexFinder {
 
     NodeDetails randomTServer = getRandomLiveTServer(tserverLiveNodes);
 
-    ShellResponse getDB =
-        nodeUniverseManager.runYsqlCommand(
-            randomTServer, universe, DEFAULT_DB_NAME, GET_DB_LIST_STATEMENT);
-
-    String getDBList = CommonUtils.extractJsonisedSqlResponse(getDB);
+    String getDBList =
+        runJsonQuery(randomTServer, universe, DEFAULT_DB_NAME, GET_DB_LIST_STATEMENT);
 
     if (getDBList == null || getDBList.isEmpty()) {
       log.error(
@@ -136,10 +139,9 @@ public class UnusedIndexFinder {
           for (NodeDetails liveNode : tserverLiveNodes) {
             Callable<List<UnusedIndexFinderResponse>> callable =
                 () -> {
-                  ShellResponse response =
-                      nodeUniverseManager.runYsqlCommand(
+                  String responseJSON =
+                      runJsonQuery(
                           liveNode, universe, dbname.datname, GET_UNUSED_INDEXES_STATEMENT);
-                  String responseJSON = CommonUtils.extractJsonisedSqlResponse(response);
 
                   // responseJSON unfortunately seems to return a length 1 empty string rather than
                   // null when given 0 rows, so .isEmpty() is insufficient.
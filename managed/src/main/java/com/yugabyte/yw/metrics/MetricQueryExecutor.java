@@ -23,7 +23,7 @@ import play.libs.Json;
 public class MetricQueryExecutor implements Callable<JsonNode> {
 
   public static final String DATE_FORMAT_STRING = "yyyy-MM-dd HH:mm:ss";
-  private final ApiHelper apiHelper;
+  private final PrometheusRequestCoalescer requestCoalescer;
 
   private final MetricUrlProvider metricUrlProvider;
 
@@ -55,7 +55,23 @@ public class MetricQueryExecutor implements Callable<JsonNode> {
       Map<String, String> additionalFilters,
       MetricSettings metricSettings,
       boolean isRecharts) {
-    this.apiHelper = apiHelper;
+    this(
+        metricUrlProvider,
+        new PrometheusRequestCoalescer(apiHelper),
+        queryParam,
+        additionalFilters,
+        metricSettings,
+        isRecharts);
+  }
+
+  public MetricQueryExecutor(
+      MetricUrlProvider metricUrlProvider,
+      PrometheusRequestCoalescer requestCoalescer,
+      Map<String, String> queryParam,
+      Map<String, String> additionalFilters,
+      MetricSettings metricSettings,
+      boolean isRecharts) {
+    this.requestCoalescer = requestCoalescer;
     this.metricUrlProvider = metricUrlProvider;
     this.queryParam.putAll(queryParam);
     this.additionalFilters.putAll(additionalFilters);
@@ -83,7 +99,7 @@ public class MetricQueryExecutor implements Callable<JsonNode> {
     }
 
     log.trace("Executing metric query {}: {}", queryUrl, queryParam);
-    return apiHelper.getRequest(queryUrl, new HashMap<>(), queryParam);
+    return requestCoalescer.getRequest(queryUrl, queryParam);
   }
 
   private String getDirectURL(String queryExpr) {
@@ -7,7 +7,6 @@ import static play.mvc.Http.Status.INTERNAL_SERVER_ERROR;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Singleton;
 import com.yugabyte.yw.commissioner.Common.CloudType;
 import com.yugabyte.yw.common.ApiHelper;
@@ -27,7 +26,9 @@ import com.yugabyte.yw.models.Region;
 import com.yugabyte.yw.models.Universe;
 import com.yugabyte.yw.models.XClusterConfig;
 import com.yugabyte.yw.models.helpers.NodeDetails;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -40,8 +41,10 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import org.apache.commons.collections.CollectionUtils;
@@ -57,7 +60,10 @@ public class MetricQueryHelper {
 
   public static final Logger LOG = LoggerFactory.getLogger(MetricQueryHelper.class);
   public static final Integer STEP_SIZE = 100;
-  public static final Integer QUERY_EXECUTOR_THREAD_POOL = 5;
+  // Size of the pool shared by all the metric queries, which caps the number of concurrent
+  // Prometheus requests.
+  public static final Integer QUERY_EXECUTOR_THREAD_POOL = 20;
+  public static final Duration QUERY_TIMEOUT = Duration.ofSeconds(60);
 
   public static final String METRICS_QUERY_PATH = "query";
   public static final String ALERTS_PATH = "alerts";
@@ -80,7 +86,9 @@ public class MetricQueryHelper {
 
   private final MetricUrlProvider metricUrlProvider;
 
-  private final PlatformExecutorFactory platformExecutorFactory;
+  private final ExecutorService threadPool;
+
+  private final PrometheusRequestCoalescer requestCoalescer;
 
   @Inject
   public MetricQueryHelper(
@@ -91,12 +99,15 @@ public class MetricQueryHelper {
     this.appConfig = appConfig;
     this.apiHelper = apiHelper;
     this.metricUrlProvider = metricUrlProvider;
-    this.platformExecutorFactory = platformExecutorFactory;
+    this.threadPool = createExecutor(platformExecutorFactory);
+    this.requestCoalescer = new PrometheusRequestCoalescer(apiHelper);
   }
 
-  @VisibleForTesting
-  public MetricQueryHelper() {
-    this(null, null, null, null);
+  private static ExecutorService createExecutor(PlatformExecutorFactory platformExecutorFactory) {
+    ThreadFactory namedThreadFactory =
+        new ThreadFactoryBuilder().setNameFormat("Metric-Query-Pool-%d").build();
+    return platformExecutorFactory.createFixedExecutor(
+        "Metric-Query-Pool", QUERY_EXECUTOR_THREAD_POOL, namedThreadFactory);
   }
 
   /**
@@ -358,49 +369,44 @@ public class MetricQueryHelper {
       return Json.newObject();
     }
 
-    ExecutorService threadPool =
-        platformExecutorFactory.createFixedExecutor(
-            getClass().getSimpleName(),
-            QUERY_EXECUTOR_THREAD_POOL,
-            Executors.defaultThreadFactory());
-    try {
-      Set<Future<JsonNode>> futures = new HashSet<Future<JsonNode>>();
-      for (MetricSettings metricSettings : metricsWithSettings) {
-        Map<String, String> queryParams = params;
-        queryParams.put("queryKey", metricSettings.getMetric());
-
-        Map<String, String> specificFilters =
-            filterOverrides.getOrDefault(metricSettings.getMetric(), null);
-        if (specificFilters != null) {
-          additionalFilters.putAll(specificFilters);
-        }
+    List<Future<JsonNode>> futures = new ArrayList<>();
+    for (MetricSettings metricSettings : metricsWithSettings) {
+      Map<String, String> queryParams = params;
+      queryParams.put("queryKey", metricSettings.getMetric());
 
-        Callable<JsonNode> callable =
-            new MetricQueryExecutor(
-                metricUrlProvider,
-                apiHelper,
-                queryParams,
-                additionalFilters,
-                metricSettings,
-                isRecharts);
-        Future<JsonNode> future = threadPool.submit(callable);
-        futures.add(future);
+      Map<String, String> specificFilters =
+          filterOverrides.getOrDefault(metricSettings.getMetric(), null);
+      if (specificFilters != null) {
+        additionalFilters.putAll(specificFilters);
       }
 
-      ObjectNode responseJson = Json.newObject();
-      for (Future<JsonNode> future : futures) {
-        JsonNode response = Json.newObject();
-        try {
-          response = future.get();
-          responseJson.set(response.get("queryKey").asText(), response);
-        } catch (InterruptedException | ExecutionException e) {
-          LOG.error("Error fetching metrics data", e);
-        }
+      Callable<JsonNode> callable =
+          new MetricQueryExecutor(
+              metricUrlProvider,
+              requestCoalescer,
+              queryParams,
+              additionalFilters,
+              metricSettings,
+              isRecharts);
+      Future<JsonNode> future = threadPool.submit(callable);
+      futures.add(future);
+    }
+
+    ObjectNode responseJson = Json.newObject();
+    long deadlineNanos = System.nanoTime() + QUERY_TIMEOUT.toNanos();
+    for (Future<JsonNode> future : futures) {
+      JsonNode response = Json.newObject();
+      try {
+        response = future.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        responseJson.set(response.get("queryKey").asText(), response);
+      } catch (TimeoutException e) {
+        LOG.error("Timed out fetching metrics data after {}", QUERY_TIMEOUT);
+        future.cancel(true);
+      } catch (InterruptedException | ExecutionException e) {
+        LOG.error("Error fetching metrics data", e);
       }
-      return responseJson;
-    } finally {
-      threadPool.shutdown();
     }
+    return responseJson;
   }
 
   /**
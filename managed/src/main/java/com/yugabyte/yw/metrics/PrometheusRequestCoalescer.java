@@ -0,0 +1,116 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.yugabyte.yw.common.ApiHelper;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends GET requests to Prometheus, identical requests made while one is in flight waiting for
+ * its response instead of being sent again. Dashboards opened at the same time issue the same
+ * queries, so this saves duplicate Prometheus work. The responses are shared and must not be
+ * modified.
+ */
+@Slf4j
+public class PrometheusRequestCoalescer {
+
+  private final ApiHelper apiHelper;
+
+  // Bounds how long a request waits for the identical one in flight.
+  private final Duration maxWait;
+
+  private final Map<RequestKey, CompletableFuture<JsonNode>> inFlight = new ConcurrentHashMap<>();
+
+  public PrometheusRequestCoalescer(ApiHelper apiHelper) {
+    this(apiHelper, MetricQueryHelper.QUERY_TIMEOUT);
+  }
+
+  PrometheusRequestCoalescer(ApiHelper apiHelper, Duration maxWait) {
+    this.apiHelper = apiHelper;
+    this.maxWait = maxWait;
+  }
+
+  public JsonNode getRequest(String url, Map<String, String> params) {
+    RequestKey key = new RequestKey(url, params);
+    long deadlineNanos = System.nanoTime() + maxWait.toNanos();
+    while (true) {
+      CompletableFuture<JsonNode> future = new CompletableFuture<>();
+      CompletableFuture<JsonNode> existing = inFlight.putIfAbsent(key, future);
+      if (existing == null) {
+        return sendRequest(key, future);
+      }
+      log.trace("Waiting for in flight metric query {}: {}", url, params);
+      try {
+        return existing.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted waiting for metric query " + url, e);
+      } catch (TimeoutException e) {
+        throw new RuntimeException("Timed out waiting for metric query " + url, e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof LeaderInterruptedException) {
+          // The response wasn't shared, send the request again.
+          continue;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      }
+    }
+  }
+
+  private JsonNode sendRequest(RequestKey key, CompletableFuture<JsonNode> future) {
+    try {
+      JsonNode response = apiHelper.getRequest(key.url, new HashMap<>(), key.params);
+      if (Thread.currentThread().isInterrupted()) {
+        // Cancelled by its caller, the response is likely an error about the interruption which
+        // the other callers must not get.
+        future.completeExceptionally(new LeaderInterruptedException());
+      } else {
+        future.complete(response);
+      }
+      return response;
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  private static class LeaderInterruptedException extends RuntimeException {
+    LeaderInterruptedException() {
+      super("Metric query interrupted", null, false, false);
+    }
+  }
+
+  int getNumInFlight() {
+    return inFlight.size();
+  }
+
+  @EqualsAndHashCode
+  private static class RequestKey {
+    private final String url;
+    private final Map<String, String> params;
+
+    RequestKey(String url, Map<String, String> params) {
+      this.url = url;
+      // Copied, as the callers reuse their parameter maps.
+      this.params = new TreeMap<>(params);
+    }
+  }
+}
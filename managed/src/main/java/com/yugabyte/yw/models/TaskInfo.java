@@ -26,6 +26,7 @@ import io.ebean.annotation.EnumValue;
 import io.ebean.annotation.UpdatedTimestamp;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -50,6 +51,9 @@ public class TaskInfo extends Model {
   private static final FetchGroup<TaskInfo> GET_SUBTASKS_FG =
       FetchGroup.of(TaskInfo.class, "uuid, subTaskGroupType, taskState");
 
+  private static final FetchGroup<TaskInfo> GET_SUBTASKS_OF_PARENTS_FG =
+      FetchGroup.of(TaskInfo.class, "uuid, parentUuid, subTaskGroupType, taskState");
+
   public static final Set<State> COMPLETED_STATES =
       Sets.immutableEnumSet(State.Success, State.Failure, State.Aborted);
 
@@ -282,6 +286,28 @@ public class TaskInfo extends Model {
     return subTaskQuery.findList();
   }
 
+  /**
+   * Returns the subtasks of all the given parent tasks with a single query, as partial objects
+   * ordered by position.
+   *
+   * @return map of parent task UUID to its subtasks, parents without subtasks are not included.
+   */
+  public static Map<UUID, List<TaskInfo>> getSubTasks(Collection<UUID> parentUUIDs) {
+    if (CollectionUtils.isEmpty(parentUUIDs)) {
+      return Collections.emptyMap();
+    }
+    ExpressionList<TaskInfo> query =
+        TaskInfo.find.query().select(GET_SUBTASKS_OF_PARENTS_FG).where();
+    appendInClause(query, "parent_uuid", new HashSet<>(parentUUIDs));
+    Map<UUID, List<TaskInfo>> subTasksByParent = new HashMap<>();
+    for (TaskInfo subTask : query.orderBy("position asc").findList()) {
+      subTasksByParent
+          .computeIfAbsent(subTask.getParentUUID(), k -> new ArrayList<>())
+          .add(subTask);
+    }
+    return subTasksByParent;
+  }
+
   public List<TaskInfo> getIncompleteSubTasks() {
     return TaskInfo.find
         .query()
@@ -310,11 +336,19 @@ public class TaskInfo extends Model {
    *     subTaskGroups.
    */
   public UserTaskDetails getUserTaskDetails() {
+    return getUserTaskDetails(getSubTasks());
+  }
+
+  /**
+   * Same as {@link #getUserTaskDetails()}, with the subtasks of this task already loaded.
+   *
+   * @param subTasks the subtasks of this task, ordered by position.
+   */
+  public UserTaskDetails getUserTaskDetails(List<TaskInfo> subTasks) {
     UserTaskDetails taskDetails = new UserTaskDetails();
-    List<TaskInfo> result = getSubTasks();
     Map<SubTaskGroupType, SubTaskDetails> userTasksMap = new HashMap<>();
     boolean customerTaskFailure = TaskInfo.ERROR_STATES.contains(taskState);
-    for (TaskInfo taskInfo : result) {
+    for (TaskInfo taskInfo : subTasks) {
       SubTaskGroupType subTaskGroupType = taskInfo.getSubTaskGroupType();
       if (subTaskGroupType == SubTaskGroupType.Invalid) {
         continue;
@@ -367,6 +401,21 @@ public class TaskInfo extends Model {
     return numSubtasksCompleted * 100.0 / numSubtasks;
   }
 
+  /**
+   * Same as {@link #getPercentCompleted()}, with the subtasks of this task already loaded.
+   *
+   * @param subTasks the subtasks of this task.
+   * @return a number between 0.0 and 100.0.
+   */
+  public double getPercentCompleted(List<TaskInfo> subTasks) {
+    if (subTasks.isEmpty()) {
+      return TaskInfo.COMPLETED_STATES.contains(getTaskState()) ? 100.0 : 0.0;
+    }
+    long numSubtasksCompleted =
+        subTasks.stream().filter(t -> t.getTaskState() == TaskInfo.State.Success).count();
+    return numSubtasksCompleted * 100.0 / subTasks.size();
+  }
+
   public static List<TaskInfo> findDuplicateDeleteBackupTasks(UUID customerUUID, UUID backupUUID) {
     return TaskInfo.find
         .query()
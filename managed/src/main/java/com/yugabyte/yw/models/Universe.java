@@ -29,6 +29,7 @@ import io.ebean.ExpressionList;
 import io.ebean.Finder;
 import io.ebean.Model;
 import io.ebean.SqlQuery;
+import io.ebean.SqlRow;
 import io.ebean.annotation.DbJson;
 import io.ebean.annotation.Transactional;
 import io.ebean.annotation.TxIsolation;
@@ -387,6 +388,37 @@ public class Universe extends Model {
     return sqlQuery.findOneOrEmpty().map(row -> clazz.cast(row.get("field")));
   }
 
+  /**
+   * Find a single attribute from universe_details_json column of several universes with one query.
+   *
+   * @param <T> the attribute type.
+   * @param universeUUIDs the universe UUIDs to be searched for.
+   * @param fieldName the name of the field.
+   * @return map of universe UUID to the attribute value, universes without the attribute are not
+   *     included.
+   */
+  public static <T> Map<UUID, T> getUniverseDetailsFields(
+      Class<T> clazz, Collection<UUID> universeUUIDs, String fieldName) {
+    Map<UUID, T> result = new HashMap<>();
+    if (universeUUIDs.isEmpty()) {
+      return result;
+    }
+    String query =
+        String.format(
+            "select universe_uuid, universe_details_json::jsonb->>'%s' as field from universe"
+                + " where universe_uuid in (:universeUUIDs)",
+            fieldName);
+    SqlQuery sqlQuery = Ebean.createSqlQuery(query);
+    sqlQuery.setParameter("universeUUIDs", new HashSet<>(universeUUIDs));
+    for (SqlRow row : sqlQuery.findList()) {
+      Object field = row.get("field");
+      if (field != null) {
+        result.put(row.getUUID("universe_uuid"), clazz.cast(field));
+      }
+    }
+    return result;
+  }
+
   /**
    * Interface using which we specify a callback to update the universe object. This is passed into
    * the save method.
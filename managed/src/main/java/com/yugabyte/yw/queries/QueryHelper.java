@@ -145,7 +145,7 @@ public class QueryHelper {
                     RunQueryFormData ysqlQuery = new RunQueryFormData();
                     ysqlQuery.query = slowQuerySqlWithLimit(config);
                     ysqlQuery.db_name = "postgres";
-                    return ysqlQueryExecutor.executeQueryInNodeShell(universe, ysqlQuery, node);
+                    return ysqlQueryExecutor.executeDiagnosticQuery(universe, ysqlQuery, node);
                   };
 
               Future<JsonNode> future = threadPool.submit(callable);
@@ -175,7 +175,7 @@ public class QueryHelper {
                     RunQueryFormData ysqlQuery = new RunQueryFormData();
                     ysqlQuery.query = RESET_QUERY_SQL;
                     ysqlQuery.db_name = "postgres";
-                    return ysqlQueryExecutor.executeQueryInNodeShell(universe, ysqlQuery, node);
+                    return ysqlQueryExecutor.executeDiagnosticQuery(universe, ysqlQuery, node);
                   };
               Future<JsonNode> future = threadPool.submit(callable);
               futures.add(future);
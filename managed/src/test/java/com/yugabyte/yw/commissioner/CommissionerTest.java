@@ -0,0 +1,173 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.commissioner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableMap;
+import com.yugabyte.yw.commissioner.Commissioner.ProgressMonitor;
+import com.yugabyte.yw.commissioner.UserTaskDetails.SubTaskGroupType;
+import com.yugabyte.yw.common.FakeDBApplication;
+import com.yugabyte.yw.common.ModelFactory;
+import com.yugabyte.yw.common.PlatformExecutorFactory;
+import com.yugabyte.yw.models.Customer;
+import com.yugabyte.yw.models.CustomerTask;
+import com.yugabyte.yw.models.TaskInfo;
+import com.yugabyte.yw.models.Universe;
+import com.yugabyte.yw.models.helpers.TaskType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Test;
+import play.inject.ApplicationLifecycle;
+import play.libs.Json;
+
+public class CommissionerTest extends FakeDBApplication {
+
+  private Customer customer;
+  private Universe universe;
+  private TaskExecutor mockTaskExecutor;
+  private Commissioner commissioner;
+
+  @Before
+  public void setUp() {
+    customer = ModelFactory.testCustomer();
+    universe = ModelFactory.createUniverse(customer.getCustomerId());
+    mockTaskExecutor = mock(TaskExecutor.class);
+    commissioner =
+        new Commissioner(
+            mock(ProgressMonitor.class),
+            mock(ApplicationLifecycle.class),
+            mock(PlatformExecutorFactory.class),
+            mockTaskExecutor);
+  }
+
+  private CustomerTask createTask(
+      CustomerTask.TargetType targetType,
+      UUID targetUUID,
+      TaskType taskType,
+      TaskInfo.State taskState) {
+    TaskInfo taskInfo = new TaskInfo(taskType);
+    taskInfo.setTaskUUID(UUID.randomUUID());
+    taskInfo.setTaskState(taskState);
+    taskInfo.setTaskDetails(Json.newObject());
+    taskInfo.setOwner("");
+    taskInfo.save();
+    return CustomerTask.create(
+        customer,
+        targetUUID,
+        taskInfo.getTaskUUID(),
+        targetType,
+        CustomerTask.TaskType.Create,
+        "Foo");
+  }
+
+  private void createSubTask(
+      CustomerTask task, int position, SubTaskGroupType groupType, TaskInfo.State taskState) {
+    TaskInfo subTask = new TaskInfo(TaskType.AnsibleSetupServer);
+    subTask.setParentUuid(task.getTaskUUID());
+    subTask.setPosition(position);
+    subTask.setSubTaskGroupType(groupType);
+    subTask.setTaskState(taskState);
+    ObjectNode taskDetailsJson = Json.newObject();
+    if (taskState == TaskInfo.State.Failure) {
+      taskDetailsJson.put("errorString", "foobaz");
+    }
+    subTask.setTaskDetails(taskDetailsJson);
+    subTask.setOwner("foobar");
+    subTask.save();
+  }
+
+  @Test
+  public void testBuildTaskStatusInBulk() {
+    CustomerTask runningTask =
+        createTask(
+            CustomerTask.TargetType.Universe,
+            universe.universeUUID,
+            TaskType.CreateUniverse,
+            TaskInfo.State.Running);
+    createSubTask(runningTask, 0, SubTaskGroupType.Provisioning, TaskInfo.State.Success);
+    createSubTask(runningTask, 1, SubTaskGroupType.Provisioning, TaskInfo.State.Success);
+    createSubTask(runningTask, 2, SubTaskGroupType.ConfigureUniverse, TaskInfo.State.Running);
+    createSubTask(runningTask, 3, SubTaskGroupType.ConfigureUniverse, TaskInfo.State.Created);
+    when(mockTaskExecutor.isTaskRunning(runningTask.getTaskUUID())).thenReturn(true);
+    // Not targeting a universe, so that it is not retryable: H2 can't read the universe details.
+    CustomerTask failedTask =
+        createTask(
+            CustomerTask.TargetType.Provider,
+            UUID.randomUUID(),
+            TaskType.CloudBootstrap,
+            TaskInfo.State.Failure);
+    createSubTask(failedTask, 0, SubTaskGroupType.Provisioning, TaskInfo.State.Success);
+    createSubTask(failedTask, 1, SubTaskGroupType.Provisioning, TaskInfo.State.Failure);
+    createSubTask(failedTask, 2, SubTaskGroupType.ConfigureUniverse, TaskInfo.State.Created);
+    CustomerTask noSubTasksTask =
+        createTask(
+            CustomerTask.TargetType.Universe,
+            universe.universeUUID,
+            TaskType.EditUniverse,
+            TaskInfo.State.Success);
+    List<CustomerTask> tasks = Arrays.asList(runningTask, failedTask, noSubTasksTask);
+
+    // Same as the customer task list.
+    Set<UUID> taskUUIDs =
+        tasks.stream().map(CustomerTask::getTaskUUID).collect(Collectors.toSet());
+    Map<UUID, List<TaskInfo>> subTasksMap = TaskInfo.getSubTasks(taskUUIDs);
+    Map<UUID, String> updatingTaskUUIDs =
+        Universe.getUniverseDetailsFields(
+            String.class, Collections.emptySet(), "updatingTaskUUID");
+    for (CustomerTask task : tasks) {
+      TaskInfo taskInfo = TaskInfo.getOrBadRequest(task.getTaskUUID());
+      ObjectNode expected = commissioner.buildTaskStatus(task, taskInfo).get();
+      ObjectNode actual =
+          commissioner
+              .buildTaskStatus(
+                  task,
+                  taskInfo,
+                  subTasksMap.getOrDefault(task.getTaskUUID(), Collections.emptyList()),
+                  updatingTaskUUIDs)
+              .get();
+      assertEquals(expected, actual);
+    }
+    assertFalse(subTasksMap.containsKey(noSubTasksTask.getTaskUUID()));
+  }
+
+  @Test
+  public void testBuildTaskStatusInBulkRetryable() {
+    CustomerTask task =
+        createTask(
+            CustomerTask.TargetType.Universe,
+            universe.universeUUID,
+            TaskType.CreateUniverse,
+            TaskInfo.State.Failure);
+    TaskInfo taskInfo = TaskInfo.getOrBadRequest(task.getTaskUUID());
+    ObjectNode status =
+        commissioner
+            .buildTaskStatus(
+                task,
+                taskInfo,
+                Collections.emptyList(),
+                ImmutableMap.of(universe.universeUUID, task.getTaskUUID().toString()))
+            .get();
+    assertTrue(status.get("retryable").asBoolean());
+    status =
+        commissioner
+            .buildTaskStatus(
+                task,
+                taskInfo,
+                Collections.emptyList(),
+                ImmutableMap.of(universe.universeUUID, UUID.randomUUID().toString()))
+            .get();
+    assertFalse(status.get("retryable").asBoolean());
+  }
+}
@@ -0,0 +1,204 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.typesafe.config.Config;
+import com.yugabyte.yw.common.config.RuntimeConfigFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class YsqlConnectionPoolTest {
+  private static final YsqlConnectionPool.Target TARGET =
+      new YsqlConnectionPool.Target("localhost", 5433, "ysql_pool_test", null);
+
+  @Mock RuntimeConfigFactory mockRuntimeConfigFactory;
+
+  @Mock Config mockConfig;
+
+  @Mock PlatformScheduler mockPlatformScheduler;
+
+  @Mock ShutdownHookHandler mockShutdownHookHandler;
+
+  private final AtomicInteger numConnects = new AtomicInteger();
+  private final List<Connection> connections = new ArrayList<>();
+  private boolean failConnect;
+  private YsqlConnectionPool pool;
+
+  @Before
+  public void setUp() {
+    lenient().when(mockRuntimeConfigFactory.globalRuntimeConf()).thenReturn(mockConfig);
+    lenient().when(mockConfig.getBoolean(YsqlConnectionPool.POOL_ENABLED_KEY)).thenReturn(true);
+    lenient()
+        .when(mockConfig.getInt(YsqlConnectionPool.MAX_CONNECTIONS_PER_NODE_KEY))
+        .thenReturn(2);
+    lenient()
+        .when(mockConfig.getDuration(YsqlConnectionPool.CONNECT_TIMEOUT_KEY))
+        .thenReturn(Duration.ofSeconds(10));
+    lenient()
+        .when(mockConfig.getDuration(YsqlConnectionPool.STATEMENT_TIMEOUT_KEY))
+        .thenReturn(Duration.ofSeconds(60));
+    lenient()
+        .when(mockConfig.getDuration(YsqlConnectionPool.IDLE_TIMEOUT_KEY))
+        .thenReturn(Duration.ofMinutes(5));
+    lenient()
+        .when(mockConfig.getDuration(YsqlConnectionPool.UNREACHABLE_RETRY_DELAY_KEY))
+        .thenReturn(Duration.ofHours(1));
+    // Connects to an in-memory database rather than to a node.
+    pool =
+        new YsqlConnectionPool(
+            mockRuntimeConfigFactory, mockPlatformScheduler, mockShutdownHookHandler) {
+          @Override
+          Connection connect(Target target) throws SQLException {
+            numConnects.incrementAndGet();
+            if (failConnect) {
+              throw new SQLException("Connection refused");
+            }
+            Connection connection =
+                DriverManager.getConnection(
+                    "jdbc:h2:mem:" + target.getDbName() + ";DB_CLOSE_DELAY=-1");
+            synchronized (connections) {
+              connections.add(connection);
+            }
+            return connection;
+          }
+        };
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  @Test
+  public void testEvictionScheduled() {
+    verify(mockPlatformScheduler).schedule(anyString(), any(), any(), any());
+    verify(mockShutdownHookHandler).addShutdownHook(any());
+  }
+
+  @Test
+  public void testQueryJson() throws Exception {
+    assertEquals(Optional.of("[{\"a\": 1}]"), pool.queryJson(TARGET, "SELECT '[{\"a\": 1}]'"));
+    // No rows aggregated.
+    assertEquals(Optional.of("[]"), pool.queryJson(TARGET, "SELECT NULL"));
+  }
+
+  @Test
+  public void testConnectionReused() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      assertTrue(pool.queryJson(TARGET, "SELECT '[]'").isPresent());
+    }
+    assertEquals(1, numConnects.get());
+    assertEquals(1, pool.getNumOpenConnections());
+
+    pool.evictIdleConnections(Long.MAX_VALUE);
+    assertEquals(1, pool.getNumOpenConnections());
+    pool.evictIdleConnections(0L);
+    assertEquals(0, pool.getNumOpenConnections());
+    assertTrue(connections.get(0).isClosed());
+
+    assertTrue(pool.queryJson(TARGET, "SELECT '[]'").isPresent());
+    assertEquals(2, numConnects.get());
+  }
+
+  @Test
+  public void testQueryFailure() throws Exception {
+    try {
+      pool.queryJson(TARGET, "SELECT * FROM missing_table");
+      fail("Expected the query to fail");
+    } catch (SQLException expected) {
+    }
+    // The connection is not reused after a failure.
+    assertEquals(0, pool.getNumOpenConnections());
+    assertTrue(connections.get(0).isClosed());
+    assertTrue(pool.queryJson(TARGET, "SELECT '[]'").isPresent());
+    assertEquals(2, numConnects.get());
+  }
+
+  @Test
+  public void testConnectFailureFallsBack() throws Exception {
+    failConnect = true;
+    assertFalse(pool.queryJson(TARGET, "SELECT '[]'").isPresent());
+    // The node is not retried until the retry delay has passed.
+    failConnect = false;
+    assertFalse(pool.queryJson(TARGET, "SELECT '[]'").isPresent());
+    assertEquals(1, numConnects.get());
+    assertEquals(0, pool.getNumOpenConnections());
+  }
+
+  @Test
+  public void testConcurrentQueriesBounded() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Optional<String>>> futures = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        futures.add(executor.submit(() -> pool.queryJson(TARGET, "SELECT '[]'")));
+      }
+      for (Future<Optional<String>> future : futures) {
+        assertEquals(Optional.of("[]"), future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(numConnects.get() <= 2);
+    assertEquals(numConnects.get(), pool.getNumOpenConnections());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    when(mockConfig.getBoolean(YsqlConnectionPool.POOL_ENABLED_KEY)).thenReturn(false);
+    assertFalse(pool.queryJson(null, null, "yugabyte", "SELECT '[]'").isPresent());
+    assertEquals(0, numConnects.get());
+  }
+
+  @Test
+  public void testEvictionScheduledWhenDisabled() {
+    lenient().when(mockConfig.getBoolean(YsqlConnectionPool.POOL_ENABLED_KEY)).thenReturn(false);
+    new YsqlConnectionPool(
+        mockRuntimeConfigFactory, mockPlatformScheduler, mockShutdownHookHandler);
+    // Once for each pool.
+    verify(mockPlatformScheduler, times(2)).schedule(anyString(), any(), any(), any());
+  }
+
+  @Test
+  public void testRunJsonQueryFallsBackToYsqlsh() {
+    NodeUniverseManager mockNodeUniverseManager = mock(NodeUniverseManager.class);
+    ShellResponse response = new ShellResponse();
+    response.code = 0;
+    response.message = "[{\"datname\": \"yugabyte\"}]";
+    when(mockNodeUniverseManager.runYsqlCommand(any(), any(), eq("yugabyte"), eq("SELECT 1")))
+        .thenReturn(response);
+    assertEquals(
+        "[{\"datname\": \"yugabyte\"}]",
+        YsqlConnectionPool.runJsonQuery(
+            null, mockNodeUniverseManager, null, null, "yugabyte", "SELECT 1"));
+  }
+}
@@ -0,0 +1,176 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.common.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.typesafe.config.Config;
+import com.yugabyte.yw.common.PlatformScheduler;
+import com.yugabyte.yw.common.config.RuntimeConfigFactory;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.yb.client.AsyncYBClient;
+import org.yb.client.YBClient;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LocalYBClientServiceTest {
+  private static final String MASTERS = "10.0.0.1:7100,10.0.0.2:7100,10.0.0.3:7100";
+
+  @Mock RuntimeConfigFactory mockRuntimeConfigFactory;
+
+  @Mock Config mockConfig;
+
+  @Mock PlatformScheduler mockPlatformScheduler;
+
+  private LocalYBClientService service;
+
+  @Before
+  public void setUp() {
+    lenient().when(mockRuntimeConfigFactory.globalRuntimeConf()).thenReturn(mockConfig);
+    lenient().when(mockConfig.getBoolean(LocalYBClientService.POOL_ENABLED_KEY)).thenReturn(true);
+    lenient()
+        .when(mockConfig.getInt(LocalYBClientService.POOL_MAX_IDLE_CLIENTS_KEY))
+        .thenReturn(10);
+    service = new LocalYBClientService(mockRuntimeConfigFactory, mockPlatformScheduler);
+  }
+
+  private static AsyncYBClient asyncClient(YBClient client) {
+    return LocalYBClientService.getAsyncClient(client);
+  }
+
+  @Test
+  public void testEvictionScheduled() {
+    verify(mockPlatformScheduler).schedule(anyString(), any(), any(), any());
+  }
+
+  @Test
+  public void testClientReused() throws Exception {
+    YBClient first = service.getClient(MASTERS, null);
+    // Same masters in a different order map to the same pool entry.
+    YBClient second = service.getClient("10.0.0.3:7100,10.0.0.1:7100,10.0.0.2:7100", null);
+    assertSame(asyncClient(first), asyncClient(second));
+    assertEquals(1, service.getPoolSize());
+
+    service.closeClient(first, MASTERS);
+    second.close();
+    // Released clients stay pooled until they are idle for long enough.
+    assertEquals(1, service.getPoolSize());
+    YBClient third = service.getClient(MASTERS, null);
+    assertSame(asyncClient(first), asyncClient(third));
+    service.closeClient(third, MASTERS);
+
+    service.evictIdleClients(0L);
+    assertEquals(0, service.getPoolSize());
+  }
+
+  @Test
+  public void testDoubleCloseReleasesOnce() throws Exception {
+    YBClient first = service.getClient(MASTERS, null);
+    YBClient second = service.getClient(MASTERS, null);
+    first.close();
+    // Closing the same handle again doesn't drop the reference of the other holder.
+    service.closeClient(first, MASTERS);
+    service.evictIdleClients(0L);
+    assertEquals(1, service.getPoolSize());
+    second.close();
+    service.evictIdleClients(0L);
+    assertEquals(0, service.getPoolSize());
+  }
+
+  @Test
+  public void testDifferentCertNotShared() {
+    YBClient plain = service.getClient(MASTERS, null);
+    YBClient tls = service.getClient(MASTERS, "/tmp/ca.crt");
+    assertNotSame(asyncClient(plain), asyncClient(tls));
+    assertEquals(2, service.getPoolSize());
+    service.closeClient(plain, MASTERS);
+    service.closeClient(tls, MASTERS);
+  }
+
+  @Test
+  public void testBusyClientNotEvicted() {
+    YBClient client = service.getClient(MASTERS, null);
+    service.evictIdleClients(0L);
+    assertEquals(1, service.getPoolSize());
+    service.closeClient(client, MASTERS);
+    service.evictIdleClients(Duration.ofHours(1).toMillis());
+    assertEquals(1, service.getPoolSize());
+  }
+
+  @Test
+  public void testOverlappingMastersNotInvalidated() {
+    YBClient oldClient = service.getClient(MASTERS, null);
+    YBClient newClient = service.getClient("10.0.0.1:7100,10.0.0.2:7100,10.0.0.4:7100", null);
+    assertNotSame(asyncClient(oldClient), asyncClient(newClient));
+    assertEquals(2, service.getPoolSize());
+
+    // The client for the older masters stays usable, and is closed once idle.
+    service.closeClient(oldClient, MASTERS);
+    YBClient reused = service.getClient(MASTERS, null);
+    assertSame(asyncClient(oldClient), asyncClient(reused));
+    service.closeClient(reused, MASTERS);
+    service.closeClient(newClient, MASTERS);
+    service.evictIdleClients(0L);
+    assertEquals(0, service.getPoolSize());
+  }
+
+  @Test
+  public void testUniverseMasterChangeInvalidates() throws Exception {
+    UUID universeUUID = UUID.randomUUID();
+    YBClientService.Config oldConfig = new YBClientService.Config(MASTERS);
+    oldConfig.setUniverseUUID(universeUUID);
+    YBClient oldClient = service.getClientWithConfig(oldConfig);
+    YBClient idleClient = service.getClient(MASTERS, "/tmp/ca.crt");
+    idleClient.close();
+    assertEquals(2, service.getPoolSize());
+
+    String newMasters = "10.0.0.1:7100,10.0.0.2:7100,10.0.0.4:7100";
+    YBClientService.Config newConfig = new YBClientService.Config(newMasters);
+    newConfig.setUniverseUUID(universeUUID);
+    YBClient newClient = service.getClientWithConfig(newConfig);
+    // Only the client for the new masters is left, the busy one is closed on release.
+    assertEquals(1, service.getPoolSize());
+    YBClient other = service.getClient(MASTERS, null);
+    assertNotSame(asyncClient(oldClient), asyncClient(other));
+    service.closeClient(oldClient, MASTERS);
+    service.closeClient(other, MASTERS);
+    service.closeClient(newClient, newMasters);
+    service.evictIdleClients(0L);
+    assertEquals(0, service.getPoolSize());
+  }
+
+  @Test
+  public void testShutdownReleasesOnce() throws Exception {
+    YBClient first = service.getClient(MASTERS, null);
+    YBClient second = service.getClient(MASTERS, null);
+    first.shutdown();
+    first.close();
+    service.evictIdleClients(0L);
+    // The other holder still uses the shared client.
+    assertEquals(1, service.getPoolSize());
+    second.close();
+    service.evictIdleClients(0L);
+    assertEquals(0, service.getPoolSize());
+  }
+
+  @Test
+  public void testEvictionScheduledWhenDisabled() {
+    lenient().when(mockConfig.getBoolean(LocalYBClientService.POOL_ENABLED_KEY)).thenReturn(false);
+    new LocalYBClientService(mockRuntimeConfigFactory, mockPlatformScheduler);
+    // Once for each service.
+    verify(mockPlatformScheduler, times(2)).schedule(anyString(), any(), any(), any());
+  }
+}
@@ -0,0 +1,329 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.common.ssh;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.typesafe.config.Config;
+import com.yugabyte.yw.common.PlatformScheduler;
+import com.yugabyte.yw.common.ShellResponse;
+import com.yugabyte.yw.common.ShutdownHookHandler;
+import com.yugabyte.yw.common.config.RuntimeConfigFactory;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.sshd.common.config.keys.KeyUtils;
+import org.apache.sshd.common.config.keys.writer.openssh.OpenSSHKeyPairResourceWriter;
+import org.apache.sshd.common.file.nativefs.NativeFileSystemFactory;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.shell.ProcessShellFactory;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SshSessionPoolTest {
+  private static final String USER = "yugabyte";
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock RuntimeConfigFactory mockRuntimeConfigFactory;
+
+  @Mock Config mockConfig;
+
+  @Mock PlatformScheduler mockPlatformScheduler;
+
+  @Mock ShutdownHookHandler mockShutdownHookHandler;
+
+  private SshServer sshServer;
+  private final AtomicInteger numServerSessions = new AtomicInteger();
+  private final CountDownLatch authStarted = new CountDownLatch(1);
+  // Counted down by the tests that hold the authentication of the clients.
+  private CountDownLatch authAllowed = new CountDownLatch(0);
+  private SshSessionPool pool;
+  private SshSessionPool.Target target;
+
+  @Before
+  public void setUp() throws Exception {
+    KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+    keyPairGenerator.initialize(2048);
+    KeyPair clientKey = keyPairGenerator.generateKeyPair();
+    File keyFile = tempFolder.newFile("client_key");
+    try (OutputStream out = Files.newOutputStream(keyFile.toPath())) {
+      OpenSSHKeyPairResourceWriter.INSTANCE.writePrivateKey(clientKey, "test", null, out);
+    }
+
+    sshServer = SshServer.setUpDefaultServer();
+    sshServer.setHost("localhost");
+    sshServer.setPort(0);
+    sshServer.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+    sshServer.setPublickeyAuthenticator(
+        (username, key, session) -> {
+          authStarted.countDown();
+          try {
+            authAllowed.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+          }
+          return USER.equals(username) && KeyUtils.compareKeys(key, clientKey.getPublic());
+        });
+    // Run the commands through the shell, as sshd on the nodes does.
+    sshServer.setCommandFactory(
+        (channel, command) ->
+            new ProcessShellFactory(command, Arrays.asList("/bin/sh", "-c", command))
+                .createShell(channel));
+    sshServer.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+    sshServer.setFileSystemFactory(NativeFileSystemFactory.INSTANCE);
+    sshServer.addSessionListener(
+        new SessionListener() {
+          @Override
+          public void sessionCreated(Session session) {
+            numServerSessions.incrementAndGet();
+          }
+        });
+    sshServer.start();
+
+    lenient().when(mockRuntimeConfigFactory.globalRuntimeConf()).thenReturn(mockConfig);
+    lenient().when(mockConfig.getBoolean(SshSessionPool.POOL_ENABLED_KEY)).thenReturn(true);
+    lenient().when(mockConfig.getInt(SshSessionPool.MAX_CHANNELS_PER_NODE_KEY)).thenReturn(2);
+    lenient()
+        .when(mockConfig.getDuration(SshSessionPool.CONNECT_TIMEOUT_KEY))
+        .thenReturn(Duration.ofSeconds(10));
+    lenient()
+        .when(mockConfig.getDuration(SshSessionPool.KEEPALIVE_INTERVAL_KEY))
+        .thenReturn(Duration.ofSeconds(30));
+    pool =
+        new SshSessionPool(
+            mockRuntimeConfigFactory, mockPlatformScheduler, mockShutdownHookHandler);
+    target =
+        new SshSessionPool.Target(
+            "localhost", sshServer.getPort(), USER, keyFile.getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    authAllowed.countDown();
+    pool.close();
+    sshServer.stop(true);
+  }
+
+  @Test
+  public void testEvictionScheduled() {
+    verify(mockPlatformScheduler).schedule(anyString(), any(), any(), any());
+    verify(mockShutdownHookHandler).addShutdownHook(any());
+  }
+
+  @Test
+  public void testEvictionScheduledWhenDisabled() {
+    when(mockConfig.getBoolean(SshSessionPool.POOL_ENABLED_KEY)).thenReturn(false);
+    new SshSessionPool(mockRuntimeConfigFactory, mockPlatformScheduler, mockShutdownHookHandler);
+    // Once for each pool.
+    verify(mockPlatformScheduler, times(2)).schedule(anyString(), any(), any(), any());
+  }
+
+  @Test
+  public void testCloseWhileConnecting() throws Exception {
+    authAllowed = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<ShellResponse> command =
+          executor.submit(() -> pool.runCommand(target, "true", 0, true));
+      assertTrue(authStarted.await(10, TimeUnit.SECONDS));
+      // Doesn't wait for the connection in progress.
+      CompletableFuture.runAsync(pool::close).get(10, TimeUnit.SECONDS);
+      authAllowed.countDown();
+      try {
+        command.get(10, TimeUnit.SECONDS);
+        fail("Expected the connection to fail");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), instanceOf(SshSessionPool.SshConnectException.class));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(0, pool.getPoolSize());
+  }
+
+  @Test
+  public void testRunCommand() {
+    ShellResponse response = pool.runCommand(target, "echo hello", 0, true);
+    assertEquals(ShellResponse.ERROR_CODE_SUCCESS, response.code);
+    assertEquals("hello", response.extractRunCommandOutput());
+
+    response = pool.runCommand(target, "echo oops >&2; exit 3", 0, true);
+    assertEquals(ShellResponse.ERROR_CODE_GENERIC_ERROR, response.code);
+    assertThat(response.message, containsString("returned error code 3: oops"));
+  }
+
+  @Test
+  public void testJoinedCommand() {
+    String command = SshSessionPool.joinCommand(Arrays.asList("echo", "two  spaces"));
+    assertEquals("echo 'two  spaces'", command);
+    ShellResponse response = pool.runCommand(target, command, 0, true);
+    assertEquals("two  spaces", response.extractRunCommandOutput());
+  }
+
+  @Test
+  public void testCommandTimeout() {
+    ShellResponse response = pool.runCommand(target, "sleep 30", 1, true);
+    assertEquals(ShellResponse.ERROR_CODE_EXECUTION_CANCELLED, response.code);
+    // The session is still usable.
+    response = pool.runCommand(target, "echo hello", 0, true);
+    assertEquals("hello", response.extractRunCommandOutput());
+  }
+
+  @Test
+  public void testRunScript() throws Exception {
+    File script = tempFolder.newFile("script.sh");
+    Files.write(script.toPath(), "echo \"$1-$2\"".getBytes(StandardCharsets.UTF_8));
+    ShellResponse response =
+        pool.runScript(target, script.getAbsolutePath(), Arrays.asList("foo", "bar"), 0);
+    assertEquals(ShellResponse.ERROR_CODE_SUCCESS, response.code);
+    assertEquals("foo-bar", response.extractRunCommandOutput());
+  }
+
+  @Test
+  public void testSessionReused() {
+    for (int i = 0; i < 5; i++) {
+      assertTrue(pool.runCommand(target, "true", 0, true).isSuccess());
+    }
+    assertEquals(1, numServerSessions.get());
+    assertEquals(1, pool.getPoolSize());
+
+    pool.evictIdleSessions(Long.MAX_VALUE);
+    assertEquals(1, pool.getPoolSize());
+    pool.evictIdleSessions(0L);
+    assertEquals(0, pool.getPoolSize());
+
+    assertTrue(pool.runCommand(target, "true", 0, true).isSuccess());
+    assertEquals(2, numServerSessions.get());
+  }
+
+  @Test
+  public void testConcurrentCommandsMultiplexed() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(6);
+    try {
+      List<Future<ShellResponse>> futures = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        int idx = i;
+        futures.add(
+            executor.submit(() -> pool.runCommand(target, "sleep 0.2; echo " + idx, 0, true)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        assertEquals(String.valueOf(i), futures.get(i).get().extractRunCommandOutput());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    // All the commands ran as channels of the same session.
+    assertEquals(1, numServerSessions.get());
+  }
+
+  @Test
+  public void testUploadAndDownloadFile() throws Exception {
+    File source = tempFolder.newFile("source");
+    Files.write(source.toPath(), "some content".getBytes(StandardCharsets.UTF_8));
+    Path remote = tempFolder.getRoot().toPath().resolve("remote/dir/file");
+
+    ShellResponse response =
+        pool.uploadFile(target, source.getAbsolutePath(), remote.toString(), "600");
+    assertEquals(ShellResponse.ERROR_CODE_SUCCESS, response.code);
+    assertEquals("some content", new String(Files.readAllBytes(remote), StandardCharsets.UTF_8));
+    assertEquals(
+        "rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(remote)));
+
+    Path downloaded = tempFolder.getRoot().toPath().resolve("downloaded");
+    response = pool.downloadFile(target, remote.toString(), downloaded.toString());
+    assertEquals(ShellResponse.ERROR_CODE_SUCCESS, response.code);
+    assertEquals(
+        "some content", new String(Files.readAllBytes(downloaded), StandardCharsets.UTF_8));
+
+    response =
+        pool.downloadFile(
+            target, remote.resolveSibling("missing").toString(), downloaded.toString());
+    assertEquals(ShellResponse.ERROR_CODE_GENERIC_ERROR, response.code);
+  }
+
+  @Test
+  public void testRunCommandToFile() throws Exception {
+    byte[] content = new byte[3 << 20];
+    new Random(1).nextBytes(content);
+    Path source = tempFolder.getRoot().toPath().resolve("source");
+    Files.write(source, content);
+
+    Path targetFile = tempFolder.getRoot().toPath().resolve("target");
+    ShellResponse response =
+        pool.runCommandToFile(target, "cat " + source, targetFile.toString(), 0);
+    assertEquals(ShellResponse.ERROR_CODE_SUCCESS, response.code);
+    assertArrayEquals(content, Files.readAllBytes(targetFile));
+
+    response = pool.runCommandToFile(target, "exit 2", targetFile.toString(), 0);
+    assertEquals(ShellResponse.ERROR_CODE_GENERIC_ERROR, response.code);
+    response =
+        pool.runCommandToFile(
+            target, "true", targetFile.resolveSibling("missing/target").toString(), 0);
+    assertEquals(ShellResponse.ERROR_CODE_GENERIC_ERROR, response.code);
+  }
+
+  @Test
+  public void testConnectFailure() {
+    SshSessionPool.Target badTarget =
+        new SshSessionPool.Target(
+            target.getHost(), target.getPort(), "other", target.getPrivateKeyFile());
+    try {
+      pool.runCommand(badTarget, "true", 0, true);
+      fail("Expected the connection to fail");
+    } catch (SshSessionPool.SshConnectException e) {
+      assertThat(e.getMessage(), containsString("Failed to establish SSH connection"));
+    }
+    // The failed attempt does not hold on to a channel.
+    for (int i = 0; i < 3; i++) {
+      try {
+        pool.runCommand(badTarget, "true", 0, true);
+        fail("Expected the connection to fail");
+      } catch (SshSessionPool.SshConnectException expected) {
+      }
+    }
+  }
+}
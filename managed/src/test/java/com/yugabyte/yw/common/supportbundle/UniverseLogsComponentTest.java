@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -18,6 +19,7 @@ import com.yugabyte.yw.common.FakeDBApplication;
 import com.yugabyte.yw.common.ModelFactory;
 import com.yugabyte.yw.common.SupportBundleUtil;
 import com.yugabyte.yw.common.NodeUniverseManager;
+import com.yugabyte.yw.common.PlatformExecutorFactory;
 import com.yugabyte.yw.common.ShellResponse;
 import com.yugabyte.yw.controllers.handlers.UniverseInfoHandler;
 import com.yugabyte.yw.forms.UniverseDefinitionTaskParams;
@@ -26,6 +28,7 @@ import com.yugabyte.yw.models.helpers.NodeDetails;
 import com.yugabyte.yw.models.Universe;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
 import java.util.List;
@@ -33,6 +36,8 @@ import java.util.HashSet;
 import java.util.Arrays;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
@@ -48,6 +53,7 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
   @Mock public UniverseInfoHandler mockUniverseInfoHandler;
   @Mock public NodeUniverseManager mockNodeUniverseManager;
   @Mock public Config mockConfig;
+  @Mock public PlatformExecutorFactory mockPlatformExecutorFactory;
 
   private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
   private final String testRegexPattern =
@@ -89,10 +95,18 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
             "/mnt/yb-data/master/logs/yb-master.u-n1.yugabyte.log.INFO.20220127-045422.9107.gz",
             "/mnt/yb-data/master/logs/yb-master.u-n1.yugabyte.log.WARNING.20220127-072322.1542.gz",
             "/mnt/yb-data/master/logs/yb-master.u-n1.yugabyte.log.INFO.20220125-072322.1542.gz");
+    // The tserver logs on the node are named the same, with yb-tserver instead of yb-master
+    List<String> fakeTserverLogsList =
+        fakeLogsList.stream()
+            .map(path -> path.replace("master", "tserver"))
+            .collect(Collectors.toList());
 
     // Mock all the invocations with fake data
     when(mockConfig.getString("yb.support_bundle.universe_logs_regex_pattern"))
         .thenReturn(testRegexPattern);
+    when(mockConfig.getInt(UniverseLogsComponent.MAX_PARALLEL_NODE_DOWNLOADS_KEY)).thenReturn(8);
+    when(mockPlatformExecutorFactory.createFixedExecutor(any(), anyInt(), any()))
+        .thenAnswer(invocation -> Executors.newCachedThreadPool());
     when(mockSupportBundleUtil.getDataDirPath(any(), any(), any(), any()))
         .thenReturn(fakeSupportBundleBasePath);
     when(mockSupportBundleUtil.filterFilePathsBetweenDates(
@@ -104,15 +118,13 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
 
     // Generate a fake shell response containing the entire list of file paths
     // Mocks the server response
-    String fakeShellOutput = "Command output:\n" + String.join("\n", fakeLogsList);
+    String fakeShellOutput =
+        "Command output:\n"
+            + String.join("\n", fakeLogsList)
+            + "\n"
+            + String.join("\n", fakeTserverLogsList);
     ShellResponse fakeShellResponse = ShellResponse.create(0, fakeShellOutput);
     when(mockNodeUniverseManager.runCommand(any(), any(), any())).thenReturn(fakeShellResponse);
-    // Generate a fake shell response containing the output of the "check file exists" script
-    // Mocks the server response as "file existing"
-    String fakeShellRunScriptOutput = "Command output:\n1";
-    ShellResponse fakeShellRunScriptResponse = ShellResponse.create(0, fakeShellRunScriptOutput);
-    when(mockNodeUniverseManager.runScript(any(), any(), any(), any()))
-        .thenReturn(fakeShellRunScriptResponse);
     lenient()
         .when(mockUniverseInfoHandler.downloadNodeFile(any(), any(), any(), any(), any(), any()))
         .thenReturn(null);
@@ -133,7 +145,11 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
     // Calling the download function
     UniverseLogsComponent universeLogsComponent =
         new UniverseLogsComponent(
-            mockUniverseInfoHandler, mockNodeUniverseManager, mockConfig, mockSupportBundleUtil);
+            mockUniverseInfoHandler,
+            mockNodeUniverseManager,
+            mockConfig,
+            mockSupportBundleUtil,
+            mockPlatformExecutorFactory);
     universeLogsComponent.downloadComponentBetweenDates(
         customer, universe, Paths.get(fakeBundlePath), startDate, endDate);
 
@@ -159,7 +175,8 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
     for (int i = 0; i < files.length; i++) {
       String fullPath = files[i];
       // Trim away the path to get only the file name
-      String trimmedFileName = fullPath.substring(fullPath.lastIndexOf('/') + 1);
+      String trimmedFileName =
+          fullPath.substring(fullPath.lastIndexOf('/') + 1).replace("yb-tserver", "yb-master");
       assertTrue(expectedFilesList.contains(trimmedFileName));
     }
   }
@@ -174,7 +191,11 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
     // Calling the download function
     UniverseLogsComponent universeLogsComponent =
         new UniverseLogsComponent(
-            mockUniverseInfoHandler, mockNodeUniverseManager, mockConfig, mockSupportBundleUtil);
+            mockUniverseInfoHandler,
+            mockNodeUniverseManager,
+            mockConfig,
+            mockSupportBundleUtil,
+            mockPlatformExecutorFactory);
     universeLogsComponent.downloadComponentBetweenDates(
         customer, universe, Paths.get(fakeBundlePath), startDate, endDate);
 
@@ -200,7 +221,8 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
     for (int i = 0; i < files.length; i++) {
       String fullPath = files[i];
       // Trim away the path to get only the file name
-      String trimmedFileName = fullPath.substring(fullPath.lastIndexOf('/') + 1);
+      String trimmedFileName =
+          fullPath.substring(fullPath.lastIndexOf('/') + 1).replace("yb-tserver", "yb-master");
       assertTrue(expectedFilesList.contains(trimmedFileName));
     }
   }
@@ -215,7 +237,11 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
     // Calling the download function
     UniverseLogsComponent universeLogsComponent =
         new UniverseLogsComponent(
-            mockUniverseInfoHandler, mockNodeUniverseManager, mockConfig, mockSupportBundleUtil);
+            mockUniverseInfoHandler,
+            mockNodeUniverseManager,
+            mockConfig,
+            mockSupportBundleUtil,
+            mockPlatformExecutorFactory);
     universeLogsComponent.downloadComponentBetweenDates(
         customer, universe, Paths.get(fakeBundlePath), startDate, endDate);
 
@@ -240,7 +266,8 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
     for (int i = 0; i < files.length; i++) {
       String fullPath = files[i];
       // Trim away the path to get only the file name
-      String trimmedFileName = fullPath.substring(fullPath.lastIndexOf('/') + 1);
+      String trimmedFileName =
+          fullPath.substring(fullPath.lastIndexOf('/') + 1).replace("yb-tserver", "yb-master");
       assertTrue(expectedFilesList.contains(trimmedFileName));
     }
   }
@@ -255,7 +282,11 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
     // Calling the download function
     UniverseLogsComponent universeLogsComponent =
         new UniverseLogsComponent(
-            mockUniverseInfoHandler, mockNodeUniverseManager, mockConfig, mockSupportBundleUtil);
+            mockUniverseInfoHandler,
+            mockNodeUniverseManager,
+            mockConfig,
+            mockSupportBundleUtil,
+            mockPlatformExecutorFactory);
     universeLogsComponent.downloadComponentBetweenDates(
         customer, universe, Paths.get(fakeBundlePath), startDate, endDate);
 
@@ -282,8 +313,55 @@ public class UniverseLogsComponentTest extends FakeDBApplication {
     for (int i = 0; i < files.length; i++) {
       String fullPath = files[i];
       // Trim away the path to get only the file name
-      String trimmedFileName = fullPath.substring(fullPath.lastIndexOf('/') + 1);
+      String trimmedFileName =
+          fullPath.substring(fullPath.lastIndexOf('/') + 1).replace("yb-tserver", "yb-master");
       assertTrue(expectedFilesList.contains(trimmedFileName));
     }
   }
+
+  @Test
+  public void testDownloadComponentBetweenDatesFromMultipleNodes()
+      throws IOException, ParseException {
+    NodeDetails node1 = new NodeDetails();
+    node1.nodeName = "u-n1";
+    NodeDetails node2 = new NodeDetails();
+    node2.nodeName = "u-n2";
+    this.universe =
+        Universe.saveDetails(
+            universe.universeUUID,
+            (universe) -> {
+              UniverseDefinitionTaskParams universeDetails = universe.getUniverseDetails();
+              universeDetails.nodeDetailsSet = new HashSet<>(Arrays.asList(node1, node2));
+              universe.setUniverseDetails(universeDetails);
+            });
+    Date startDate = dateFormat.parse("2022-01-20");
+    Date endDate = dateFormat.parse("2022-02-5");
+
+    UniverseLogsComponent universeLogsComponent =
+        new UniverseLogsComponent(
+            mockUniverseInfoHandler,
+            mockNodeUniverseManager,
+            mockConfig,
+            mockSupportBundleUtil,
+            mockPlatformExecutorFactory);
+    universeLogsComponent.downloadComponentBetweenDates(
+        customer, universe, Paths.get(fakeBundlePath), startDate, endDate);
+
+    // Both master and tserver logs are listed with a single command on each node
+    verify(mockNodeUniverseManager, times(2)).runCommand(any(), any(), any());
+    ArgumentCaptor<NodeDetails> nodeCaptor = ArgumentCaptor.forClass(NodeDetails.class);
+    ArgumentCaptor<Path> targetCaptor = ArgumentCaptor.forClass(Path.class);
+    verify(mockUniverseInfoHandler, times(2))
+        .downloadNodeFile(
+            any(), any(), nodeCaptor.capture(), any(), any(), targetCaptor.capture());
+    assertEquals(
+        new HashSet<>(Arrays.asList("u-n1", "u-n2")),
+        nodeCaptor.getAllValues().stream().map(n -> n.nodeName).collect(Collectors.toSet()));
+    assertEquals(
+        new HashSet<>(
+            Arrays.asList(
+                Paths.get(fakeBundlePath, "universe_logs", "u-n1.tar.gz"),
+                Paths.get(fakeBundlePath, "universe_logs", "u-n2.tar.gz"))),
+        new HashSet<>(targetCaptor.getAllValues()));
+  }
 }
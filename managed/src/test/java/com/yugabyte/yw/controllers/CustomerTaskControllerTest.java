@@ -19,6 +19,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static play.mvc.Http.Status.BAD_REQUEST;
 import static play.mvc.Http.Status.FORBIDDEN;
@@ -42,9 +43,13 @@ import com.yugabyte.yw.models.TaskInfo;
 import com.yugabyte.yw.models.Universe;
 import com.yugabyte.yw.models.Users;
 import com.yugabyte.yw.models.helpers.TaskType;
+import io.ebean.Ebean;
 import io.ebean.Model;
 import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
@@ -113,7 +118,8 @@ public class CustomerTaskControllerTest extends FakeDBApplication {
             percentComplete,
             responseJson);
     TaskInfo taskInfo = TaskInfo.getOrBadRequest(task.getTaskUUID());
-    when(mockCommissioner.buildTaskStatus(task, taskInfo)).thenReturn(Optional.of(responseJson));
+    when(mockCommissioner.buildTaskStatus(eq(task), eq(taskInfo), any(), any()))
+        .thenReturn(Optional.of(responseJson));
     return task.getTaskUUID();
   }
 
@@ -258,6 +264,133 @@ public class CustomerTaskControllerTest extends FakeDBApplication {
         is(true));
   }
 
+  @Test
+  public void testTaskHistoryCreatedBefore() throws InterruptedException {
+    String authToken = user.createAuthToken();
+    UUID universeUUID = UUID.randomUUID();
+    UUID olderTaskUUID =
+        createTaskWithStatus(
+            universeUUID,
+            CustomerTask.TargetType.Universe,
+            Create,
+            TaskType.CreateUniverse,
+            "Foo",
+            "Success",
+            50.0);
+    TimeUnit.MILLISECONDS.sleep(10);
+    UUID newerTaskUUID =
+        createTaskWithStatus(
+            universeUUID,
+            CustomerTask.TargetType.Universe,
+            Update,
+            TaskType.EditUniverse,
+            "Foo",
+            "Running",
+            50.0);
+    long createdBefore = CustomerTask.get(customer.uuid, newerTaskUUID).getCreateTime().getTime();
+
+    String url = "/api/customers/" + customer.uuid + "/tasks?createdBefore=" + createdBefore;
+    Result result = FakeApiHelper.doRequestWithAuthToken("GET", url, authToken);
+    assertThat(result.status(), is(OK));
+    JsonNode universeTasks = Json.parse(contentAsString(result)).get(universeUUID.toString());
+    assertThat(universeTasks.size(), is(1));
+    assertValue(universeTasks.get(0), "id", olderTaskUUID.toString());
+
+    String invalidUrl = "/api/customers/" + customer.uuid + "/tasks?createdBefore=yesterday";
+    result =
+        assertPlatformException(
+            () -> FakeApiHelper.doRequestWithAuthToken("GET", invalidUrl, authToken));
+    assertThat(result.status(), is(BAD_REQUEST));
+  }
+
+  @Test
+  public void testTaskHistoryCreatedBeforeSameTime() {
+    String authToken = user.createAuthToken();
+    UUID universeUUID = UUID.randomUUID();
+    UUID olderTaskUUID =
+        createTaskWithStatus(
+            universeUUID,
+            CustomerTask.TargetType.Universe,
+            Create,
+            TaskType.CreateUniverse,
+            "Foo",
+            "Success",
+            50.0);
+    UUID firstTaskUUID =
+        createTaskWithStatus(
+            universeUUID,
+            CustomerTask.TargetType.Universe,
+            Update,
+            TaskType.EditUniverse,
+            "Foo",
+            "Success",
+            50.0);
+    UUID secondTaskUUID =
+        createTaskWithStatus(
+            universeUUID,
+            CustomerTask.TargetType.Universe,
+            Update,
+            TaskType.EditUniverse,
+            "Foo",
+            "Running",
+            50.0);
+    long createTime = CustomerTask.get(customer.uuid, olderTaskUUID).getCreateTime().getTime();
+    // The two newer tasks are created at the same time, after the older one.
+    Ebean.createSqlUpdate(
+            "update customer_task set create_time = :createTime"
+                + " where task_uuid in (:firstTaskUUID, :secondTaskUUID)")
+        .setParameter("createTime", new Date(createTime + 1000))
+        .setParameter("firstTaskUUID", firstTaskUUID)
+        .setParameter("secondTaskUUID", secondTaskUUID)
+        .execute();
+
+    // Whatever the order of their UUIDs, exactly one of the two tasks is listed after the other.
+    Set<UUID> afterFirst = fetchTaskUUIDsCreatedBefore(authToken, createTime + 1000, firstTaskUUID);
+    Set<UUID> afterSecond =
+        fetchTaskUUIDsCreatedBefore(authToken, createTime + 1000, secondTaskUUID);
+    assertThat(afterFirst.contains(olderTaskUUID), is(true));
+    assertThat(afterSecond.contains(olderTaskUUID), is(true));
+    assertThat(afterFirst.contains(firstTaskUUID), is(false));
+    assertThat(afterSecond.contains(secondTaskUUID), is(false));
+    assertThat(afterFirst.contains(secondTaskUUID), is(!afterSecond.contains(firstTaskUUID)));
+    assertThat(afterFirst.size() + afterSecond.size(), is(3));
+
+    String noTimeUrl =
+        "/api/customers/" + customer.uuid + "/tasks?createdBeforeTaskUUID=" + firstTaskUUID;
+    Result result =
+        assertPlatformException(
+            () -> FakeApiHelper.doRequestWithAuthToken("GET", noTimeUrl, authToken));
+    assertThat(result.status(), is(BAD_REQUEST));
+    String invalidUrl =
+        "/api/customers/"
+            + customer.uuid
+            + "/tasks?createdBefore="
+            + createTime
+            + "&createdBeforeTaskUUID=foo";
+    result =
+        assertPlatformException(
+            () -> FakeApiHelper.doRequestWithAuthToken("GET", invalidUrl, authToken));
+    assertThat(result.status(), is(BAD_REQUEST));
+  }
+
+  private Set<UUID> fetchTaskUUIDsCreatedBefore(
+      String authToken, long createdBefore, UUID createdBeforeTaskUUID) {
+    String url =
+        "/api/customers/"
+            + customer.uuid
+            + "/tasks?createdBefore="
+            + createdBefore
+            + "&createdBeforeTaskUUID="
+            + createdBeforeTaskUUID;
+    Result result = FakeApiHelper.doRequestWithAuthToken("GET", url, authToken);
+    assertThat(result.status(), is(OK));
+    Set<UUID> taskUUIDs = new HashSet<>();
+    for (JsonNode targetTasks : Json.parse(contentAsString(result))) {
+      targetTasks.forEach(task -> taskUUIDs.add(UUID.fromString(task.get("id").asText())));
+    }
+    return taskUUIDs;
+  }
+
   @Test
   public void testFetchTaskWithFailedSubtasks() {
     String authToken = user.createAuthToken();
@@ -663,7 +796,8 @@ public class CustomerTaskControllerTest extends FakeDBApplication {
         99.0,
         "TLS Toggle ON",
         responseJson);
-    when(mockCommissioner.buildTaskStatus(any(), any())).thenReturn(Optional.of(responseJson));
+    when(mockCommissioner.buildTaskStatus(any(), any(), any(), any()))
+        .thenReturn(Optional.of(responseJson));
     Result result =
         FakeApiHelper.doRequestWithAuthToken(
             "GET", "/api/customers/" + customer.uuid + "/tasks", authToken);
@@ -0,0 +1,269 @@
+// Copyright (c) YugaByte, Inc.
+
+package com.yugabyte.yw.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableMap;
+import com.yugabyte.yw.common.ApiHelper;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import play.libs.Json;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PrometheusRequestCoalescerTest {
+  private static final String URL = "foo://bar/query";
+
+  @Mock ApiHelper mockApiHelper;
+
+  private PrometheusRequestCoalescer coalescer;
+
+  @Before
+  public void setUp() {
+    coalescer = new PrometheusRequestCoalescer(mockApiHelper);
+  }
+
+  private static Map<String, String> params(String query) {
+    return new HashMap<>(ImmutableMap.of("query", query, "time", "1479281737"));
+  }
+
+  /** Sends a request from a new thread, and returns once it waits for the in flight one. */
+  private CompletableFuture<JsonNode> getRequestBehindInFlight(String query) throws Exception {
+    return getRequestBehindInFlight(query, new Thread[1]);
+  }
+
+  private CompletableFuture<JsonNode> getRequestBehindInFlight(String query, Thread[] threadOut)
+      throws Exception {
+    CompletableFuture<JsonNode> future = new CompletableFuture<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                future.complete(coalescer.getRequest(URL, params(query)));
+              } catch (Throwable t) {
+                future.completeExceptionally(t);
+              }
+            });
+    threadOut[0] = thread;
+    thread.start();
+    long deadline = System.currentTimeMillis() + 10000;
+    while (thread.getState() != Thread.State.TIMED_WAITING
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+    return future;
+  }
+
+  @Test
+  public void testConcurrentRequestsCoalesced() throws Exception {
+    JsonNode response = Json.parse("{\"status\":\"success\"}");
+    CountDownLatch requestStarted = new CountDownLatch(1);
+    CountDownLatch releaseResponse = new CountDownLatch(1);
+    when(mockApiHelper.getRequest(eq(URL), anyMap(), anyMap()))
+        .thenAnswer(
+            invocation -> {
+              requestStarted.countDown();
+              releaseResponse.await();
+              return response;
+            });
+
+    CompletableFuture<JsonNode> first =
+        CompletableFuture.supplyAsync(() -> coalescer.getRequest(URL, params("up")));
+    assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+    // The second request waits for the first one rather than being sent.
+    CompletableFuture<JsonNode> second = getRequestBehindInFlight("up");
+    assertEquals(1, coalescer.getNumInFlight());
+    releaseResponse.countDown();
+
+    assertSame(response, first.get(10, TimeUnit.SECONDS));
+    assertSame(response, second.get(10, TimeUnit.SECONDS));
+    verify(mockApiHelper, times(1)).getRequest(eq(URL), anyMap(), anyMap());
+    assertEquals(0, coalescer.getNumInFlight());
+  }
+
+  @Test
+  public void testSequentialAndDifferentRequestsSent() {
+    JsonNode response = Json.parse("{\"status\":\"success\"}");
+    when(mockApiHelper.getRequest(eq(URL), anyMap(), anyMap())).thenReturn(response);
+
+    coalescer.getRequest(URL, params("up"));
+    coalescer.getRequest(URL, params("up"));
+    coalescer.getRequest(URL, params("down"));
+    verify(mockApiHelper, times(3)).getRequest(eq(URL), anyMap(), anyMap());
+    assertEquals(0, coalescer.getNumInFlight());
+  }
+
+  @Test
+  public void testFailureSharedWithWaiters() throws Exception {
+    CountDownLatch requestStarted = new CountDownLatch(1);
+    CountDownLatch releaseResponse = new CountDownLatch(1);
+    when(mockApiHelper.getRequest(eq(URL), anyMap(), anyMap()))
+        .thenAnswer(
+            invocation -> {
+              requestStarted.countDown();
+              releaseResponse.await();
+              throw new RuntimeException("Bad response");
+            });
+
+    CompletableFuture<JsonNode> first =
+        CompletableFuture.supplyAsync(() -> coalescer.getRequest(URL, params("up")));
+    assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+    CompletableFuture<JsonNode> second = getRequestBehindInFlight("up");
+    releaseResponse.countDown();
+
+    for (CompletableFuture<JsonNode> future : Arrays.asList(first, second)) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        fail("Expected the request to fail");
+      } catch (ExecutionException e) {
+        assertEquals("Bad response", e.getCause().getMessage());
+      }
+    }
+    assertEquals(0, coalescer.getNumInFlight());
+  }
+
+  @Test
+  public void testErrorSharedWithWaiters() throws Exception {
+    CountDownLatch requestStarted = new CountDownLatch(1);
+    CountDownLatch releaseResponse = new CountDownLatch(1);
+    when(mockApiHelper.getRequest(eq(URL), anyMap(), anyMap()))
+        .thenAnswer(
+            invocation -> {
+              requestStarted.countDown();
+              releaseResponse.await();
+              throw new OutOfMemoryError("Out of memory");
+            });
+
+    CompletableFuture<JsonNode> first =
+        CompletableFuture.supplyAsync(() -> coalescer.getRequest(URL, params("up")));
+    assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+    CompletableFuture<JsonNode> second = getRequestBehindInFlight("up");
+    releaseResponse.countDown();
+
+    for (CompletableFuture<JsonNode> future : Arrays.asList(first, second)) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        fail("Expected the request to fail");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof OutOfMemoryError);
+      }
+    }
+    assertEquals(0, coalescer.getNumInFlight());
+  }
+
+  @Test
+  public void testWaiterInterrupted() throws Exception {
+    CountDownLatch requestStarted = new CountDownLatch(1);
+    CountDownLatch releaseResponse = new CountDownLatch(1);
+    JsonNode response = Json.parse("{\"status\":\"success\"}");
+    when(mockApiHelper.getRequest(eq(URL), anyMap(), anyMap()))
+        .thenAnswer(
+            invocation -> {
+              requestStarted.countDown();
+              releaseResponse.await();
+              return response;
+            });
+
+    CompletableFuture<JsonNode> first =
+        CompletableFuture.supplyAsync(() -> coalescer.getRequest(URL, params("up")));
+    assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+    Thread[] waiter = new Thread[1];
+    CompletableFuture<JsonNode> second = getRequestBehindInFlight("up", waiter);
+    // Cancelling the waiter frees its thread without waiting for the response.
+    waiter[0].interrupt();
+    try {
+      second.get(10, TimeUnit.SECONDS);
+      fail("Expected the request to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getMessage().startsWith("Interrupted waiting for metric query"));
+    }
+    releaseResponse.countDown();
+    assertSame(response, first.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testWaiterTimesOut() throws Exception {
+    coalescer = new PrometheusRequestCoalescer(mockApiHelper, Duration.ofMillis(100));
+    CountDownLatch requestStarted = new CountDownLatch(1);
+    CountDownLatch releaseResponse = new CountDownLatch(1);
+    when(mockApiHelper.getRequest(eq(URL), anyMap(), anyMap()))
+        .thenAnswer(
+            invocation -> {
+              requestStarted.countDown();
+              releaseResponse.await();
+              return Json.newObject();
+            });
+
+    CompletableFuture<JsonNode> first =
+        CompletableFuture.supplyAsync(() -> coalescer.getRequest(URL, params("up")));
+    assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+    try {
+      coalescer.getRequest(URL, params("up"));
+      fail("Expected the request to time out");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().startsWith("Timed out waiting for metric query"));
+    }
+    releaseResponse.countDown();
+    first.get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testInterruptedLeaderResponseNotShared() throws Exception {
+    JsonNode error = Json.parse("{\"error\":\"java.lang.InterruptedException\"}");
+    JsonNode response = Json.parse("{\"status\":\"success\"}");
+    CountDownLatch requestStarted = new CountDownLatch(1);
+    when(mockApiHelper.getRequest(eq(URL), anyMap(), anyMap()))
+        .thenAnswer(
+            invocation -> {
+              requestStarted.countDown();
+              try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+              } catch (InterruptedException e) {
+                // Same as ApiHelper, which returns an error and keeps the thread interrupted.
+                Thread.currentThread().interrupt();
+                return error;
+              }
+              return response;
+            })
+        .thenReturn(response);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<JsonNode> first = executor.submit(() -> coalescer.getRequest(URL, params("up")));
+      assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+      CompletableFuture<JsonNode> second = getRequestBehindInFlight("up");
+      // Cancelled as after the query timeout in MetricQueryHelper.
+      first.cancel(true);
+
+      // The waiter sends the request itself rather than getting the error.
+      assertSame(response, second.get(10, TimeUnit.SECONDS));
+      verify(mockApiHelper, times(2)).getRequest(eq(URL), anyMap(), anyMap());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}